@@ -0,0 +1,180 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openlmis.fulfillment.ProofOfDeliveryDataBuilder;
+import org.openlmis.fulfillment.ProofOfDeliveryLineItemDataBuilder;
+import org.openlmis.fulfillment.testutils.ShipmentDataBuilder;
+import org.openlmis.fulfillment.testutils.ShipmentDraftDataBuilder;
+import org.openlmis.fulfillment.testutils.ShipmentDraftLineItemDataBuilder;
+import org.openlmis.fulfillment.testutils.ShipmentLineItemDataBuilder;
+
+/**
+ * Compares matching line items of lot-level proofs of delivery and shipment drafts through hash
+ * indexes against scanning all line items for each of them, the way they were matched before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProofOfDeliveryBenchmark {
+
+  @Param({"1000", "10000"})
+  private int lineItems;
+
+  private Shipment shipment;
+  private ProofOfDelivery proofOfDelivery;
+  private ProofOfDelivery update;
+  private ShipmentDraft draft;
+  private ShipmentDraft draftUpdate;
+
+  /**
+   * Creates a shipment with the given number of lots and a proof of delivery and a shipment
+   * draft with the same number of line items in a different order.
+   */
+  @Setup
+  public void setUp() {
+    List<ShipmentLineItem> shipped = new ArrayList<>(lineItems);
+    List<ProofOfDeliveryLineItem> received = new ArrayList<>(lineItems);
+    List<ProofOfDeliveryLineItem> updated = new ArrayList<>(lineItems);
+    List<ShipmentDraftLineItem> drafted = new ArrayList<>(lineItems);
+    List<ShipmentDraftLineItem> redrafted = new ArrayList<>(lineItems);
+
+    for (int i = 0; i < lineItems; i++) {
+      ShipmentLineItem item = new ShipmentLineItemDataBuilder().withQuantityShipped(10L).build();
+      shipped.add(item);
+
+      ProofOfDeliveryLineItem line = new ProofOfDeliveryLineItemDataBuilder()
+          .withOrderableId(item.getOrderableId())
+          .withLotId(item.getLotId())
+          .withQuantities(8, 2)
+          .build();
+      received.add(line);
+      updated.add(new ProofOfDeliveryLineItemDataBuilder()
+          .withId(line.getId())
+          .withQuantities(7, 3)
+          .build());
+
+      ShipmentDraftLineItem draftItem = new ShipmentDraftLineItemDataBuilder().build();
+      drafted.add(draftItem);
+      redrafted.add(new ShipmentDraftLineItemDataBuilder().withId(draftItem.getId()).build());
+    }
+
+    Random random = new Random(42);
+    Collections.shuffle(received, random);
+    Collections.shuffle(updated, random);
+    Collections.shuffle(redrafted, random);
+
+    shipment = new ShipmentDataBuilder().withLineItems(shipped).build();
+    proofOfDelivery = new ProofOfDeliveryDataBuilder()
+        .withShipment(shipment)
+        .withLineItems(received)
+        .build();
+    update = new ProofOfDeliveryDataBuilder().withLineItems(updated).build();
+    draft = new ShipmentDraftDataBuilder().withLineItems(drafted).build();
+    draftUpdate = new ShipmentDraftDataBuilder().withLineItems(redrafted).build();
+  }
+
+  /**
+   * Confirms the proof of delivery with {@link ProofOfDelivery#confirm()}.
+   */
+  @Benchmark
+  public boolean confirm() {
+    proofOfDelivery.confirm();
+    return proofOfDelivery.isConfirmed();
+  }
+
+  /**
+   * Validates every line item against a shipped line item found by scanning all of them.
+   */
+  @Benchmark
+  public int confirmByScan() {
+    List<ShipmentLineItem> shipped = shipment.getLineItems();
+    int validated = 0;
+
+    for (ProofOfDeliveryLineItem lineItem : proofOfDelivery.getLineItems()) {
+      for (ShipmentLineItem item : shipped) {
+        if (item.getOrderableId().equals(lineItem.getOrderableId())
+            && Objects.equals(item.getLotId(), lineItem.getLotId())) {
+          lineItem.validate(item.getQuantityShipped());
+          ++validated;
+          break;
+        }
+      }
+    }
+
+    return validated;
+  }
+
+  /**
+   * Updates line items with {@link ProofOfDelivery#updateFrom(ProofOfDelivery)}.
+   */
+  @Benchmark
+  public ProofOfDelivery updateLines() {
+    proofOfDelivery.updateFrom(update);
+    return proofOfDelivery;
+  }
+
+  /**
+   * Updates every line item found by scanning all line items for its id.
+   */
+  @Benchmark
+  public int updateLinesByScan() {
+    int updatedCount = 0;
+
+    for (ProofOfDeliveryLineItem item : update.getLineItems()) {
+      for (ProofOfDeliveryLineItem existing : proofOfDelivery.getLineItems()) {
+        if (existing.getId().equals(item.getId())) {
+          existing.updateFrom(item);
+          ++updatedCount;
+          break;
+        }
+      }
+    }
+
+    return updatedCount;
+  }
+
+  /**
+   * Updates line items with {@link ShipmentDraft#updateFrom(ShipmentDraft)}.
+   */
+  @Benchmark
+  public ShipmentDraft updateShipmentDraft() {
+    draft.updateFrom(draftUpdate);
+    return draft;
+  }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service;
+
+import static java.time.format.DateTimeFormatter.ofPattern;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.jxpath.JXPathContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openlmis.fulfillment.OrderDataBuilder;
+import org.openlmis.fulfillment.OrderLineItemDataBuilder;
+import org.openlmis.fulfillment.domain.FileColumn;
+import org.openlmis.fulfillment.domain.FileTemplate;
+import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.OrderLineItem;
+import org.openlmis.fulfillment.domain.TemplateType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Compares writing order CSV files with a compiled template plan against resolving every cell
+ * with JXPath, the way order files were written before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OrderCsvHelperBenchmark {
+  private static final String ORDER = "order";
+  private static final String LINE_ITEM = "lineItem";
+
+  @Param({"1000", "5000"})
+  private int lineItems;
+
+  private OrderCsvHelper orderCsvHelper;
+  private FileTemplate template;
+  private Order order;
+
+  /**
+   * Creates an order with the given number of line items and a template without related columns,
+   * so that reference data lookups are not measured.
+   */
+  @Setup
+  public void setUp() {
+    orderCsvHelper = new OrderCsvHelper();
+    ReflectionTestUtils.setField(orderCsvHelper, "includeZeroQuantity", true);
+
+    List<FileColumn> columns = new ArrayList<>();
+    columns.add(new FileColumn(true, "header.order.number", "Order number",
+        true, 1, null, ORDER, "orderCode", null, null, null));
+    columns.add(new FileColumn(true, "header.line.number", "Line number",
+        true, 2, null, "line_no", null, null, null, null));
+    columns.add(new FileColumn(true, "header.product.id", "Product",
+        true, 3, null, LINE_ITEM, "orderableId", null, null, null));
+    columns.add(new FileColumn(true, "header.ordered.quantity", "Ordered quantity",
+        true, 4, null, LINE_ITEM, "orderedQuantity", null, null, null));
+    columns.add(new FileColumn(true, "header.order.date", "Order date",
+        true, 5, "dd/MM/yy", ORDER, "createdDate", null, null, null));
+    columns.add(new FileColumn(true, "header.status", "Status",
+        true, 6, null, "string", "NEW", null, null, null));
+    template = new FileTemplate("O", true, TemplateType.ORDER, columns);
+
+    OrderLineItem[] items = new OrderLineItem[lineItems];
+    for (int i = 0; i < lineItems; i++) {
+      items[i] = new OrderLineItemDataBuilder().withRandomOrderedQuantity().build();
+    }
+    order = new OrderDataBuilder().withLineItems(items).build();
+  }
+
+  /**
+   * Writes the order with {@link OrderCsvHelper}.
+   */
+  @Benchmark
+  public int compiledPlan() throws IOException {
+    StringWriter writer = new StringWriter();
+    orderCsvHelper.writeCsvFile(order, template, writer);
+    return writer.getBuffer().length();
+  }
+
+  /**
+   * Writes the order by evaluating JXPath expressions and date patterns for each cell.
+   */
+  @Benchmark
+  public int jxpathPerCell() throws IOException {
+    StringWriter writer = new StringWriter();
+    List<FileColumn> columns = template.getFileColumns();
+    writeHeader(columns, writer);
+
+    int counter = 1;
+    for (OrderLineItem lineItem : order.getOrderLineItems()) {
+      writeLine(order, lineItem, columns, writer, counter++);
+      writer.write("\r\n");
+    }
+
+    return writer.getBuffer().length();
+  }
+
+  private void writeHeader(List<FileColumn> columns, Writer writer) throws IOException {
+    for (FileColumn column : columns) {
+      writer.write(column.getColumnLabel());
+      writer.write(columns.indexOf(column) == columns.size() - 1 ? "\r\n" : ",");
+    }
+  }
+
+  private void writeLine(Order order, OrderLineItem lineItem, List<FileColumn> columns,
+                         Writer writer, int counter) throws IOException {
+    JXPathContext orderContext = JXPathContext.newContext(order);
+    JXPathContext lineItemContext = JXPathContext.newContext(lineItem);
+
+    for (FileColumn column : columns) {
+      Object value;
+
+      switch (column.getNested()) {
+        case "string":
+          value = column.getKeyPath();
+          break;
+        case "line_no":
+          value = counter;
+          break;
+        case ORDER:
+          value = orderContext.getValue(column.getKeyPath());
+          break;
+        default:
+          value = lineItemContext.getValue(column.getKeyPath());
+          break;
+      }
+
+      if (value instanceof ZonedDateTime) {
+        value = ((ZonedDateTime) value).format(ofPattern(column.getFormat()));
+      }
+
+      writer.write(String.valueOf(value));
+      if (columns.indexOf(column) < columns.size() - 1) {
+        writer.write(",");
+      }
+    }
+  }
+}
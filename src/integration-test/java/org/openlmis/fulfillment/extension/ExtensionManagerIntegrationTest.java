@@ -21,6 +21,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.openlmis.fulfillment.domain.Base36EncodedOrderNumberGenerator;
+import org.openlmis.fulfillment.domain.SequenceOrderNumberGenerator;
 import org.openlmis.fulfillment.extension.point.OrderNumberGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -65,6 +66,15 @@ public class ExtensionManagerIntegrationTest {
     Assert.assertEquals(orderQuantity.getClass(), Base36EncodedOrderNumberGenerator.class);
   }
 
+  @Test
+  public void testShouldReturnSequenceOrderNumberGenerator() {
+    extensions.put(OrderNumberGenerator.POINT_ID, "SequenceOrderNumberGenerator");
+
+    OrderNumberGenerator orderQuantity = (OrderNumberGenerator) extensionManager
+        .getExtension(OrderNumberGenerator.POINT_ID, OrderNumberGenerator.class);
+    Assert.assertEquals(orderQuantity.getClass(), SequenceOrderNumberGenerator.class);
+  }
+
   @Test(expected = ExtensionException.class)
   public void testShouldNotReturnExtensionByPointIdWhenInvalidIdAndClass() {
     OrderNumberGenerator orderQuantity = (OrderNumberGenerator) extensionManager
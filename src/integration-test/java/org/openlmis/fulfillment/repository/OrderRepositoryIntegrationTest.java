@@ -93,6 +93,35 @@ public class OrderRepositoryIntegrationTest extends BaseCrudRepositoryIntegratio
         .build();
   }
 
+  @Test
+  public void shouldFindOrdersByOrderCodes() {
+    Order first = orderRepository.save(new OrderDataBuilder().withoutId().build());
+    Order second = orderRepository.save(new OrderDataBuilder().withoutId().build());
+    orderRepository.save(new OrderDataBuilder().withoutId().build());
+
+    List<Order> found = orderRepository
+        .findByOrderCodeInForUpdate(asList(first.getOrderCode(), second.getOrderCode(), "unknown"));
+
+    assertThat(found, hasSize(2));
+    assertThat(found.stream().map(Order::getId).collect(Collectors.toSet()),
+        is(newHashSet(first.getId(), second.getId())));
+  }
+
+  @Test
+  public void shouldFindOrdersByIdsSortedById() {
+    Order first = orderRepository.save(new OrderDataBuilder().withoutId().build());
+    Order second = orderRepository.save(new OrderDataBuilder().withoutId().build());
+    orderRepository.save(new OrderDataBuilder().withoutId().build());
+
+    List<Order> found = orderRepository
+        .findByIdInForUpdate(asList(first.getId(), second.getId(), UUID.randomUUID()));
+
+    // the database sorts uuids by their bytes, like their text form
+    assertThat(found.stream().map(order -> order.getId().toString()).collect(Collectors.toList()),
+        is(Stream.of(first.getId(), second.getId()).map(UUID::toString).sorted()
+            .collect(Collectors.toList())));
+  }
+
   @Test
   public void testDeleteWithLine() {
     Order instance = new OrderDataBuilder().withoutId().build();
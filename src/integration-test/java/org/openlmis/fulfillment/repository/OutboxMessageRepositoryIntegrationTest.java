@@ -0,0 +1,109 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.repository;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openlmis.fulfillment.domain.OutboxMessage;
+import org.openlmis.fulfillment.domain.OutboxMessageType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional
+@SpringBootTest
+@DirtiesContext
+@RunWith(SpringRunner.class)
+public class OutboxMessageRepositoryIntegrationTest {
+  private static final int LIMIT = 10;
+
+  @Autowired
+  private OutboxMessageRepository outboxMessageRepository;
+
+  private ZonedDateTime now = ZonedDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+  private String firstKey = UUID.randomUUID().toString();
+  private String secondKey = UUID.randomUUID().toString();
+
+  @Test
+  public void shouldClaimOnlyOldestMessageOfEachKey() {
+    OutboxMessage first = save(firstKey, now.minusMinutes(3));
+    save(firstKey, now.minusMinutes(2));
+    OutboxMessage other = save(secondKey, now.minusMinutes(1));
+
+    assertThat(claim(), contains(first.getId(), other.getId()));
+  }
+
+  @Test
+  public void shouldClaimNextMessageWhenPreviousHasFailed() {
+    OutboxMessage first = save(firstKey, now.minusMinutes(2));
+    OutboxMessage second = save(firstKey, now.minusMinutes(1));
+
+    first.recordFailure("rejected", now, null);
+    outboxMessageRepository.saveAndFlush(first);
+
+    assertThat(claim(), contains(second.getId()));
+  }
+
+  @Test
+  public void shouldNotClaimMessagesBehindMessageWaitingForRetry() {
+    OutboxMessage first = save(firstKey, now.minusMinutes(2));
+    save(firstKey, now.minusMinutes(1));
+
+    first.recordFailure("timeout", now, now.plusMinutes(1));
+    outboxMessageRepository.saveAndFlush(first);
+
+    assertThat(claim(), empty());
+  }
+
+  @Test
+  public void shouldRenewClaimOnlyIfItHasNotChanged() {
+    OutboxMessage message = save(firstKey, now.minusMinutes(1));
+    message.claim(now.plusMinutes(5));
+    outboxMessageRepository.saveAndFlush(message);
+    String id = message.getId().toString();
+
+    assertThat(outboxMessageRepository.renewClaim(id, now, now.plusMinutes(10)), is(0));
+    assertThat(outboxMessageRepository
+        .renewClaim(id, now.plusMinutes(5), now.plusMinutes(10)), is(1));
+  }
+
+  private OutboxMessage save(String key, ZonedDateTime createdDate) {
+    return outboxMessageRepository.saveAndFlush(OutboxMessage
+        .newInstance(OutboxMessageType.STOCK_EVENT, key, "{}", createdDate));
+  }
+
+  private List<UUID> claim() {
+    return outboxMessageRepository
+        .claimDueMessages(now, LIMIT)
+        .stream()
+        .map(OutboxMessage::getId)
+        .collect(Collectors.toList());
+  }
+
+}
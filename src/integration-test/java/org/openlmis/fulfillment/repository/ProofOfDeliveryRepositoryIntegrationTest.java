@@ -36,6 +36,7 @@ import com.google.common.collect.Lists;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import org.javers.core.Javers;
 import org.javers.core.commit.CommitMetadata;
 import org.javers.core.metamodel.object.CdoSnapshot;
@@ -414,6 +415,40 @@ public class ProofOfDeliveryRepositoryIntegrationTest extends
     }
   }
 
+  @Test
+  public void shouldReturnPagesOfPodsWithTheirLineItems() {
+    List<ProofOfDelivery> list = Lists.newArrayList();
+
+    for (int i = 0; i < 5; ++i) {
+      list.add(generateInstance());
+    }
+
+    proofOfDeliveryRepository.save(list);
+
+    Sort sort = new Sort(Direction.DESC, "id");
+    List<UUID> all = getIds(proofOfDeliveryRepository.search(null, null, emptySet(),
+        emptySet(), emptySet(), new PageRequest(0, 5, sort)));
+    Page<ProofOfDelivery> first = proofOfDeliveryRepository.search(null, null, emptySet(),
+        emptySet(), emptySet(), new PageRequest(0, 2, sort));
+    Page<ProofOfDelivery> second = proofOfDeliveryRepository.search(null, null, emptySet(),
+        emptySet(), emptySet(), new PageRequest(1, 2, sort));
+
+    assertThat(first.getTotalElements(), equalTo((long) list.size()));
+    assertThat(getIds(first), equalTo(all.subList(0, 2)));
+    assertThat(getIds(second), equalTo(all.subList(2, 4)));
+
+    for (ProofOfDelivery pod : first.getContent()) {
+      assertThat(pod.getLineItems(), hasSize(1));
+    }
+  }
+
+  private List<UUID> getIds(Page<ProofOfDelivery> page) {
+    return page.getContent()
+        .stream()
+        .map(ProofOfDelivery::getId)
+        .collect(Collectors.toList());
+  }
+
   private List<CdoSnapshot> getSnapshots(UUID id, Class type) {
     return javers.findSnapshots(QueryBuilder.byInstanceId(id, type).build());
   }
@@ -0,0 +1,131 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.repository;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openlmis.fulfillment.domain.LocalTransferProperties;
+import org.openlmis.fulfillment.domain.TransferProperties;
+import org.openlmis.fulfillment.domain.TransferType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional
+@SpringBootTest
+@DirtiesContext
+@RunWith(SpringRunner.class)
+public class ShipmentChannelLeaseRepositoryIntegrationTest {
+  private static final int LEASE_DURATION = 30;
+
+  @Autowired
+  private ShipmentChannelLeaseRepository leaseRepository;
+
+  @Autowired
+  private ShipmentPollerInstanceRepository instanceRepository;
+
+  @Autowired
+  private TransferPropertiesRepository transferPropertiesRepository;
+
+  private TransferProperties properties;
+  private String channel;
+  private String owner = UUID.randomUUID().toString();
+  private String other = UUID.randomUUID().toString();
+
+  @Before
+  public void setUp() {
+    LocalTransferProperties local = new LocalTransferProperties();
+    local.setFacilityId(UUID.randomUUID());
+    local.setTransferType(TransferType.SHIPMENT);
+    local.setPath("/var/lib/openlmis/shipments");
+
+    properties = transferPropertiesRepository.saveAndFlush(local);
+    channel = properties.getId().toString();
+  }
+
+  @Test
+  public void shouldAcquireFreeLease() {
+    assertThat(leaseRepository.acquire(channel, owner, LEASE_DURATION), is(1));
+
+    assertThat(leaseRepository.findOne(properties.getId()).getOwnerId().toString(), is(owner));
+  }
+
+  @Test
+  public void shouldRenewOwnLease() {
+    leaseRepository.acquire(channel, owner, LEASE_DURATION);
+
+    assertThat(leaseRepository.acquire(channel, owner, LEASE_DURATION), is(1));
+  }
+
+  @Test
+  public void shouldNotAcquireLeaseHeldByAnotherOwner() {
+    leaseRepository.acquire(channel, owner, LEASE_DURATION);
+
+    assertThat(leaseRepository.acquire(channel, other, LEASE_DURATION), is(0));
+  }
+
+  @Test
+  public void shouldAcquireExpiredLease() {
+    leaseRepository.acquire(channel, owner, -LEASE_DURATION);
+
+    assertThat(leaseRepository.acquire(channel, other, LEASE_DURATION), is(1));
+    assertThat(leaseRepository.findOne(properties.getId()).getOwnerId().toString(), is(other));
+  }
+
+  @Test
+  public void shouldReleaseOnlyOwnLease() {
+    leaseRepository.acquire(channel, owner, LEASE_DURATION);
+
+    assertThat(leaseRepository.release(channel, other), is(0));
+    assertThat(leaseRepository.release(channel, owner), is(1));
+    assertThat(leaseRepository.acquire(channel, other, LEASE_DURATION), is(1));
+  }
+
+  @Test
+  public void shouldRemoveLeaseWithTransferProperties() {
+    leaseRepository.acquire(channel, owner, LEASE_DURATION);
+
+    transferPropertiesRepository.delete(properties);
+    transferPropertiesRepository.flush();
+
+    assertThat(leaseRepository.exists(properties.getId()), is(false));
+  }
+
+  @Test
+  public void shouldUpdateHeartbeatOfExistingInstance() {
+    assertThat(instanceRepository.heartbeat(owner), is(1));
+    assertThat(instanceRepository.heartbeat(owner), is(1));
+  }
+
+  @Test
+  public void shouldDeleteOnlyInactiveInstances() {
+    instanceRepository.heartbeat(owner);
+
+    instanceRepository.deleteInactive(LEASE_DURATION);
+    assertThat(instanceRepository.exists(UUID.fromString(owner)), is(true));
+
+    instanceRepository.deleteInactive(-LEASE_DURATION);
+    assertThat(instanceRepository.exists(UUID.fromString(owner)), is(false));
+  }
+
+}
@@ -101,6 +101,17 @@ public class ShipmentDraftRepositoryIntegrationTest
     assertEquals(anotherOrder.getId(), drafts.iterator().next().getOrder().getId());
   }
 
+  @Test
+  public void shouldIncrementVersionOnlyIfItHasNotChanged() {
+    ShipmentDraft draft = shipmentDraftRepository.save(generateInstance());
+    String draftId = draft.getId().toString();
+
+    assertEquals(1, shipmentDraftRepository.incrementVersion(draftId, 0L));
+    assertEquals(0, shipmentDraftRepository.incrementVersion(draftId, 0L));
+    assertEquals(1, shipmentDraftRepository.incrementVersion(draftId));
+    assertEquals(1, shipmentDraftRepository.incrementVersion(draftId, 2L));
+  }
+
   private ShipmentDraft generateInstanceWithOrder(Order order) {
     return new ShipmentDraftDataBuilder()
         .withoutId()
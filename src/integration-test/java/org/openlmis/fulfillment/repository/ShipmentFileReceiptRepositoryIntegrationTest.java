@@ -0,0 +1,82 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.repository;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.UUID;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional
+@SpringBootTest
+@DirtiesContext
+@RunWith(SpringRunner.class)
+public class ShipmentFileReceiptRepositoryIntegrationTest {
+  private static final long FILE_SIZE = 1024;
+  private static final int RETENTION_DAYS = 90;
+
+  @Autowired
+  private ShipmentFileReceiptRepository receiptRepository;
+
+  private String checksum = UUID.randomUUID().toString();
+  private String channelId = UUID.randomUUID().toString();
+
+  @Test
+  public void shouldRecordFile() {
+    assertThat(record(checksum, FILE_SIZE), is(1));
+
+    assertThat(receiptRepository.existsByChecksumAndFileSize(checksum, FILE_SIZE), is(true));
+  }
+
+  @Test
+  public void shouldNotRecordSameContentTwice() {
+    record(checksum, FILE_SIZE);
+
+    assertThat(record(checksum, FILE_SIZE), is(0));
+  }
+
+  @Test
+  public void shouldNotTreatFileWithDifferentSizeAsDuplicate() {
+    record(checksum, FILE_SIZE);
+
+    assertThat(receiptRepository.existsByChecksumAndFileSize(checksum, FILE_SIZE + 1), is(false));
+  }
+
+  @Test
+  public void shouldDeleteOnlyExpiredReceipts() {
+    record(checksum, FILE_SIZE);
+
+    receiptRepository.deleteOlderThan(RETENTION_DAYS);
+    assertThat(receiptRepository.existsByChecksumAndFileSize(checksum, FILE_SIZE), is(true));
+
+    receiptRepository.deleteOlderThan(-RETENTION_DAYS);
+    assertThat(receiptRepository.existsByChecksumAndFileSize(checksum, FILE_SIZE), is(false));
+  }
+
+  private int record(String checksum, long fileSize) {
+    return receiptRepository.record(UUID.randomUUID().toString(), checksum, fileSize,
+        "shipment.csv", channelId);
+  }
+
+}
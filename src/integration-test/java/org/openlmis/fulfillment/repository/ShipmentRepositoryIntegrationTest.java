@@ -17,7 +17,9 @@ package org.openlmis.fulfillment.repository;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import org.junit.Before;
 import org.junit.Test;
@@ -86,4 +88,18 @@ public class ShipmentRepositoryIntegrationTest extends BaseCrudRepositoryIntegra
     assertEquals(1, page.getTotalPages());
   }
 
+  @Test
+  public void shouldFindShipmentsByOrders() {
+    Order otherOrder = orderRepository.save(new OrderDataBuilder()
+        .withoutId()
+        .withOrderedStatus()
+        .build());
+    Shipment save = shipmentRepository.save(generateInstance());
+
+    List<Shipment> shipments = shipmentRepository.findByOrderIn(Arrays.asList(order, otherOrder));
+
+    assertEquals(1, shipments.size());
+    assertEquals(save.getId(), shipments.get(0).getId());
+  }
+
 }
@@ -54,6 +54,7 @@ import org.openlmis.fulfillment.repository.FileColumnRepository;
 import org.openlmis.fulfillment.repository.FileTemplateRepository;
 import org.openlmis.fulfillment.repository.OrderNumberConfigurationRepository;
 import org.openlmis.fulfillment.service.ExporterBuilder;
+import org.openlmis.fulfillment.service.TransferRoutingTable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.embedded.LocalServerPort;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -309,6 +310,9 @@ public abstract class BaseWebIntegrationTest {
   @Autowired
   ExporterBuilder exporter;
 
+  @Autowired
+  private TransferRoutingTable transferRoutingTable;
+
   @Autowired
   private ObjectMapper objectMapper;
 
@@ -506,6 +510,9 @@ public abstract class BaseWebIntegrationTest {
     ));
 
     addOrderNumberConfiguration();
+
+    // the routing table has to be reloaded with data stubbed by the current test
+    transferRoutingTable.invalidate();
   }
 
   private OrderNumberConfiguration addOrderNumberConfiguration() {
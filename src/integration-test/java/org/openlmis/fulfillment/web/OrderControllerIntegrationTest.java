@@ -20,6 +20,7 @@ import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
@@ -30,9 +31,11 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anySetOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -48,6 +51,8 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import guru.nidi.ramltester.junit.RamlMatchers;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -58,6 +63,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -78,6 +85,7 @@ import org.openlmis.fulfillment.service.OrderFileStorage;
 import org.openlmis.fulfillment.service.OrderFtpSender;
 import org.openlmis.fulfillment.service.OrderSearchParams;
 import org.openlmis.fulfillment.service.OrderService;
+import org.openlmis.fulfillment.service.OrderTransferJobService;
 import org.openlmis.fulfillment.service.PageDto;
 import org.openlmis.fulfillment.service.PermissionService;
 import org.openlmis.fulfillment.service.ResultDto;
@@ -120,7 +128,9 @@ public class OrderControllerIntegrationTest extends BaseWebIntegrationTest {
   private static final String ID_URL = RESOURCE_URL + "/{id}";
   private static final String EXPORT_URL = ID_URL + "/export";
   private static final String RETRY_URL = ID_URL + "/retry";
+  private static final String BULK_RETRY_URL = RESOURCE_URL + "/retry";
   private static final String PRINT_URL = ID_URL + "/print";
+  private static final String ORDERS_EXPORT_URL = RESOURCE_URL + "/export";
 
   private static final String REQUESTING_FACILITY = "requestingFacilityId";
   private static final String SUPPLYING_FACILITY = "supplyingFacilityId";
@@ -184,6 +194,9 @@ public class OrderControllerIntegrationTest extends BaseWebIntegrationTest {
   @MockBean
   private OrderService orderService;
 
+  @MockBean
+  private OrderTransferJobService orderTransferJobService;
+
   @SpyBean
   private UserReferenceDataService userReferenceDataService;
 
@@ -609,6 +622,29 @@ public class OrderControllerIntegrationTest extends BaseWebIntegrationTest {
         + "Ordered quantity,Period,Order date"));
   }
 
+  @Test
+  public void shouldReturnNotModifiedIfExportedOrderHasNotChanged() {
+    String etag = restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .pathParam("id", secondOrder.getId())
+        .when()
+        .get(EXPORT_URL)
+        .then()
+        .statusCode(200)
+        .extract().header(HttpHeaders.ETAG);
+
+    restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .header(HttpHeaders.IF_NONE_MATCH, etag)
+        .pathParam("id", secondOrder.getId())
+        .when()
+        .get(EXPORT_URL)
+        .then()
+        .statusCode(304);
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
   @Test
   public void shouldNotExportOrderIfTypeIsDifferentThanCsv() {
     restAssured.given()
@@ -623,6 +659,52 @@ public class OrderControllerIntegrationTest extends BaseWebIntegrationTest {
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
 
+  @Test
+  public void shouldExportOrdersToZipArchive() throws IOException {
+    given(orderRepository.findAll(anyListOf(UUID.class)))
+        .willReturn(asList(firstOrder, secondOrder));
+
+    byte[] archive = restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .queryParam("id", firstOrder.getId())
+        .queryParam("id", secondOrder.getId())
+        .when()
+        .get(ORDERS_EXPORT_URL)
+        .then()
+        .statusCode(200)
+        .extract().body().asByteArray();
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+
+    List<String> fileNames = new ArrayList<>();
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+      for (ZipEntry entry = zip.getNextEntry(); null != entry; entry = zip.getNextEntry()) {
+        fileNames.add(entry.getName());
+      }
+    }
+
+    assertThat(fileNames, hasItems(
+        "O" + firstOrder.getOrderCode() + ".csv", "O" + secondOrder.getOrderCode() + ".csv"));
+  }
+
+  @Test
+  public void shouldRejectOrdersExportRequestWhenUserHasNoRights() {
+    given(orderRepository.findAll(anyListOf(UUID.class)))
+        .willReturn(asList(firstOrder, secondOrder));
+    doThrow(new MissingPermissionException(ORDERS_VIEW))
+        .when(permissionService).canViewOrder(any(Order.class));
+
+    restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .queryParam("id", firstOrder.getId())
+        .when()
+        .get(ORDERS_EXPORT_URL)
+        .then()
+        .statusCode(403);
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
   @Test
   public void shouldReturnBadRequestIfThereIsNoOrderToExport() {
     given(orderRepository.findOne(firstOrder.getId())).willReturn(null);
@@ -700,6 +782,42 @@ public class OrderControllerIntegrationTest extends BaseWebIntegrationTest {
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
 
+  @Test
+  public void shouldScheduleRetryOfAllFailedOrdersOfFacility() {
+    given(orderTransferJobService.scheduleFailedOrders(facilityId)).willReturn(3);
+
+    ResultDto result = restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .queryParam(SUPPLYING_FACILITY, facilityId)
+        .when()
+        .post(BULK_RETRY_URL)
+        .then()
+        .statusCode(200)
+        .extract()
+        .body()
+        .as(ResultDto.class);
+
+    assertThat(result.getResult(), is(3));
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnForbiddenWhenUserHasNoRightsToRetryOrders() {
+    doThrow(new MissingPermissionException("ORDERS_TRANSFER"))
+        .when(permissionService).canTransferOrders(facilityId);
+
+    restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .queryParam(SUPPLYING_FACILITY, facilityId)
+        .when()
+        .post(BULK_RETRY_URL)
+        .then()
+        .statusCode(403);
+
+    verify(orderTransferJobService, never()).scheduleFailedOrders(any(UUID.class));
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
   @Test
   public void shouldReturnAvailableRequestingFacilities() {
     given(orderRepository.getRequestingFacilities(null))
@@ -15,6 +15,7 @@
 
 package org.openlmis.fulfillment.web;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.hamcrest.Matchers.is;
@@ -23,6 +24,9 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -52,18 +56,18 @@ import org.openlmis.fulfillment.domain.TemplateParameter;
 import org.openlmis.fulfillment.repository.OrderRepository;
 import org.openlmis.fulfillment.repository.ProofOfDeliveryRepository;
 import org.openlmis.fulfillment.repository.ShipmentRepository;
-import org.openlmis.fulfillment.service.FulfillmentNotificationService;
 import org.openlmis.fulfillment.service.JasperReportsViewService;
+import org.openlmis.fulfillment.service.OutboxService;
 import org.openlmis.fulfillment.service.PageDto;
 import org.openlmis.fulfillment.service.PermissionService;
 import org.openlmis.fulfillment.service.ProofOfDeliveryService;
 import org.openlmis.fulfillment.service.referencedata.PermissionStringDto;
 import org.openlmis.fulfillment.service.referencedata.PermissionStrings;
-import org.openlmis.fulfillment.service.stockmanagement.StockEventStockManagementService;
 import org.openlmis.fulfillment.util.Pagination;
 import org.openlmis.fulfillment.web.stockmanagement.StockEventDto;
 import org.openlmis.fulfillment.web.util.ProofOfDeliveryDto;
 import org.openlmis.fulfillment.web.util.StockEventBuilder;
+import org.openlmis.fulfillment.web.util.StockEventBuilder.ProofOfDeliveryStockEvents;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
@@ -79,6 +83,7 @@ public class ProofOfDeliveryControllerIntegrationTest extends BaseWebIntegration
   private static final String ID_URL = RESOURCE_URL + "/{id}";
   private static final String PRINT_URL = ID_URL + "/print";
   private static final String AUDIT_LOG_URL = ID_URL + "/auditLog";
+  private static final String CONFIRM_URL = RESOURCE_URL + "/confirm";
 
   private static final String MESSAGE_KEY = "messageKey";
   private static final String PARAM_PAGE = "page";
@@ -100,7 +105,7 @@ public class ProofOfDeliveryControllerIntegrationTest extends BaseWebIntegration
   private StockEventBuilder stockEventBuilder;
 
   @MockBean
-  private StockEventStockManagementService stockEventStockManagementService;
+  private OutboxService outboxService;
 
   @SpyBean
   private PermissionService permissionService;
@@ -108,9 +113,6 @@ public class ProofOfDeliveryControllerIntegrationTest extends BaseWebIntegration
   @MockBean
   private PermissionStrings.Handler permissionStringsHandler;
 
-  @MockBean
-  private FulfillmentNotificationService fulfillmentNotificationService;
-
   @MockBean
   private JasperReportsViewService jasperReportsViewService;
 
@@ -264,8 +266,8 @@ public class ProofOfDeliveryControllerIntegrationTest extends BaseWebIntegration
 
     assertThat(response.getDeliveredBy(), is(somebody));
     // Notifications are only sent on POD confirmation
-    verify(fulfillmentNotificationService, never())
-        .sendPodConfirmedNotification(any(ProofOfDelivery.class));
+    verify(outboxService, never()).addPodConfirmations(anyListOf(StockEventDto.class),
+        anyListOf(ProofOfDelivery.class));
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
 
@@ -286,7 +288,39 @@ public class ProofOfDeliveryControllerIntegrationTest extends BaseWebIntegration
         .extract()
         .as(ProofOfDeliveryDto.class);
 
-    verify(fulfillmentNotificationService).sendPodConfirmedNotification(any(ProofOfDelivery.class));
+    verify(outboxService).addPodConfirmations(anyListOf(StockEventDto.class),
+        anyListOf(ProofOfDelivery.class));
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldConfirmProofsOfDeliveryInBatch() {
+    ProofOfDelivery confirmed = new ProofOfDeliveryDataBuilder().buildAsConfirmed();
+    ProofOfDeliveryDto confirmedDto = new ProofOfDeliveryDto();
+    confirmedDto.setServiceUrl(serviceUrl);
+    confirmed.export(confirmedDto);
+
+    given(proofOfDeliveryRepository.findAll(anySetOf(UUID.class)))
+        .willReturn(asList(proofOfDelivery, confirmed));
+    given(proofOfDeliveryRepository.save(anyListOf(ProofOfDelivery.class)))
+        .willAnswer(invocation -> invocation.getArguments()[0]);
+    given(stockEventBuilder.fromProofsOfDelivery(anyListOf(ProofOfDelivery.class)))
+        .willReturn(mock(ProofOfDeliveryStockEvents.class));
+
+    restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .body(asList(createDto(), confirmedDto))
+        .when()
+        .post(CONFIRM_URL)
+        .then()
+        .statusCode(200)
+        .body("[0].proofOfDelivery.id", is(proofOfDelivery.getId().toString()))
+        .body("[0].proofOfDelivery.status", is(ProofOfDeliveryStatus.CONFIRMED.toString()))
+        .body("[1].error.messageKey", is(PROOF_OF_DELIVERY_ALREADY_CONFIRMED));
+
+    verify(outboxService).addPodConfirmations(anyListOf(StockEventDto.class),
+        eq(singletonList(proofOfDelivery)));
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
 
@@ -372,7 +406,8 @@ public class ProofOfDeliveryControllerIntegrationTest extends BaseWebIntegration
 
     verify(orderRepository).save(captor.capture());
     verify(stockEventBuilder).fromProofOfDelivery(any(ProofOfDelivery.class));
-    verify(stockEventStockManagementService).submit(any(StockEventDto.class));
+    verify(outboxService).addPodConfirmations(anyListOf(StockEventDto.class),
+        anyListOf(ProofOfDelivery.class));
     assertThat(captor.getValue().getStatus(), is(OrderStatus.RECEIVED));
 
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
@@ -398,7 +433,7 @@ public class ProofOfDeliveryControllerIntegrationTest extends BaseWebIntegration
         .extract()
         .path(MESSAGE_KEY);
 
-    verifyZeroInteractions(orderRepository, stockEventBuilder, stockEventStockManagementService);
+    verifyZeroInteractions(orderRepository, stockEventBuilder, outboxService);
     assertThat(response, is(MUST_CONTAIN_VALUE));
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
@@ -15,16 +15,21 @@
 
 package org.openlmis.fulfillment.web;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anySetOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -51,10 +56,10 @@ import org.openlmis.fulfillment.repository.OrderRepository;
 import org.openlmis.fulfillment.repository.ProofOfDeliveryRepository;
 import org.openlmis.fulfillment.repository.ShipmentDraftRepository;
 import org.openlmis.fulfillment.repository.ShipmentRepository;
+import org.openlmis.fulfillment.service.OutboxService;
 import org.openlmis.fulfillment.service.PageDto;
 import org.openlmis.fulfillment.service.PermissionService;
 import org.openlmis.fulfillment.service.referencedata.UserDto;
-import org.openlmis.fulfillment.service.stockmanagement.StockEventStockManagementService;
 import org.openlmis.fulfillment.testutils.CreationDetailsDataBuilder;
 import org.openlmis.fulfillment.testutils.ShipmentDataBuilder;
 import org.openlmis.fulfillment.testutils.ShipmentLineItemDataBuilder;
@@ -66,6 +71,7 @@ import org.openlmis.fulfillment.web.shipment.ShipmentLineItemDto;
 import org.openlmis.fulfillment.web.stockmanagement.StockEventDto;
 import org.openlmis.fulfillment.web.util.OrderObjectReferenceDto;
 import org.openlmis.fulfillment.web.util.StockEventBuilder;
+import org.openlmis.fulfillment.web.util.StockEventBuilder.ShipmentStockEvents;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
@@ -100,7 +106,7 @@ public class ShipmentControllerIntegrationTest extends BaseWebIntegrationTest {
   private PermissionService permissionService;
 
   @MockBean
-  private StockEventStockManagementService stockEventService;
+  private OutboxService outboxService;
 
   @MockBean
   private StockEventBuilder stockEventBuilder;
@@ -203,12 +209,42 @@ public class ShipmentControllerIntegrationTest extends BaseWebIntegrationTest {
     verify(orderRepository).save(shipmentOrder);
     verify(shipmentRepository).save(captor.capture());
     verify(stockEventBuilder).fromShipment(any(Shipment.class));
-    verify(stockEventService).submit(any(StockEventDto.class));
+    verify(outboxService).addStockEvent(any(StockEventDto.class));
     assertTrue(reflectionEquals(shipment, captor.getValue(), singletonList("id")));
     assertNull(captor.getValue().getId());
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
   }
 
+  @Test
+  public void shouldCreateShipmentsInBatch() {
+    shipment.getOrder().setStatus(OrderStatus.ORDERED);
+    ShipmentDto missingOrderDto = new ShipmentDtoDataBuilder()
+        .withOrder(new OrderObjectReferenceDto(UUID.randomUUID()))
+        .build();
+    ShipmentStockEvents stockEvents = mock(ShipmentStockEvents.class);
+    when(stockEventBuilder.fromShipments(anyListOf(Shipment.class))).thenReturn(stockEvents);
+    when(orderRepository.findAll(anySetOf(UUID.class)))
+        .thenReturn(singletonList(shipment.getOrder()));
+    when(shipmentRepository.save(anyListOf(Shipment.class))).thenReturn(singletonList(shipment));
+
+    restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(APPLICATION_JSON_VALUE)
+        .body(asList(shipmentDto, missingOrderDto))
+        .when()
+        .post(RESOURCE_URL + "/batch")
+        .then()
+        .statusCode(200)
+        .body("[0].shipment.id", equalTo(shipment.getId().toString()))
+        .body("[0].error", nullValue())
+        .body("[1].shipment", nullValue())
+        .body("[1].error.messageKey", equalTo(MessageKeys.ORDER_NOT_FOUND));
+
+    assertEquals(OrderStatus.SHIPPED, shipment.getOrder().getStatus());
+    verify(outboxService).addStockEvents(any());
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
+  }
+
   @Test
   public void shouldReturnBadRequestIfShipmentOrderIsNotGiven() {
     shipmentDto.setOrder((OrderObjectReferenceDto) null);
@@ -225,7 +261,7 @@ public class ShipmentControllerIntegrationTest extends BaseWebIntegrationTest {
 
     verify(shipmentRepository, never()).save(any(Shipment.class));
     verify(stockEventBuilder, never()).fromShipment(any(Shipment.class));
-    verify(stockEventService, never()).submit(any(StockEventDto.class));
+    verify(outboxService, never()).addStockEvent(any(StockEventDto.class));
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
   }
 
@@ -247,7 +283,7 @@ public class ShipmentControllerIntegrationTest extends BaseWebIntegrationTest {
 
     verify(shipmentRepository, never()).save(any(Shipment.class));
     verify(stockEventBuilder, never()).fromShipment(any(Shipment.class));
-    verify(stockEventService, never()).submit(any(StockEventDto.class));
+    verify(outboxService, never()).addStockEvent(any(StockEventDto.class));
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
   }
 
@@ -269,7 +305,7 @@ public class ShipmentControllerIntegrationTest extends BaseWebIntegrationTest {
 
     verify(shipmentRepository, never()).save(any(Shipment.class));
     verify(stockEventBuilder, never()).fromShipment(any(Shipment.class));
-    verify(stockEventService, never()).submit(any(StockEventDto.class));
+    verify(outboxService, never()).addStockEvent(any(StockEventDto.class));
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
   }
 
@@ -15,6 +15,7 @@
 
 package org.openlmis.fulfillment.web;
 
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
 import static org.hamcrest.Matchers.equalTo;
@@ -59,6 +60,8 @@ import org.openlmis.fulfillment.util.DateHelper;
 import org.openlmis.fulfillment.web.shipment.ShipmentLineItemDto;
 import org.openlmis.fulfillment.web.shipmentdraft.ShipmentDraftDto;
 import org.openlmis.fulfillment.web.shipmentdraft.ShipmentDraftDtoDataBuilder;
+import org.openlmis.fulfillment.web.shipmentdraft.ShipmentDraftLineItemChangeDto;
+import org.openlmis.fulfillment.web.shipmentdraft.ShipmentDraftPatchDto;
 import org.openlmis.fulfillment.web.util.OrderObjectReferenceDto;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -259,7 +262,7 @@ public class ShipmentDraftControllerIntegrationTest extends BaseWebIntegrationTe
     when(shipmentDraftRepository.findOne(any(UUID.class))).thenReturn(existingDraft);
     shipmentDraftDto.setId(draftIdFromUser);
 
-    ShipmentDraftDto extracted = restAssured.given()
+    final ShipmentDraftDto extracted = restAssured.given()
         .pathParam(ID, draftIdFromUser)
         .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
         .contentType(APPLICATION_JSON_VALUE)
@@ -270,9 +273,36 @@ public class ShipmentDraftControllerIntegrationTest extends BaseWebIntegrationTe
         .statusCode(200)
         .extract().as(ShipmentDraftDto.class);
 
+    verify(shipmentDraftRepository).incrementVersion(draftIdFromUser.toString());
+    shipmentDraft.incrementVersion();
+    shipmentDraftDtoExpected.setVersion(1L);
     verifyAfterPut(extracted);
   }
 
+  @Test
+  public void shouldReturnConflictIfVersionMismatchWhenPut() {
+    ShipmentDraft existingDraft = new ShipmentDraftDataBuilder()
+        .withId(draftIdFromUser)
+        .build();
+    when(shipmentDraftRepository.findOne(any(UUID.class))).thenReturn(existingDraft);
+    shipmentDraftDto.setId(draftIdFromUser);
+    shipmentDraftDto.setVersion(3L);
+
+    restAssured.given()
+        .pathParam(ID, draftIdFromUser)
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(APPLICATION_JSON_VALUE)
+        .body(shipmentDraftDto)
+        .when()
+        .put(ID_RESOURCE_URL)
+        .then()
+        .statusCode(409)
+        .body(MESSAGE_KEY, equalTo(MessageKeys.SHIPMENT_DRAFT_VERSION_MISMATCH));
+
+    verify(shipmentDraftRepository, never()).save(any(ShipmentDraft.class));
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
   @Test
   public void shouldReturnBadRequestIfIdMismatch() {
     shipmentDraftDto.setId(UUID.randomUUID());
@@ -332,6 +362,93 @@ public class ShipmentDraftControllerIntegrationTest extends BaseWebIntegrationTe
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
 
+  @Test
+  public void shouldPatchShipmentDraft() {
+    UUID draftId = shipmentDraftDtoExpected.getId();
+    ShipmentDraft existingDraft = new ShipmentDraftDataBuilder()
+        .withId(draftId)
+        .build();
+    when(shipmentDraftRepository.findOne(draftId)).thenReturn(existingDraft);
+    when(shipmentDraftRepository.incrementVersion(draftId.toString(), 0L)).thenReturn(1);
+    ShipmentDraftLineItemChangeDto change = new ShipmentDraftLineItemChangeDto(
+        null, UUID.randomUUID(), UUID.randomUUID(), 10L, false);
+
+    ShipmentDraftDto extracted = restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(APPLICATION_JSON_VALUE)
+        .pathParam(ID, draftId)
+        .body(new ShipmentDraftPatchDto(0L, "new notes", singletonList(change)))
+        .when()
+        .patch(ID_RESOURCE_URL)
+        .then()
+        .statusCode(200)
+        .extract().as(ShipmentDraftDto.class);
+
+    assertEquals(draftId, extracted.getId());
+    assertEquals("new notes", extracted.getNotes());
+    assertEquals(Long.valueOf(1), extracted.getVersion());
+    assertEquals(2, extracted.lineItems().size());
+    assertEquals(change.getOrderableId(), extracted.lineItems().get(1).getOrderableId());
+    assertEquals(change.getQuantityShipped(), extracted.lineItems().get(1).getQuantityShipped());
+    verify(shipmentDraftRepository).save(existingDraft);
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnConflictIfShipmentDraftHasBeenModifiedWhenPatch() {
+    UUID draftId = shipmentDraftDtoExpected.getId();
+    when(shipmentDraftRepository.incrementVersion(draftId.toString(), 0L)).thenReturn(0);
+
+    restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(APPLICATION_JSON_VALUE)
+        .pathParam(ID, draftId)
+        .body(new ShipmentDraftPatchDto(0L, null, emptyList()))
+        .when()
+        .patch(ID_RESOURCE_URL)
+        .then()
+        .statusCode(409)
+        .body(MESSAGE_KEY, equalTo(MessageKeys.SHIPMENT_DRAFT_VERSION_MISMATCH));
+
+    verify(shipmentDraftRepository, never()).save(any(ShipmentDraft.class));
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnBadRequestIfVersionIsNotGivenWhenPatch() {
+    restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(APPLICATION_JSON_VALUE)
+        .pathParam(ID, shipmentDraftDtoExpected.getId())
+        .body(new ShipmentDraftPatchDto(null, null, emptyList()))
+        .when()
+        .patch(ID_RESOURCE_URL)
+        .then()
+        .statusCode(400)
+        .body(MESSAGE_KEY, equalTo(MessageKeys.SHIPMENT_DRAFT_VERSION_REQUIRED));
+
+    verify(shipmentDraftRepository, never()).findOne(any(UUID.class));
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
+  }
+
+  @Test
+  public void shouldReturnNotFoundIfShipmentDraftIsNotFoundWhenPatch() {
+    when(shipmentDraftRepository.findOne(shipmentDraftDtoExpected.getId())).thenReturn(null);
+
+    restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(APPLICATION_JSON_VALUE)
+        .pathParam(ID, shipmentDraftDtoExpected.getId())
+        .body(new ShipmentDraftPatchDto(0L, null, emptyList()))
+        .when()
+        .patch(ID_RESOURCE_URL)
+        .then()
+        .statusCode(404)
+        .body(MESSAGE_KEY, equalTo(MessageKeys.SHIPMENT_NOT_FOUND));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
   @Test
   public void shouldGetShipmentDraft() {
     ShipmentDraftDto extracted = restAssured.given()
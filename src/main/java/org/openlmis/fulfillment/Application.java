@@ -48,6 +48,7 @@ import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 import org.springframework.web.servlet.LocaleResolver;
@@ -56,6 +57,7 @@ import org.springframework.web.servlet.i18n.CookieLocaleResolver;
 @SuppressWarnings("PMD.TooManyMethods")
 @SpringBootApplication(scanBasePackages = "org.openlmis.fulfillment")
 @EntityScan(basePackageClasses = BaseEntity.class)
+@EnableScheduling
 public class Application {
 
   private static final Logger logger = LoggerFactory.getLogger(Application.class);
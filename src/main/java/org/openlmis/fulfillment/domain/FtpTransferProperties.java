@@ -92,6 +92,7 @@ public class FtpTransferProperties extends TransferProperties {
         .ifPresent(facility -> ftp.facilityId = facility.getId());
 
     ftp.transferType = importer.getTransferType();
+    ftp.compression = TransferCompression.fromString(importer.getCompression());
     ftp.protocol = FtpProtocol.fromString(importer.getProtocol());
     ftp.username = importer.getUsername();
     ftp.password = importer.getPassword();
@@ -47,6 +47,7 @@ public class LocalTransferProperties extends TransferProperties {
         .ifPresent(facility -> local.setFacilityId(facility.getId()));
 
     local.transferType = importer.getTransferType();
+    local.compression = TransferCompression.fromString(importer.getCompression());
     local.path = importer.getPath();
 
     return local;
@@ -0,0 +1,132 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.domain;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Type;
+
+/**
+ * Represents a pending retry of an order file transfer. A job is created when an order could not
+ * be sent to the supplying facility's FTP server and it is removed once the order has been
+ * transferred. A job without the next attempt date has used all of its attempts and waits for
+ * a manual re-schedule.
+ */
+@Entity
+@Table(name = "order_transfer_jobs")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class OrderTransferJob extends BaseEntity {
+  public static final String ORDER_ID = "orderId";
+  public static final String NEXT_ATTEMPT_DATE = "nextAttemptDate";
+
+  private static final String TIMESTAMP_WITH_TIME_ZONE = "timestamp with time zone";
+
+  @Column(nullable = false, unique = true)
+  @Type(type = UUID_TYPE)
+  @Getter
+  private UUID orderId;
+
+  @Column(nullable = false)
+  @Type(type = UUID_TYPE)
+  @Getter
+  private UUID supplyingFacilityId;
+
+  @Column(nullable = false)
+  @Getter
+  private int attempts;
+
+  @Column(nullable = false, columnDefinition = TIMESTAMP_WITH_TIME_ZONE)
+  @Getter
+  private ZonedDateTime createdDate;
+
+  @Column(columnDefinition = TIMESTAMP_WITH_TIME_ZONE)
+  @Getter
+  private ZonedDateTime nextAttemptDate;
+
+  @Column(columnDefinition = TIMESTAMP_WITH_TIME_ZONE)
+  @Getter
+  private ZonedDateTime lastAttemptDate;
+
+  @Column(columnDefinition = TEXT_COLUMN_DEFINITION)
+  @Getter
+  private String lastError;
+
+  /**
+   * Creates a new job for the given order.
+   *
+   * @param orderId             the order which transfer failed.
+   * @param supplyingFacilityId the supplying facility of the order.
+   * @param createdDate         the date when the job is created.
+   * @param nextAttemptDate     the date of the first retry.
+   * @return new instance of OrderTransferJob.
+   */
+  public static OrderTransferJob newInstance(UUID orderId, UUID supplyingFacilityId,
+      ZonedDateTime createdDate, ZonedDateTime nextAttemptDate) {
+    OrderTransferJob job = new OrderTransferJob();
+    job.orderId = orderId;
+    job.supplyingFacilityId = supplyingFacilityId;
+    job.attempts = 0;
+    job.createdDate = createdDate;
+    job.nextAttemptDate = nextAttemptDate;
+
+    return job;
+  }
+
+  /**
+   * Records an unsuccessful retry.
+   *
+   * @param error           the reason of the failure.
+   * @param attemptDate     the date of the attempt.
+   * @param nextAttemptDate the date of the next attempt or null if no more attempts should be
+   *                        made.
+   */
+  public void recordFailure(String error, ZonedDateTime attemptDate,
+      ZonedDateTime nextAttemptDate) {
+    this.attempts += 1;
+    this.lastError = error;
+    this.lastAttemptDate = attemptDate;
+    this.nextAttemptDate = nextAttemptDate;
+  }
+
+  /**
+   * Postpones the next attempt while the job is being processed, so other service instances do
+   * not pick it up. If the processing is interrupted, the job is picked up again at the given
+   * date.
+   */
+  public void claim(ZonedDateTime claimedUntil) {
+    this.nextAttemptDate = claimedUntil;
+  }
+
+  /**
+   * Resets the attempt counter so the job will be picked up again at the given date.
+   */
+  public void reschedule(ZonedDateTime nextAttemptDate) {
+    this.attempts = 0;
+    this.nextAttemptDate = nextAttemptDate;
+  }
+
+  public boolean isExhausted() {
+    return null == nextAttemptDate;
+  }
+
+}
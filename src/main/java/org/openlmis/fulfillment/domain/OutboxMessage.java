@@ -0,0 +1,130 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.domain;
+
+import java.time.ZonedDateTime;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents a message that should be delivered to another service once the transaction that
+ * created it has been committed. Messages with the same ordering key are delivered in the order
+ * in which they were created. A message is removed after it has been delivered. A message without
+ * the next attempt date has used all of its attempts and will not be delivered.
+ */
+@Entity
+@Table(name = "outbox_messages")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class OutboxMessage extends BaseEntity {
+  private static final String TIMESTAMP_WITH_TIME_ZONE = "timestamp with time zone";
+
+  // assigned by the database sequence, defines the order of messages with the same key
+  @Column(nullable = false, insertable = false, updatable = false)
+  @Getter
+  private Long position;
+
+  @Column(nullable = false, columnDefinition = TEXT_COLUMN_DEFINITION)
+  @Enumerated(EnumType.STRING)
+  @Getter
+  private OutboxMessageType type;
+
+  @Column(nullable = false, columnDefinition = TEXT_COLUMN_DEFINITION)
+  @Getter
+  private String orderingKey;
+
+  @Column(nullable = false, columnDefinition = TEXT_COLUMN_DEFINITION)
+  @Getter
+  private String payload;
+
+  @Column(nullable = false)
+  @Getter
+  private int attempts;
+
+  @Column(nullable = false, columnDefinition = TIMESTAMP_WITH_TIME_ZONE)
+  @Getter
+  private ZonedDateTime createdDate;
+
+  @Column(columnDefinition = TIMESTAMP_WITH_TIME_ZONE)
+  @Getter
+  private ZonedDateTime nextAttemptDate;
+
+  @Column(columnDefinition = TIMESTAMP_WITH_TIME_ZONE)
+  @Getter
+  private ZonedDateTime lastAttemptDate;
+
+  @Column(columnDefinition = TEXT_COLUMN_DEFINITION)
+  @Getter
+  private String lastError;
+
+  /**
+   * Creates a new message that is ready to be delivered.
+   *
+   * @param type        the kind of the message.
+   * @param orderingKey messages with the same key are delivered one after another.
+   * @param payload     the content of the message.
+   * @param createdDate the date when the message is created.
+   * @return new instance of OutboxMessage.
+   */
+  public static OutboxMessage newInstance(OutboxMessageType type, String orderingKey,
+      String payload, ZonedDateTime createdDate) {
+    OutboxMessage message = new OutboxMessage();
+    message.type = type;
+    message.orderingKey = orderingKey;
+    message.payload = payload;
+    message.attempts = 0;
+    message.createdDate = createdDate;
+    message.nextAttemptDate = createdDate;
+
+    return message;
+  }
+
+  /**
+   * Records an unsuccessful delivery.
+   *
+   * @param error           the reason of the failure.
+   * @param attemptDate     the date of the attempt.
+   * @param nextAttemptDate the date of the next attempt or null if no more attempts should be
+   *                        made.
+   */
+  public void recordFailure(String error, ZonedDateTime attemptDate,
+      ZonedDateTime nextAttemptDate) {
+    this.attempts += 1;
+    this.lastError = error;
+    this.lastAttemptDate = attemptDate;
+    this.nextAttemptDate = nextAttemptDate;
+  }
+
+  /**
+   * Postpones the next attempt while the message is being delivered, so other service instances
+   * do not pick it up. If the delivery is interrupted, the message is picked up again at the given
+   * date.
+   */
+  public void claim(ZonedDateTime claimedUntil) {
+    this.nextAttemptDate = claimedUntil;
+  }
+
+  public boolean isExhausted() {
+    return null == nextAttemptDate;
+  }
+
+}
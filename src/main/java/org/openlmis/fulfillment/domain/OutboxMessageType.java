@@ -13,22 +13,10 @@
  * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
  */
 
-package org.openlmis.fulfillment.util;
-
-import java.util.Properties;
-
-public class EnvPropertyBuilder {
-
-  private Properties properties = new Properties();
-
-  public EnvPropertyBuilder with(String property, String value) {
-    properties.setProperty(property, value);
-    return this;
-  }
-
-  public Properties build() {
-    return this.properties;
-  }
 
+package org.openlmis.fulfillment.domain;
 
+public enum OutboxMessageType {
+  STOCK_EVENT,
+  POD_CONFIRMED_NOTIFICATION
 }
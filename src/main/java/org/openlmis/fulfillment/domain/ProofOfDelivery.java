@@ -20,9 +20,9 @@ import static org.apache.commons.collections.CollectionUtils.isEmpty;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import javax.persistence.CascadeType;
@@ -39,6 +39,7 @@ import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.tuple.Pair;
 import org.javers.core.metamodel.annotation.DiffIgnore;
 import org.javers.core.metamodel.annotation.TypeName;
 import org.openlmis.fulfillment.i18n.MessageKeys;
@@ -117,14 +118,19 @@ public class ProofOfDelivery extends BaseEntity {
     Validations.throwIfBlank(receivedBy, "receivedBy");
     Validations.throwIfNull(receivedDate, "receivedDate");
 
+    // shipped line items are indexed once, so each line is validated in constant time
+    Map<Pair<UUID, UUID>, ShipmentLineItem> shippedItems = new HashMap<>();
+    for (ShipmentLineItem shipped : shipment.getLineItems()) {
+      shippedItems.putIfAbsent(Pair.of(shipped.getOrderableId(), shipped.getLotId()), shipped);
+    }
+
     for (ProofOfDeliveryLineItem lineItem : lineItems) {
-      shipment
-          .getLineItems()
-          .stream()
-          .filter(shipped -> shipped.getOrderableId().equals(lineItem.getOrderableId())
-              && Objects.equals(shipped.getLotId(), lineItem.getLotId()))
-          .findFirst()
-          .ifPresent(shipped -> lineItem.validate(shipped.getQuantityShipped()));
+      ShipmentLineItem shipped = shippedItems
+          .get(Pair.of(lineItem.getOrderableId(), lineItem.getLotId()));
+
+      if (null != shipped) {
+        lineItem.validate(shipped.getQuantityShipped());
+      }
     }
 
     status = ProofOfDeliveryStatus.CONFIRMED;
@@ -143,13 +149,19 @@ public class ProofOfDelivery extends BaseEntity {
       lineItems = new ArrayList<>();
     }
 
+    Map<UUID, ProofOfDeliveryLineItem> existingItems = new HashMap<>();
+    for (ProofOfDeliveryLineItem existing : lineItems) {
+      existingItems.putIfAbsent(existing.getId(), existing);
+    }
+
     for (ProofOfDeliveryLineItem item : newLineItems) {
-      lineItems
-          .stream()
-          .filter(l -> l.getId().equals(item.getId()))
-          .findFirst()
-          .ifPresent(existing -> existing.updateFrom(item));
+      ProofOfDeliveryLineItem existing = null == item.getId()
+          ? null
+          : existingItems.get(item.getId());
 
+      if (null != existing) {
+        existing.updateFrom(item);
+      }
     }
   }
 
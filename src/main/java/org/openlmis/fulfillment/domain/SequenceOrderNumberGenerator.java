@@ -0,0 +1,66 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.domain;
+
+import static org.apache.commons.lang3.StringUtils.leftPad;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.openlmis.fulfillment.extension.point.OrderNumberGenerator;
+import org.openlmis.fulfillment.repository.OrderNumberConfigurationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * An implementation of OrderNumberGenerator extension that takes numbers from a database sequence.
+ * Numbers are allocated in blocks, so the database is hit once per block and not once per order.
+ * Numbers are encoded as Base36 and padded to 8 characters.
+ * @see OrderNumberGenerator
+ */
+@Component("SequenceOrderNumberGenerator")
+public class SequenceOrderNumberGenerator implements OrderNumberGenerator {
+
+  private static final int RADIX = 36;
+  private static final int LENGTH = 8;
+
+  @Autowired
+  private OrderNumberConfigurationRepository orderNumberConfigurationRepository;
+
+  @Value("${order.number.sequence.blockSize}")
+  private int blockSize;
+
+  private final Deque<Long> numbers = new ArrayDeque<>();
+
+  /**
+   * Generates unique number for given order.
+   */
+  public String generate(Order order) {
+    long number = next();
+    return leftPad(Long.toString(number, RADIX).toUpperCase(), LENGTH, '0');
+  }
+
+  private synchronized long next() {
+    if (numbers.isEmpty()) {
+      orderNumberConfigurationRepository
+          .allocateOrderNumbers(blockSize)
+          .forEach(number -> numbers.add(number.longValue()));
+    }
+
+    return numbers.removeFirst();
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.domain;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Type;
+
+/**
+ * Grants a service instance the exclusive right to poll a shipment channel until the lease
+ * expires. The id of a lease is the id of the shipment transfer properties. Leases are acquired,
+ * renewed and released with native queries, so the database clock is used for all of them.
+ */
+@Entity
+@Table(name = "shipment_channel_leases")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ShipmentChannelLease extends BaseEntity {
+
+  @Column(nullable = false)
+  @Type(type = UUID_TYPE)
+  @Getter
+  private UUID ownerId;
+
+  @Column(nullable = false, columnDefinition = "timestamp with time zone")
+  @Getter
+  private ZonedDateTime expiresAt;
+
+}
@@ -15,10 +15,16 @@
 
 package org.openlmis.fulfillment.domain;
 
+import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_DRAFT_LINE_ITEM_DUPLICATE;
+import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_DRAFT_LINE_ITEM_NOT_FOUND;
+import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_DRAFT_LINE_ITEM_ORDERABLE_REQUIRED;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import javax.persistence.CascadeType;
@@ -30,15 +36,14 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.ToString;
 import org.javers.core.metamodel.annotation.TypeName;
+import org.openlmis.fulfillment.web.ValidationException;
 
 @Entity
 @Table(name = "shipment_drafts")
 @TypeName("ShipmentDraft")
-@AllArgsConstructor
 @ToString
 public class ShipmentDraft extends BaseEntity {
 
@@ -57,9 +62,22 @@ public class ShipmentDraft extends BaseEntity {
   @JoinColumn(name = "shipmentdraftid", nullable = false)
   private List<ShipmentDraftLineItem> lineItems;
 
-  // Constructor needed by framework. Use all args constructor to create new instance.
+  @Column(nullable = false, updatable = false)
+  @Getter
+  private long version;
+
+  // Constructor needed by framework. Use public constructor to create new instance.
   private ShipmentDraft() {}
 
+  /**
+   * Creates new shipment draft. The version of new draft is always equal to zero.
+   */
+  public ShipmentDraft(Order order, String notes, List<ShipmentDraftLineItem> lineItems) {
+    this.order = order;
+    this.notes = notes;
+    this.lineItems = lineItems;
+  }
+
   /**
    * Gets a view of line items.
    */
@@ -102,17 +120,114 @@ public class ShipmentDraft extends BaseEntity {
     updateLineItems(newDraft);
   }
 
+  /**
+   * Allows update notes of existing draft.
+   *
+   * @param notes new notes.
+   */
+  public void updateNotes(String notes) {
+    this.notes = notes;
+  }
+
+  /**
+   * Applies the given line item changes to the draft. A change is matched with an existing line
+   * item by id, or by orderable and lot if the id is not set. Matched line items are updated or
+   * removed, other line items stay untouched so only changed rows have to be written. Values
+   * which are not set in a change matched by id stay unchanged. Changes with orderable and lot
+   * that do not match any line item add new line items. A change can't give a line item the
+   * orderable and lot of another line item.
+   *
+   * @param changes line item changes to apply.
+   */
+  public void applyChanges(@NotNull List<? extends LineItemChange> changes) {
+    Map<UUID, ShipmentDraftLineItem> byId = new HashMap<>();
+    Map<List<UUID>, ShipmentDraftLineItem> byOrderableAndLot = new HashMap<>();
+    for (ShipmentDraftLineItem existing : lineItems) {
+      byId.putIfAbsent(existing.getId(), existing);
+      byOrderableAndLot.putIfAbsent(existing.getOrderableAndLot(), existing);
+    }
+
+    for (LineItemChange change : changes) {
+      ShipmentDraftLineItem existing;
+      if (null != change.getId()) {
+        existing = byId.get(change.getId());
+        if (null == existing && !change.isRemoved()) {
+          throw new ValidationException(SHIPMENT_DRAFT_LINE_ITEM_NOT_FOUND,
+              change.getId().toString());
+        }
+      } else {
+        existing = byOrderableAndLot.get(Arrays.asList(change.getOrderableId(),
+            change.getLotId()));
+      }
+
+      if (change.isRemoved()) {
+        if (null != existing) {
+          ShipmentDraftLineItem removed = existing;
+          lineItems.removeIf(item -> item == removed);
+          byId.remove(existing.getId());
+          byOrderableAndLot.remove(existing.getOrderableAndLot(), existing);
+        }
+        continue;
+      }
+
+      ShipmentDraftLineItem newItem;
+      if (null != change.getId()) {
+        newItem = existing.merge(change);
+        checkOrderableAndLotNotUsed(byOrderableAndLot, existing, newItem);
+      } else if (null == change.getOrderableId()) {
+        throw new ValidationException(SHIPMENT_DRAFT_LINE_ITEM_ORDERABLE_REQUIRED);
+      } else {
+        newItem = ShipmentDraftLineItem.newInstance(change);
+      }
+
+      if (null != existing) {
+        byOrderableAndLot.remove(existing.getOrderableAndLot(), existing);
+        existing.updateFrom(newItem);
+      } else {
+        newItem.setId(null);
+        lineItems.add(newItem);
+        existing = newItem;
+      }
+      byOrderableAndLot.put(existing.getOrderableAndLot(), existing);
+    }
+  }
+
+  /**
+   * Increments the version of the draft. It should be called after the version has been
+   * incremented in the database.
+   */
+  public void incrementVersion() {
+    version++;
+  }
+
+  private void checkOrderableAndLotNotUsed(
+      Map<List<UUID>, ShipmentDraftLineItem> byOrderableAndLot, ShipmentDraftLineItem existing,
+      ShipmentDraftLineItem newItem) {
+    List<UUID> orderableAndLot = newItem.getOrderableAndLot();
+    ShipmentDraftLineItem other = byOrderableAndLot.get(orderableAndLot);
+
+    if (null != other && other != existing
+        && !orderableAndLot.equals(existing.getOrderableAndLot())) {
+      throw new ValidationException(SHIPMENT_DRAFT_LINE_ITEM_DUPLICATE,
+          String.valueOf(orderableAndLot.get(0)), String.valueOf(orderableAndLot.get(1)));
+    }
+  }
+
   private void updateLineItems(ShipmentDraft newDraft) {
     List<ShipmentDraftLineItem> newLineItems = newDraft.viewLineItems();
 
+    Map<UUID, ShipmentDraftLineItem> existingItems = new HashMap<>();
+    for (ShipmentDraftLineItem existing : this.lineItems) {
+      existingItems.putIfAbsent(existing.getId(), existing);
+    }
+
     List<ShipmentDraftLineItem> updatedList = new ArrayList<>();
     for (ShipmentDraftLineItem newItem : newLineItems) {
-      Optional<ShipmentDraftLineItem> existingItem = this.lineItems.stream()
-          .filter(l -> l.getId().equals(newItem.getId()))
-          .findFirst();
+      ShipmentDraftLineItem existing = null == newItem.getId()
+          ? null
+          : existingItems.get(newItem.getId());
 
-      if (existingItem.isPresent()) {
-        ShipmentDraftLineItem existing = existingItem.get();
+      if (null != existing) {
         existing.updateFrom(newItem);
         updatedList.add(existing);
       } else {
@@ -131,6 +246,8 @@ public class ShipmentDraft extends BaseEntity {
     void setOrder(Order order);
 
     void setNotes(String notes);
+
+    void setVersion(Long version);
   }
 
   public interface Importer {
@@ -143,6 +260,10 @@ public class ShipmentDraft extends BaseEntity {
     List<ShipmentLineItem.Importer> getLineItems();
   }
 
+  public interface LineItemChange extends ShipmentLineItem.Importer {
+    boolean isRemoved();
+  }
+
   /**
    * Exports data from the given shipment draft to the instance that implement
    * {@link Exporter} interface.
@@ -151,6 +272,7 @@ public class ShipmentDraft extends BaseEntity {
     exporter.setId(getId());
     exporter.setOrder(order);
     exporter.setNotes(notes);
+    exporter.setVersion(version);
   }
 
 }
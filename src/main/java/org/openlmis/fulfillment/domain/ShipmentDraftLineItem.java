@@ -15,6 +15,8 @@
 
 package org.openlmis.fulfillment.domain;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -68,6 +70,32 @@ public class ShipmentDraftLineItem extends BaseEntity {
     this.quantityShipped = newItem.quantityShipped;
   }
 
+  /**
+   * Returns a copy of line item with the values of the given change applied. Values which are
+   * not set in the change stay unchanged.
+   *
+   * @param change change to apply.
+   */
+  ShipmentDraftLineItem merge(ShipmentLineItem.Importer change) {
+    ShipmentDraftLineItem merged = copy();
+
+    if (null != change.getOrderableId()) {
+      merged.orderableId = change.getOrderableId();
+    }
+    if (null != change.getLotId()) {
+      merged.lotId = change.getLotId();
+    }
+    if (null != change.getQuantityShipped()) {
+      merged.quantityShipped = change.getQuantityShipped();
+    }
+
+    return merged;
+  }
+
+  List<UUID> getOrderableAndLot() {
+    return Arrays.asList(orderableId, lotId);
+  }
+
   /**
    * Returns a copy of line item.
    */
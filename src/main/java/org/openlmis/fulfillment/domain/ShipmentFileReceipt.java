@@ -0,0 +1,54 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.domain;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Type;
+
+/**
+ * A shipment file that has been imported. Receipts are used to skip files that are delivered
+ * again and are removed after the retention period.
+ */
+@Entity
+@Table(name = "shipment_file_receipts")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+public class ShipmentFileReceipt extends BaseEntity {
+
+  @Column(nullable = false, length = 64)
+  private String checksum;
+
+  @Column(nullable = false)
+  private Long fileSize;
+
+  @Column(nullable = false, columnDefinition = TEXT_COLUMN_DEFINITION)
+  private String fileName;
+
+  @Type(type = UUID_TYPE)
+  private UUID channelId;
+
+  @Column(nullable = false, columnDefinition = "timestamp with time zone")
+  private ZonedDateTime processedDate;
+
+}
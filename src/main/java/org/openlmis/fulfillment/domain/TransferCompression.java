@@ -0,0 +1,114 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.domain;
+
+import static org.apache.commons.lang3.StringUtils.endsWithIgnoreCase;
+import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+public enum TransferCompression {
+  NONE(""),
+  GZIP(".gz"),
+  ZIP(".zip");
+
+  private final String extension;
+
+  TransferCompression(String extension) {
+    this.extension = extension;
+  }
+
+  /**
+   * Returns name of the transferred file for the given (uncompressed) file name.
+   */
+  public String getFileName(String fileName) {
+    return fileName + extension;
+  }
+
+  /**
+   * Wraps the given stream so that everything written to it is compressed. The file name is used
+   * as the entry name in zip archives.
+   */
+  public OutputStream compress(OutputStream stream, String fileName) throws IOException {
+    switch (this) {
+      case GZIP:
+        return new GZIPOutputStream(stream);
+      case ZIP:
+        ZipOutputStream zip = new ZipOutputStream(stream);
+        zip.putNextEntry(new ZipEntry(fileName));
+        return zip;
+      default:
+        return stream;
+    }
+  }
+
+  /**
+   * Wraps the given stream so that the data read from it is decompressed. For zip archives only
+   * the first entry is read.
+   */
+  public InputStream decompress(InputStream stream) throws IOException {
+    switch (this) {
+      case GZIP:
+        return new GZIPInputStream(stream);
+      case ZIP:
+        ZipInputStream zip = new ZipInputStream(stream);
+        zip.getNextEntry();
+        return zip;
+      default:
+        return stream;
+    }
+  }
+
+  /**
+   * Find correct compression by the given string. Blank value means no compression.
+   *
+   * @param compression string representation of compression.
+   * @return {@link TransferCompression} that is equal to the given string.
+   */
+  public static TransferCompression fromString(String compression) {
+    if (isBlank(compression)) {
+      return NONE;
+    }
+
+    return Arrays.stream(values())
+        .filter(c -> equalsIgnoreCase(compression, c.name()))
+        .findFirst()
+        .orElse(null);
+  }
+
+  /**
+   * Find compression used by the file with the given name.
+   *
+   * @param fileName name of transferred file.
+   * @return {@link TransferCompression} related with the file extension.
+   */
+  public static TransferCompression fromFileName(String fileName) {
+    return Arrays.stream(values())
+        .filter(c -> NONE != c && endsWithIgnoreCase(fileName, c.extension))
+        .findFirst()
+        .orElse(NONE);
+  }
+}
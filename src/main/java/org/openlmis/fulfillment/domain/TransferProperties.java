@@ -52,6 +52,12 @@ public abstract class TransferProperties extends BaseEntity implements Storable
   @Setter
   protected TransferType transferType = TransferType.ORDER;
 
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, columnDefinition = TEXT_COLUMN_DEFINITION)
+  @Getter
+  @Setter
+  protected TransferCompression compression = TransferCompression.NONE;
+
   public interface BaseExporter {
 
     void setId(UUID id);
@@ -60,6 +66,8 @@ public abstract class TransferProperties extends BaseEntity implements Storable
 
     void setTransferType(TransferType transferType);
 
+    void setCompression(String compression);
+
   }
 
   public interface BaseImporter {
@@ -70,6 +78,8 @@ public abstract class TransferProperties extends BaseEntity implements Storable
 
     TransferType getTransferType();
 
+    String getCompression();
+
   }
 
 }
@@ -183,6 +183,16 @@ public abstract class MessageKeys {
       join(ERROR_PREFIX, SHIPMENT_DRAFT, ORDER, DUPLICATE);
   public static final String CANNOT_CREATE_SHIPMENT_DRAFT_FOR_ORDER_WITH_WRONG_STATUS =
       join(ERROR_PREFIX, SHIPMENT_DRAFT, "create", "orderWithWrongStatus");
+  public static final String SHIPMENT_DRAFT_VERSION_REQUIRED =
+      join(ERROR_PREFIX, SHIPMENT_DRAFT, "version", REQUIRED);
+  public static final String SHIPMENT_DRAFT_VERSION_MISMATCH =
+      join(ERROR_PREFIX, SHIPMENT_DRAFT, "version", "mismatch");
+  public static final String SHIPMENT_DRAFT_LINE_ITEM_NOT_FOUND =
+      join(ERROR_PREFIX, SHIPMENT_DRAFT, "lineItem", NOT_FOUND);
+  public static final String SHIPMENT_DRAFT_LINE_ITEM_ORDERABLE_REQUIRED =
+      join(ERROR_PREFIX, SHIPMENT_DRAFT, "lineItem", "orderableId", REQUIRED);
+  public static final String SHIPMENT_DRAFT_LINE_ITEM_DUPLICATE =
+      join(ERROR_PREFIX, SHIPMENT_DRAFT, "lineItem", DUPLICATE);
 
   public static final String EVENT_MISSING_SOURCE_DESTINATION =
       join(ERROR_PREFIX, STOCK_EVENT, "missingSourceDestination");
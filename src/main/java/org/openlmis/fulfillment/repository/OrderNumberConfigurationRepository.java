@@ -15,10 +15,32 @@
 
 package org.openlmis.fulfillment.repository;
 
+import java.util.List;
 import java.util.UUID;
 import org.openlmis.fulfillment.domain.OrderNumberConfiguration;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface OrderNumberConfigurationRepository
     extends PagingAndSortingRepository<OrderNumberConfiguration, UUID> {
+
+  @Query(value = "SELECT nextval('fulfillment.order_number_seq')"
+      + " FROM generate_series(1, :count)",
+      nativeQuery = true)
+  List<Number> allocateOrderNumbers(@Param("count") int count);
+
+  @Query(value = "SELECT version FROM fulfillment.order_number_configuration_version",
+      nativeQuery = true)
+  Number getConfigurationVersion();
+
+  @Modifying
+  @Transactional
+  @Query(value = "UPDATE fulfillment.order_number_configuration_version"
+      + " SET version = version + 1",
+      nativeQuery = true)
+  int incrementConfigurationVersion();
+
 }
@@ -15,9 +15,15 @@
 
 package org.openlmis.fulfillment.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import javax.persistence.LockModeType;
 import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.OrderStatus;
 import org.openlmis.fulfillment.repository.custom.OrderRepositoryCustom;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 
@@ -26,4 +32,18 @@ public interface OrderRepository extends PagingAndSortingRepository<Order, UUID>
 
   Order findByOrderCode(@Param("orderCode") String orderNumber);
 
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT o FROM Order AS o WHERE o.orderCode IN :orderCodes ORDER BY o.id")
+  List<Order> findByOrderCodeInForUpdate(@Param("orderCodes") Collection<String> orderCodes);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT o FROM Order AS o WHERE o.id IN :ids ORDER BY o.id")
+  List<Order> findByIdInForUpdate(@Param("ids") Collection<UUID> ids);
+
+  @Query("SELECT o.id FROM Order AS o "
+      + "WHERE o.supplyingFacilityId = :supplyingFacilityId AND o.status = :status")
+  List<UUID> findIdsBySupplyingFacilityIdAndStatus(
+      @Param("supplyingFacilityId") UUID supplyingFacilityId,
+      @Param("status") OrderStatus status);
+
 }
@@ -0,0 +1,75 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.repository;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.openlmis.fulfillment.domain.OrderTransferJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface OrderTransferJobRepository extends JpaRepository<OrderTransferJob, UUID> {
+
+  OrderTransferJob findByOrderId(@Param("orderId") UUID orderId);
+
+  List<OrderTransferJob> findByOrderIdIn(@Param("orderIds") Collection<UUID> orderIds);
+
+  long countByNextAttemptDateIsNotNull();
+
+  long countByNextAttemptDateIsNull();
+
+  OrderTransferJob findFirstByNextAttemptDateIsNotNullOrderByCreatedDateAsc();
+
+  /**
+   * Locks and returns jobs that should be retried at the given date. Rows that are already locked
+   * by another transaction (for example by another service instance) are skipped, so the same job
+   * is never processed twice at the same time. The lock is held until the end of the current
+   * transaction.
+   */
+  @Query(value = "SELECT\n"
+      + "    j.*\n"
+      + "FROM\n"
+      + "    fulfillment.order_transfer_jobs j\n"
+      + "WHERE\n"
+      + "    j.nextattemptdate <= :now\n"
+      + "ORDER BY j.nextattemptdate\n"
+      + "LIMIT :limit\n"
+      + "FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  List<OrderTransferJob> claimDueJobs(@Param("now") ZonedDateTime now,
+      @Param("limit") int limit);
+
+  /**
+   * Extends the claim of the job if it is still equal to the given one.
+   *
+   * @return number of updated rows, zero if the job has been removed or its claim has expired and
+   *         the job has been claimed again.
+   */
+  @Modifying
+  @Transactional
+  @Query(value = "UPDATE fulfillment.order_transfer_jobs\n"
+      + "SET nextattemptdate = :claimedUntil\n"
+      + "WHERE id = CAST(:id AS uuid) AND nextattemptdate = :currentClaim",
+      nativeQuery = true)
+  int renewClaim(@Param("id") String id, @Param("currentClaim") ZonedDateTime currentClaim,
+      @Param("claimedUntil") ZonedDateTime claimedUntil);
+}
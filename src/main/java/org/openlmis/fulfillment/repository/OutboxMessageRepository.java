@@ -0,0 +1,89 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.repository;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import org.openlmis.fulfillment.domain.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, UUID> {
+
+  long countByNextAttemptDateIsNotNull();
+
+  long countByNextAttemptDateIsNull();
+
+  OutboxMessage findFirstByNextAttemptDateIsNotNullOrderByCreatedDateAsc();
+
+  /**
+   * Waits for and takes a transaction level advisory lock for the given ordering key. Positions
+   * are assigned when messages are inserted, not when they are committed, so writers of the same
+   * ordering key must be serialized to make the positions follow the commit order. The lock is
+   * released at the end of the current transaction.
+   */
+  @Query(value = "SELECT COUNT(*)\n"
+      + "FROM (SELECT pg_advisory_xact_lock(hashtext(:orderingKey))) l",
+      nativeQuery = true)
+  Number lockOrderingKey(@Param("orderingKey") String orderingKey);
+
+  /**
+   * Locks and returns messages that should be delivered at the given date. Only the oldest
+   * pending message of each ordering key is returned, so messages with the same key are never
+   * delivered out of order or at the same time. Rows that are already locked by another
+   * transaction (for example by another service instance) are skipped. The lock is held until
+   * the end of the current transaction.
+   */
+  @Query(value = "SELECT\n"
+      + "    m.*\n"
+      + "FROM\n"
+      + "    fulfillment.outbox_messages m\n"
+      + "WHERE\n"
+      + "    m.nextattemptdate <= :now\n"
+      + "    AND NOT EXISTS (\n"
+      + "        SELECT 1\n"
+      + "        FROM fulfillment.outbox_messages p\n"
+      + "        WHERE p.orderingkey = m.orderingkey\n"
+      + "            AND p.position < m.position\n"
+      + "            AND p.nextattemptdate IS NOT NULL\n"
+      + "    )\n"
+      + "ORDER BY m.position\n"
+      + "LIMIT :limit\n"
+      + "FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  List<OutboxMessage> claimDueMessages(@Param("now") ZonedDateTime now,
+      @Param("limit") int limit);
+
+  /**
+   * Extends the claim of the message if it is still equal to the given one.
+   *
+   * @return number of updated rows, zero if the message has been removed or its claim has expired
+   *         and the message has been claimed again.
+   */
+  @Modifying
+  @Transactional
+  @Query(value = "UPDATE fulfillment.outbox_messages\n"
+      + "SET nextattemptdate = :claimedUntil\n"
+      + "WHERE id = CAST(:id AS uuid) AND nextattemptdate = :currentClaim",
+      nativeQuery = true)
+  int renewClaim(@Param("id") String id, @Param("currentClaim") ZonedDateTime currentClaim,
+      @Param("claimedUntil") ZonedDateTime claimedUntil);
+}
@@ -0,0 +1,54 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.repository;
+
+import java.util.UUID;
+import org.openlmis.fulfillment.domain.ShipmentChannelLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ShipmentChannelLeaseRepository
+    extends JpaRepository<ShipmentChannelLease, UUID> {
+
+  /**
+   * Acquires or renews the lease of a shipment channel. The lease is granted only if it is free,
+   * has expired or is already held by the given owner.
+   *
+   * @return 1 if the lease has been granted, 0 if it is held by another owner.
+   */
+  @Modifying
+  @Transactional
+  @Query(value = "INSERT INTO fulfillment.shipment_channel_leases AS l (id, ownerid, expiresat)\n"
+      + "VALUES (CAST(:channelId AS uuid), CAST(:ownerId AS uuid),"
+      + " now() + :seconds * INTERVAL '1 second')\n"
+      + "ON CONFLICT (id) DO UPDATE\n"
+      + "SET ownerid = EXCLUDED.ownerid, expiresat = EXCLUDED.expiresat\n"
+      + "WHERE l.ownerid = EXCLUDED.ownerid OR l.expiresat < now()",
+      nativeQuery = true)
+  int acquire(@Param("channelId") String channelId, @Param("ownerId") String ownerId,
+      @Param("seconds") int seconds);
+
+  @Modifying
+  @Transactional
+  @Query(value = "DELETE FROM fulfillment.shipment_channel_leases\n"
+      + "WHERE id = CAST(:channelId AS uuid) AND ownerid = CAST(:ownerId AS uuid)",
+      nativeQuery = true)
+  int release(@Param("channelId") String channelId, @Param("ownerId") String ownerId);
+
+}
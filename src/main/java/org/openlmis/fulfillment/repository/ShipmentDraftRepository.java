@@ -16,14 +16,18 @@
 package org.openlmis.fulfillment.repository;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 import org.javers.spring.annotation.JaversSpringDataAuditable;
 import org.openlmis.fulfillment.domain.Order;
 import org.openlmis.fulfillment.domain.ShipmentDraft;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 @JaversSpringDataAuditable
 public interface ShipmentDraftRepository extends
@@ -34,6 +38,8 @@ public interface ShipmentDraftRepository extends
 
   Page<ShipmentDraft> findByOrder(Order order, Pageable pageable);
 
+  List<ShipmentDraft> findByOrderIn(Collection<Order> orders);
+
   @Query(value = "SELECT\n"
       + "    d.*\n"
       + "FROM\n"
@@ -51,4 +57,28 @@ public interface ShipmentDraftRepository extends
       + " ORDER BY ?#{#pageable}",
       nativeQuery = true)
   Page<ShipmentDraft> findAllWithoutSnapshots(Pageable pageable);
+
+  /**
+   * Increments the version of the shipment draft if it is still equal to the given one.
+   *
+   * @return number of updated rows, zero if the draft has been modified in the meantime.
+   */
+  @Modifying
+  @Transactional
+  @Query(value = "UPDATE fulfillment.shipment_drafts\n"
+      + "SET version = version + 1\n"
+      + "WHERE id = CAST(:id AS uuid) AND version = :version",
+      nativeQuery = true)
+  int incrementVersion(@Param("id") String id, @Param("version") long version);
+
+  /**
+   * Increments the version of the shipment draft.
+   */
+  @Modifying
+  @Transactional
+  @Query(value = "UPDATE fulfillment.shipment_drafts\n"
+      + "SET version = version + 1\n"
+      + "WHERE id = CAST(:id AS uuid)",
+      nativeQuery = true)
+  int incrementVersion(@Param("id") String id);
 }
@@ -0,0 +1,50 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.repository;
+
+import java.util.UUID;
+import org.openlmis.fulfillment.domain.ShipmentFileReceipt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ShipmentFileReceiptRepository extends JpaRepository<ShipmentFileReceipt, UUID> {
+
+  boolean existsByChecksumAndFileSize(String checksum, Long fileSize);
+
+  @Modifying
+  @Transactional
+  @Query(value = "INSERT INTO fulfillment.shipment_file_receipts\n"
+      + "(id, checksum, filesize, filename, channelid, processeddate)\n"
+      + "VALUES (CAST(:id AS uuid), :checksum, :fileSize, :fileName, CAST(:channelId AS uuid),"
+      + " now())\n"
+      + "ON CONFLICT (checksum, filesize) DO NOTHING",
+      nativeQuery = true)
+  int record(@Param("id") String id, @Param("checksum") String checksum,
+      @Param("fileSize") long fileSize, @Param("fileName") String fileName,
+      @Param("channelId") String channelId);
+
+  @Modifying
+  @Transactional
+  @Query(value = "DELETE FROM fulfillment.shipment_file_receipts\n"
+      + "WHERE processeddate < now() - :days * INTERVAL '1 day'",
+      nativeQuery = true)
+  int deleteOlderThan(@Param("days") int days);
+
+}
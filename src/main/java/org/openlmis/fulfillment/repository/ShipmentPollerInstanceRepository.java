@@ -0,0 +1,50 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.repository;
+
+import java.util.UUID;
+import org.openlmis.fulfillment.domain.ShipmentPollerInstance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ShipmentPollerInstanceRepository
+    extends JpaRepository<ShipmentPollerInstance, UUID> {
+
+  @Modifying
+  @Transactional
+  @Query(value = "INSERT INTO fulfillment.shipment_poller_instances (id, heartbeatdate)\n"
+      + "VALUES (CAST(:id AS uuid), now())\n"
+      + "ON CONFLICT (id) DO UPDATE SET heartbeatdate = now()",
+      nativeQuery = true)
+  int heartbeat(@Param("id") String id);
+
+  @Modifying
+  @Transactional
+  @Query(value = "DELETE FROM fulfillment.shipment_poller_instances\n"
+      + "WHERE heartbeatdate < now() - :seconds * INTERVAL '1 second'",
+      nativeQuery = true)
+  int deleteInactive(@Param("seconds") int seconds);
+
+  @Modifying
+  @Transactional
+  @Query(value = "DELETE FROM fulfillment.shipment_poller_instances WHERE id = CAST(:id AS uuid)",
+      nativeQuery = true)
+  int deleteInstance(@Param("id") String id);
+
+}
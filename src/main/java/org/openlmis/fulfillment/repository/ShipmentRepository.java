@@ -15,6 +15,8 @@
 
 package org.openlmis.fulfillment.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 import org.javers.spring.annotation.JaversSpringDataAuditable;
 import org.openlmis.fulfillment.domain.Order;
@@ -31,6 +33,8 @@ public interface ShipmentRepository extends
 
   Page<Shipment> findByOrder(Order order, Pageable pageable);
 
+  List<Shipment> findByOrderIn(Collection<Order> orders);
+
   @Query(value = "SELECT\n"
       + "    sh.*\n"
       + "FROM\n"
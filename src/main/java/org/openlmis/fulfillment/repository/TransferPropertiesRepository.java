@@ -20,7 +20,10 @@ import java.util.UUID;
 import org.openlmis.fulfillment.domain.TransferProperties;
 import org.openlmis.fulfillment.domain.TransferType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface TransferPropertiesRepository
     extends JpaRepository<TransferProperties, UUID> {
@@ -29,4 +32,13 @@ public interface TransferPropertiesRepository
       @Param("transferType") TransferType transferType);
 
   List<TransferProperties> findByTransferType(@Param("transferType") TransferType transferType);
+
+  @Query(value = "SELECT version FROM fulfillment.transfer_routing_version", nativeQuery = true)
+  Number getRoutingVersion();
+
+  @Modifying
+  @Transactional
+  @Query(value = "UPDATE fulfillment.transfer_routing_version SET version = version + 1",
+      nativeQuery = true)
+  int incrementRoutingVersion();
 }
@@ -25,8 +25,11 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
@@ -40,11 +43,17 @@ import org.springframework.data.domain.Sort.Order;
 
 public class ProofOfDeliveryRepositoryImpl implements ProofOfDeliveryRepositoryCustom {
 
+  private static final String POD_ID_SELECT = "SELECT p.id"
+      + " FROM ProofOfDelivery AS p"
+      + " INNER JOIN p.shipment AS s"
+      + " INNER JOIN s.order AS o";
+
   private static final String POD_SELECT = "SELECT DISTINCT p"
       + " FROM ProofOfDelivery AS p"
       + " INNER JOIN FETCH p.shipment AS s"
       + " INNER JOIN FETCH s.order AS o"
-      + " INNER JOIN FETCH p.lineItems";
+      + " LEFT JOIN FETCH p.lineItems"
+      + " WHERE p.id IN (:ids)";
 
   private static final String POD_COUNT = "SELECT DISTINCT COUNT(*)"
       + " FROM ProofOfDelivery AS p"
@@ -56,6 +65,7 @@ public class ProofOfDeliveryRepositoryImpl implements ProofOfDeliveryRepositoryC
   private static final String ASC = "ASC";
   private static final String DESC = "DESC";
   private static final String ORDER_BY = "ORDER BY";
+  private static final String ID_ORDER = "p.id";
 
   private static final String WITH_SHIPMENT_ID = "s.id = :shipmentId";
   private static final String WITH_ORDER_ID = "o.id = :orderId";
@@ -70,7 +80,9 @@ public class ProofOfDeliveryRepositoryImpl implements ProofOfDeliveryRepositoryC
   private EntityManager entityManager;
 
   /**
-   * This method is supposed to retrieve all PODs with matched parameters.
+   * This method is supposed to retrieve all PODs with matched parameters. Ids of PODs on the
+   * requested page are selected first, so the database applies the limit and offset, and only
+   * those PODs are fetched with their shipments and line items.
    *
    * @param shipmentId           UUID of associated shipment
    * @param orderId              UUID of associated order
@@ -82,26 +94,46 @@ public class ProofOfDeliveryRepositoryImpl implements ProofOfDeliveryRepositoryC
   public Page<ProofOfDelivery> search(UUID shipmentId, UUID orderId, Set<UUID> receivingFacilityIds,
       Set<UUID> supplyingFacilityIds, Set<UUID> programIds, Pageable pageable) {
 
-    TypedQuery countQuery = prepareQuery(POD_COUNT, shipmentId, orderId, receivingFacilityIds,
-        supplyingFacilityIds, programIds, pageable, true);
-    Long count = (Long) countQuery.getSingleResult();
+    TypedQuery<Long> countQuery = prepareQuery(POD_COUNT, Long.class, shipmentId, orderId,
+        receivingFacilityIds, supplyingFacilityIds, programIds, null);
+    Long count = countQuery.getSingleResult();
 
     if (count > 0) {
-      TypedQuery searchQuery = prepareQuery(POD_SELECT, shipmentId, orderId, receivingFacilityIds,
-          supplyingFacilityIds, programIds, pageable, false);
-      List<ProofOfDelivery> pods = searchQuery
+      TypedQuery<UUID> idQuery = prepareQuery(POD_ID_SELECT, UUID.class, shipmentId, orderId,
+          receivingFacilityIds, supplyingFacilityIds, programIds, pageable);
+      List<UUID> ids = idQuery
           .setMaxResults(pageable.getPageSize())
           .setFirstResult(pageable.getOffset())
           .getResultList();
-      return Pagination.getPage(pods, pageable, count);
+      return Pagination.getPage(findAllWithLineItems(ids), pageable, count);
     }
 
     return Pagination.getPage(emptyList(), pageable, count);
   }
 
-  private TypedQuery prepareQuery(String select, UUID shipmentId, UUID orderId,
-      Set<UUID> receivingFacilityIds, Set<UUID> supplyingFacilityIds, Set<UUID> programIds,
-      Pageable pageable, boolean count) {
+  private List<ProofOfDelivery> findAllWithLineItems(List<UUID> ids) {
+    if (ids.isEmpty()) {
+      return emptyList();
+    }
+
+    Map<UUID, ProofOfDelivery> pods = entityManager
+        .createQuery(POD_SELECT, ProofOfDelivery.class)
+        .setParameter("ids", ids)
+        .getResultList()
+        .stream()
+        .collect(Collectors.toMap(ProofOfDelivery::getId, Function.identity(), (a, b) -> a));
+
+    // keep the order of the page
+    return ids
+        .stream()
+        .map(pods::get)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  private <T> TypedQuery<T> prepareQuery(String select, Class<T> resultClass, UUID shipmentId,
+      UUID orderId, Set<UUID> receivingFacilityIds, Set<UUID> supplyingFacilityIds,
+      Set<UUID> programIds, Pageable pageable) {
 
     List<String> sql = Lists.newArrayList(select);
     List<String> where = Lists.newArrayList();
@@ -135,15 +167,15 @@ public class ProofOfDeliveryRepositoryImpl implements ProofOfDeliveryRepositoryC
       sql.add(Joiner.on(AND).join(where));
     }
 
-    String query = Joiner.on(' ').join(sql);
-    if (!count && pageable.getSort() != null) {
-      query = Joiner.on(' ').join(Lists.newArrayList(query, ORDER_BY,
-          getOrderPredicate(pageable)));
+    if (null != pageable) {
+      // ids make the order unique, so rows do not move between pages
+      sql.add(ORDER_BY);
+      sql.add(pageable.getSort() == null
+          ? ID_ORDER
+          : getOrderPredicate(pageable) + ", " + ID_ORDER);
     }
 
-    Class resultClass = count ? Long.class : ProofOfDelivery.class;
-
-    TypedQuery typedQuery = entityManager.createQuery(query, resultClass);
+    TypedQuery<T> typedQuery = entityManager.createQuery(Joiner.on(' ').join(sql), resultClass);
     params.forEach(typedQuery::setParameter);
     return typedQuery;
   }
@@ -99,15 +99,27 @@ public abstract class BaseCommunicationService<T> {
     }
   }
 
-  protected <P> ServiceResponse<List<P>> tryFindAll(String resourceUrl, Class<P[]> type,
-                                                    String etag) {
+  /**
+   * Return all P objects retrieved with a conditional GET request. If the resource has not
+   * changed since the given ETag, the response body is null.
+   *
+   * @param resourceUrl Endpoint url.
+   * @param parameters  Map of query parameters, can be null.
+   * @param type        Array class of the returned objects.
+   * @param etag        ETag of the previously retrieved content, can be null.
+   * @return response with all objects, headers and modification flag.
+   */
+  protected <P> ServiceResponse<List<P>> tryFindAll(String resourceUrl,
+      RequestParameters parameters, Class<P[]> type, String etag) {
     String url = getServiceUrl() + getUrl() + resourceUrl;
 
     try {
-      RequestHeaders headers = RequestHeaders.init().setIfNoneMatch(etag);
-      ResponseEntity<P[]> response = restTemplate.exchange(
-          url, HttpMethod.GET, RequestHelper.createEntity(null, addAuthHeader(headers)), type
-      );
+      ResponseEntity<P[]> response = runWithTokenRetry(() -> restTemplate.exchange(
+          RequestHelper.createUri(url, parameters), HttpMethod.GET,
+          RequestHelper.createEntity(null, addAuthHeader(RequestHeaders.init()
+              .setIfNoneMatch(etag))),
+          type
+      ));
 
       if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
         return new ServiceResponse<>(null, response.getHeaders(), false);
@@ -120,6 +132,36 @@ public abstract class BaseCommunicationService<T> {
     }
   }
 
+  /**
+   * Return content of a page of reference data T objects retrieved with a conditional GET
+   * request. If the resource has not changed since the given ETag, the response body is null.
+   *
+   * @param parameters Map of query parameters.
+   * @param etag       ETag of the previously retrieved content, can be null.
+   * @return response with page content, headers and modification flag.
+   */
+  protected ServiceResponse<List<T>> tryGetPage(RequestParameters parameters, String etag) {
+    String url = getServiceUrl() + getUrl();
+
+    try {
+      ResponseEntity<PageDto<T>> response = runWithTokenRetry(() -> restTemplate.exchange(
+          RequestHelper.createUri(url, parameters), HttpMethod.GET,
+          RequestHelper.createEntity(null, addAuthHeader(RequestHeaders.init()
+              .setIfNoneMatch(etag))),
+          new DynamicPageTypeReference<>(getResultClass())
+      ));
+
+      if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+        return new ServiceResponse<>(null, response.getHeaders(), false);
+      } else {
+        return new ServiceResponse<>(response.getBody().getContent(), response.getHeaders(),
+            true);
+      }
+    } catch (HttpStatusCodeException ex) {
+      throw buildDataRetrievalException(ex);
+    }
+  }
+
   /**
    * Return all reference data T objects for Page that need to be retrieved with GET request.
    *
@@ -110,6 +110,7 @@ public class ExporterBuilder {
     exporter.setId(properties.getId());
     exporter.setFacility(getIfPresent(facilities, properties.getFacilityId()));
     exporter.setTransferType(properties.getTransferType());
+    exporter.setCompression(properties.getCompression().name());
     exporter.setPath(properties.getPath());
   }
 
@@ -122,6 +123,7 @@ public class ExporterBuilder {
     exporter.setId(properties.getId());
     exporter.setFacility(getIfPresent(facilities, properties.getFacilityId()));
     exporter.setTransferType(properties.getTransferType());
+    exporter.setCompression(properties.getCompression().name());
     exporter.setProtocol(properties.getProtocol().name());
     exporter.setUsername(properties.getUsername());
     exporter.setServerHost(properties.getServerHost());
@@ -33,6 +33,7 @@ import org.openlmis.fulfillment.domain.Order;
 import org.openlmis.fulfillment.domain.ProofOfDelivery;
 import org.openlmis.fulfillment.i18n.MessageService;
 import org.openlmis.fulfillment.service.notification.NotificationService;
+import org.openlmis.fulfillment.service.referencedata.FacilityDto;
 import org.openlmis.fulfillment.service.referencedata.FacilityReferenceDataService;
 import org.openlmis.fulfillment.service.referencedata.UserDto;
 import org.openlmis.fulfillment.service.referencedata.UserReferenceDataService;
@@ -71,7 +72,16 @@ public class FulfillmentNotificationService {
    */
   public void sendPodConfirmedNotification(ProofOfDelivery proofOfDelivery) {
     UserDto user = userReferenceDataService.findOne(proofOfDelivery.getShipment().getShippedById());
-    Map<String, String> messageParams = buildMessageParamsForPodMessage(user, proofOfDelivery);
+    FacilityDto receivingFacility = facilityReferenceDataService
+        .findOne(proofOfDelivery.getReceivingFacilityId());
+
+    sendPodConfirmedNotification(proofOfDelivery, user, receivingFacility);
+  }
+
+  private void sendPodConfirmedNotification(ProofOfDelivery proofOfDelivery, UserDto user,
+      FacilityDto receivingFacility) {
+    Map<String, String> messageParams =
+        buildMessageParamsForPodMessage(user, receivingFacility, proofOfDelivery);
 
     String subject = getContent(proofOfDelivery,
         FULFILLMENT_EMAIL_POD_CONFIRMED_SUBJECT, messageParams);
@@ -97,12 +107,11 @@ public class FulfillmentNotificationService {
     notificationService.notify(user, subject, content);
   }
 
-  private Map<String, String> buildMessageParamsForPodMessage(UserDto user, ProofOfDelivery pod) {
+  private Map<String, String> buildMessageParamsForPodMessage(UserDto user,
+      FacilityDto receivingFacility, ProofOfDelivery pod) {
     Map<String, String> messageParams = new HashMap<>();
-    String receivingFacility = facilityReferenceDataService.findOne(
-        pod.getReceivingFacilityId()).getName();
 
-    messageParams.put(RECEIVING_FACILITY, receivingFacility);
+    messageParams.put(RECEIVING_FACILITY, receivingFacility.getName());
     messageParams.put(ORDER_CODE, pod.getShipment().getOrder().getOrderCode());
     messageParams.put(SHIPMENT_DATE, pod.getShipment().getShippedDate().toLocalDate().toString());
     messageParams.put(FIRST_NAME, user.getFirstName());
@@ -0,0 +1,112 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.UpdateDetails;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Keeps recently exported order csv files in memory. Each file is stored with an ETag that is
+ * computed from the order status, the last update date of the order and the version of the
+ * transfer routing table, so a file is not returned after the order or the order file template
+ * have been changed. The least recently used files are removed when the total size of stored
+ * files exceeds the configured limit.
+ */
+@Component
+public class OrderCsvCache {
+
+  @Value("${order.export.cache.maxSize}")
+  private long maxSize;
+
+  private final Map<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long size;
+
+  /**
+   * Computes ETag of the csv file for the given order exported with the given version of the
+   * order file template.
+   */
+  public String getETag(Order order, long templateVersion) {
+    UpdateDetails updateDetails = order.getUpdateDetails();
+    ZonedDateTime updatedDate = null == updateDetails ? null : updateDetails.getUpdatedDate();
+
+    String version = order.getId()
+        + ":" + order.getStatus()
+        + ":" + (null == updatedDate ? null : updatedDate.toInstant().toEpochMilli())
+        + ":" + templateVersion;
+
+    return "W/\"" + DigestUtils.md5DigestAsHex(version.getBytes(StandardCharsets.UTF_8)) + "\"";
+  }
+
+  /**
+   * Retrieves csv file of the given order if it has been stored with the given ETag.
+   *
+   * @return file content or {@code null} if the file is not stored or it is outdated.
+   */
+  public synchronized byte[] get(UUID orderId, String etag) {
+    Entry entry = entries.get(orderId);
+    return null != entry && entry.etag.equals(etag) ? entry.content : null;
+  }
+
+  /**
+   * Stores csv file of the given order. A previous version of the file is replaced. Files bigger
+   * than the size limit are not stored.
+   */
+  public synchronized void put(UUID orderId, String etag, byte[] content) {
+    remove(orderId);
+
+    if (content.length > maxSize) {
+      return;
+    }
+
+    entries.put(orderId, new Entry(etag, content));
+    size += content.length;
+
+    Iterator<Entry> iterator = entries.values().iterator();
+
+    while (size > maxSize && iterator.hasNext()) {
+      size -= iterator.next().content.length;
+      iterator.remove();
+    }
+  }
+
+  private void remove(UUID orderId) {
+    Entry entry = entries.remove(orderId);
+
+    if (null != entry) {
+      size -= entry.content.length;
+    }
+  }
+
+  private static final class Entry {
+    private final String etag;
+    private final byte[] content;
+
+    Entry(String etag, byte[] content) {
+      this.etag = etag;
+      this.content = content;
+    }
+  }
+}
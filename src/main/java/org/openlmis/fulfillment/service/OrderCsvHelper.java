@@ -15,43 +15,46 @@
 
 package org.openlmis.fulfillment.service;
 
-import static java.time.format.DateTimeFormatter.ofPattern;
-import static org.apache.commons.collections.CollectionUtils.filter;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.time.LocalDate;
-import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import org.apache.commons.jxpath.JXPathContext;
-import org.openlmis.fulfillment.domain.FileColumn;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.openlmis.fulfillment.domain.FileTemplate;
 import org.openlmis.fulfillment.domain.Order;
 import org.openlmis.fulfillment.domain.OrderLineItem;
-import org.openlmis.fulfillment.service.referencedata.FacilityDto;
+import org.openlmis.fulfillment.domain.TransferCompression;
+import org.openlmis.fulfillment.service.OrderCsvPlan.RelatedObjectLoader;
 import org.openlmis.fulfillment.service.referencedata.FacilityReferenceDataService;
-import org.openlmis.fulfillment.service.referencedata.OrderableDto;
 import org.openlmis.fulfillment.service.referencedata.OrderableReferenceDataService;
 import org.openlmis.fulfillment.service.referencedata.PeriodReferenceDataService;
-import org.openlmis.fulfillment.service.referencedata.ProcessingPeriodDto;
+import org.openlmis.fulfillment.web.util.BaseDto;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 public class OrderCsvHelper {
-  private static final String STRING = "string";
-  private static final String LINE_NO = "line_no";
-  private static final String ORDER = "order";
-
   private static final String FACILITY = "Facility";
   private static final String PRODUCT = "Orderable";
   private static final String PERIOD = "ProcessingPeriod";
 
-  private static final String LINE_SEPARATOR = "\r\n";
-  private static final Boolean ENCLOSE_VALUES_WITH_QUOTES = false;
-
   @Autowired
   private FacilityReferenceDataService facilityReferenceDataService;
 
@@ -64,139 +67,232 @@ public class OrderCsvHelper {
   @Value("${order.export.includeZeroQuantity}")
   private boolean includeZeroQuantity;
 
+  private volatile OrderCsvPlan plan;
+
   /**
    * Exporting order to csv.
    */
   public void writeCsvFile(Order order, FileTemplate fileTemplate, Writer writer)
       throws IOException {
-    List<FileColumn> fileColumns = fileTemplate.getFileColumns();
-    removeExcludedColumns(fileColumns);
-    if (fileTemplate.getHeaderInFile()) {
-      writeHeader(fileColumns, writer);
-    }
+    OrderCsvPlan csvPlan = getPlan(fileTemplate);
+    List<OrderLineItem> lineItems = getExportedLineItems(order);
+    RelatedObjectLoader loader = findRelatedObjects(csvPlan.getRelatedIds(order, lineItems));
 
-    writeLineItems(order, order.getOrderLineItems(), fileColumns, writer);
+    writeLines(csvPlan, order, lineItems, loader, writer);
   }
 
-  private void removeExcludedColumns(List<FileColumn> fileColumns) {
-    filter(fileColumns, object -> ((FileColumn) object).getInclude());
-  }
-
-  private void writeHeader(List<FileColumn> fileColumns, Writer writer)
+  /**
+   * Exporting orders to a zip archive with a csv file for each order. Objects referenced by the
+   * files are retrieved once for all given orders.
+   */
+  public void writeCsvFiles(List<Order> orders, FileTemplate fileTemplate, ZipOutputStream zip)
       throws IOException {
-    for (FileColumn column : fileColumns) {
-      String columnLabel = column.getColumnLabel();
-      if (columnLabel == null) {
-        columnLabel = "";
-      }
-      writer.write(columnLabel);
-      if (fileColumns.indexOf(column) == (fileColumns.size() - 1)) {
-        writer.write(LINE_SEPARATOR);
-        break;
-      }
-      writer.write(",");
+    OrderCsvPlan csvPlan = getPlan(fileTemplate);
+    List<List<OrderLineItem>> lineItems = new ArrayList<>(orders.size());
+    Map<String, Set<UUID>> relatedIds = new HashMap<>();
+
+    for (Order order : orders) {
+      List<OrderLineItem> exported = getExportedLineItems(order);
+      lineItems.add(exported);
+      csvPlan.getRelatedIds(order, exported).forEach((related, ids) -> relatedIds
+          .computeIfAbsent(related, key -> new HashSet<>())
+          .addAll(ids));
+    }
+
+    RelatedObjectLoader loader = findRelatedObjects(relatedIds);
+    // the writer is not closed because it would close the whole archive
+    Writer writer = new OutputStreamWriter(zip, UTF_8);
+
+    for (int i = 0; i < orders.size(); i++) {
+      Order order = orders.get(i);
+      zip.putNextEntry(new ZipEntry(fileTemplate.getFilePrefix() + order.getOrderCode() + ".csv"));
+      writeLines(csvPlan, order, lineItems.get(i), loader, writer);
+      writer.flush();
+      zip.closeEntry();
     }
   }
 
-  private void writeLineItems(Order order, List<OrderLineItem> orderLineItems,
-                              List<FileColumn> fileColumns, Writer writer)
+  /**
+   * Exporting order to csv stream. Lines are generated (in UTF-8) while the stream is being read so
+   * the whole file is never kept in memory or written to disk.
+   */
+  public InputStream getCsvFileAsStream(Order order, FileTemplate fileTemplate)
       throws IOException {
-    int counter = 1;
-    for (OrderLineItem orderLineItem : orderLineItems) {
-      if (includeZeroQuantity || orderLineItem.getOrderedQuantity() > 0) {
-        writeCsvLineItem(order, orderLineItem, fileColumns, writer, counter++);
-        writer.write(LINE_SEPARATOR);
-      }
-    }
+    return getCsvFileAsStream(order, fileTemplate, TransferCompression.NONE, null);
   }
 
-  private void writeCsvLineItem(Order order, OrderLineItem orderLineItem,
-                                List<FileColumn> fileColumns, Writer writer, int counter)
+  /**
+   * Exporting order to compressed csv stream. The file name is used as entry name in zip archives.
+   */
+  public InputStream getCsvFileAsStream(Order order, FileTemplate fileTemplate,
+                                        TransferCompression compression, String fileName)
       throws IOException {
-    JXPathContext orderContext = JXPathContext.newContext(order);
-    JXPathContext lineItemContext = JXPathContext.newContext(orderLineItem);
-    for (FileColumn fileColumn : fileColumns) {
-      if (fileColumn.getNested() == null || fileColumn.getNested().isEmpty()) {
-        if (fileColumns.indexOf(fileColumn) < fileColumns.size() - 1) {
-          writer.write(",");
-        }
-        continue;
-      }
-      Object columnValue = getColumnValue(counter, orderContext, lineItemContext, fileColumn);
+    return new CsvInputStream(order, getPlan(fileTemplate), compression, fileName);
+  }
 
-      if (columnValue instanceof ZonedDateTime) {
-        columnValue = ((ZonedDateTime) columnValue).format(ofPattern(fileColumn.getFormat()));
-      } else if (columnValue instanceof LocalDate) {
-        columnValue = ((LocalDate) columnValue).format(ofPattern(fileColumn.getFormat()));
-      }
-      if (ENCLOSE_VALUES_WITH_QUOTES) {
-        writer.write("\"" + (columnValue).toString() + "\"");
-      } else {
-        writer.write((columnValue).toString());
-      }
-      if (fileColumns.indexOf(fileColumn) < fileColumns.size() - 1) {
-        writer.write(",");
-      }
+  /**
+   * Returns the plan compiled from the given template. The plan of the last used template is kept
+   * so it is compiled again only when a new version of the template is loaded.
+   */
+  OrderCsvPlan getPlan(FileTemplate fileTemplate) {
+    OrderCsvPlan current = plan;
+
+    if (null == current || !current.isCompiledFrom(fileTemplate)) {
+      current = new OrderCsvPlan(fileTemplate);
+      plan = current;
     }
+
+    return current;
   }
 
-  private Object getColumnValue(int counter, JXPathContext orderContext,
-                                JXPathContext lineItemContext, FileColumn fileColumn) {
-    Object columnValue;
+  private void writeLines(OrderCsvPlan csvPlan, Order order, List<OrderLineItem> lineItems,
+                          RelatedObjectLoader loader, Writer writer) throws IOException {
+    StringBuilder line = new StringBuilder(csvPlan.getHeader());
+    int counter = 1;
 
-    switch (fileColumn.getNested()) {
-      case STRING:
-        columnValue = fileColumn.getKeyPath();
-        break;
-      case LINE_NO:
-        columnValue = counter;
-        break;
-      case ORDER:
-        columnValue = orderContext.getValue(fileColumn.getKeyPath());
-        break;
-      default:
-        columnValue = lineItemContext.getValue(fileColumn.getKeyPath());
-        break;
+    for (OrderLineItem orderLineItem : lineItems) {
+      csvPlan.appendLine(order, orderLineItem, counter++, loader, line);
+      writer.append(line);
+      line.setLength(0);
     }
 
-    if (fileColumn.getRelated() != null && !fileColumn.getRelated().isEmpty()) {
-      columnValue = getRelatedColumnValue((UUID) columnValue, fileColumn);
-    }
+    writer.append(line);
+  }
 
-    return columnValue == null ? "" : columnValue;
+  private List<OrderLineItem> getExportedLineItems(Order order) {
+    return order.getOrderLineItems()
+        .stream()
+        .filter(this::isExported)
+        .collect(Collectors.toList());
   }
 
-  private Object getRelatedColumnValue(UUID relatedId, FileColumn fileColumn) {
-    if (relatedId == null) {
-      return null;
-    }
+  private boolean isExported(OrderLineItem orderLineItem) {
+    return includeZeroQuantity || orderLineItem.getOrderedQuantity() > 0;
+  }
+
+  /**
+   * Retrieves all objects referenced by related columns with a single request for each type, so
+   * the number of requests does not depend on the number of line items.
+   */
+  private RelatedObjectLoader findRelatedObjects(Map<String, Set<UUID>> relatedIds) {
+    Map<String, Map<UUID, BaseDto>> objects = new HashMap<>();
+    relatedIds.forEach((related, ids) -> objects.put(related, findRelatedObjects(related, ids)));
 
-    Object columnValue;
+    return (related, id) -> objects.getOrDefault(related, Collections.emptyMap()).get(id);
+  }
+
+  private Map<UUID, BaseDto> findRelatedObjects(String related, Set<UUID> ids) {
+    Collection<? extends BaseDto> found;
 
-    switch (fileColumn.getRelated()) {
+    switch (related) {
       case FACILITY:
-        FacilityDto facility = facilityReferenceDataService.findOne(relatedId);
-        columnValue = getValue(facility, fileColumn.getRelatedKeyPath());
+        found = facilityReferenceDataService.findByIds(ids);
         break;
       case PRODUCT:
-        OrderableDto product = orderableReferenceDataService.findOne(relatedId);
-        columnValue = getValue(product, fileColumn.getRelatedKeyPath());
+        found = orderableReferenceDataService.findByIds(ids);
         break;
       case PERIOD:
-        ProcessingPeriodDto period = periodReferenceDataService.findOne(relatedId);
-        columnValue = getValue(period, fileColumn.getRelatedKeyPath());
+        found = periodReferenceDataService.findByIds(ids);
         break;
       default:
-        columnValue = null;
+        found = Collections.emptyList();
         break;
     }
 
-    return columnValue;
+    return found.stream().collect(Collectors.toMap(
+        BaseDto::getId,
+        Function.identity(),
+        (first, second) -> first
+    ));
   }
 
-  private Object getValue(Object object, String keyPath) {
-    JXPathContext context = JXPathContext.newContext(object);
+  private final class CsvInputStream extends InputStream {
+    private final Order order;
+    private final OrderCsvPlan csvPlan;
+    private final RelatedObjectLoader loader;
+    private final Iterator<OrderLineItem> lineItems;
+    private final StringBuilder line = new StringBuilder();
+    private final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+    private final Writer writer;
+
+    private boolean headerRequired = true;
+    private boolean finished;
+    private int counter = 1;
+    private byte[] buffer = new byte[0];
+    private int position;
+
+    CsvInputStream(Order order, OrderCsvPlan csvPlan, TransferCompression compression,
+                   String fileName) throws IOException {
+      this.order = order;
+      this.csvPlan = csvPlan;
+
+      List<OrderLineItem> exported = getExportedLineItems(order);
+      this.loader = findRelatedObjects(csvPlan.getRelatedIds(order, exported));
+      this.lineItems = exported.iterator();
+      this.writer = new OutputStreamWriter(compression.compress(chunk, fileName), UTF_8);
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!fill()) {
+        return -1;
+      }
+
+      return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+
+      if (!fill()) {
+        return -1;
+      }
+
+      int count = Math.min(length, buffer.length - position);
+      System.arraycopy(buffer, position, bytes, offset, count);
+      position += count;
+
+      return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!finished) {
+        finished = true;
+        writer.close();
+      }
+    }
 
-    return context.getValue(keyPath);
+    private boolean fill() throws IOException {
+      // a single line may not produce any output when it is compressed
+      while (position >= buffer.length) {
+        if (finished) {
+          return false;
+        }
+
+        if (headerRequired) {
+          headerRequired = false;
+          writer.write(csvPlan.getHeader());
+          writer.flush();
+        } else if (lineItems.hasNext()) {
+          csvPlan.appendLine(order, lineItems.next(), counter++, loader, line);
+          writer.append(line);
+          writer.flush();
+          line.setLength(0);
+        } else {
+          // writes the rest of compressed data
+          close();
+        }
+
+        buffer = chunk.toByteArray();
+        position = 0;
+        chunk.reset();
+      }
+
+      return true;
+    }
   }
 }
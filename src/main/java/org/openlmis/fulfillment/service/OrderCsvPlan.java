@@ -0,0 +1,300 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service;
+
+import static java.time.format.DateTimeFormatter.ofPattern;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import org.apache.commons.jxpath.CompiledExpression;
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.lang3.BooleanUtils;
+import org.openlmis.fulfillment.domain.FileColumn;
+import org.openlmis.fulfillment.domain.FileTemplate;
+import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.OrderLineItem;
+import org.springframework.beans.BeanUtils;
+
+/**
+ * Order file template compiled for writing CSV lines. Included columns, their value readers and
+ * date formatters are resolved once, so writing a line does not parse key paths or date patterns.
+ * A plan is immutable and can be shared between threads.
+ */
+final class OrderCsvPlan {
+  private static final String STRING = "string";
+  private static final String LINE_NO = "line_no";
+  private static final String ORDER = "order";
+
+  private static final String SEPARATOR = ",";
+  private static final String LINE_SEPARATOR = "\r\n";
+  private static final boolean ENCLOSE_VALUES_WITH_QUOTES = false;
+
+  private static final Pattern PROPERTY_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+  private final FileTemplate template;
+  private final List<ColumnWriter> columns;
+  private final String header;
+
+  /**
+   * Provides objects (facility, orderable, processing period) referenced by related columns.
+   */
+  interface RelatedObjectLoader {
+    Object load(String related, UUID id);
+  }
+
+  OrderCsvPlan(FileTemplate template) {
+    List<ColumnWriter> writers = new ArrayList<>();
+    StringBuilder labels = new StringBuilder();
+
+    for (FileColumn column : template.getFileColumns()) {
+      if (BooleanUtils.isTrue(column.getInclude())) {
+        if (!writers.isEmpty()) {
+          labels.append(SEPARATOR);
+        }
+
+        writers.add(new ColumnWriter(column));
+        labels.append(null == column.getColumnLabel() ? "" : column.getColumnLabel());
+      }
+    }
+
+    this.template = template;
+    this.columns = Collections.unmodifiableList(writers);
+    this.header = BooleanUtils.isTrue(template.getHeaderInFile()) && !writers.isEmpty()
+        ? labels.append(LINE_SEPARATOR).toString()
+        : "";
+  }
+
+  boolean isCompiledFrom(FileTemplate fileTemplate) {
+    return template == fileTemplate;
+  }
+
+  String getHeader() {
+    return header;
+  }
+
+  /**
+   * Collects ids of objects referenced by related columns, grouped by the related type. The
+   * objects can be then retrieved in a single request for each type.
+   */
+  Map<String, Set<UUID>> getRelatedIds(Order order, List<OrderLineItem> lineItems) {
+    Map<String, Set<UUID>> ids = new HashMap<>();
+
+    for (ColumnWriter column : columns) {
+      if (null != column.related) {
+        Set<UUID> relatedIds = ids.computeIfAbsent(column.related, related -> new HashSet<>());
+
+        if (ORDER.equals(column.nested)) {
+          addRelatedId(relatedIds, column.reader.read(order));
+        } else if (!STRING.equals(column.nested) && !LINE_NO.equals(column.nested)) {
+          lineItems.forEach(lineItem -> addRelatedId(relatedIds, column.reader.read(lineItem)));
+        }
+      }
+    }
+
+    return ids;
+  }
+
+  /**
+   * Appends a single CSV line (with line separator) for the given line item.
+   */
+  void appendLine(Order order, OrderLineItem lineItem, int counter,
+                  RelatedObjectLoader loader, StringBuilder line) {
+    for (int i = 0; i < columns.size(); i++) {
+      if (i > 0) {
+        line.append(SEPARATOR);
+      }
+
+      columns.get(i).append(order, lineItem, counter, loader, line);
+    }
+
+    line.append(LINE_SEPARATOR);
+  }
+
+  private static void addRelatedId(Set<UUID> ids, Object id) {
+    if (id instanceof UUID) {
+      ids.add((UUID) id);
+    }
+  }
+
+  private static final class ColumnWriter {
+    private final String nested;
+    private final String keyPath;
+    private final PropertyReader reader;
+    private final String related;
+    private final PropertyReader relatedReader;
+    private final String format;
+    private final DateTimeFormatter formatter;
+
+    ColumnWriter(FileColumn column) {
+      this.nested = isEmpty(column.getNested()) ? null : column.getNested();
+      this.keyPath = column.getKeyPath();
+      this.reader = null == nested || STRING.equals(nested) || LINE_NO.equals(nested)
+          ? null
+          : new PropertyReader(keyPath);
+      this.related = isEmpty(column.getRelated()) ? null : column.getRelated();
+      this.relatedReader = null == related ? null : new PropertyReader(column.getRelatedKeyPath());
+      this.format = column.getFormat();
+      this.formatter = createFormatter(format);
+    }
+
+    void append(Order order, OrderLineItem lineItem, int counter, RelatedObjectLoader loader,
+                StringBuilder line) {
+      if (null == nested) {
+        return;
+      }
+
+      Object value = getValue(order, lineItem, counter, loader);
+
+      if (value instanceof ZonedDateTime) {
+        value = ((ZonedDateTime) value).format(getFormatter());
+      } else if (value instanceof LocalDate) {
+        value = ((LocalDate) value).format(getFormatter());
+      }
+
+      if (ENCLOSE_VALUES_WITH_QUOTES) {
+        line.append('"').append(value).append('"');
+      } else {
+        line.append(value);
+      }
+    }
+
+    private Object getValue(Order order, OrderLineItem lineItem, int counter,
+                            RelatedObjectLoader loader) {
+      Object value;
+
+      switch (nested) {
+        case STRING:
+          value = keyPath;
+          break;
+        case LINE_NO:
+          value = counter;
+          break;
+        case ORDER:
+          value = reader.read(order);
+          break;
+        default:
+          value = reader.read(lineItem);
+          break;
+      }
+
+      if (null != related) {
+        value = null == value ? null : relatedReader.read(loader.load(related, (UUID) value));
+      }
+
+      return null == value ? "" : value;
+    }
+
+    private DateTimeFormatter getFormatter() {
+      // an invalid pattern is reported only when a date value is written
+      return null == formatter ? ofPattern(format) : formatter;
+    }
+
+    private static DateTimeFormatter createFormatter(String format) {
+      if (null == format) {
+        return null;
+      }
+
+      try {
+        return ofPattern(format);
+      } catch (IllegalArgumentException exp) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Reads a value by key path. Simple property names are read with a getter resolved once for the
+   * class of read objects, other paths are evaluated by a precompiled JXPath expression.
+   */
+  private static final class PropertyReader {
+    private final String keyPath;
+    private final CompiledExpression expression;
+    private volatile Getter getter;
+
+    PropertyReader(String keyPath) {
+      this.keyPath = keyPath;
+      this.expression = null == keyPath ? null : JXPathContext.compile(keyPath);
+    }
+
+    Object read(Object bean) {
+      if (null == bean) {
+        return null;
+      }
+
+      Getter current = getter;
+
+      if (null == current || current.type != bean.getClass()) {
+        current = new Getter(bean.getClass(), keyPath);
+        getter = current;
+      }
+
+      if (null != current.method) {
+        return current.invoke(bean);
+      }
+
+      return null == expression
+          ? JXPathContext.newContext(bean).getValue(keyPath)
+          : expression.getValue(JXPathContext.newContext(bean));
+    }
+  }
+
+  private static final class Getter {
+    private final Class<?> type;
+    private final Method method;
+
+    Getter(Class<?> type, String keyPath) {
+      this.type = type;
+      this.method = findMethod(type, keyPath);
+    }
+
+    Object invoke(Object bean) {
+      try {
+        return method.invoke(bean);
+      } catch (IllegalAccessException | InvocationTargetException exp) {
+        throw new IllegalStateException("Can't read " + method.getName(), exp);
+      }
+    }
+
+    private static Method findMethod(Class<?> type, String keyPath) {
+      if (null == keyPath || !PROPERTY_NAME.matcher(keyPath).matches()) {
+        return null;
+      }
+
+      PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(type, keyPath);
+      Method method = null == descriptor ? null : descriptor.getReadMethod();
+
+      if (null != method) {
+        method.setAccessible(true);
+      }
+
+      return method;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service;
+
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.ZipOutputStream;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.openlmis.fulfillment.domain.FileTemplate;
+import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.repository.OrderRepository;
+import org.openlmis.fulfillment.web.OrderNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+/**
+ * Exports many orders to a zip archive with a csv file for each order. Orders are loaded and
+ * written in batches, so the memory usage does not depend on the number of exported orders.
+ */
+@Service
+public class OrderExportService {
+
+  @Autowired
+  private OrderService orderService;
+
+  @Autowired
+  private OrderRepository orderRepository;
+
+  @Autowired
+  private PermissionService permissionService;
+
+  @Autowired
+  private OrderCsvHelper csvHelper;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Value("${order.export.batchSize}")
+  private int batchSize;
+
+  /**
+   * Checks if all orders with the given ids exist and can be viewed by the current user. It
+   * should be called before the archive is written, as errors can't be reported later.
+   *
+   * @param orderIds ids of orders to export.
+   */
+  public void checkCanExport(Set<UUID> orderIds) {
+    for (List<UUID> batch : partition(orderIds)) {
+      List<Order> orders = findOrders(batch);
+
+      for (Order order : orders) {
+        permissionService.canViewOrder(order);
+      }
+
+      entityManager.clear();
+    }
+  }
+
+  /**
+   * Writes orders with the given ids or, if the ids are not set, orders matching the search
+   * params. The search returns only orders available for the current user.
+   *
+   * @param params       order search params used if there are no order ids.
+   * @param orderIds     ids of orders to export, optional.
+   * @param fileTemplate the order file template.
+   * @param outputStream the stream the zip archive is written to.
+   */
+  public void exportToZip(OrderSearchParams params, Set<UUID> orderIds, FileTemplate fileTemplate,
+                          OutputStream outputStream) throws IOException {
+    ZipOutputStream zip = new ZipOutputStream(outputStream);
+
+    if (null == orderIds || orderIds.isEmpty()) {
+      Pageable pageable = new PageRequest(0, batchSize, new Sort("createdDate", "id"));
+      Page<Order> page;
+
+      do {
+        page = orderService.searchOrders(params, pageable);
+        write(page.getContent(), fileTemplate, zip);
+        pageable = pageable.next();
+      } while (page.hasNext());
+    } else {
+      for (List<UUID> batch : partition(orderIds)) {
+        write(findOrders(batch), fileTemplate, zip);
+      }
+    }
+
+    zip.finish();
+    zip.flush();
+  }
+
+  private void write(List<Order> orders, FileTemplate fileTemplate, ZipOutputStream zip)
+      throws IOException {
+    csvHelper.writeCsvFiles(orders, fileTemplate, zip);
+    zip.flush();
+
+    // written orders are not needed anymore
+    entityManager.clear();
+  }
+
+  private List<List<UUID>> partition(Set<UUID> orderIds) {
+    return Lists.partition(new ArrayList<>(orderIds), batchSize);
+  }
+
+  private List<Order> findOrders(List<UUID> orderIds) {
+    List<Order> orders = Lists.newArrayList(orderRepository.findAll(orderIds));
+
+    if (orders.size() < orderIds.size()) {
+      orderIds.stream()
+          .filter(id -> orders.stream().noneMatch(order -> id.equals(order.getId())))
+          .findFirst()
+          .ifPresent(id -> {
+            throw new OrderNotFoundException(id);
+          });
+    }
+
+    return orders;
+  }
+}
@@ -15,9 +15,13 @@
 
 package org.openlmis.fulfillment.service;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.openlmis.fulfillment.i18n.MessageKeys.ERROR_IO;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -25,9 +29,10 @@ import java.nio.file.Paths;
 
 import org.openlmis.fulfillment.domain.FileTemplate;
 import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.TemplateType;
+import org.openlmis.fulfillment.domain.TransferCompression;
 import org.openlmis.fulfillment.domain.TransferProperties;
 import org.openlmis.fulfillment.domain.TransferType;
-import org.openlmis.fulfillment.repository.TransferPropertiesRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -41,17 +46,18 @@ public class OrderFileStorage implements OrderStorage {
   private OrderCsvHelper csvHelper;
 
   @Autowired
-  private FileTemplateService fileTemplateService;
-
-  @Autowired
-  private TransferPropertiesRepository transferPropertiesRepository;
+  private TransferRoutingTable transferRoutingTable;
 
   @Override
   public void store(Order order) {
-    TransferProperties properties = transferPropertiesRepository
-        .findFirstByFacilityIdAndTransferType(order.getSupplyingFacilityId(),
-            TransferType.ORDER);
+    TransferProperties properties = transferRoutingTable
+        .getTransferProperties(order.getSupplyingFacilityId(), TransferType.ORDER);
 
+    store(order, properties);
+  }
+
+  @Override
+  public void store(Order order, TransferProperties properties) {
     if (null == properties) {
       LOGGER.warn(
           "Can't store the order {} because there is no transfer properties",
@@ -61,8 +67,10 @@ public class OrderFileStorage implements OrderStorage {
     }
 
     // retrieve order file template
-    FileTemplate template = fileTemplateService.getOrderFileTemplate();
-    String fileName = template.getFilePrefix() + order.getOrderCode() + ".csv";
+    FileTemplate template = transferRoutingTable.getFileTemplate(TemplateType.ORDER);
+    String csvFileName = template.getFilePrefix() + order.getOrderCode() + ".csv";
+    TransferCompression compression = properties.getCompression();
+    String fileName = compression.getFileName(csvFileName);
     Path path;
 
     try {
@@ -73,9 +81,9 @@ public class OrderFileStorage implements OrderStorage {
       throw new OrderStorageException(exp, ERROR_IO, exp.getMessage());
     }
 
-    try (Writer writer = Files.newBufferedWriter(path)) {
+    try (Writer writer = newWriter(path, compression, csvFileName)) {
       // 1. generate CSV file using order file template
-      // 2. save generated CSV file in local directory
+      // 2. save generated (and compressed) CSV file in local directory
       csvHelper.writeCsvFile(order, template, writer);
     } catch (IOException exp) {
       throw new OrderStorageException(exp, ERROR_IO, exp.getMessage());
@@ -93,14 +101,24 @@ public class OrderFileStorage implements OrderStorage {
 
   @Override
   public Path getOrderAsPath(Order order) {
-    FileTemplate template = fileTemplateService.getOrderFileTemplate();
-    TransferProperties properties = transferPropertiesRepository
-        .findFirstByFacilityIdAndTransferType(order.getSupplyingFacilityId(),
-            TransferType.ORDER);
+    FileTemplate template = transferRoutingTable.getFileTemplate(TemplateType.ORDER);
+    TransferProperties properties = transferRoutingTable
+        .getTransferProperties(order.getSupplyingFacilityId(), TransferType.ORDER);
 
-    String fileName = template.getFilePrefix() + order.getOrderCode() + ".csv";
+    String fileName = properties.getCompression()
+        .getFileName(template.getFilePrefix() + order.getOrderCode() + ".csv");
 
     return Paths.get(properties.getPath(), fileName);
   }
 
+  private Writer newWriter(Path path, TransferCompression compression, String csvFileName)
+      throws IOException {
+    if (TransferCompression.NONE == compression) {
+      return Files.newBufferedWriter(path);
+    }
+
+    OutputStream stream = compression.compress(Files.newOutputStream(path), csvFileName);
+    return new BufferedWriter(new OutputStreamWriter(stream, UTF_8));
+  }
+
 }
@@ -17,16 +17,17 @@ package org.openlmis.fulfillment.service;
 
 import static java.util.Locale.ENGLISH;
 
-import java.io.File;
-import java.nio.file.Path;
+import java.io.InputStream;
 import java.text.MessageFormat;
 import org.apache.camel.Exchange;
 import org.apache.camel.ProducerTemplate;
+import org.openlmis.fulfillment.domain.FileTemplate;
 import org.openlmis.fulfillment.domain.FtpTransferProperties;
 import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.TemplateType;
+import org.openlmis.fulfillment.domain.TransferCompression;
 import org.openlmis.fulfillment.domain.TransferProperties;
 import org.openlmis.fulfillment.domain.TransferType;
-import org.openlmis.fulfillment.repository.TransferPropertiesRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -43,32 +44,40 @@ public class OrderFtpSender implements OrderSender {
   private ProducerTemplate producerTemplate;
 
   @Autowired
-  private OrderStorage orderStorage;
+  private OrderCsvHelper csvHelper;
 
   @Autowired
-  private TransferPropertiesRepository transferPropertiesRepository;
+  private TransferRoutingTable transferRoutingTable;
 
   @Override
   public boolean send(Order order) {
-    Path path = orderStorage.getOrderAsPath(order);
-    TransferProperties properties = transferPropertiesRepository
-        .findFirstByFacilityIdAndTransferType(order.getSupplyingFacilityId(),
-            TransferType.ORDER);
+    TransferProperties properties = transferRoutingTable
+        .getTransferProperties(order.getSupplyingFacilityId(), TransferType.ORDER);
 
-    return properties instanceof FtpTransferProperties
-        && send(order, path, (FtpTransferProperties) properties);
+    return send(order, properties);
+  }
 
+  @Override
+  public boolean send(Order order, TransferProperties properties) {
+    return properties instanceof FtpTransferProperties
+        && send(order, (FtpTransferProperties) properties);
   }
 
-  private boolean send(Order order, Path path, FtpTransferProperties ftp) {
-    try {
+  private boolean send(Order order, FtpTransferProperties ftp) {
+    FileTemplate template = transferRoutingTable.getFileTemplate(TemplateType.ORDER);
+    String csvFileName = template.getFilePrefix() + order.getOrderCode() + ".csv";
+    TransferCompression compression = ftp.getCompression();
+    String fileName = compression.getFileName(csvFileName);
+
+    // the CSV content is generated (and compressed) while the FTP component reads the stream
+    try (InputStream csv = csvHelper
+        .getCsvFileAsStream(order, template, compression, csvFileName)) {
       String endpointUri = createEndpointUri(ftp);
-      File file = path.toFile();
-      producerTemplate.sendBodyAndHeader(endpointUri, file, Exchange.FILE_NAME, file.getName());
+      producerTemplate.sendBodyAndHeader(endpointUri, csv, Exchange.FILE_NAME, fileName);
     } catch (Exception exp) {
       LOGGER.error(
           "Can't transfer CSV file {} related with order {} to the FTP server",
-          path, order.getId(), exp
+          fileName, order.getId(), exp
       );
 
       return false;
@@ -0,0 +1,136 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.OrderNumberConfiguration;
+import org.openlmis.fulfillment.extension.ExtensionManager;
+import org.openlmis.fulfillment.extension.point.OrderNumberGenerator;
+import org.openlmis.fulfillment.repository.OrderNumberConfigurationRepository;
+import org.openlmis.fulfillment.service.referencedata.ProgramDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Generates order codes. The order number configuration and the order number generator extension
+ * are resolved once and kept until the configuration is changed. Other service instances are
+ * notified about changes by a version number stored in the database.
+ */
+@Service
+public class OrderNumberService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OrderNumberService.class);
+
+  @Autowired
+  private OrderNumberConfigurationRepository orderNumberConfigurationRepository;
+
+  @Autowired
+  private ExtensionManager extensionManager;
+
+  private volatile CachedConfiguration configuration;
+  private volatile OrderNumberGenerator generator;
+
+  /**
+   * Generates a new order code for the given order.
+   *
+   * @param order   an order that needs the code.
+   * @param program a program related with the order.
+   * @return formatted order code.
+   */
+  public String generateOrderCode(Order order, ProgramDto program) {
+    String orderNumber = getGenerator().generate(order);
+    return getConfiguration().formatOrderNumber(order, program, orderNumber);
+  }
+
+  /**
+   * Removes cached order number configuration if it has been changed by another service instance.
+   */
+  @Scheduled(fixedDelayString = "${order.number.configuration.refreshRate}")
+  public void refresh() {
+    CachedConfiguration current = configuration;
+
+    if (null != current && current.version != readVersion()) {
+      LOGGER.debug("Order number configuration has been changed, evicting");
+      configuration = null;
+    }
+  }
+
+  /**
+   * Removes cached order number configuration. It should be called each time the configuration is
+   * updated. The change is published to other service instances with the current transaction, and
+   * the local cache is cleared once again after commit so that the old configuration is not cached
+   * by concurrent requests.
+   */
+  public void evictConfiguration() {
+    orderNumberConfigurationRepository.incrementConfigurationVersion();
+    configuration = null;
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              configuration = null;
+            }
+          });
+    }
+  }
+
+  private OrderNumberConfiguration getConfiguration() {
+    CachedConfiguration current = configuration;
+
+    if (null == current) {
+      long version = readVersion();
+      current = new CachedConfiguration(version,
+          orderNumberConfigurationRepository.findAll().iterator().next());
+      configuration = current;
+    }
+
+    return current.configuration;
+  }
+
+  private OrderNumberGenerator getGenerator() {
+    OrderNumberGenerator current = generator;
+
+    if (null == current) {
+      current = extensionManager.getExtension(
+          OrderNumberGenerator.POINT_ID, OrderNumberGenerator.class);
+      generator = current;
+    }
+
+    return current;
+  }
+
+  private long readVersion() {
+    Number version = orderNumberConfigurationRepository.getConfigurationVersion();
+    return null == version ? 0 : version.longValue();
+  }
+
+  private static final class CachedConfiguration {
+    private final long version;
+    private final OrderNumberConfiguration configuration;
+
+    CachedConfiguration(long version, OrderNumberConfiguration configuration) {
+      this.version = version;
+      this.configuration = configuration;
+    }
+  }
+}
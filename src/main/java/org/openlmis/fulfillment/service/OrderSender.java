@@ -16,9 +16,14 @@
 package org.openlmis.fulfillment.service;
 
 import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.TransferProperties;
 
 public interface OrderSender {
 
   boolean send(Order order);
 
+  default boolean send(Order order, TransferProperties properties) {
+    return send(order);
+  }
+
 }
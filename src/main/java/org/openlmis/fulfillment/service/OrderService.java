@@ -34,15 +34,10 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 import org.openlmis.fulfillment.domain.FtpTransferProperties;
 import org.openlmis.fulfillment.domain.Order;
-import org.openlmis.fulfillment.domain.OrderNumberConfiguration;
 import org.openlmis.fulfillment.domain.TransferProperties;
 import org.openlmis.fulfillment.domain.TransferType;
 import org.openlmis.fulfillment.domain.UpdateDetails;
-import org.openlmis.fulfillment.extension.ExtensionManager;
-import org.openlmis.fulfillment.extension.point.OrderNumberGenerator;
-import org.openlmis.fulfillment.repository.OrderNumberConfigurationRepository;
 import org.openlmis.fulfillment.repository.OrderRepository;
-import org.openlmis.fulfillment.repository.TransferPropertiesRepository;
 import org.openlmis.fulfillment.service.referencedata.FacilityReferenceDataService;
 import org.openlmis.fulfillment.service.referencedata.PeriodReferenceDataService;
 import org.openlmis.fulfillment.service.referencedata.PermissionStrings;
@@ -70,7 +65,7 @@ public class OrderService {
   private OrderRepository orderRepository;
 
   @Autowired
-  private TransferPropertiesRepository transferPropertiesRepository;
+  private TransferRoutingTable transferRoutingTable;
 
   @Autowired
   private FulfillmentNotificationService fulfillmentNotificationService;
@@ -91,10 +86,7 @@ public class OrderService {
   private FacilityReferenceDataService facilityReferenceDataService;
 
   @Autowired
-  private OrderNumberConfigurationRepository orderNumberConfigurationRepository;
-
-  @Autowired
-  private ExtensionManager extensionManager;
+  private OrderNumberService orderNumberService;
 
   @Autowired
   private DateHelper dateHelper;
@@ -105,6 +97,9 @@ public class OrderService {
   @Autowired
   private AuthenticationHelper authenticationHelper;
 
+  @Autowired
+  private OrderTransferJobService orderTransferJobService;
+
   /**
    * Creates an order.
    *
@@ -117,15 +112,7 @@ public class OrderService {
 
     ProgramDto program = programReferenceDataService.findOne(order.getProgramId());
 
-    OrderNumberConfiguration orderNumberConfiguration =
-        orderNumberConfigurationRepository.findAll().iterator().next();
-
-    OrderNumberGenerator orderNumberGenerator = extensionManager.getExtension(
-        OrderNumberGenerator.POINT_ID, OrderNumberGenerator.class);
-
-    String orderNumber = orderNumberGenerator.generate(order);
-
-    order.setOrderCode(orderNumberConfiguration.formatOrderNumber(order, program, orderNumber));
+    order.setOrderCode(orderNumberService.generateOrderCode(order, program));
     Order newOrder = save(order);
 
     XLOGGER.debug("Created new order with id: {}", order.getId());
@@ -182,9 +169,9 @@ public class OrderService {
   }
 
   /**
-   * Saves a new instance of order. The method also stores the order in local directory and try to
-   * send (if there are FTP transfer properties) to an FTP server. Also, the status field in the
-   * order will be updated.
+   * Saves a new instance of order. The method also stores the order in local directory or sends it
+   * (if there are FTP transfer properties) to an FTP server. Also, the status field in the
+   * order will be updated. If the order could not be sent, it is added to the retry queue.
    *
    * @param order instance
    * @return passed instance after save.
@@ -195,21 +182,10 @@ public class OrderService {
     // save order
     Order saved = orderRepository.save(order);
 
-    orderStorage.store(saved);
-
-    TransferProperties properties = transferPropertiesRepository
-        .findFirstByFacilityIdAndTransferType(order.getSupplyingFacilityId(),
-            TransferType.ORDER);
-
-    if (properties instanceof FtpTransferProperties) {
-      boolean success = orderSender.send(saved);
-
-      if (success) {
-        orderStorage.delete(saved);
-      } else {
-        order.setStatus(TRANSFER_FAILED);
-        saved = orderRepository.save(order);
-      }
+    if (!storeAndSend(saved)) {
+      order.setStatus(TRANSFER_FAILED);
+      saved = orderRepository.save(order);
+      orderTransferJobService.schedule(saved);
     }
 
     // Send an email notification to the user that converted the order
@@ -218,6 +194,44 @@ public class OrderService {
     return saved;
   }
 
+  /**
+   * Tries to transfer the order once again. Unlike {@link #save(Order)}, no notification is sent
+   * and the order is not added to the retry queue.
+   *
+   * @param order an order with TRANSFER_FAILED status.
+   * @return true if the order has been transferred; otherwise false.
+   */
+  public boolean retryTransfer(Order order) {
+    setOrderStatus(order);
+
+    if (TRANSFER_FAILED == order.getStatus()) {
+      // there is still nowhere to send the order
+      return false;
+    }
+
+    boolean success = storeAndSend(order);
+
+    if (!success) {
+      order.setStatus(TRANSFER_FAILED);
+    }
+
+    orderRepository.save(order);
+    return success;
+  }
+
+  private boolean storeAndSend(Order order) {
+    TransferProperties properties = transferRoutingTable
+        .getTransferProperties(order.getSupplyingFacilityId(), TransferType.ORDER);
+
+    if (properties instanceof FtpTransferProperties) {
+      // the CSV file is streamed directly to the FTP server, nothing is stored locally
+      return orderSender.send(order, properties);
+    }
+
+    orderStorage.store(order, properties);
+    return true;
+  }
+
   private void setOrderStatus(Order order) {
     // Is the order associated with a supply line?
     if (null != order.getSupplyingFacilityId()) {
@@ -234,9 +248,8 @@ public class OrderService {
       if (supportedProgram.isPresent() && supportedProgram.get().isSupportLocallyFulfilled()) {
         order.prepareToLocalFulfill();
       } else {
-        TransferProperties properties = transferPropertiesRepository
-            .findFirstByFacilityIdAndTransferType(order.getSupplyingFacilityId(),
-                TransferType.ORDER);
+        TransferProperties properties = transferRoutingTable
+            .getTransferProperties(order.getSupplyingFacilityId(), TransferType.ORDER);
 
         if (null == properties) {
           // Set order status as TRANSFER_FAILED
@@ -17,11 +17,16 @@ package org.openlmis.fulfillment.service;
 
 import java.nio.file.Path;
 import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.TransferProperties;
 
 public interface OrderStorage {
 
   void store(Order order);
 
+  default void store(Order order, TransferProperties properties) {
+    store(order);
+  }
+
   void delete(Order order);
 
   default Path getOrderAsPath(Order order) {
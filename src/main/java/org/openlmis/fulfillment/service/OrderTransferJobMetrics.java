@@ -0,0 +1,67 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.openlmis.fulfillment.domain.OrderTransferJob;
+import org.openlmis.fulfillment.repository.OrderTransferJobRepository;
+import org.openlmis.fulfillment.util.DateHelper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the state of the order transfer retry queue through the metrics endpoint.
+ */
+@Component
+public class OrderTransferJobMetrics implements PublicMetrics {
+  static final String QUEUE_DEPTH = "fulfillment.orders.transfer.queue.depth";
+  static final String QUEUE_EXHAUSTED = "fulfillment.orders.transfer.queue.exhausted";
+  static final String QUEUE_OLDEST_AGE = "fulfillment.orders.transfer.queue.oldestAgeSeconds";
+
+  @Autowired
+  private OrderTransferJobRepository orderTransferJobRepository;
+
+  @Autowired
+  private DateHelper dateHelper;
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    metrics.add(new Metric<>(QUEUE_DEPTH,
+        orderTransferJobRepository.countByNextAttemptDateIsNotNull()));
+    metrics.add(new Metric<>(QUEUE_EXHAUSTED,
+        orderTransferJobRepository.countByNextAttemptDateIsNull()));
+
+    OrderTransferJob oldest = orderTransferJobRepository
+        .findFirstByNextAttemptDateIsNotNullOrderByCreatedDateAsc();
+    long age = null == oldest
+        ? 0
+        : Duration
+            .between(oldest.getCreatedDate(), dateHelper.getCurrentDateTimeWithSystemZone())
+            .getSeconds();
+
+    metrics.add(new Metric<>(QUEUE_OLDEST_AGE, age));
+
+    return metrics;
+  }
+
+}
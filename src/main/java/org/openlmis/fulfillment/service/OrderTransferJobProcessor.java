@@ -0,0 +1,168 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import static org.openlmis.fulfillment.domain.OrderStatus.TRANSFER_FAILED;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.OrderTransferJob;
+import org.openlmis.fulfillment.repository.OrderRepository;
+import org.openlmis.fulfillment.repository.OrderTransferJobRepository;
+import org.openlmis.fulfillment.util.DateHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Periodically retries order transfers from the retry queue. Jobs are claimed in a short
+ * transaction with row locks that skip rows locked by others, so several service instances can
+ * share the queue. Each claimed job is then transferred and updated in its own transaction, so
+ * no locks or connections are held during the file transfers. The claim of each job is renewed
+ * just before its transfer, so jobs at the end of a slow batch are not picked up by other
+ * instances.
+ */
+@Component
+public class OrderTransferJobProcessor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OrderTransferJobProcessor.class);
+
+  static final String TRANSFER_FAILED_MESSAGE = "The order file could not be transferred";
+
+  @Autowired
+  private OrderTransferJobRepository orderTransferJobRepository;
+
+  @Autowired
+  private OrderRepository orderRepository;
+
+  @Autowired
+  private OrderService orderService;
+
+  @Autowired
+  private OrderTransferRetryPolicy retryPolicy;
+
+  @Autowired
+  private DateHelper dateHelper;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Value("${order.transfer.retry.enabled}")
+  private boolean enabled;
+
+  @Value("${order.transfer.retry.batchSize}")
+  private int batchSize;
+
+  @Value("${order.transfer.retry.claimTimeout}")
+  private long claimTimeout;
+
+  /**
+   * Retries transfers of orders which jobs are due.
+   */
+  @Scheduled(fixedDelayString = "${order.transfer.retry.pollingRate}")
+  public void processDueJobs() {
+    if (!enabled) {
+      return;
+    }
+
+    ZonedDateTime now = dateHelper.getCurrentDateTimeWithSystemZone();
+    ZonedDateTime claimedUntil = getClaimExpiry(now);
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    List<UUID> jobIds = transaction.execute(status -> claimDueJobs(now, claimedUntil));
+
+    if (!jobIds.isEmpty()) {
+      LOGGER.debug("Retrying transfer of {} orders", jobIds.size());
+      jobIds.forEach(jobId -> process(transaction, jobId, claimedUntil));
+    }
+  }
+
+  private List<UUID> claimDueJobs(ZonedDateTime now, ZonedDateTime claimedUntil) {
+    List<OrderTransferJob> jobs = orderTransferJobRepository.claimDueJobs(now, batchSize);
+    jobs.forEach(job -> job.claim(claimedUntil));
+    orderTransferJobRepository.save(jobs);
+
+    return jobs.stream().map(OrderTransferJob::getId).collect(Collectors.toList());
+  }
+
+  private void process(TransactionTemplate transaction, UUID jobId, ZonedDateTime claimedUntil) {
+    ZonedDateTime renewedUntil = getClaimExpiry(dateHelper.getCurrentDateTimeWithSystemZone());
+
+    if (0 == orderTransferJobRepository
+        .renewClaim(jobId.toString(), claimedUntil, renewedUntil)) {
+      LOGGER.warn("Order transfer job {} has been removed or claimed again", jobId);
+      return;
+    }
+
+    transaction.execute(status -> {
+      transfer(jobId);
+      return null;
+    });
+  }
+
+  private void transfer(UUID jobId) {
+    OrderTransferJob job = orderTransferJobRepository.findOne(jobId);
+
+    if (null == job) {
+      return;
+    }
+
+    Order order = orderRepository.findOne(job.getOrderId());
+
+    if (null == order || TRANSFER_FAILED != order.getStatus()) {
+      // the order has been transferred in the meantime, for example by a manual retry
+      orderTransferJobRepository.delete(job);
+      return;
+    }
+
+    String error = TRANSFER_FAILED_MESSAGE;
+
+    try {
+      if (orderService.retryTransfer(order)) {
+        LOGGER.info("Order {} has been transferred after {} retries",
+            order.getId(), job.getAttempts() + 1);
+        orderTransferJobRepository.delete(job);
+        return;
+      }
+    } catch (RuntimeException exp) {
+      LOGGER.error("Can't retry transfer of the order {}", order.getId(), exp);
+      error = exp.getMessage();
+    }
+
+    ZonedDateTime now = dateHelper.getCurrentDateTimeWithSystemZone();
+    job.recordFailure(error, now, retryPolicy.getNextAttemptDate(job.getAttempts() + 1, now));
+    orderTransferJobRepository.save(job);
+
+    if (job.isExhausted()) {
+      LOGGER.warn("Giving up transfer of the order {} after {} retries",
+          order.getId(), job.getAttempts());
+    }
+  }
+
+  private ZonedDateTime getClaimExpiry(ZonedDateTime now) {
+    // the claim is compared with the stored value, so it must not be more precise than the column
+    return now.plusSeconds(claimTimeout).truncatedTo(ChronoUnit.MILLIS);
+  }
+
+}
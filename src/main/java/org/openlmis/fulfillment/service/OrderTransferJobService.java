@@ -0,0 +1,117 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import static org.openlmis.fulfillment.domain.OrderStatus.TRANSFER_FAILED;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.OrderTransferJob;
+import org.openlmis.fulfillment.repository.OrderRepository;
+import org.openlmis.fulfillment.repository.OrderTransferJobRepository;
+import org.openlmis.fulfillment.util.DateHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class OrderTransferJobService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OrderTransferJobService.class);
+
+  @Autowired
+  private OrderTransferJobRepository orderTransferJobRepository;
+
+  @Autowired
+  private OrderRepository orderRepository;
+
+  @Autowired
+  private OrderTransferRetryPolicy retryPolicy;
+
+  @Autowired
+  private DateHelper dateHelper;
+
+  /**
+   * Adds the order to the retry queue. If the order is already in the queue, the existing job is
+   * left untouched so the backoff is not reset by manual retries.
+   *
+   * @param order the order which transfer failed.
+   */
+  public void schedule(Order order) {
+    if (null != orderTransferJobRepository.findByOrderId(order.getId())) {
+      return;
+    }
+
+    ZonedDateTime now = dateHelper.getCurrentDateTimeWithSystemZone();
+    OrderTransferJob job = OrderTransferJob.newInstance(order.getId(),
+        order.getSupplyingFacilityId(), now, retryPolicy.getNextAttemptDate(0, now));
+
+    orderTransferJobRepository.save(job);
+    LOGGER.info("Scheduled retry of the order {} transfer at {}",
+        order.getId(), job.getNextAttemptDate());
+  }
+
+  /**
+   * Puts all orders with TRANSFER_FAILED status from the given supplying facility into the retry
+   * queue so they are transferred with the next run of the queue. Existing jobs, including the
+   * ones that have used all of their attempts, are reset.
+   *
+   * @param supplyingFacilityId UUID of the supplying facility.
+   * @return number of scheduled orders.
+   */
+  public int scheduleFailedOrders(UUID supplyingFacilityId) {
+    List<UUID> orderIds = orderRepository
+        .findIdsBySupplyingFacilityIdAndStatus(supplyingFacilityId, TRANSFER_FAILED);
+
+    if (orderIds.isEmpty()) {
+      return 0;
+    }
+
+    Map<UUID, OrderTransferJob> existing = orderTransferJobRepository
+        .findByOrderIdIn(orderIds)
+        .stream()
+        .collect(Collectors.toMap(OrderTransferJob::getOrderId, Function.identity()));
+
+    ZonedDateTime now = dateHelper.getCurrentDateTimeWithSystemZone();
+    List<OrderTransferJob> jobs = new ArrayList<>(orderIds.size());
+
+    for (UUID orderId : orderIds) {
+      OrderTransferJob job = existing.get(orderId);
+
+      if (null == job) {
+        job = OrderTransferJob.newInstance(orderId, supplyingFacilityId, now, now);
+      } else {
+        job.reschedule(now);
+      }
+
+      jobs.add(job);
+    }
+
+    orderTransferJobRepository.save(jobs);
+    LOGGER.info("Scheduled retry of {} order transfers for the supplying facility {}",
+        jobs.size(), supplyingFacilityId);
+
+    return jobs.size();
+  }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import java.time.ZonedDateTime;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Calculates when a failed order transfer should be retried. The delay grows exponentially with
+ * the number of attempts, is capped at the configured maximum and is randomly spread by the
+ * jitter factor so that orders which failed together are not retried all at the same moment.
+ */
+@Component
+public class OrderTransferRetryPolicy {
+
+  @Value("${order.transfer.retry.maxAttempts}")
+  private int maxAttempts;
+
+  @Value("${order.transfer.retry.initialDelay}")
+  private long initialDelay;
+
+  @Value("${order.transfer.retry.maxDelay}")
+  private long maxDelay;
+
+  @Value("${order.transfer.retry.jitter}")
+  private double jitter;
+
+  private RetryBackOff backOff;
+
+  @PostConstruct
+  void init() {
+    backOff = new RetryBackOff(maxAttempts, initialDelay, maxDelay, jitter);
+  }
+
+  /**
+   * Returns the date of the next attempt.
+   *
+   * @param attempts number of attempts that have already been made.
+   * @param now      current date.
+   * @return the date of the next attempt or null if the limit of attempts has been reached.
+   */
+  public ZonedDateTime getNextAttemptDate(int attempts, ZonedDateTime now) {
+    return backOff.getNextAttemptDate(attempts, now);
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.openlmis.fulfillment.domain.OutboxMessage;
+import org.openlmis.fulfillment.domain.ProofOfDelivery;
+import org.openlmis.fulfillment.repository.OutboxMessageRepository;
+import org.openlmis.fulfillment.repository.ProofOfDeliveryRepository;
+import org.openlmis.fulfillment.service.stockmanagement.StockEventStockManagementService;
+import org.openlmis.fulfillment.service.stockmanagement.ValidSourceDestinationIndex;
+import org.openlmis.fulfillment.util.DateHelper;
+import org.openlmis.fulfillment.web.stockmanagement.StockEventDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Periodically delivers messages from the outbox. Messages are claimed in a short transaction
+ * with row locks that skip rows locked by others, so several service instances can share the
+ * outbox. Each claimed message is then delivered and removed in its own transaction, so an
+ * interrupted run sends again at most the message that was being delivered, and no locks are
+ * held during the remote calls. A message rejected by the receiving service is not retried, and
+ * a rejected stock event causes valid sources and destinations to be revalidated.
+ */
+@Component
+public class OutboxMessageProcessor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OutboxMessageProcessor.class);
+
+  @Autowired
+  private OutboxMessageRepository outboxMessageRepository;
+
+  @Autowired
+  private ProofOfDeliveryRepository proofOfDeliveryRepository;
+
+  @Autowired
+  private StockEventStockManagementService stockEventStockManagementService;
+
+  @Autowired
+  private FulfillmentNotificationService fulfillmentNotificationService;
+
+  @Autowired
+  private ValidSourceDestinationIndex validSourceDestinationIndex;
+
+  @Autowired
+  private OutboxRetryPolicy retryPolicy;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private DateHelper dateHelper;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Value("${outbox.relay.enabled}")
+  private boolean enabled;
+
+  @Value("${outbox.relay.batchSize}")
+  private int batchSize;
+
+  @Value("${outbox.relay.claimTimeout}")
+  private long claimTimeout;
+
+  /**
+   * Delivers messages which are due.
+   */
+  @Scheduled(fixedDelayString = "${outbox.relay.pollingRate}")
+  public void processDueMessages() {
+    if (!enabled) {
+      return;
+    }
+
+    ZonedDateTime now = dateHelper.getCurrentDateTimeWithSystemZone();
+    ZonedDateTime claimedUntil = getClaimExpiry(now);
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    List<UUID> messageIds = transaction.execute(status -> claimDueMessages(now, claimedUntil));
+
+    if (!messageIds.isEmpty()) {
+      LOGGER.debug("Delivering {} outbox messages", messageIds.size());
+      messageIds.forEach(messageId -> process(transaction, messageId, claimedUntil));
+    }
+  }
+
+  private List<UUID> claimDueMessages(ZonedDateTime now, ZonedDateTime claimedUntil) {
+    List<OutboxMessage> messages = outboxMessageRepository.claimDueMessages(now, batchSize);
+    messages.forEach(message -> message.claim(claimedUntil));
+    outboxMessageRepository.save(messages);
+
+    return messages.stream().map(OutboxMessage::getId).collect(Collectors.toList());
+  }
+
+  private void process(TransactionTemplate transaction, UUID messageId,
+      ZonedDateTime claimedUntil) {
+    ZonedDateTime renewedUntil = getClaimExpiry(dateHelper.getCurrentDateTimeWithSystemZone());
+
+    if (0 == outboxMessageRepository
+        .renewClaim(messageId.toString(), claimedUntil, renewedUntil)) {
+      LOGGER.warn("Outbox message {} has been removed or claimed again", messageId);
+      return;
+    }
+
+    transaction.execute(status -> {
+      deliverAndRemove(messageId);
+      return null;
+    });
+  }
+
+  private void deliverAndRemove(UUID messageId) {
+    OutboxMessage message = outboxMessageRepository.findOne(messageId);
+
+    if (null == message) {
+      return;
+    }
+
+    ZonedDateTime now = dateHelper.getCurrentDateTimeWithSystemZone();
+
+    try {
+      deliver(message);
+      outboxMessageRepository.delete(message);
+      return;
+    } catch (ExternalApiException exp) {
+      LOGGER.error("Outbox message {} has been rejected", message.getId(), exp);
+      message.recordFailure(exp.getMessage(), now, null);
+      // the event could refer to a valid source or destination that has been removed
+      validSourceDestinationIndex.invalidate();
+    } catch (IOException exp) {
+      LOGGER.error("Outbox message {} can't be read", message.getId(), exp);
+      message.recordFailure(exp.getMessage(), now, null);
+    } catch (RuntimeException exp) {
+      LOGGER.error("Can't deliver outbox message {}", message.getId(), exp);
+      message.recordFailure(exp.getMessage(), now,
+          retryPolicy.getNextAttemptDate(message.getAttempts() + 1, now));
+    }
+
+    outboxMessageRepository.save(message);
+
+    if (message.isExhausted()) {
+      LOGGER.warn("Giving up delivery of outbox message {} after {} attempts",
+          message.getId(), message.getAttempts());
+    }
+  }
+
+  private void deliver(OutboxMessage message) throws IOException {
+    switch (message.getType()) {
+      case STOCK_EVENT:
+        stockEventStockManagementService
+            .submit(objectMapper.readValue(message.getPayload(), StockEventDto.class));
+        break;
+      case POD_CONFIRMED_NOTIFICATION:
+        ProofOfDelivery proofOfDelivery = proofOfDeliveryRepository
+            .findOne(UUID.fromString(message.getPayload()));
+
+        if (null != proofOfDelivery) {
+          fulfillmentNotificationService.sendPodConfirmedNotification(proofOfDelivery);
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unsupported outbox message type: " + message.getType());
+    }
+  }
+
+  private ZonedDateTime getClaimExpiry(ZonedDateTime now) {
+    // the claim is compared with the stored value, so it must not be more precise than the column
+    return now.plusSeconds(claimTimeout).truncatedTo(ChronoUnit.MILLIS);
+  }
+
+}
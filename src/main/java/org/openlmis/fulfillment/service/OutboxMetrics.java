@@ -0,0 +1,67 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.openlmis.fulfillment.domain.OutboxMessage;
+import org.openlmis.fulfillment.repository.OutboxMessageRepository;
+import org.openlmis.fulfillment.util.DateHelper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the state of the outbox through the metrics endpoint.
+ */
+@Component
+public class OutboxMetrics implements PublicMetrics {
+  static final String OUTBOX_PENDING = "fulfillment.outbox.pending";
+  static final String OUTBOX_FAILED = "fulfillment.outbox.failed";
+  static final String OUTBOX_LAG = "fulfillment.outbox.lagSeconds";
+
+  @Autowired
+  private OutboxMessageRepository outboxMessageRepository;
+
+  @Autowired
+  private DateHelper dateHelper;
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    metrics.add(new Metric<>(OUTBOX_PENDING,
+        outboxMessageRepository.countByNextAttemptDateIsNotNull()));
+    metrics.add(new Metric<>(OUTBOX_FAILED,
+        outboxMessageRepository.countByNextAttemptDateIsNull()));
+
+    OutboxMessage oldest = outboxMessageRepository
+        .findFirstByNextAttemptDateIsNotNullOrderByCreatedDateAsc();
+    long lag = null == oldest
+        ? 0
+        : Duration
+            .between(oldest.getCreatedDate(), dateHelper.getCurrentDateTimeWithSystemZone())
+            .getSeconds();
+
+    metrics.add(new Metric<>(OUTBOX_LAG, lag));
+
+    return metrics;
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.openlmis.fulfillment.domain.OutboxMessage;
+import org.openlmis.fulfillment.domain.OutboxMessageType;
+import org.openlmis.fulfillment.domain.ProofOfDelivery;
+import org.openlmis.fulfillment.i18n.MessageKeys;
+import org.openlmis.fulfillment.repository.OutboxMessageRepository;
+import org.openlmis.fulfillment.util.DateHelper;
+import org.openlmis.fulfillment.web.ServerException;
+import org.openlmis.fulfillment.web.stockmanagement.StockEventDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Records messages for other services in the outbox. The messages are saved in the transaction
+ * of the caller, so they are delivered by {@link OutboxMessageProcessor} only if the business
+ * change that produced them has been committed. Writers of the same ordering key are serialized
+ * until they commit, so a message never becomes visible to the relay after a later message of the
+ * same key.
+ */
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class OutboxService {
+  static final String STOCK_EVENT_KEY = "stockEvent/%s/%s";
+  static final String POD_CONFIRMED_NOTIFICATION_KEY = "podConfirmedNotification/%s";
+
+  @Autowired
+  private OutboxMessageRepository outboxMessageRepository;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private DateHelper dateHelper;
+
+  /**
+   * Adds the stock event to the outbox. Stock events of the same facility and program are
+   * submitted in the order in which they were added.
+   *
+   * @param stockEvent the stock event to be submitted to the stock management service.
+   */
+  public void addStockEvent(StockEventDto stockEvent) {
+    addStockEvents(Collections.singletonList(stockEvent));
+  }
+
+  /**
+   * Adds the stock events to the outbox. Stock events of the same facility and program are
+   * submitted in the order in which they were added.
+   *
+   * @param stockEvents the stock events to be submitted to the stock management service.
+   */
+  public void addStockEvents(List<StockEventDto> stockEvents) {
+    addPodConfirmations(stockEvents, Collections.emptyList());
+  }
+
+  /**
+   * Adds the stock events and the notifications about the confirmed proofs of delivery to the
+   * outbox.
+   *
+   * @param stockEvents      the stock events to be submitted to the stock management service.
+   * @param proofsOfDelivery the confirmed proofs of delivery.
+   */
+  public void addPodConfirmations(List<StockEventDto> stockEvents,
+      List<ProofOfDelivery> proofsOfDelivery) {
+    ZonedDateTime now = dateHelper.getCurrentDateTimeWithSystemZone();
+    List<OutboxMessage> messages = new ArrayList<>();
+
+    for (StockEventDto stockEvent : stockEvents) {
+      messages.add(OutboxMessage.newInstance(OutboxMessageType.STOCK_EVENT,
+          String.format(STOCK_EVENT_KEY, stockEvent.getFacilityId(), stockEvent.getProgramId()),
+          writeValueAsString(stockEvent), now));
+    }
+
+    for (ProofOfDelivery proofOfDelivery : proofsOfDelivery) {
+      String id = proofOfDelivery.getId().toString();
+      messages.add(OutboxMessage.newInstance(OutboxMessageType.POD_CONFIRMED_NOTIFICATION,
+          String.format(POD_CONFIRMED_NOTIFICATION_KEY, id), id, now));
+    }
+
+    add(messages);
+  }
+
+  private void add(List<OutboxMessage> messages) {
+    // keys are locked in a fixed order, so transactions adding several keys can't deadlock
+    messages
+        .stream()
+        .map(OutboxMessage::getOrderingKey)
+        .collect(Collectors.toCollection(TreeSet::new))
+        .forEach(outboxMessageRepository::lockOrderingKey);
+
+    messages.forEach(outboxMessageRepository::save);
+  }
+
+  private String writeValueAsString(StockEventDto stockEvent) {
+    try {
+      return objectMapper.writeValueAsString(stockEvent);
+    } catch (JsonProcessingException ex) {
+      throw new ServerException(ex, MessageKeys.ERROR_IO, ex.getMessage());
+    }
+  }
+
+}
@@ -77,6 +77,10 @@ public class PermissionService {
     checkPermission(ORDERS_TRANSFER, order.getSupplyingFacilityId());
   }
 
+  public void canTransferOrders(UUID supplyingFacilityId) {
+    checkPermission(ORDERS_TRANSFER, supplyingFacilityId);
+  }
+
   /**
    * Checks if user has permission to manage PoD.
    */
@@ -198,6 +202,15 @@ public class PermissionService {
     checkShipmentEditWithOrder(shipmentDto.getOrder());
   }
 
+  /**
+   * Checks if user has permission to edit Shipments of the given order.
+   *
+   * @param order an order
+   */
+  public void canEditShipment(@NotNull Order order) {
+    checkPermission(SHIPMENTS_EDIT, order.getSupplyingFacilityId());
+  }
+
   /**
    * Checks if user has permission to edit Shipments.
    *
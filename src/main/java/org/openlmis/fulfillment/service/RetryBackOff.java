@@ -0,0 +1,75 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential back-off of retried operations. The delay grows exponentially with the number of
+ * attempts, is capped at the maximum and is randomly spread by the jitter factor so that
+ * operations which failed together are not retried all at the same moment.
+ */
+final class RetryBackOff {
+  private final int maxAttempts;
+  private final long initialDelay;
+  private final long maxDelay;
+  private final double jitter;
+
+  RetryBackOff(int maxAttempts, long initialDelay, long maxDelay, double jitter) {
+    this.maxAttempts = maxAttempts;
+    this.initialDelay = initialDelay;
+    this.maxDelay = maxDelay;
+    this.jitter = jitter;
+  }
+
+  /**
+   * Returns the date of the next attempt.
+   *
+   * @param attempts number of attempts that have already been made.
+   * @param now      current date.
+   * @return the date of the next attempt or null if the limit of attempts has been reached.
+   */
+  ZonedDateTime getNextAttemptDate(int attempts, ZonedDateTime now) {
+    if (attempts >= maxAttempts) {
+      return null;
+    }
+
+    return now.plusSeconds(getDelay(attempts));
+  }
+
+  long getDelay(int attempts) {
+    long delay = initialDelay;
+
+    for (int i = 0; i < attempts && delay < maxDelay; ++i) {
+      delay *= 2;
+    }
+
+    delay = Math.min(delay, maxDelay);
+
+    double spread = delay * jitter;
+
+    if (spread <= 0) {
+      return delay;
+    }
+
+    double random = ThreadLocalRandom.current().nextDouble(-spread, spread);
+
+    return Math.max(1, Math.round(delay + random));
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Processes received shipment files on a pool of worker threads shared by all shipment channels.
+ * Files are processed concurrently, also files of the same channel, and they are serialized only
+ * by the orders they contain. Each channel (the key of a file) can have a limited number of files
+ * waiting or being processed. A channel that has reached the limit is not polled until one of its
+ * files is processed, so files are not taken from the server faster than they can be processed
+ * and a channel with a backlog does not hold back the other channels.
+ */
+@Component
+public class ShipmentFileExecutor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ShipmentFileExecutor.class);
+
+  @Value("${shipment.processing.poolSize}")
+  private int poolSize;
+
+  @Value("${shipment.processing.queueCapacity}")
+  private int queueCapacity;
+
+  private ThreadPoolExecutor executor;
+
+  private final Map<String, Integer> pendingByKey = new HashMap<>();
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong blocked = new AtomicLong();
+
+  /**
+   * Starts the worker threads.
+   */
+  @PostConstruct
+  public void start() {
+    executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(), new CustomizableThreadFactory("shipment-processing-"));
+  }
+
+  /**
+   * Stops the worker threads after files that are being processed are finished. Files that are
+   * still waiting are left in the incoming directory and they are received again after restart.
+   */
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    executor.shutdown();
+
+    if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Checks if another task with the given key can be scheduled. It should be called before
+   * a file is taken from the server of the channel.
+   *
+   * @param key the key that the number of tasks is limited by.
+   * @return true if the number of waiting and running tasks with the key is below the limit.
+   */
+  public boolean hasCapacity(String key) {
+    synchronized (pendingByKey) {
+      if (pendingByKey.getOrDefault(key, 0) < queueCapacity) {
+        return true;
+      }
+    }
+
+    blocked.incrementAndGet();
+    LOGGER.debug("Shipment processing queue of {} is full, waiting for its files", key);
+    return false;
+  }
+
+  /**
+   * Schedules the given task. The method never blocks, the limit of tasks with the same key is
+   * checked by {@link #hasCapacity(String)} before the file is received.
+   *
+   * @param key  the key that the number of tasks is limited by.
+   * @param task the task to run.
+   */
+  public void execute(String key, Runnable task) {
+    synchronized (pendingByKey) {
+      pendingByKey.merge(key, 1, Integer::sum);
+    }
+
+    waiting.incrementAndGet();
+
+    try {
+      executor.execute(() -> run(key, task));
+    } catch (RejectedExecutionException exp) {
+      LOGGER.warn("Shipment processing is stopped, the file will be processed after restart");
+      waiting.decrementAndGet();
+      release(key);
+    }
+  }
+
+  int getWaitingCount() {
+    return waiting.get();
+  }
+
+  int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  long getCompletedCount() {
+    return completed.get();
+  }
+
+  long getBlockedCount() {
+    return blocked.get();
+  }
+
+  private void run(String key, Runnable task) {
+    waiting.decrementAndGet();
+
+    try {
+      task.run();
+    } catch (RuntimeException exp) {
+      LOGGER.error("Could not process shipment file", exp);
+    } finally {
+      completed.incrementAndGet();
+      release(key);
+    }
+  }
+
+  private void release(String key) {
+    synchronized (pendingByKey) {
+      pendingByKey.computeIfPresent(key, (ignored, pending) -> pending > 1 ? pending - 1 : null);
+    }
+  }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the state of the shipment file processing queue through the metrics endpoint.
+ */
+@Component
+public class ShipmentFileExecutorMetrics implements PublicMetrics {
+  static final String QUEUE_DEPTH = "fulfillment.shipments.processing.queue.depth";
+  static final String ACTIVE = "fulfillment.shipments.processing.active";
+  static final String COMPLETED = "fulfillment.shipments.processing.completed";
+  static final String BLOCKED = "fulfillment.shipments.processing.blocked";
+
+  @Autowired
+  private ShipmentFileExecutor shipmentFileExecutor;
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    metrics.add(new Metric<>(QUEUE_DEPTH, shipmentFileExecutor.getWaitingCount()));
+    metrics.add(new Metric<>(ACTIVE, shipmentFileExecutor.getActiveCount()));
+    metrics.add(new Metric<>(COMPLETED, shipmentFileExecutor.getCompletedCount()));
+    metrics.add(new Metric<>(BLOCKED, shipmentFileExecutor.getBlockedCount()));
+
+    return metrics;
+  }
+
+}
@@ -15,6 +15,9 @@
 
 package org.openlmis.fulfillment.service;
 
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -47,10 +50,27 @@ public class ShipmentService {
    */
   public Shipment save(final Shipment shipment) {
     Shipment saved = shipmentRepository.save(shipment);
+    proofOfDeliveryRepository.save(
+        createProofOfDeliveries(Collections.singletonList(saved)).get(0));
 
-    Set<UUID> orderableIds = saved
-        .getLineItems()
+    return saved;
+  }
+
+  /**
+   * Saves the given shipments to database in one batch. Also related Proofs Of Delivery will be
+   * created.
+   */
+  public List<Shipment> saveAll(final List<Shipment> shipments) {
+    List<Shipment> saved = Lists.newArrayList(shipmentRepository.save(shipments));
+    proofOfDeliveryRepository.save(createProofOfDeliveries(saved));
+
+    return saved;
+  }
+
+  private List<ProofOfDelivery> createProofOfDeliveries(List<Shipment> shipments) {
+    Set<UUID> orderableIds = shipments
         .stream()
+        .flatMap(shipment -> shipment.getLineItems().stream())
         .map(ShipmentLineItem::getOrderableId)
         .collect(Collectors.toSet());
 
@@ -59,10 +79,10 @@ public class ShipmentService {
         .stream()
         .collect(Collectors.toMap(BaseDto::getId, OrderableDto::useVvm));
 
-    ProofOfDelivery proofOfDelivery = ProofOfDelivery.newInstance(saved, useVvm);
-    proofOfDeliveryRepository.save(proofOfDelivery);
-
-    return saved;
+    return shipments
+        .stream()
+        .map(shipment -> ProofOfDelivery.newInstance(shipment, useVvm))
+        .collect(Collectors.toList());
   }
 
 }
@@ -17,11 +17,11 @@ package org.openlmis.fulfillment.service;
 
 import java.util.UUID;
 import org.apache.commons.lang.NullArgumentException;
-import org.openlmis.fulfillment.ShipmentContextRunner;
 import org.openlmis.fulfillment.domain.TransferProperties;
 import org.openlmis.fulfillment.domain.TransferType;
 import org.openlmis.fulfillment.repository.TransferPropertiesRepository;
 import org.openlmis.fulfillment.service.referencedata.FacilityReferenceDataService;
+import org.openlmis.fulfillment.service.shipment.ShipmentPollerEngine;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -35,7 +35,10 @@ public class TransferPropertiesService {
   private FacilityReferenceDataService facilityReferenceDataService;
 
   @Autowired
-  private ShipmentContextRunner shipmentContextRunner;
+  private ShipmentPollerEngine shipmentPollerEngine;
+
+  @Autowired
+  private TransferRoutingTable transferRoutingTable;
 
   /**
    * Retrieves TransferProperties for given facility.
@@ -69,9 +72,9 @@ public class TransferPropertiesService {
     }
 
     TransferProperties persistedSetting = transferPropertiesRepository.save(setting);
-    if (TransferType.SHIPMENT.equals(persistedSetting.getTransferType())) {
-      shipmentContextRunner.reCreateShipmentChannel(persistedSetting);
-    }
+    transferRoutingTable.invalidate();
+    shipmentPollerEngine.refresh(persistedSetting);
+
     return persistedSetting;
   }
 
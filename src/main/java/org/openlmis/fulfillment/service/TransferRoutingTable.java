@@ -0,0 +1,189 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.openlmis.fulfillment.domain.FileTemplate;
+import org.openlmis.fulfillment.domain.TemplateType;
+import org.openlmis.fulfillment.domain.TransferProperties;
+import org.openlmis.fulfillment.domain.TransferType;
+import org.openlmis.fulfillment.repository.FileTemplateRepository;
+import org.openlmis.fulfillment.repository.TransferPropertiesRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps transfer properties and file templates in memory so that they are not queried each time
+ * an order is transferred. The table is loaded at startup and reloaded after a change. Other
+ * service instances are notified about changes by a version number stored in the database.
+ */
+@Component
+public class TransferRoutingTable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransferRoutingTable.class);
+
+  @Autowired
+  private TransferPropertiesRepository transferPropertiesRepository;
+
+  @Autowired
+  private FileTemplateRepository fileTemplateRepository;
+
+  private volatile Routes routes;
+
+  /**
+   * Retrieves transfer properties for the given facility and transfer type. Properties that are
+   * not in the table yet are looked up in the database.
+   */
+  public TransferProperties getTransferProperties(UUID facilityId, TransferType transferType) {
+    TransferProperties properties = getRoutes().getTransferProperties(facilityId, transferType);
+
+    return null == properties
+        ? transferPropertiesRepository.findFirstByFacilityIdAndTransferType(facilityId,
+            transferType)
+        : properties;
+  }
+
+  /**
+   * Retrieves file template with the given type. The returned template is shared so it must not
+   * be modified.
+   */
+  public FileTemplate getFileTemplate(TemplateType templateType) {
+    FileTemplate template = getRoutes().getFileTemplate(templateType);
+
+    return null == template
+        ? fileTemplateRepository.findFirstByTemplateType(templateType)
+        : template;
+  }
+
+  /**
+   * Retrieves version of the table. The version is changed each time transfer properties or a
+   * file template are changed, so it can be used to tag values created from them.
+   */
+  public long getVersion() {
+    return getRoutes().version;
+  }
+
+  /**
+   * Loads the table when the application starts.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    routes = loadRoutes();
+  }
+
+  /**
+   * Reloads the table if transfer properties or file templates have been changed by another
+   * service instance.
+   */
+  @Scheduled(fixedDelayString = "${transfer.routing.refreshRate}")
+  public void refresh() {
+    Routes current = routes;
+
+    if (null != current && current.version != readVersion()) {
+      LOGGER.debug("Transfer routing has been changed, reloading");
+      routes = loadRoutes();
+    }
+  }
+
+  /**
+   * Marks the table as outdated. It should be called each time transfer properties or a file
+   * template are changed. The change is published to other service instances with the current
+   * transaction, and the local table is cleared once again after commit so that old values are
+   * not cached by concurrent requests.
+   */
+  public void invalidate() {
+    transferPropertiesRepository.incrementRoutingVersion();
+    routes = null;
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              routes = null;
+            }
+          });
+    }
+  }
+
+  private Routes getRoutes() {
+    Routes current = routes;
+
+    if (null == current) {
+      current = loadRoutes();
+      routes = current;
+    }
+
+    return current;
+  }
+
+  private Routes loadRoutes() {
+    // version is read first so that a change made during loading triggers another reload
+    Routes loaded = new Routes(readVersion());
+
+    transferPropertiesRepository.findAll().forEach(loaded::add);
+    fileTemplateRepository.findAll().forEach(loaded::add);
+
+    LOGGER.debug("Loaded transfer routing version {}", loaded.version);
+    return loaded;
+  }
+
+  private long readVersion() {
+    Number version = transferPropertiesRepository.getRoutingVersion();
+    return null == version ? 0 : version.longValue();
+  }
+
+  private static final class Routes {
+    private final long version;
+    private final Map<TransferType, Map<UUID, TransferProperties>> transferProperties =
+        new EnumMap<>(TransferType.class);
+    private final Map<TemplateType, FileTemplate> fileTemplates =
+        new EnumMap<>(TemplateType.class);
+
+    Routes(long version) {
+      this.version = version;
+    }
+
+    void add(TransferProperties properties) {
+      transferProperties
+          .computeIfAbsent(properties.getTransferType(), type -> new HashMap<>())
+          .putIfAbsent(properties.getFacilityId(), properties);
+    }
+
+    void add(FileTemplate template) {
+      fileTemplates.putIfAbsent(template.getTemplateType(), template);
+    }
+
+    TransferProperties getTransferProperties(UUID facilityId, TransferType transferType) {
+      Map<UUID, TransferProperties> byFacility = transferProperties.get(transferType);
+      return null == byFacility ? null : byFacility.get(facilityId);
+    }
+
+    FileTemplate getFileTemplate(TemplateType templateType) {
+      return fileTemplates.get(templateType);
+    }
+  }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service.referencedata;
+
+import static java.util.stream.Collectors.toMap;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import org.openlmis.fulfillment.service.ServiceResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local copy of the orderable catalog shared by all shipment file imports. The copy is
+ * revalidated against the reference data service with the ETag of the last response, so the
+ * orderables are transferred and indexed again only when they have changed.
+ */
+@Component
+public class OrderableCatalog {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OrderableCatalog.class);
+
+  private final Object lock = new Object();
+
+  @Autowired
+  private OrderableReferenceDataService orderableReferenceDataService;
+
+  private volatile Orderables orderables = new Orderables(Collections.emptyList());
+  private String etag;
+
+  /**
+   * Returns current orderables. The local copy is revalidated before it is returned.
+   */
+  public Orderables get() {
+    synchronized (lock) {
+      ServiceResponse<List<OrderableDto>> response = orderableReferenceDataService
+          .findAll(etag);
+
+      if (response.isModified()) {
+        orderables = new Orderables(response.getBody());
+        etag = response.getETag();
+        LOGGER.debug("Orderables have been changed, catalog rebuilt with {} orderables",
+            orderables.size());
+      }
+
+      return orderables;
+    }
+  }
+
+  /**
+   * Immutable orderables indexed by id and product code.
+   */
+  public static final class Orderables {
+    private final Map<UUID, OrderableDto> byId;
+    private final Map<String, OrderableDto> byProductCode;
+
+    public Orderables(List<OrderableDto> orderables) {
+      byId = index(orderables, OrderableDto::getId);
+      byProductCode = index(orderables, OrderableDto::getProductCode);
+    }
+
+    public OrderableDto findById(UUID id) {
+      return byId.get(id);
+    }
+
+    public OrderableDto findByProductCode(String productCode) {
+      return byProductCode.get(productCode);
+    }
+
+    public int size() {
+      return byId.size();
+    }
+
+    private static <K> Map<K, OrderableDto> index(List<OrderableDto> orderables,
+        Function<OrderableDto, K> key) {
+      return Collections.unmodifiableMap(orderables
+          .stream()
+          .filter(orderable -> Objects.nonNull(key.apply(orderable)))
+          .collect(toMap(key, Function.identity(), (first, second) -> first)));
+    }
+  }
+}
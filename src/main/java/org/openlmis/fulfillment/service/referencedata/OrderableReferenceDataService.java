@@ -19,6 +19,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import org.openlmis.fulfillment.service.ServiceResponse;
 import org.openlmis.fulfillment.service.request.RequestParameters;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
@@ -58,4 +59,14 @@ public class OrderableReferenceDataService
   public List<OrderableDto> findAll() {
     return getPage(RequestParameters.init()).getContent();
   }
+
+  /**
+   * Finds all orderables if they have changed since the given ETag.
+   *
+   * @param etag ETag of the previously retrieved orderables, can be null.
+   * @return response with orderables, or without body if nothing has changed
+   */
+  public ServiceResponse<List<OrderableDto>> findAll(String etag) {
+    return tryGetPage(RequestParameters.init(), etag);
+  }
 }
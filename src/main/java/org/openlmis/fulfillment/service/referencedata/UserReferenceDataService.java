@@ -80,7 +80,7 @@ public class UserReferenceDataService extends BaseReferenceDataService<UserDto>
   }
 
   public ServiceResponse<List<String>> getPermissionStrings(UUID user, String etag) {
-    return tryFindAll(user + "/permissionStrings", String[].class, etag);
+    return tryFindAll(user + "/permissionStrings", null, String[].class, etag);
   }
 
   /**
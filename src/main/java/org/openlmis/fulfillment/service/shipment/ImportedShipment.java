@@ -0,0 +1,47 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service.shipment;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.openlmis.fulfillment.domain.Shipment;
+import org.openlmis.fulfillment.service.FulfillmentException;
+
+/**
+ * A shipment of a single order read from a shipment file, or the reason why it could not be
+ * created.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ImportedShipment {
+  private final String orderIdentifier;
+  private final Shipment shipment;
+  private final FulfillmentException error;
+
+  static ImportedShipment created(String orderIdentifier, Shipment shipment) {
+    return new ImportedShipment(orderIdentifier, shipment, null);
+  }
+
+  static ImportedShipment failed(String orderIdentifier, FulfillmentException error) {
+    return new ImportedShipment(orderIdentifier, null, error);
+  }
+
+  public boolean isFailed() {
+    return null != error;
+  }
+}
@@ -23,6 +23,7 @@ import java.util.Map;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import org.openlmis.fulfillment.domain.ShipmentLineItem;
+import org.openlmis.fulfillment.service.FulfillmentException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,6 +38,9 @@ public class ImportedShipmentLineItemData {
   @Getter
   private List<Map> rowsWithUnresolvedOrderable = new ArrayList<>();
 
+  @Getter
+  private FulfillmentException error;
+
   /**
    * returns a json representation of the list of rows with unknown products.
    *
@@ -67,4 +71,19 @@ public class ImportedShipmentLineItemData {
   public void addUnresolvedRowData(Map<String, String> row) {
     rowsWithUnresolvedOrderable.add(row);
   }
+
+  /**
+   * Marks the data as invalid. Already added rows are dropped.
+   *
+   * @param error the reason why the data is invalid
+   */
+  public void reject(FulfillmentException error) {
+    this.error = error;
+    lineItems.clear();
+    rowsWithUnresolvedOrderable.clear();
+  }
+
+  public boolean isRejected() {
+    return null != error;
+  }
 }
@@ -0,0 +1,69 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service.shipment;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * Counts durations in fixed buckets. Buckets are cumulative, each of them counts durations that
+ * are shorter than or equal to its bound.
+ */
+final class LatencyHistogram {
+  static final long[] BOUNDS = {100, 500, 1000, 5000, 30000};
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  void record(long millis) {
+    for (int i = 0; i < BOUNDS.length; ++i) {
+      if (millis <= BOUNDS[i]) {
+        buckets.incrementAndGet(i);
+      }
+    }
+
+    count.increment();
+    sum.add(millis);
+    max.accumulate(millis);
+  }
+
+  long getCount() {
+    return count.sum();
+  }
+
+  long getBucket(int index) {
+    return buckets.get(index);
+  }
+
+  void addTo(List<Metric<?>> metrics, String name) {
+    long total = count.sum();
+
+    metrics.add(new Metric<>(name + ".count", total));
+    metrics.add(new Metric<>(name + ".mean", total == 0 ? 0 : sum.sum() / total));
+    metrics.add(new Metric<>(name + ".max", max.get()));
+
+    for (int i = 0; i < BOUNDS.length; ++i) {
+      metrics.add(new Metric<>(name + ".le." + BOUNDS[i], buckets.get(i)));
+    }
+  }
+
+}
@@ -21,10 +21,16 @@ import static org.openlmis.fulfillment.i18n.MessageKeys.ORDER_NOT_FOUND;
 import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_LINE_ITEMS_REQUIRED;
 import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_ORDER_DUPLICATE;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import lombok.NoArgsConstructor;
 import org.apache.commons.csv.CSVRecord;
 import org.openlmis.fulfillment.domain.CreationDetails;
@@ -39,8 +45,6 @@ import org.openlmis.fulfillment.util.DateHelper;
 import org.openlmis.fulfillment.util.FileColumnKeyPath;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -63,37 +67,52 @@ public class ShipmentBuilder {
   private ShipmentLineItemBuilder lineItemBuilder;
 
   /**
-   * Creates a shipment domain object from parsed shipment csv data.
+   * Creates shipment domain objects from parsed shipment csv data, one for each order in the
+   * file. Orders are retrieved with one query and locked until the end of the transaction, in
+   * the order of their ids, so files that contain the same order are imported one after another.
+   * An order that does not exist, that has been shipped already or that has invalid rows is
+   * returned as failed without affecting the other orders. The records are read only once so they
+   * can be streamed from a file.
    */
-  public Shipment build(FileTemplate template, List<CSVRecord> lines) {
-    if (lines.isEmpty()) {
-      throw new FulfillmentException(SHIPMENT_LINE_ITEMS_REQUIRED);
-    }
-
+  public List<ImportedShipment> build(FileTemplate template, Iterable<CSVRecord> records) {
     FileColumn orderColumn = getOrderIdentifierColumn(template);
 
     if (orderColumn == null) {
       throw new FulfillmentException(ERROR_MISSING_REQUIRED_COLUMN, "Order Code/Order ID");
     }
-    //find the order number
-    CSVRecord firstRow = lines.get(0);
-    String orderIdentifier = firstRow.get(orderColumn.getPosition());
-    Order order = (FileColumnKeyPath.ORDER_CODE.equals(orderColumn.getFileColumnKeyPathEnum()))
-        ? orderRepository.findByOrderCode(orderIdentifier) :
-        orderRepository.findOne(UUID.fromString(orderIdentifier));
-
-    if (order == null) {
-      throw new FulfillmentException(ORDER_NOT_FOUND, orderIdentifier);
-    }
 
-    Page<Shipment> shipment = shipmentRepository.findByOrder(order, new PageRequest(0, 100));
+    Map<String, ImportedShipmentLineItemData> lineItems = lineItemBuilder
+        .build(template, records);
 
-    if (shipment.hasContent()) {
-      throw new FulfillmentException(SHIPMENT_ORDER_DUPLICATE, orderIdentifier);
+    if (lineItems.isEmpty()) {
+      throw new FulfillmentException(SHIPMENT_LINE_ITEMS_REQUIRED);
     }
 
-    ImportedShipmentLineItemData result = lineItemBuilder.build(template, lines);
+    Map<String, Order> orders = findOrders(orderColumn, lineItems.keySet());
+    Set<UUID> shippedOrderIds = findShippedOrderIds(orders.values());
+
+    List<ImportedShipment> shipments = new ArrayList<>(lineItems.size());
 
+    lineItems.forEach((orderIdentifier, result) -> {
+      Order order = orders.get(orderIdentifier);
+
+      if (result.isRejected()) {
+        shipments.add(ImportedShipment.failed(orderIdentifier, result.getError()));
+      } else if (order == null) {
+        shipments.add(ImportedShipment.failed(orderIdentifier,
+            new FulfillmentException(ORDER_NOT_FOUND, orderIdentifier)));
+      } else if (shippedOrderIds.contains(order.getId())) {
+        shipments.add(ImportedShipment.failed(orderIdentifier,
+            new FulfillmentException(SHIPMENT_ORDER_DUPLICATE, orderIdentifier)));
+      } else {
+        shipments.add(ImportedShipment.created(orderIdentifier, createShipment(order, result)));
+      }
+    });
+
+    return shipments;
+  }
+
+  private Shipment createShipment(Order order, ImportedShipmentLineItemData result) {
     Map<String, String> extraData = new HashMap<>();
     extraData.put(ROWS_WITH_UNRESOLVED_ORDERABLE, result.getRowsWithUnresolvedOrderableAsString());
     return new Shipment(order,
@@ -101,6 +120,47 @@ public class ShipmentBuilder {
             dateHelper.getCurrentDateTimeWithSystemZone()), null, result.getLineItems(), extraData);
   }
 
+  private Map<String, Order> findOrders(FileColumn orderColumn, Set<String> orderIdentifiers) {
+    if (FileColumnKeyPath.ORDER_CODE.equals(orderColumn.getFileColumnKeyPathEnum())) {
+      return orderRepository
+          .findByOrderCodeInForUpdate(orderIdentifiers)
+          .stream()
+          .collect(Collectors.toMap(Order::getOrderCode, Function.identity()));
+    }
+
+    Map<UUID, String> identifiersById = new HashMap<>();
+
+    for (String orderIdentifier : orderIdentifiers) {
+      try {
+        identifiersById.put(UUID.fromString(orderIdentifier), orderIdentifier);
+      } catch (IllegalArgumentException exp) {
+        // an order with an invalid identifier is reported as not found
+      }
+    }
+
+    Map<String, Order> orders = new HashMap<>();
+
+    if (!identifiersById.isEmpty()) {
+      orderRepository
+          .findByIdInForUpdate(identifiersById.keySet())
+          .forEach(order -> orders.put(identifiersById.get(order.getId()), order));
+    }
+
+    return orders;
+  }
+
+  private Set<UUID> findShippedOrderIds(Collection<Order> orders) {
+    if (orders.isEmpty()) {
+      return Collections.emptySet();
+    }
+
+    return shipmentRepository
+        .findByOrderIn(orders)
+        .stream()
+        .map(shipment -> shipment.getOrder().getId())
+        .collect(Collectors.toSet());
+  }
+
   private FileColumn getOrderIdentifierColumn(FileTemplate template) {
     return template
         .getFileColumns().stream()
@@ -0,0 +1,170 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service.shipment;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.openlmis.fulfillment.domain.ShipmentPollerInstance;
+import org.openlmis.fulfillment.repository.ShipmentChannelLeaseRepository;
+import org.openlmis.fulfillment.repository.ShipmentPollerInstanceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Divides shipment channels between running service instances, so each remote directory is
+ * polled by exactly one instance. Every instance sends heartbeats and assigns each channel to
+ * one of the live instances with rendezvous hashing. An instance polls a channel only while it
+ * holds the channel's lease, which hands a channel over safely when instances join or leave.
+ */
+@Component
+public class ShipmentChannelOwnership {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ShipmentChannelOwnership.class);
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  @Autowired
+  private ShipmentPollerInstanceRepository instanceRepository;
+
+  @Autowired
+  private ShipmentChannelLeaseRepository leaseRepository;
+
+  @Value("${shipment.polling.leaseDuration}")
+  private int leaseDuration;
+
+  private final UUID instanceId = UUID.randomUUID();
+
+  // channel id -> local time until which the lease is surely held
+  private final Map<UUID, Long> ownedUntil = new ConcurrentHashMap<>();
+
+  /**
+   * Checks whether this instance may poll the given channel.
+   */
+  public boolean isOwned(UUID channelId) {
+    Long until = ownedUntil.get(channelId);
+    return null != until && until > System.currentTimeMillis();
+  }
+
+  /**
+   * Sends a heartbeat of this instance, then acquires or renews leases of channels assigned to
+   * it and releases leases of the other channels.
+   *
+   * @param channels ids of all shipment channels.
+   */
+  public synchronized void rebalance(Collection<UUID> channels) {
+    // measured before the leases are renewed, so the local expiry is never too late
+    long until = System.currentTimeMillis() + leaseDuration * 1000L;
+
+    instanceRepository.heartbeat(instanceId.toString());
+    instanceRepository.deleteInactive(leaseDuration);
+    List<UUID> instances = instanceRepository
+        .findAll()
+        .stream()
+        .map(ShipmentPollerInstance::getId)
+        .collect(Collectors.toList());
+
+    Set<UUID> released = new HashSet<>(ownedUntil.keySet());
+    released.removeAll(channels);
+    released.forEach(this::release);
+
+    for (UUID channel : channels) {
+      if (instanceId.equals(getAssignedInstance(channel, instances))) {
+        acquire(channel, until);
+      } else if (ownedUntil.containsKey(channel)) {
+        release(channel);
+      }
+    }
+  }
+
+  /**
+   * Releases all leases of this instance, so other instances can take its channels over without
+   * waiting for the leases to expire.
+   */
+  public synchronized void releaseAll() {
+    new HashSet<>(ownedUntil.keySet()).forEach(this::release);
+    instanceRepository.deleteInstance(instanceId.toString());
+  }
+
+  int getOwnedCount() {
+    return ownedUntil.size();
+  }
+
+  UUID getInstanceId() {
+    return instanceId;
+  }
+
+  static UUID getAssignedInstance(UUID channel, List<UUID> instances) {
+    UUID assigned = null;
+    long highest = Long.MIN_VALUE;
+
+    for (UUID instance : instances) {
+      long weight = HASH_FUNCTION
+          .newHasher()
+          .putLong(instance.getMostSignificantBits())
+          .putLong(instance.getLeastSignificantBits())
+          .putLong(channel.getMostSignificantBits())
+          .putLong(channel.getLeastSignificantBits())
+          .hash()
+          .asLong();
+
+      if (null == assigned || weight > highest) {
+        assigned = instance;
+        highest = weight;
+      }
+    }
+
+    return assigned;
+  }
+
+  private void acquire(UUID channel, long until) {
+    try {
+      if (leaseRepository.acquire(channel.toString(), instanceId.toString(), leaseDuration) > 0) {
+        if (null == ownedUntil.put(channel, until)) {
+          LOGGER.info("Acquired lease of shipment channel {}", channel);
+        }
+      } else {
+        ownedUntil.remove(channel);
+      }
+    } catch (RuntimeException exp) {
+      // the local expiry date stops polling if the lease cannot be renewed
+      LOGGER.warn("Could not acquire lease of shipment channel {}", channel, exp);
+    }
+  }
+
+  private void release(UUID channel) {
+    // stop polling before the lease is given up
+    ownedUntil.remove(channel);
+
+    try {
+      leaseRepository.release(channel.toString(), instanceId.toString());
+      LOGGER.info("Released lease of shipment channel {}", channel);
+    } catch (RuntimeException exp) {
+      LOGGER.warn("Could not release lease of shipment channel {}", channel, exp);
+    }
+  }
+
+}
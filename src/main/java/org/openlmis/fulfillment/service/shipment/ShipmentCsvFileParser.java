@@ -16,20 +16,28 @@
 package org.openlmis.fulfillment.service.shipment;
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
-import java.util.ArrayList;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
-import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import lombok.NoArgsConstructor;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.io.input.BOMInputStream;
 import org.openlmis.fulfillment.domain.FileColumn;
 import org.openlmis.fulfillment.domain.FileTemplate;
+import org.openlmis.fulfillment.domain.TransferCompression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -38,29 +46,54 @@ public class ShipmentCsvFileParser {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ShipmentCsvFileParser.class);
 
+  @Value("${shipment.file.charset}")
+  private Charset charset = StandardCharsets.UTF_8;
+
   /**
-   * Parse CSV shipment files and return List of Object Array.
+   * Parse CSV shipment file. Records are read lazily from the returned stream, one at a time, so
+   * the file is never loaded into memory as a whole. The stream must be closed to release the
+   * file. Files with the .gz extension are decompressed while they are read.
    *
    * @param file csv file
    * @throws IOException Exception.
    */
-  public List<CSVRecord> parse(File file, FileTemplate template)
+  public Stream<CSVRecord> parse(File file, FileTemplate template)
       throws IOException {
     LOGGER.info("Parse shipment file: {}", file.getName());
 
-    try (Reader targetReader = new FileReader(file)) {
+    TransferCompression compression = TransferCompression.fromFileName(file.getName());
+    InputStream stream = new FileInputStream(file);
+
+    try {
+      Reader targetReader = new InputStreamReader(
+          new BOMInputStream(compression.decompress(stream)), charset);
       CSVParser parser = getCsvFormat(template).parse(targetReader);
-      // read data rows
-      List<CSVRecord> lines = new ArrayList<>();
-      for (CSVRecord row : parser.getRecords()) {
-        if (!row.isConsistent()) {
-          throw new IllegalArgumentException(
-              String.format("Shipment record inconsistent: %s", row));
-        }
-        lines.add(row);
-      }
+
+      return StreamSupport
+          .stream(parser.spliterator(), false)
+          .map(this::validate)
+          .onClose(() -> close(file, parser));
+    } catch (IOException | RuntimeException exp) {
+      stream.close();
+      throw exp;
+    }
+  }
+
+  private CSVRecord validate(CSVRecord row) {
+    if (!row.isConsistent()) {
+      throw new IllegalArgumentException(
+          String.format("Shipment record inconsistent: %s", row));
+    }
+
+    return row;
+  }
+
+  private void close(File file, CSVParser parser) {
+    try {
+      parser.close();
       LOGGER.info("Finished parsing shipment file: {}", file.getName());
-      return lines;
+    } catch (IOException exp) {
+      throw new UncheckedIOException(exp);
     }
   }
 
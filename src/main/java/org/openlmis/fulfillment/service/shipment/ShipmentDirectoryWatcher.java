@@ -0,0 +1,143 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service.shipment;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Watches incoming directories of local shipment channels with a single NIO watch service and
+ * notifies listeners when files are created or written. Notifications only wake up channels;
+ * files are still read by their endpoints.
+ */
+@Component
+public class ShipmentDirectoryWatcher {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ShipmentDirectoryWatcher.class);
+
+  // channels that use the same directory share a watch key
+  private final Map<WatchKey, Map<UUID, Runnable>> listeners = new ConcurrentHashMap<>();
+  private final Map<UUID, WatchKey> keys = new ConcurrentHashMap<>();
+
+  private WatchService watchService;
+
+  @PostConstruct
+  void start() throws IOException {
+    watchService = FileSystems.getDefault().newWatchService();
+
+    Thread thread = new Thread(this::watch, "shipment-directory-watcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @PreDestroy
+  void stop() throws IOException {
+    watchService.close();
+  }
+
+  /**
+   * Starts watching the given directory. The listener is called on the watcher thread, so it
+   * should only schedule work.
+   *
+   * @param id        id of the channel.
+   * @param directory directory to watch, must exist.
+   * @param listener  callback called after files in the directory have changed.
+   * @throws IOException if the directory cannot be watched.
+   */
+  public synchronized void register(UUID id, Path directory, Runnable listener)
+      throws IOException {
+    unregister(id);
+
+    WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+    listeners.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(id, listener);
+    keys.put(id, key);
+  }
+
+  /**
+   * Stops watching the directory of the given channel.
+   *
+   * @param id id of the channel.
+   */
+  public synchronized void unregister(UUID id) {
+    WatchKey key = keys.remove(id);
+
+    if (null == key) {
+      return;
+    }
+
+    Map<UUID, Runnable> keyListeners = listeners.get(key);
+    keyListeners.remove(id);
+
+    if (keyListeners.isEmpty()) {
+      listeners.remove(key);
+      key.cancel();
+    }
+  }
+
+  int getWatchedCount() {
+    return keys.size();
+  }
+
+  private void watch() {
+    while (true) {
+      WatchKey key;
+
+      try {
+        key = watchService.take();
+      } catch (InterruptedException exp) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ClosedWatchServiceException exp) {
+        return;
+      }
+
+      // events are coalesced, listeners rescan the whole directory anyway
+      key.pollEvents();
+      key.reset();
+
+      Map<UUID, Runnable> keyListeners = listeners.get(key);
+
+      if (null != keyListeners) {
+        keyListeners.values().forEach(this::notifyListener);
+      }
+    }
+  }
+
+  private void notifyListener(Runnable listener) {
+    try {
+      listener.run();
+    } catch (RuntimeException exp) {
+      LOGGER.error("Could not notify shipment directory listener", exp);
+    }
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service.shipment;
+
+import java.io.File;
+import java.util.UUID;
+import lombok.Getter;
+import org.openlmis.fulfillment.domain.TransferProperties;
+import org.springframework.context.Lifecycle;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+
+/**
+ * A shipment channel of a single supplying facility: the source of incoming shipment files and
+ * the channels used to archive processed files or report the invalid ones. Endpoints are polled
+ * by {@link ShipmentPollerEngine}.
+ */
+@Getter
+public class ShipmentEndpoint {
+  private final UUID id;
+  private final UUID facilityId;
+  private final MessageSource<File> source;
+  private final MessageChannel archiveChannel;
+  private final MessageChannel errorChannel;
+  private final File watchedDirectory;
+
+  ShipmentEndpoint(TransferProperties properties, MessageSource<File> source,
+      MessageChannel archiveChannel, MessageChannel errorChannel) {
+    this(properties, source, archiveChannel, errorChannel, null);
+  }
+
+  ShipmentEndpoint(TransferProperties properties, MessageSource<File> source,
+      MessageChannel archiveChannel, MessageChannel errorChannel, File watchedDirectory) {
+    this.id = properties.getId();
+    this.facilityId = properties.getFacilityId();
+    this.source = source;
+    this.archiveChannel = archiveChannel;
+    this.errorChannel = errorChannel;
+    this.watchedDirectory = watchedDirectory;
+  }
+
+  /**
+   * Checks if changes of incoming files can be watched. Remote endpoints can only be polled.
+   */
+  public boolean isWatchable() {
+    return null != watchedDirectory;
+  }
+
+  /**
+   * Receives next incoming shipment file.
+   *
+   * @return a file message or null if there are no files to process.
+   */
+  public Message<File> receive() {
+    return source.receive();
+  }
+
+  void start() {
+    if (source instanceof Lifecycle) {
+      ((Lifecycle) source).start();
+    }
+  }
+
+  void stop() {
+    if (source instanceof Lifecycle) {
+      ((Lifecycle) source).stop();
+    }
+  }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service.shipment;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openlmis.fulfillment.domain.FtpProtocol;
+import org.openlmis.fulfillment.domain.FtpTransferProperties;
+import org.openlmis.fulfillment.domain.LocalTransferProperties;
+import org.openlmis.fulfillment.domain.TransferProperties;
+import org.openlmis.fulfillment.service.FulfillmentException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.expression.common.LiteralExpression;
+import org.springframework.integration.channel.FixedSubscriberChannel;
+import org.springframework.integration.file.FileReadingMessageSource;
+import org.springframework.integration.file.FileWritingMessageHandler;
+import org.springframework.integration.file.filters.AcceptOnceFileListFilter;
+import org.springframework.integration.file.filters.ChainFileListFilter;
+import org.springframework.integration.file.filters.RegexPatternFileListFilter;
+import org.springframework.integration.file.remote.handler.FileTransferringMessageHandler;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.file.remote.synchronizer.AbstractInboundFileSynchronizingMessageSource;
+import org.springframework.integration.ftp.filters.FtpRegexPatternFileListFilter;
+import org.springframework.integration.ftp.inbound.FtpInboundFileSynchronizer;
+import org.springframework.integration.ftp.inbound.FtpInboundFileSynchronizingMessageSource;
+import org.springframework.integration.ftp.session.DefaultFtpSessionFactory;
+import org.springframework.integration.sftp.filters.SftpRegexPatternFileListFilter;
+import org.springframework.integration.sftp.inbound.SftpInboundFileSynchronizer;
+import org.springframework.integration.sftp.inbound.SftpInboundFileSynchronizingMessageSource;
+import org.springframework.integration.sftp.session.DefaultSftpSessionFactory;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds shipment endpoints for transfer properties. An endpoint consists only of plain Spring
+ * Integration components, no application context is created for it.
+ */
+@Component
+public class ShipmentEndpointFactory {
+
+  private static final String INCOMING = "/incoming";
+  private static final String ERROR = "/error";
+  private static final String ARCHIVE = "/archive";
+
+  private static final String FILE_NAME_PATTERN = ".+\\.csv(\\.gz)?";
+  private static final int MAX_SEND_ATTEMPTS = 10;
+
+  @Autowired
+  private ShipmentArchiveFileNameGenerator fileNameGenerator;
+
+  @Autowired
+  private BeanFactory beanFactory;
+
+  @Value("${shipment.polling.quietPeriod}")
+  private long quietPeriod;
+
+  @Value("${shipment.sftp.knownHosts}")
+  private String knownHosts;
+
+  @Value("${shipment.sftp.allowUnknownKeys}")
+  private boolean allowUnknownKeys;
+
+  /**
+   * Creates a started shipment endpoint for the given transfer properties.
+   *
+   * @param properties shipment transfer properties.
+   * @return ShipmentEndpoint.
+   */
+  public ShipmentEndpoint create(TransferProperties properties) {
+    ShipmentEndpoint endpoint;
+
+    if (properties instanceof FtpTransferProperties) {
+      FtpTransferProperties ftp = (FtpTransferProperties) properties;
+      endpoint = FtpProtocol.SFTP.equals(ftp.getProtocol())
+          ? createSftpEndpoint(ftp)
+          : createFtpEndpoint(ftp);
+    } else if (properties instanceof LocalTransferProperties) {
+      endpoint = createLocalEndpoint((LocalTransferProperties) properties);
+    } else {
+      throw new FulfillmentException("Shipment endpoint could not be created.");
+    }
+
+    endpoint.start();
+    return endpoint;
+  }
+
+  private ShipmentEndpoint createLocalEndpoint(LocalTransferProperties local) {
+    File directory = new File(local.getPath() + INCOMING);
+    // filters are chained, so files that are still being written are skipped without being
+    // marked as accepted and are picked up by one of the next polls
+    ChainFileListFilter<File> filter = new ChainFileListFilter<>();
+    filter.addFilters(new RegexPatternFileListFilter(FILE_NAME_PATTERN), this::filterQuietFiles,
+        new AcceptOnceFileListFilter<>());
+
+    FileReadingMessageSource source = new FileReadingMessageSource();
+    source.setDirectory(directory);
+    source.setFilter(filter);
+    initialize(source);
+
+    return new ShipmentEndpoint(local, source,
+        createLocalChannel(local.getPath() + ARCHIVE),
+        createLocalChannel(local.getPath() + ERROR),
+        directory);
+  }
+
+  private ShipmentEndpoint createFtpEndpoint(FtpTransferProperties ftp) {
+    DefaultFtpSessionFactory sessionFactory = new DefaultFtpSessionFactory();
+    sessionFactory.setHost(ftp.getServerHost());
+    sessionFactory.setPort(ftp.getServerPort());
+    sessionFactory.setUsername(ftp.getUsername());
+    sessionFactory.setPassword(ftp.getPassword());
+
+    FtpInboundFileSynchronizer synchronizer = new FtpInboundFileSynchronizer(sessionFactory);
+    synchronizer.setRemoteDirectory(ftp.getRemoteDirectory() + INCOMING);
+    synchronizer.setFilter(new FtpRegexPatternFileListFilter(FILE_NAME_PATTERN));
+    synchronizer.setDeleteRemoteFiles(true);
+    synchronizer.setPreserveTimestamp(true);
+    initialize(synchronizer);
+
+    FtpInboundFileSynchronizingMessageSource source =
+        new FtpInboundFileSynchronizingMessageSource(synchronizer);
+    return createRemoteEndpoint(ftp, source, sessionFactory);
+  }
+
+  private ShipmentEndpoint createSftpEndpoint(FtpTransferProperties sftp) {
+    DefaultSftpSessionFactory sessionFactory = new DefaultSftpSessionFactory();
+    sessionFactory.setHost(sftp.getServerHost());
+    sessionFactory.setPort(sftp.getServerPort());
+    sessionFactory.setUser(sftp.getUsername());
+    sessionFactory.setPassword(sftp.getPassword());
+
+    if (isNotBlank(knownHosts)) {
+      sessionFactory.setKnownHosts(knownHosts);
+    }
+    // host keys that are not in the known hosts file are rejected unless explicitly allowed
+    sessionFactory.setAllowUnknownKeys(allowUnknownKeys);
+
+    SftpInboundFileSynchronizer synchronizer = new SftpInboundFileSynchronizer(sessionFactory);
+    synchronizer.setRemoteDirectory(sftp.getRemoteDirectory() + INCOMING);
+    synchronizer.setFilter(new SftpRegexPatternFileListFilter(FILE_NAME_PATTERN));
+    synchronizer.setDeleteRemoteFiles(true);
+    initialize(synchronizer);
+
+    SftpInboundFileSynchronizingMessageSource source =
+        new SftpInboundFileSynchronizingMessageSource(synchronizer);
+    return createRemoteEndpoint(sftp, source, sessionFactory);
+  }
+
+  private <F> ShipmentEndpoint createRemoteEndpoint(FtpTransferProperties properties,
+      AbstractInboundFileSynchronizingMessageSource<F> source, SessionFactory<F> sessionFactory) {
+    source.setLocalDirectory(new File(properties.getLocalDirectory() + INCOMING));
+    source.setAutoCreateLocalDirectory(true);
+    // names the filter that keeps track of already synchronized local files
+    source.setBeanName("shipmentEndpoint." + properties.getId());
+    initialize(source);
+
+    return new ShipmentEndpoint(properties, source,
+        createRemoteChannel(sessionFactory, properties.getRemoteDirectory() + ARCHIVE),
+        createRemoteChannel(sessionFactory, properties.getRemoteDirectory() + ERROR));
+  }
+
+  private List<File> filterQuietFiles(File[] files) {
+    long quietSince = System.currentTimeMillis() - quietPeriod;
+    return Stream.of(files)
+        .filter(file -> file.lastModified() <= quietSince)
+        .collect(Collectors.toList());
+  }
+
+  private MessageChannel createLocalChannel(String directory) {
+    FileWritingMessageHandler handler = new FileWritingMessageHandler(new File(directory));
+    handler.setFileNameGenerator(fileNameGenerator);
+    handler.setDeleteSourceFiles(true);
+    handler.setExpectReply(false);
+    initialize(handler);
+
+    return createChannel(handler);
+  }
+
+  private <F> MessageChannel createRemoteChannel(SessionFactory<F> sessionFactory,
+      String directory) {
+    FileTransferringMessageHandler<F> handler = new FileTransferringMessageHandler<>(
+        sessionFactory);
+    handler.setRemoteDirectoryExpression(new LiteralExpression(directory));
+    handler.setAutoCreateDirectory(true);
+    handler.setFileNameGenerator(fileNameGenerator);
+    initialize(handler);
+
+    return createChannel(handler);
+  }
+
+  private MessageChannel createChannel(MessageHandler handler) {
+    RetryTemplate retryTemplate = new RetryTemplate();
+    retryTemplate.setRetryPolicy(new SimpleRetryPolicy(MAX_SEND_ATTEMPTS));
+
+    return new FixedSubscriberChannel(message -> retryTemplate.execute(context -> {
+      handler.handleMessage(message);
+      return null;
+    }));
+  }
+
+  private void initialize(Object component) {
+    try {
+      if (component instanceof BeanFactoryAware) {
+        ((BeanFactoryAware) component).setBeanFactory(beanFactory);
+      }
+      if (component instanceof InitializingBean) {
+        ((InitializingBean) component).afterPropertiesSet();
+      }
+    } catch (Exception exp) {
+      throw new FulfillmentException(exp, "Shipment endpoint could not be created.");
+    }
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service.shipment;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openlmis.fulfillment.repository.ShipmentFileReceiptRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps receipts of imported shipment files, identified by a SHA-256 checksum and size of their
+ * content, so files that are delivered again are skipped before they are parsed.
+ */
+@Component
+public class ShipmentFileLedger {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ShipmentFileLedger.class);
+
+  @Autowired
+  private ShipmentFileReceiptRepository receiptRepository;
+
+  @Value("${shipment.file.ledgerRetention}")
+  private int retentionDays;
+
+  private final AtomicLong skippedCount = new AtomicLong();
+
+  /**
+   * Calculates checksum of the file content.
+   *
+   * @param file a shipment file.
+   * @return hex encoded SHA-256 checksum.
+   */
+  public String getChecksum(File file) throws IOException {
+    return Files.asByteSource(file).hash(Hashing.sha256()).toString();
+  }
+
+  /**
+   * Checks if a file with the same content has already been imported. Duplicates are counted.
+   *
+   * @param file     a shipment file.
+   * @param checksum checksum of the file.
+   * @return true if the file should be skipped.
+   */
+  public boolean isDuplicate(File file, String checksum) {
+    boolean duplicate = receiptRepository.existsByChecksumAndFileSize(checksum, file.length());
+
+    if (duplicate) {
+      skippedCount.incrementAndGet();
+    }
+
+    return duplicate;
+  }
+
+  /**
+   * Records that the file has been imported. Should be called in the transaction that saves
+   * shipments from the file.
+   *
+   * @param file      an imported shipment file.
+   * @param checksum  checksum of the file.
+   * @param channelId id of the channel the file was received from.
+   */
+  public void record(File file, String checksum, UUID channelId) {
+    receiptRepository.record(UUID.randomUUID().toString(), checksum, file.length(),
+        file.getName(), channelId.toString());
+  }
+
+  /**
+   * Removes receipts that are older than the retention period.
+   */
+  @Scheduled(fixedDelayString = "${shipment.file.ledgerCleanupRate}")
+  public void removeExpiredReceipts() {
+    try {
+      int removed = receiptRepository.deleteOlderThan(retentionDays);
+      LOGGER.debug("Removed {} expired shipment file receipts", removed);
+    } catch (RuntimeException exp) {
+      LOGGER.warn("Could not remove expired shipment file receipts", exp);
+    }
+  }
+
+  long getSkippedCount() {
+    return skippedCount.get();
+  }
+
+}
@@ -17,7 +17,6 @@ package org.openlmis.fulfillment.service.shipment;
 
 import static java.lang.Long.parseLong;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
 import static org.apache.commons.lang.StringUtils.isEmpty;
 import static org.apache.commons.lang.StringUtils.isNumeric;
 import static org.openlmis.fulfillment.util.FileColumnKeyPath.ALL_REQUIRED_COLUMN_PATHS;
@@ -27,16 +26,19 @@ import static org.openlmis.fulfillment.util.FileColumnKeyPath.PRODUCT_CODE;
 import static org.openlmis.fulfillment.util.FileColumnKeyPath.QUANTITY_SHIPPED_PATHS;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 import org.apache.commons.csv.CSVRecord;
 import org.openlmis.fulfillment.domain.FileColumn;
 import org.openlmis.fulfillment.domain.FileTemplate;
 import org.openlmis.fulfillment.domain.ShipmentLineItem;
 import org.openlmis.fulfillment.service.FulfillmentException;
+import org.openlmis.fulfillment.service.referencedata.OrderableCatalog;
+import org.openlmis.fulfillment.service.referencedata.OrderableCatalog.Orderables;
 import org.openlmis.fulfillment.service.referencedata.OrderableDto;
-import org.openlmis.fulfillment.service.referencedata.OrderableReferenceDataService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -46,16 +48,18 @@ public class ShipmentLineItemBuilder {
   private static final String LINE_ITEM = "lineItem";
 
   @Autowired
-  private OrderableReferenceDataService orderableService;
+  private OrderableCatalog orderableCatalog;
 
   /**
-   * Builds shipment line item objects from parsed CSV data.
+   * Builds shipment line item objects from parsed CSV data. Rows are grouped by the order they
+   * belong to. An invalid row rejects only the line items of its order.
    *
    * @param template file template used for parsing
-   * @param lines data read from the csv.
-   * @return List of ShipmentLineItems
+   * @param lines data read from the csv, it is iterated only once.
+   * @return line items by order identifier, in the order they appear in the file
    */
-  public ImportedShipmentLineItemData build(FileTemplate template, List<CSVRecord> lines) {
+  public Map<String, ImportedShipmentLineItemData> build(FileTemplate template,
+      Iterable<CSVRecord> lines) {
     // find required columns.
     FileColumn orderableColumn = template.findColumn(ORDERABLE_COLUMN_PATHS).orElse(null);
     FileColumn orderColumn = template.findColumn(ORDER_COLUMN_PATHS).orElse(null);
@@ -66,13 +70,13 @@ public class ShipmentLineItemBuilder {
           "Required shipment template columns not found.");
     }
 
-    ImportedShipmentLineItemData result = new ImportedShipmentLineItemData();
+    Map<String, ImportedShipmentLineItemData> result = new LinkedHashMap<>();
     // Initialize and cache variables that would be used repeatedly for each row.
-    List<OrderableDto> orderables = orderableService.findAll();
-    Map<String, OrderableDto> orderableDtoMap = orderables
-        .stream()
-        .collect(toMap(orderable -> (PRODUCT_CODE.equals(orderableColumn.getFileColumnKeyPathEnum())
-            ? orderable.getProductCode() : orderable.getId().toString()), orderable -> orderable));
+    Orderables orderables = orderableCatalog.get();
+    Function<String, OrderableDto> orderableFinder =
+        PRODUCT_CODE.equals(orderableColumn.getFileColumnKeyPathEnum())
+            ? orderables::findByProductCode
+            : identifier -> findById(orderables, identifier);
 
     List<FileColumn> extraDataFields = template.getFileColumns()
         .stream()
@@ -81,37 +85,38 @@ public class ShipmentLineItemBuilder {
             && LINE_ITEM.equals(column.getNested()))
         .collect(toList());
 
-    // read the first order identifier to check subsequent order identifiers against it.
-    String orderIdentifier = lines.get(0).get(orderColumn.getPosition());
-
     for (CSVRecord row : lines) {
-      validateOrderIdentifier(orderColumn, orderIdentifier, row);
+      String orderIdentifier = row.get(orderColumn.getPosition());
+      ImportedShipmentLineItemData data = result
+          .computeIfAbsent(orderIdentifier, key -> new ImportedShipmentLineItemData());
 
-      UUID orderableId = extractOrderableId(orderableColumn, row, orderableDtoMap);
+      if (data.isRejected()) {
+        continue;
+      }
+
+      UUID orderableId = extractOrderableId(orderableColumn, row, orderableFinder);
       if (orderableId == null) {
-        result.addUnresolvedRowData(row.toMap());
+        data.addUnresolvedRowData(row.toMap());
         continue;
       }
       String quantityShippedString = row.get(quantityShippedColumn.getPosition());
-      validateOrderableAndQuantity(orderableId, quantityShippedString);
+
+      try {
+        validateOrderableAndQuantity(orderableId, quantityShippedString);
+      } catch (FulfillmentException exp) {
+        data.reject(exp);
+        continue;
+      }
 
       Long quantityShipped = parseLong(quantityShippedString);
       Map<String, String> extraData = extractExtraData(extraDataFields, row);
 
       ShipmentLineItem lineItem = new ShipmentLineItem(orderableId, quantityShipped, extraData);
-      result.addLineItem(lineItem);
+      data.addLineItem(lineItem);
     }
     return result;
   }
 
-  private void validateOrderIdentifier(FileColumn orderColumn, String orderIdentifier,
-      CSVRecord row) {
-    String orderIdForRow = row.get(orderColumn.getPosition());
-    if (!orderIdentifier.equals(orderIdForRow)) {
-      throw new FulfillmentException("Shipment file contains inconsistent order numbers.");
-    }
-  }
-
   private void validateOrderableAndQuantity(UUID orderableId, String quantityShippedString) {
     if (orderableId == null) {
       throw new FulfillmentException("Orderable not found for line Item.");
@@ -127,12 +132,20 @@ public class ShipmentLineItemBuilder {
   }
 
   private UUID extractOrderableId(FileColumn orderableColumn, CSVRecord row,
-      Map<String, OrderableDto> orderableDtoMap) {
+      Function<String, OrderableDto> orderableFinder) {
     String orderableIdentifier = row.get(orderableColumn.getPosition());
-    OrderableDto orderableDto = orderableDtoMap.get(orderableIdentifier);
+    OrderableDto orderableDto = orderableFinder.apply(orderableIdentifier);
     return (orderableDto != null) ? orderableDto.getId() : null;
   }
 
+  private OrderableDto findById(Orderables orderables, String identifier) {
+    try {
+      return orderables.findById(UUID.fromString(identifier));
+    } catch (IllegalArgumentException ex) {
+      return null;
+    }
+  }
+
   private Map<String, String> extractExtraData(List<FileColumn> extraDataFields, CSVRecord row) {
     Map<String, String> extraData = new HashMap<>();
     if (!extraDataFields.isEmpty()) {
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.util.List;
+import java.util.function.Consumer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
@@ -43,6 +44,23 @@ public class ShipmentMessageErrorHandler {
    */
   public List<Message<File>> extractLogMessages(File file, RuntimeException exception)
       throws IOException {
+    return extractLogMessages(file, writer -> writeException(writer, exception));
+  }
+
+  /**
+   * Given a shipment file and orders from it that could not be imported, this method returns two
+   * messages that should be sent to the error channel.
+   *
+   * @param file shipment file.
+   * @param failed orders that could not be imported
+   */
+  public List<Message<File>> extractLogMessages(File file, List<ImportedShipment> failed)
+      throws IOException {
+    return extractLogMessages(file, writer -> writeFailedOrders(writer, failed));
+  }
+
+  private List<Message<File>> extractLogMessages(File file, Consumer<PrintWriter> log)
+      throws IOException {
     String prefix = fileNameGenerator.generatePrefix();
     String fileName = prefix + file.getName();
 
@@ -52,22 +70,48 @@ public class ShipmentMessageErrorHandler {
 
     Message<File> payload = MessageBuilder.withPayload(originalPayload).build();
 
-    File errorLogFile = writeExceptionToFile(exception, file
-        .getParentFile().getPath().concat(File.separator).concat(fileName));
+    File errorLogFile = writeLogFile(file
+        .getParentFile().getPath().concat(File.separator).concat(fileName), log);
     Message<File> errorLog = MessageBuilder.withPayload(errorLogFile).build();
     return asList(payload, errorLog);
   }
 
-  private File writeExceptionToFile(RuntimeException exception, String fileName)
+  /**
+   * Given a shipment file that has been imported partially, this method returns a message with a
+   * log of orders that could not be imported. The file itself is not moved.
+   *
+   * @param file shipment file.
+   * @param failed orders that could not be imported
+   */
+  public Message<File> extractOrderLogMessage(File file, List<ImportedShipment> failed)
+      throws IOException {
+    String fileName = fileNameGenerator.generatePrefix() + file.getName();
+    File errorLogFile = writeLogFile(file.getParentFile().getPath().concat(File.separator)
+        .concat(fileName), writer -> writeFailedOrders(writer, failed));
+
+    return MessageBuilder.withPayload(errorLogFile).build();
+  }
+
+  private File writeLogFile(String fileName, Consumer<PrintWriter> log)
       throws FileNotFoundException {
     File errorLogFile = new File(fileName + ".log");
     PrintWriter writer = new PrintWriter(errorLogFile);
-    writer.println(exception.getMessage());
-    writer.println("\n");
-    exception.printStackTrace(writer);
+    log.accept(writer);
     writer.flush();
     writer.close();
     return errorLogFile;
   }
 
+  private void writeException(PrintWriter writer, RuntimeException exception) {
+    writer.println(exception.getMessage());
+    writer.println("\n");
+    exception.printStackTrace(writer);
+  }
+
+  private void writeFailedOrders(PrintWriter writer, List<ImportedShipment> failed) {
+    for (ImportedShipment shipment : failed) {
+      writer.println(shipment.getOrderIdentifier() + ": " + shipment.getError().getMessage());
+    }
+  }
+
 }
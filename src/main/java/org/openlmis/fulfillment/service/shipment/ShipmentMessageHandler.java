@@ -17,15 +17,22 @@ package org.openlmis.fulfillment.service.shipment;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.transaction.Transactional;
 import lombok.NoArgsConstructor;
 import org.apache.commons.csv.CSVRecord;
 import org.openlmis.fulfillment.domain.FileTemplate;
-import org.openlmis.fulfillment.domain.Shipment;
 import org.openlmis.fulfillment.domain.TemplateType;
 import org.openlmis.fulfillment.service.FileTemplateService;
+import org.openlmis.fulfillment.service.ShipmentFileExecutor;
 import org.openlmis.fulfillment.service.ShipmentService;
+import org.openlmis.fulfillment.service.shipment.ShipmentPipelineMetrics.ChannelStats;
+import org.openlmis.fulfillment.service.shipment.ShipmentPipelineMetrics.ErrorCategory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -59,34 +66,172 @@ public class ShipmentMessageHandler {
   @Autowired
   private ShipmentMessageErrorHandler errorHandler;
 
+  @Autowired
+  private ShipmentFileExecutor shipmentFileExecutor;
+
+  @Autowired
+  private ShipmentFileLedger fileLedger;
+
+  @Autowired
+  private ShipmentPipelineMetrics pipelineMetrics;
+
+  /**
+   * Checks if another file can be received from the given endpoint. Each channel can have only
+   * a limited number of files waiting for the shared worker pool.
+   *
+   * @param endpoint the endpoint that is going to be polled.
+   */
+  public boolean canReceive(ShipmentEndpoint endpoint) {
+    return shipmentFileExecutor.hasCapacity(endpoint.getId().toString());
+  }
+
   /**
-   * A message handler endpoint that processes incoming shipment files.
+   * A message handler endpoint that receives incoming shipment files. Files are passed to the
+   * shared worker pool and processed concurrently. Files can contain many orders, so two files
+   * could both contain the same order; their orders are locked while a file is imported, see
+   * {@link ShipmentBuilder}.
    *
    * @param message a file message.
+   * @param endpoint the endpoint the file was received from.
+   */
+  public void receive(Message<File> message, ShipmentEndpoint endpoint) {
+    ChannelStats stats = pipelineMetrics.getChannel(endpoint);
+    stats.fileReceived(message);
+
+    try {
+      shipmentFileExecutor.execute(endpoint.getId().toString(), () -> {
+        try {
+          // called through the context to run the processing in a transaction
+          context.getBean(ShipmentMessageHandler.class).process(message, endpoint);
+        } catch (IOException exp) {
+          throw new UncheckedIOException(exp);
+        } finally {
+          stats.fileCompleted(message);
+        }
+      });
+    } catch (RuntimeException exp) {
+      stats.fileCompleted(message);
+      throw exp;
+    }
+  }
+
+  /**
+   * Processes incoming shipment file. Files with the same content as an already imported file
+   * are archived without being parsed.
+   *
+   * @param message a file message.
+   * @param endpoint the endpoint the file was received from.
    */
   @Transactional
-  public void process(Message<File> message) throws IOException {
+  public void process(Message<File> message, ShipmentEndpoint endpoint) throws IOException {
     FileTemplate template = templateService.getFileTemplate(TemplateType.SHIPMENT);
     LOGGER.info("A shipment file received. {}", message.getHeaders().getId());
     File file = message.getPayload();
+    ChannelStats stats = pipelineMetrics.getChannel(endpoint);
+    String checksum = fileLedger.getChecksum(file);
+
+    if (fileLedger.isDuplicate(file, checksum)) {
+      LOGGER.info("Shipment file {} has already been imported, skipping", file.getName());
+      stats.fileSkipped();
+      archiveFile(message, endpoint.getArchiveChannel());
+      return;
+    }
+
     try {
-      // parse file
-      List<CSVRecord> records = shipmentParser.parse(file, template);
-      Shipment shipment = shipmentBuilder.build(template, records);
-      shipmentService.save(shipment);
-      archiveFile(message, "outboundShipmentFileArchiveChannel");
+      List<ImportedShipment> shipments;
+      long start = System.nanoTime();
+
+      // parse file, records are read one by one while the shipments are built
+      try (Stream<CSVRecord> records = shipmentParser.parse(file, template)) {
+        TimedIterator<CSVRecord> iterator = new TimedIterator<>(records.iterator(),
+            System.nanoTime() - start);
+        shipments = shipmentBuilder.build(template, () -> iterator);
+
+        stats.fileParsed(iterator.getCount(), iterator.getNanos());
+        stats.shipmentsBuilt(System.nanoTime() - start - iterator.getNanos());
+      }
+
+      Map<Boolean, List<ImportedShipment>> byFailed = shipments
+          .stream()
+          .collect(Collectors.partitioningBy(ImportedShipment::isFailed));
+      List<ImportedShipment> failed = byFailed.get(true);
+
+      if (byFailed.get(false).isEmpty()) {
+        stats.error(ErrorCategory.ALL_ORDERS);
+        errorHandler.extractLogMessages(file, failed)
+            .forEach(m -> archiveFile(m, endpoint.getErrorChannel()));
+        return;
+      }
+
+      long saveStart = System.nanoTime();
+      shipmentService.saveAll(byFailed.get(false)
+          .stream()
+          .map(ImportedShipment::getShipment)
+          .collect(Collectors.toList()));
+      fileLedger.record(file, checksum, endpoint.getId());
+      stats.shipmentsSaved(System.nanoTime() - saveStart);
+
+      if (!failed.isEmpty()) {
+        stats.error(ErrorCategory.SOME_ORDERS);
+        LOGGER.warn("{} of {} orders from shipment file {} could not be imported",
+            failed.size(), shipments.size(), file.getName());
+        archiveFile(errorHandler.extractOrderLogMessage(file, failed),
+            endpoint.getErrorChannel());
+      }
+
+      archiveFile(message, endpoint.getArchiveChannel());
     } catch (RuntimeException exception) {
+      stats.error(ErrorCategory.FILE);
       List<Message<File>> messages = errorHandler.extractLogMessages(file, exception);
-      messages.forEach(m -> archiveFile(m, "errorChannel"));
+      messages.forEach(m -> archiveFile(m, endpoint.getErrorChannel()));
     }
   }
 
-  private void archiveFile(Message<File> message, String archiveFtpChannel) {
-    MessageChannel archiveChannel = (MessageChannel) context.getBean(archiveFtpChannel);
+  private void archiveFile(Message<File> message, MessageChannel archiveChannel) {
     Message<File> archiveMessage = MessageBuilder
         .withPayload(message.getPayload()).build();
     archiveChannel.send(archiveMessage);
   }
 
+  /**
+   * Counts CSV records and the time spent reading them, including the time it took to open
+   * the file.
+   */
+  private static final class TimedIterator<T> implements Iterator<T> {
+    private final Iterator<T> iterator;
+    private long nanos;
+    private long count;
+
+    TimedIterator(Iterator<T> iterator, long openNanos) {
+      this.iterator = iterator;
+      this.nanos = openNanos;
+    }
+
+    @Override
+    public boolean hasNext() {
+      long readStart = System.nanoTime();
+      boolean hasNext = iterator.hasNext();
+      nanos += System.nanoTime() - readStart;
+      return hasNext;
+    }
+
+    @Override
+    public T next() {
+      long readStart = System.nanoTime();
+      T next = iterator.next();
+      nanos += System.nanoTime() - readStart;
+      ++count;
+      return next;
+    }
+
+    long getNanos() {
+      return nanos;
+    }
+
+    long getCount() {
+      return count;
+    }
+  }
+
 
 }
@@ -0,0 +1,171 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service.shipment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes statistics of shipment files processed by each shipment channel through the metrics
+ * endpoint. Metric names contain the id of the supplying facility the channel belongs to, for
+ * example {@code fulfillment.shipments.pipeline.<facilityId>.files.received}.
+ */
+@Component
+public class ShipmentPipelineMetrics implements PublicMetrics {
+  static final String PREFIX = "fulfillment.shipments.pipeline.";
+
+  enum ErrorCategory {
+    // the file could not be read, parsed or saved
+    FILE("file"),
+    // none of the orders from the file could be imported
+    ALL_ORDERS("allOrders"),
+    // some of the orders from the file could not be imported
+    SOME_ORDERS("someOrders");
+
+    private final String metricName;
+
+    ErrorCategory(String metricName) {
+      this.metricName = metricName;
+    }
+  }
+
+  private final Map<UUID, ChannelStats> channels = new ConcurrentHashMap<>();
+
+  /**
+   * Returns statistics of the given channel. Statistics are created when the first file of the
+   * channel is received.
+   */
+  ChannelStats getChannel(ShipmentEndpoint endpoint) {
+    return channels.computeIfAbsent(endpoint.getId(),
+        id -> new ChannelStats(endpoint.getFacilityId()));
+  }
+
+  void remove(UUID channelId) {
+    channels.remove(channelId);
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    long now = System.currentTimeMillis();
+
+    for (ChannelStats stats : channels.values()) {
+      String name = PREFIX + stats.facilityId;
+
+      metrics.add(new Metric<>(name + ".files.received", stats.received.sum()));
+      metrics.add(new Metric<>(name + ".files.skipped", stats.skipped.sum()));
+      metrics.add(new Metric<>(name + ".rows.parsed", stats.rows.sum()));
+      metrics.add(new Metric<>(name + ".backlog", stats.pending.size()));
+      metrics.add(new Metric<>(name + ".backlog.oldestAge", stats.getOldestAge(now)));
+      stats.parseTime.addTo(metrics, name + ".parse.time");
+      stats.buildTime.addTo(metrics, name + ".build.time");
+      stats.saveTime.addTo(metrics, name + ".save.time");
+
+      stats.errors.forEach((category, count) -> metrics
+          .add(new Metric<>(name + ".errors." + category.metricName, count.sum())));
+    }
+
+    return metrics;
+  }
+
+  /**
+   * Statistics of a single shipment channel.
+   */
+  static final class ChannelStats {
+    private final UUID facilityId;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LatencyHistogram parseTime = new LatencyHistogram();
+    private final LatencyHistogram buildTime = new LatencyHistogram();
+    private final LatencyHistogram saveTime = new LatencyHistogram();
+    private final Map<ErrorCategory, LongAdder> errors = new EnumMap<>(ErrorCategory.class);
+    // files that wait for processing, by message id, with the time they were last modified
+    private final Map<UUID, Long> pending = new ConcurrentHashMap<>();
+
+    ChannelStats(UUID facilityId) {
+      this.facilityId = facilityId;
+
+      for (ErrorCategory category : ErrorCategory.values()) {
+        errors.put(category, new LongAdder());
+      }
+    }
+
+    void fileReceived(Message<File> message) {
+      received.increment();
+      pending.put(message.getHeaders().getId(), message.getPayload().lastModified());
+    }
+
+    void fileCompleted(Message<File> message) {
+      pending.remove(message.getHeaders().getId());
+    }
+
+    void fileSkipped() {
+      skipped.increment();
+    }
+
+    void fileParsed(long rowCount, long nanos) {
+      rows.add(rowCount);
+      parseTime.record(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    void shipmentsBuilt(long nanos) {
+      buildTime.record(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    void shipmentsSaved(long nanos) {
+      saveTime.record(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    void error(ErrorCategory category) {
+      errors.get(category).increment();
+    }
+
+    long getReceivedCount() {
+      return received.sum();
+    }
+
+    long getErrorCount(ErrorCategory category) {
+      return errors.get(category).sum();
+    }
+
+    int getBacklog() {
+      return pending.size();
+    }
+
+    long getOldestAge(long now) {
+      return pending.values()
+          .stream()
+          .mapToLong(lastModified -> Math.max(0, now - lastModified))
+          .max()
+          .orElse(0);
+    }
+  }
+
+}
@@ -0,0 +1,451 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service.shipment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.openlmis.fulfillment.domain.TransferProperties;
+import org.openlmis.fulfillment.domain.TransferType;
+import org.openlmis.fulfillment.repository.TransferPropertiesRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Polls shipment endpoints of all supplying facilities on a shared scheduler. Endpoints are
+ * created at startup and added, replaced or removed when shipment transfer properties change.
+ * Changes made through other service instances are picked up when the transfer routing version
+ * changes. When many service instances are running, each endpoint is polled only by the instance
+ * that owns it, see {@link ShipmentChannelOwnership}.
+ *
+ * <p>Every endpoint schedules its next poll after the previous one ends. An endpoint with a
+ * backlog is polled again right away and an idle remote endpoint is polled less and less often.
+ * An endpoint whose files are still waiting for the worker pool is checked again after the quiet
+ * period, without receiving new files until some of them are processed.
+ * Local directories are watched for changes and scanned periodically only to reconcile changes
+ * that were missed by the watcher.
+ */
+@Order(30)
+@Component
+public class ShipmentPollerEngine implements CommandLineRunner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ShipmentPollerEngine.class);
+
+  static final int MAX_MESSAGES_PER_POLL = 10;
+
+  @Autowired
+  private TransferPropertiesRepository transferPropertiesRepository;
+
+  @Autowired
+  private ShipmentEndpointFactory endpointFactory;
+
+  @Autowired
+  private ShipmentMessageHandler messageHandler;
+
+  @Autowired
+  private ShipmentChannelOwnership channelOwnership;
+
+  @Autowired
+  private ShipmentDirectoryWatcher directoryWatcher;
+
+  @Autowired
+  private ShipmentPipelineMetrics pipelineMetrics;
+
+  @Value("${shipment.polling.rate}")
+  private long pollingRate;
+
+  @Value("${shipment.polling.maxIdleRate}")
+  private long maxIdleRate;
+
+  @Value("${shipment.polling.reconciliationRate}")
+  private long reconciliationRate;
+
+  @Value("${shipment.polling.quietPeriod}")
+  private long quietPeriod;
+
+  @Value("${shipment.polling.poolSize}")
+  private int poolSize;
+
+  @Value("${shipment.polling.leaseRefreshRate}")
+  private long leaseRefreshRate;
+
+  private final Map<UUID, Registration> registrations = new ConcurrentHashMap<>();
+
+  private final AtomicLong createdCount = new AtomicLong();
+  private final AtomicLong creationTime = new AtomicLong();
+
+  private volatile long startupTime;
+  private volatile long routingVersion;
+
+  private ThreadPoolTaskScheduler scheduler;
+
+  // leases are renewed on a separate thread, so slow polls or other scheduled tasks of the
+  // service can't delay the renewal past the lease duration
+  private ThreadPoolTaskScheduler leaseScheduler;
+
+  @PostConstruct
+  void start() {
+    scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(poolSize);
+    scheduler.setThreadNamePrefix("shipment-polling-");
+    scheduler.initialize();
+
+    leaseScheduler = new ThreadPoolTaskScheduler();
+    leaseScheduler.setThreadNamePrefix("shipment-leases-");
+    leaseScheduler.initialize();
+  }
+
+  @PreDestroy
+  void stop() {
+    leaseScheduler.shutdown();
+    registrations.keySet().forEach(this::remove);
+    scheduler.shutdown();
+
+    try {
+      channelOwnership.releaseAll();
+    } catch (RuntimeException exp) {
+      LOGGER.warn("Could not release shipment channel leases", exp);
+    }
+  }
+
+  /**
+   * Creates endpoints for all shipment transfer properties. An endpoint that cannot be created
+   * does not prevent the others from being polled.
+   */
+  @Override
+  public void run(String... args) {
+    final long start = System.currentTimeMillis();
+    routingVersion = readRoutingVersion();
+    List<TransferProperties> propertiesList = transferPropertiesRepository
+        .findByTransferType(TransferType.SHIPMENT);
+
+    for (TransferProperties properties : propertiesList) {
+      try {
+        refresh(properties);
+      } catch (RuntimeException exp) {
+        LOGGER.error("Could not create shipment endpoint for transfer properties {}",
+            properties.getId(), exp);
+      }
+    }
+
+    rebalance();
+
+    startupTime = System.currentTimeMillis() - start;
+    leaseScheduler.scheduleWithFixedDelay(this::rebalance,
+        new Date(System.currentTimeMillis() + leaseRefreshRate), leaseRefreshRate);
+    LOGGER.info("Started {} shipment endpoints in {} ms", registrations.size(), startupTime);
+  }
+
+  /**
+   * Applies changes of shipment transfer properties made by other instances and renews ownership
+   * of shipment channels. Channels are handed over to other instances when instances join or
+   * leave. It is run periodically on a dedicated thread after the endpoints have been created.
+   */
+  public void rebalance() {
+    try {
+      reload();
+    } catch (RuntimeException exp) {
+      LOGGER.warn("Could not reload shipment transfer properties", exp);
+    }
+
+    try {
+      channelOwnership.rebalance(new HashSet<>(registrations.keySet()));
+    } catch (RuntimeException exp) {
+      LOGGER.warn("Could not renew ownership of shipment channels", exp);
+    }
+  }
+
+  /**
+   * Reloads shipment transfer properties if the transfer routing version has changed since they
+   * were loaded. Endpoints of new properties are added, endpoints of changed properties are
+   * replaced and endpoints of removed properties are stopped.
+   */
+  synchronized void reload() {
+    long version = readRoutingVersion();
+
+    if (version == routingVersion) {
+      return;
+    }
+
+    Map<UUID, TransferProperties> current = transferPropertiesRepository
+        .findByTransferType(TransferType.SHIPMENT)
+        .stream()
+        .collect(Collectors.toMap(TransferProperties::getId, Function.identity()));
+
+    new HashSet<>(registrations.keySet())
+        .stream()
+        .filter(id -> !current.containsKey(id))
+        .forEach(this::remove);
+
+    for (TransferProperties properties : current.values()) {
+      Registration registration = registrations.get(properties.getId());
+
+      if (null == registration
+          || !EqualsBuilder.reflectionEquals(registration.properties, properties)) {
+        try {
+          refresh(properties);
+        } catch (RuntimeException exp) {
+          LOGGER.error("Could not create shipment endpoint for transfer properties {}",
+              properties.getId(), exp);
+        }
+      }
+    }
+
+    routingVersion = version;
+    LOGGER.debug("Reloaded shipment transfer properties, routing version {}", version);
+  }
+
+  /**
+   * Adds or replaces the endpoint of the given transfer properties. If the properties are not
+   * used for shipments anymore, their endpoint is removed.
+   *
+   * @param properties transfer properties that were created or updated.
+   */
+  public synchronized void refresh(TransferProperties properties) {
+    remove(properties.getId());
+
+    if (TransferType.SHIPMENT.equals(properties.getTransferType())) {
+      add(properties);
+    }
+  }
+
+  /**
+   * Stops polling the endpoint of the given transfer properties.
+   *
+   * @param id id of transfer properties that were removed.
+   */
+  public synchronized void remove(UUID id) {
+    Registration registration = registrations.remove(id);
+
+    if (null != registration) {
+      registration.cancel();
+      directoryWatcher.unregister(id);
+      pipelineMetrics.remove(id);
+      registration.endpoint.stop();
+      LOGGER.debug("Removed shipment endpoint {}", id);
+    }
+  }
+
+  int getEndpointCount() {
+    return registrations.size();
+  }
+
+  int getPoolSize() {
+    return poolSize;
+  }
+
+  long getStartupTime() {
+    return startupTime;
+  }
+
+  long getAverageCreationTime() {
+    long count = createdCount.get();
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(creationTime.get() / count);
+  }
+
+  int getWatchedCount() {
+    return (int) registrations.values().stream().filter(Registration::isWatched).count();
+  }
+
+  /**
+   * Passes files received from the endpoint to the message handler. Files are not received while
+   * the processing queue of the endpoint is full.
+   *
+   * @return number of received files.
+   */
+  int poll(ShipmentEndpoint endpoint) {
+    int received = 0;
+
+    try {
+      while (received < MAX_MESSAGES_PER_POLL && channelOwnership.isOwned(endpoint.getId())
+          && messageHandler.canReceive(endpoint)) {
+        Message<File> message = endpoint.receive();
+
+        if (null == message) {
+          break;
+        }
+
+        messageHandler.receive(message, endpoint);
+        ++received;
+      }
+    } catch (RuntimeException exp) {
+      LOGGER.error("Could not poll shipment endpoint {}", endpoint.getId(), exp);
+    }
+
+    return received;
+  }
+
+  /**
+   * Calculates the delay before the next poll of an endpoint. An endpoint that returned the
+   * maximum number of files probably has more of them, so it is polled again without delay.
+   * The delay of an idle endpoint is doubled up to the given maximum.
+   */
+  static long getNextDelay(long delay, int received, long baseDelay, long maxDelay) {
+    if (received >= MAX_MESSAGES_PER_POLL) {
+      return 0;
+    }
+
+    if (received > 0) {
+      return baseDelay;
+    }
+
+    return Math.min(Math.max(delay * 2, baseDelay), Math.max(baseDelay, maxDelay));
+  }
+
+  private void add(TransferProperties properties) {
+    long start = System.nanoTime();
+    ShipmentEndpoint endpoint = endpointFactory.create(properties);
+    creationTime.addAndGet(System.nanoTime() - start);
+    createdCount.incrementAndGet();
+
+    Registration registration = endpoint.isWatchable() && watch(endpoint)
+        ? new Registration(properties, endpoint, reconciliationRate, reconciliationRate, true)
+        : new Registration(properties, endpoint, pollingRate, maxIdleRate, false);
+
+    registrations.put(properties.getId(), registration);
+
+    // spread first polls of many endpoints over the polling period
+    registration.schedule(ThreadLocalRandom.current().nextLong(Math.max(pollingRate, 1)));
+    LOGGER.debug("Added shipment endpoint {}", properties.getId());
+  }
+
+  private long readRoutingVersion() {
+    Number version = transferPropertiesRepository.getRoutingVersion();
+    return null == version ? 0 : version.longValue();
+  }
+
+  private boolean watch(ShipmentEndpoint endpoint) {
+    UUID id = endpoint.getId();
+
+    try {
+      directoryWatcher.register(id, endpoint.getWatchedDirectory().toPath(), () -> {
+        Registration registration = registrations.get(id);
+
+        if (null != registration) {
+          registration.trigger();
+        }
+      });
+      return true;
+    } catch (IOException exp) {
+      LOGGER.warn("Could not watch directory of shipment endpoint {}, it will be polled", id, exp);
+      return false;
+    }
+  }
+
+  /**
+   * Polls a single endpoint. Only one poll of an endpoint is scheduled at a time.
+   */
+  private final class Registration {
+    private final TransferProperties properties;
+    private final ShipmentEndpoint endpoint;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final boolean watched;
+
+    private long delay;
+    private ScheduledFuture<?> next;
+    private boolean running;
+    private boolean triggered;
+    private boolean cancelled;
+
+    Registration(TransferProperties properties, ShipmentEndpoint endpoint, long baseDelay,
+        long maxDelay, boolean watched) {
+      this.properties = properties;
+      this.endpoint = endpoint;
+      this.baseDelay = baseDelay;
+      this.maxDelay = maxDelay;
+      this.watched = watched;
+      this.delay = baseDelay;
+    }
+
+    boolean isWatched() {
+      return watched;
+    }
+
+    synchronized void schedule(long delayMillis) {
+      if (!cancelled) {
+        next = scheduler.schedule(this::run, new Date(System.currentTimeMillis() + delayMillis));
+      }
+    }
+
+    // files are read once the watched directory has been quiet for a while, so a file that is
+    // still being written does not trigger a poll with every write
+    synchronized void trigger() {
+      if (running) {
+        triggered = true;
+      } else if (!cancelled && null != next && next.cancel(false)) {
+        schedule(quietPeriod);
+      }
+    }
+
+    synchronized void cancel() {
+      cancelled = true;
+
+      if (null != next) {
+        next.cancel(false);
+      }
+    }
+
+    private void run() {
+      synchronized (this) {
+        if (cancelled) {
+          return;
+        }
+
+        running = true;
+        triggered = false;
+      }
+
+      int received = poll(endpoint);
+
+      synchronized (this) {
+        running = false;
+
+        if (!messageHandler.canReceive(endpoint)) {
+          // the endpoint has a backlog waiting for workers, it is checked again shortly without
+          // contacting the server
+          schedule(quietPeriod);
+          return;
+        }
+
+        delay = getNextDelay(delay, received, baseDelay, maxDelay);
+        schedule(triggered ? Math.min(delay, quietPeriod) : delay);
+      }
+    }
+  }
+
+}
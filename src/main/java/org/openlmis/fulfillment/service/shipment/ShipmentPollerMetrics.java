@@ -0,0 +1,63 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service.shipment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the size, ownership and startup cost of the shipment poller engine and the number of
+ * duplicate files it has skipped through the metrics endpoint.
+ */
+@Component
+public class ShipmentPollerMetrics implements PublicMetrics {
+  static final String ENDPOINTS = "fulfillment.shipments.polling.endpoints";
+  static final String OWNED = "fulfillment.shipments.polling.endpoints.owned";
+  static final String WATCHED = "fulfillment.shipments.polling.endpoints.watched";
+  static final String THREADS = "fulfillment.shipments.polling.threads";
+  static final String STARTUP_TIME = "fulfillment.shipments.polling.startupTime";
+  static final String CREATION_TIME = "fulfillment.shipments.polling.endpoint.creationTime";
+  static final String SKIPPED_FILES = "fulfillment.shipments.polling.files.skipped";
+
+  @Autowired
+  private ShipmentPollerEngine shipmentPollerEngine;
+
+  @Autowired
+  private ShipmentChannelOwnership channelOwnership;
+
+  @Autowired
+  private ShipmentFileLedger fileLedger;
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    metrics.add(new Metric<>(ENDPOINTS, shipmentPollerEngine.getEndpointCount()));
+    metrics.add(new Metric<>(OWNED, channelOwnership.getOwnedCount()));
+    metrics.add(new Metric<>(WATCHED, shipmentPollerEngine.getWatchedCount()));
+    metrics.add(new Metric<>(THREADS, shipmentPollerEngine.getPoolSize()));
+    metrics.add(new Metric<>(STARTUP_TIME, shipmentPollerEngine.getStartupTime()));
+    metrics.add(new Metric<>(CREATION_TIME, shipmentPollerEngine.getAverageCreationTime()));
+    metrics.add(new Metric<>(SKIPPED_FILES, fileLedger.getSkippedCount()));
+
+    return metrics;
+  }
+
+}
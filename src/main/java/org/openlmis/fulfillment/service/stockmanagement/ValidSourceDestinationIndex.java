@@ -0,0 +1,182 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service.stockmanagement;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.openlmis.fulfillment.service.ServiceResponse;
+import org.openlmis.fulfillment.util.DateHelper;
+import org.openlmis.fulfillment.web.stockmanagement.ValidSourceDestinationDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local copy of valid sources and destinations indexed by program, facility type and facility.
+ * Each program and facility type pair is retrieved once and revalidated with the ETag of the last
+ * response when its time to live has passed, or when a facility could not be found in it. The
+ * pairs of configured programs and facility types are loaded when the application starts.
+ */
+@Component
+public class ValidSourceDestinationIndex {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ValidSourceDestinationIndex.class);
+
+  @Autowired
+  private ValidSourcesStockManagementService validSourcesStockManagementService;
+
+  @Autowired
+  private ValidDestinationsStockManagementService validDestinationsStockManagementService;
+
+  @Autowired
+  private DateHelper dateHelper;
+
+  @Value("${stockmanagement.validSourceDestinations.timeToLive}")
+  private long timeToLive;
+
+  @Value("${stockmanagement.validSourceDestinations.warmUp.programs}")
+  private String[] warmUpPrograms;
+
+  @Value("${stockmanagement.validSourceDestinations.warmUp.facilityTypes}")
+  private String[] warmUpFacilityTypes;
+
+  private final Map<List<Object>, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Finds a valid source or destination of the given facility.
+   *
+   * @param service      the service of valid sources or of valid destinations.
+   * @param program      the program of the stock event.
+   * @param facilityType the type of the facility that creates the stock event.
+   * @param facility     the facility that should be a valid source or destination.
+   */
+  public Optional<ValidSourceDestinationDto> search(
+      ValidSourceDestinationsStockManagementService service, UUID program, UUID facilityType,
+      UUID facility) {
+    return entries
+        .computeIfAbsent(Arrays.asList(service, program, facilityType),
+            key -> new Entry(service, program, facilityType))
+        .search(facility);
+  }
+
+  /**
+   * Marks all values as outdated, so they are revalidated on the next use.
+   */
+  public void invalidate() {
+    entries.values().forEach(Entry::invalidate);
+  }
+
+  /**
+   * Loads valid sources and destinations of configured programs and facility types when the
+   * application starts. Values that could not be loaded are retrieved on the first use.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+    for (String program : warmUpPrograms) {
+      for (String facilityType : warmUpFacilityTypes) {
+        warmUp(UUID.fromString(program.trim()), UUID.fromString(facilityType.trim()));
+      }
+    }
+  }
+
+  private void warmUp(UUID program, UUID facilityType) {
+    for (ValidSourceDestinationsStockManagementService service : Arrays.asList(
+        validSourcesStockManagementService, validDestinationsStockManagementService)) {
+      try {
+        entries
+            .computeIfAbsent(Arrays.asList(service, program, facilityType),
+                key -> new Entry(service, program, facilityType))
+            .revalidate();
+      } catch (RuntimeException ex) {
+        LOGGER.warn("Unable to load valid sources and destinations of program {} "
+            + "and facility type {}", program, facilityType, ex);
+      }
+    }
+  }
+
+  private final class Entry {
+    private final ValidSourceDestinationsStockManagementService service;
+    private final UUID program;
+    private final UUID facilityType;
+
+    private Map<UUID, ValidSourceDestinationDto> byFacility = Collections.emptyMap();
+    private String etag;
+    private ZonedDateTime expirationDate;
+
+    private Entry(ValidSourceDestinationsStockManagementService service, UUID program,
+        UUID facilityType) {
+      this.service = service;
+      this.program = program;
+      this.facilityType = facilityType;
+    }
+
+    synchronized Optional<ValidSourceDestinationDto> search(UUID facility) {
+      boolean revalidated = false;
+
+      if (null == expirationDate
+          || !expirationDate.isAfter(dateHelper.getCurrentDateTimeWithSystemZone())) {
+        revalidate();
+        revalidated = true;
+      }
+
+      ValidSourceDestinationDto found = byFacility.get(facility);
+
+      if (null == found && !revalidated) {
+        // the facility could have been added since the last revalidation
+        revalidate();
+        found = byFacility.get(facility);
+      }
+
+      return Optional.ofNullable(found);
+    }
+
+    synchronized void revalidate() {
+      ServiceResponse<List<ValidSourceDestinationDto>> response = service
+          .findAll(program, facilityType, etag);
+
+      if (response.isModified()) {
+        byFacility = Collections.unmodifiableMap(response
+            .getBody()
+            .stream()
+            .filter(elem -> elem.getNode().isRefDataFacility())
+            .collect(Collectors.toMap(elem -> elem.getNode().getReferenceId(),
+                Function.identity(), (first, second) -> first)));
+        etag = response.getETag();
+        LOGGER.debug("Valid sources or destinations of program {} and facility type {} have "
+            + "been changed, indexed {} facilities", program, facilityType, byFacility.size());
+      }
+
+      expirationDate = dateHelper.getCurrentDateTimeWithSystemZone().plusSeconds(timeToLive);
+    }
+
+    synchronized void invalidate() {
+      expirationDate = null;
+    }
+  }
+
+}
@@ -16,9 +16,11 @@
 package org.openlmis.fulfillment.service.stockmanagement;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import org.openlmis.fulfillment.service.ServiceResponse;
 import org.openlmis.fulfillment.service.request.RequestParameters;
 import org.openlmis.fulfillment.web.stockmanagement.ValidSourceDestinationDto;
 
@@ -50,7 +52,21 @@ public abstract class ValidSourceDestinationsStockManagementService
   }
 
   private Collection<ValidSourceDestinationDto> search(UUID program, UUID facilityType) {
-    return findAll("", RequestParameters.init()
-        .set("program", program).set("facilityType", facilityType));
+    return findAll("", getParameters(program, facilityType));
+  }
+
+  /**
+   * Finds all valid sources or destinations of the given program and facility type if they have
+   * changed since the given ETag.
+   *
+   * @param etag ETag of the previously retrieved values, can be null.
+   */
+  public ServiceResponse<List<ValidSourceDestinationDto>> findAll(UUID program,
+      UUID facilityType, String etag) {
+    return tryFindAll("", getParameters(program, facilityType), getArrayResultClass(), etag);
+  }
+
+  private RequestParameters getParameters(UUID program, UUID facilityType) {
+    return RequestParameters.init().set("program", program).set("facilityType", facilityType);
   }
 }
@@ -23,6 +23,7 @@ import org.openlmis.fulfillment.domain.TemplateType;
 import org.openlmis.fulfillment.repository.FileTemplateRepository;
 import org.openlmis.fulfillment.service.FileTemplateService;
 import org.openlmis.fulfillment.service.PermissionService;
+import org.openlmis.fulfillment.service.TransferRoutingTable;
 import org.openlmis.fulfillment.web.util.FileTemplateDto;
 import org.openlmis.fulfillment.web.validator.FileTemplateValidator;
 import org.slf4j.Logger;
@@ -54,6 +55,8 @@ public class FileTemplateController extends BaseController {
   @Autowired
   private FileTemplateService fileTemplateService;
   @Autowired
+  private TransferRoutingTable transferRoutingTable;
+  @Autowired
   private PermissionService permissionService;
 
   @InitBinder
@@ -87,6 +90,7 @@ public class FileTemplateController extends BaseController {
     LOGGER.debug("Saving CSV File Template");
     template.importDto(fileTemplateDto);
     template = fileTemplateRepository.save(template);
+    transferRoutingTable.invalidate();
 
     LOGGER.debug("Saved CSV File Template with id: " + template.getId());
     return FileTemplateDto.newInstance(template);
@@ -21,6 +21,8 @@ import static org.openlmis.fulfillment.i18n.MessageKeys.ORDER_RETRY_INVALID_STAT
 import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.HashMap;
@@ -37,16 +39,20 @@ import org.openlmis.fulfillment.domain.Order;
 import org.openlmis.fulfillment.domain.Shipment;
 import org.openlmis.fulfillment.domain.ShipmentLineItem;
 import org.openlmis.fulfillment.domain.Template;
+import org.openlmis.fulfillment.domain.TemplateType;
 import org.openlmis.fulfillment.repository.OrderRepository;
-import org.openlmis.fulfillment.service.FileTemplateService;
 import org.openlmis.fulfillment.service.JasperReportsViewService;
+import org.openlmis.fulfillment.service.OrderCsvCache;
 import org.openlmis.fulfillment.service.OrderCsvHelper;
+import org.openlmis.fulfillment.service.OrderExportService;
 import org.openlmis.fulfillment.service.OrderSearchParams;
 import org.openlmis.fulfillment.service.OrderService;
+import org.openlmis.fulfillment.service.OrderTransferJobService;
 import org.openlmis.fulfillment.service.PermissionService;
 import org.openlmis.fulfillment.service.ResultDto;
 import org.openlmis.fulfillment.service.ShipmentService;
 import org.openlmis.fulfillment.service.TemplateService;
+import org.openlmis.fulfillment.service.TransferRoutingTable;
 import org.openlmis.fulfillment.service.referencedata.UserDto;
 import org.openlmis.fulfillment.util.AuthenticationHelper;
 import org.openlmis.fulfillment.web.util.BasicOrderDto;
@@ -74,6 +80,7 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.view.jasperreports.JasperReportsMultiFormatView;
 
@@ -94,7 +101,13 @@ public class OrderController extends BaseController {
   private OrderCsvHelper csvHelper;
 
   @Autowired
-  private FileTemplateService fileTemplateService;
+  private OrderCsvCache orderCsvCache;
+
+  @Autowired
+  private OrderExportService orderExportService;
+
+  @Autowired
+  private TransferRoutingTable transferRoutingTable;
 
   @Autowired
   private PermissionService permissionService;
@@ -117,6 +130,9 @@ public class OrderController extends BaseController {
   @Autowired
   private BasicOrderDtoBuilder basicOrderDtoBuilder;
 
+  @Autowired
+  private OrderTransferJobService orderTransferJobService;
+
   @Value("${groupingSeparator}")
   private String groupingSeparator;
 
@@ -269,13 +285,13 @@ public class OrderController extends BaseController {
    *
    * @param orderId  UUID of order to print
    * @param type     export type
+   * @param request  HttpServletRequest object
    * @param response HttpServletResponse object
    */
   @RequestMapping(value = "/orders/{id}/export", method = RequestMethod.GET)
-  @ResponseStatus(HttpStatus.OK)
   public void export(@PathVariable("id") UUID orderId,
                   @RequestParam(value = "type", required = false, defaultValue = "csv") String type,
-                     HttpServletResponse response) throws IOException {
+                     HttpServletRequest request, HttpServletResponse response) throws IOException {
     if (!"csv".equals(type)) {
       String msg = "Export type: " + type + " not allowed";
       LOGGER.warn(msg);
@@ -294,7 +310,7 @@ public class OrderController extends BaseController {
 
     permissionService.canViewOrder(order);
 
-    FileTemplate fileTemplate = fileTemplateService.getOrderFileTemplate();
+    FileTemplate fileTemplate = transferRoutingTable.getFileTemplate(TemplateType.ORDER);
 
     if (fileTemplate == null) {
       String msg = "Could not export Order, because Order Template File not found";
@@ -303,12 +319,28 @@ public class OrderController extends BaseController {
       return;
     }
 
-    response.setContentType("text/csv");
-    response.addHeader(HttpHeaders.CONTENT_DISPOSITION,
-        DISPOSITION_BASE + fileTemplate.getFilePrefix() + order.getOrderCode() + ".csv");
+    String etag = orderCsvCache.getETag(order, transferRoutingTable.getVersion());
+
+    if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+      return;
+    }
 
     try {
-      csvHelper.writeCsvFile(order, fileTemplate, response.getWriter());
+      byte[] content = orderCsvCache.get(orderId, etag);
+
+      if (null == content) {
+        StringWriter writer = new StringWriter();
+        csvHelper.writeCsvFile(order, fileTemplate, writer);
+        content = writer.toString().getBytes(StandardCharsets.UTF_8);
+        orderCsvCache.put(orderId, etag, content);
+      }
+
+      response.setContentType("text/csv");
+      response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+      response.addHeader(HttpHeaders.CONTENT_DISPOSITION,
+          DISPOSITION_BASE + fileTemplate.getFilePrefix() + order.getOrderCode() + ".csv");
+      response.setContentLength(content.length);
+      response.getOutputStream().write(content);
     } catch (IOException ex) {
       response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
           "Error occurred while exporting order to csv.");
@@ -316,6 +348,38 @@ public class OrderController extends BaseController {
     }
   }
 
+  /**
+   * Exporting many orders to a zip archive with a csv file for each order. Orders are selected by
+   * ids or, if ids are not given, by search params. The archive is written while orders are
+   * loaded, so it is never kept in memory.
+   *
+   * @param params   order search params
+   * @param orderIds UUIDs of orders to export
+   * @param response HttpServletResponse object
+   */
+  @GetMapping("/orders/export")
+  public void exportOrders(OrderSearchParams params,
+                           @RequestParam(value = "id", required = false) Set<UUID> orderIds,
+                           HttpServletResponse response) throws IOException {
+    FileTemplate fileTemplate = transferRoutingTable.getFileTemplate(TemplateType.ORDER);
+
+    if (fileTemplate == null) {
+      String msg = "Could not export Orders, because Order Template File not found";
+      LOGGER.warn(msg);
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, msg);
+      return;
+    }
+
+    if (null != orderIds && !orderIds.isEmpty()) {
+      orderExportService.checkCanExport(orderIds);
+    }
+
+    response.setContentType("application/zip");
+    response.addHeader(HttpHeaders.CONTENT_DISPOSITION, DISPOSITION_BASE + "orders.zip");
+
+    orderExportService.exportToZip(params, orderIds, fileTemplate, response.getOutputStream());
+  }
+
   /**
    * Manually retry for transferring order file via FTP after updating or checking the FTP
    * transfer properties.
@@ -341,6 +405,22 @@ public class OrderController extends BaseController {
     return new ResultDto<>(TRANSFER_FAILED != order.getStatus());
   }
 
+  /**
+   * Schedules transfer retry of all orders with TRANSFER_FAILED status from the given supplying
+   * facility. The orders are transferred in the background by the retry queue.
+   *
+   * @param supplyingFacilityId UUID of supplying facility
+   * @return number of orders that have been scheduled
+   */
+  @RequestMapping(value = "/orders/retry", method = RequestMethod.POST)
+  @ResponseBody
+  public ResultDto<Integer> retryOrderTransfers(
+      @RequestParam("supplyingFacilityId") UUID supplyingFacilityId) {
+    permissionService.canTransferOrders(supplyingFacilityId);
+
+    return new ResultDto<>(orderTransferJobService.scheduleFailedOrders(supplyingFacilityId));
+  }
+
   private Order createSingleOrder(OrderDto orderDto,
                                   OAuth2Authentication authentication) {
     orderDto.setId(null);
@@ -19,6 +19,7 @@ import java.util.Iterator;
 import javax.validation.Valid;
 import org.openlmis.fulfillment.domain.OrderNumberConfiguration;
 import org.openlmis.fulfillment.repository.OrderNumberConfigurationRepository;
+import org.openlmis.fulfillment.service.OrderNumberService;
 import org.openlmis.fulfillment.service.PermissionService;
 import org.openlmis.fulfillment.web.util.OrderNumberConfigurationDto;
 import org.openlmis.fulfillment.web.validator.OrderNumberConfigurationValidator;
@@ -47,6 +48,9 @@ public class OrderNumberConfigurationController extends BaseController {
   @Autowired
   private OrderNumberConfigurationRepository orderNumberConfigurationRepository;
 
+  @Autowired
+  private OrderNumberService orderNumberService;
+
   @Autowired
   private OrderNumberConfigurationValidator validator;
 
@@ -87,6 +91,7 @@ public class OrderNumberConfigurationController extends BaseController {
 
     OrderNumberConfiguration savedOrderNumberConfiguration =
         orderNumberConfigurationRepository.save(orderNumberConfiguration);
+    orderNumberService.evictConfiguration();
 
     OrderNumberConfigurationDto orderNumberConfigurationDto1 = OrderNumberConfigurationDto
         .newInstance(savedOrderNumberConfiguration);
@@ -15,16 +15,26 @@
 
 package org.openlmis.fulfillment.web;
 
+import static java.util.Collections.singletonList;
 import static org.openlmis.fulfillment.i18n.MessageKeys.PROOF_OF_DELIVERY_ALREADY_CONFIRMED;
+import static org.openlmis.fulfillment.i18n.MessageKeys.PROOF_OF_DELIVERY_NOT_FOUND;
 
+import com.google.common.collect.Lists;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import javax.servlet.http.HttpServletRequest;
 import org.openlmis.fulfillment.domain.Order;
 import org.openlmis.fulfillment.domain.OrderStatus;
@@ -33,21 +43,24 @@ import org.openlmis.fulfillment.domain.ProofOfDeliveryLineItem;
 import org.openlmis.fulfillment.domain.ProofOfDeliveryStatus;
 import org.openlmis.fulfillment.domain.Template;
 import org.openlmis.fulfillment.domain.UpdateDetails;
+import org.openlmis.fulfillment.i18n.MessageService;
 import org.openlmis.fulfillment.repository.OrderRepository;
 import org.openlmis.fulfillment.repository.ProofOfDeliveryRepository;
-import org.openlmis.fulfillment.service.FulfillmentNotificationService;
+import org.openlmis.fulfillment.service.FulfillmentException;
 import org.openlmis.fulfillment.service.JasperReportsViewService;
+import org.openlmis.fulfillment.service.OutboxService;
 import org.openlmis.fulfillment.service.PermissionService;
 import org.openlmis.fulfillment.service.ProofOfDeliveryService;
 import org.openlmis.fulfillment.service.TemplateService;
-import org.openlmis.fulfillment.service.stockmanagement.StockEventStockManagementService;
 import org.openlmis.fulfillment.util.AuthenticationHelper;
 import org.openlmis.fulfillment.util.DateHelper;
 import org.openlmis.fulfillment.util.Pagination;
 import org.openlmis.fulfillment.web.stockmanagement.StockEventDto;
+import org.openlmis.fulfillment.web.util.ProofOfDeliveryBatchResultDto;
 import org.openlmis.fulfillment.web.util.ProofOfDeliveryDto;
 import org.openlmis.fulfillment.web.util.ProofOfDeliveryDtoBuilder;
 import org.openlmis.fulfillment.web.util.StockEventBuilder;
+import org.openlmis.fulfillment.web.util.StockEventBuilder.ProofOfDeliveryStockEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
@@ -74,6 +87,7 @@ import org.springframework.web.servlet.view.jasperreports.JasperReportsMultiForm
 
 @Controller
 @Transactional
+@SuppressWarnings("PMD.TooManyMethods")
 public class ProofOfDeliveryController extends BaseController {
   private static final Logger LOGGER = LoggerFactory.getLogger(ProofOfDeliveryController.class);
   private static final XLogger XLOGGER = XLoggerFactory.getXLogger(ProofOfDeliveryController.class);
@@ -108,13 +122,16 @@ public class ProofOfDeliveryController extends BaseController {
   private StockEventBuilder stockEventBuilder;
 
   @Autowired
-  private StockEventStockManagementService stockEventStockManagementService;
+  private OutboxService outboxService;
 
   @Autowired
-  private FulfillmentNotificationService fulfillmentNotificationService;
+  private ProofOfDeliveryService proofOfDeliveryService;
 
   @Autowired
-  private ProofOfDeliveryService proofOfDeliveryService;
+  private MessageService messageService;
+
+  @PersistenceContext
+  private EntityManager entityManager;
 
   @Value("${dateFormat}")
   private String dateFormat;
@@ -203,11 +220,9 @@ public class ProofOfDeliveryController extends BaseController {
 
       orderRepository.save(order);
 
-      profiler.start("SEND_STOCK_EVENT");
+      profiler.start("ADD_STOCK_EVENT_AND_NOTIFICATION_TO_OUTBOX");
       StockEventDto event = stockEventBuilder.fromProofOfDelivery(toUpdate);
-      stockEventStockManagementService.submit(event);
-
-      fulfillmentNotificationService.sendPodConfirmedNotification(toUpdate);
+      outboxService.addPodConfirmations(singletonList(event), singletonList(toUpdate));
     }
 
     profiler.start("SAVE_POD");
@@ -223,6 +238,95 @@ public class ProofOfDeliveryController extends BaseController {
     return response;
   }
 
+  /**
+   * Allows confirming many proofs of delivery at once. Each proof of delivery is updated from the
+   * given values and confirmed separately and is either confirmed or rejected with an error.
+   * Rights, reference data and valid sources are retrieved once for the whole batch. Stock events
+   * and notifications are added to the outbox and delivered after the confirmations are
+   * committed.
+   *
+   * @param dtos proofs of delivery with received values bound to the request body.
+   * @return results for each of the given proofs of delivery, in the same order.
+   */
+  @RequestMapping(value = "/proofsOfDelivery/confirm", method = RequestMethod.POST)
+  @ResponseBody
+  public List<ProofOfDeliveryBatchResultDto> confirmProofsOfDelivery(
+      @RequestBody List<ProofOfDeliveryDto> dtos, OAuth2Authentication authentication) {
+    XLOGGER.entry(dtos, authentication);
+    Profiler profiler = new Profiler("CONFIRM_PODS");
+    profiler.setLogger(XLOGGER);
+
+    List<BatchItem> items = dtos
+        .stream()
+        .map(BatchItem::new)
+        .collect(Collectors.toList());
+
+    profiler.start("FIND_PODS_BY_IDS");
+    Map<UUID, ProofOfDelivery> proofsOfDelivery = findProofsOfDelivery(items);
+
+    profiler.start("CONFIRM_PODS");
+    Map<List<UUID>, Optional<FulfillmentException>> rights = new HashMap<>();
+    for (BatchItem item : items) {
+      try {
+        item.proofOfDelivery = confirm(item.dto, proofsOfDelivery, rights, authentication);
+      } catch (FulfillmentException ex) {
+        item.error = ex;
+      }
+    }
+
+    profiler.start("BUILD_STOCK_EVENTS_FROM_PODS");
+    buildStockEvents(items);
+
+    List<BatchItem> confirmed = items
+        .stream()
+        .filter(item -> null == item.error)
+        .collect(Collectors.toList());
+
+    if (!confirmed.isEmpty()) {
+      profiler.start("UPDATE_ORDER_STATUSES_AND_SAVE");
+      UpdateDetails updateDetails = new UpdateDetails(
+          authenticationHelper.getCurrentUser().getId(),
+          dateHelper.getCurrentDateTimeWithSystemZone());
+      List<Order> orders = confirmed
+          .stream()
+          .map(item -> item.proofOfDelivery.getShipment().getOrder())
+          .collect(Collectors.toList());
+      orders.forEach(order -> order.updateStatus(OrderStatus.RECEIVED, updateDetails));
+      orderRepository.save(orders);
+
+      profiler.start("SAVE_PODS");
+      final List<ProofOfDelivery> saved = Lists.newArrayList(proofOfDeliveryRepository
+          .save(confirmed
+              .stream()
+              .map(item -> item.proofOfDelivery)
+              .collect(Collectors.toList())));
+
+      profiler.start("ADD_STOCK_EVENTS_AND_NOTIFICATIONS_TO_OUTBOX");
+      outboxService.addPodConfirmations(
+          confirmed.stream().map(item -> item.stockEvent).collect(Collectors.toList()),
+          confirmed.stream().map(item -> item.proofOfDelivery).collect(Collectors.toList()));
+
+      profiler.start("BUILD_DTOS");
+      List<ProofOfDeliveryDto> responses = dtoBuilder.build(saved);
+      for (int i = 0; i < confirmed.size(); ++i) {
+        confirmed.get(i).result = responses.get(i);
+      }
+    }
+
+    List<ProofOfDeliveryBatchResultDto> results = items
+        .stream()
+        .map(item -> null == item.error
+            ? ProofOfDeliveryBatchResultDto.confirmed(item.result)
+            : ProofOfDeliveryBatchResultDto.failed(
+                messageService.localize(item.error.asMessage())))
+        .collect(Collectors.toList());
+
+    profiler.stop().log();
+    XLOGGER.exit(results);
+
+    return results;
+  }
+
   /**
    * Get chosen proofOfDelivery.
    *
@@ -355,6 +459,101 @@ public class ProofOfDeliveryController extends BaseController {
     return entity;
   }
 
+  private Map<UUID, ProofOfDelivery> findProofsOfDelivery(List<BatchItem> items) {
+    Set<UUID> ids = items
+        .stream()
+        .map(item -> item.dto.getId())
+        .filter(Objects::nonNull)
+        .collect(Collectors.toSet());
+
+    Map<UUID, ProofOfDelivery> proofsOfDelivery = new HashMap<>();
+    if (!ids.isEmpty()) {
+      proofOfDeliveryRepository
+          .findAll(ids)
+          .forEach(proofOfDelivery -> proofsOfDelivery.put(proofOfDelivery.getId(),
+              proofOfDelivery));
+    }
+
+    return proofsOfDelivery;
+  }
+
+  private ProofOfDelivery confirm(ProofOfDeliveryDto dto,
+      Map<UUID, ProofOfDelivery> proofsOfDelivery,
+      Map<List<UUID>, Optional<FulfillmentException>> rights,
+      OAuth2Authentication authentication) {
+    ProofOfDelivery toUpdate = proofsOfDelivery.get(dto.getId());
+    if (null == toUpdate) {
+      throw new ValidationException(PROOF_OF_DELIVERY_NOT_FOUND, String.valueOf(dto.getId()));
+    }
+
+    if (!authentication.isClientOnly()) {
+      rights
+          .computeIfAbsent(
+              Arrays.asList(toUpdate.getReceivingFacilityId(), toUpdate.getProgramId()),
+              key -> checkManageRight(toUpdate))
+          .ifPresent(ex -> {
+            throw ex;
+          });
+    }
+
+    if (toUpdate.isConfirmed()) {
+      throw new ValidationException(PROOF_OF_DELIVERY_ALREADY_CONFIRMED);
+    }
+
+    ProofOfDelivery proofOfDelivery = ProofOfDelivery.newInstance(dto);
+
+    try {
+      toUpdate.updateFrom(proofOfDelivery);
+      toUpdate.confirm();
+    } catch (FulfillmentException ex) {
+      discardChanges(toUpdate);
+      throw ex;
+    }
+
+    return toUpdate;
+  }
+
+  private Optional<FulfillmentException> checkManageRight(ProofOfDelivery proofOfDelivery) {
+    try {
+      permissionService.canManagePod(proofOfDelivery);
+      return Optional.empty();
+    } catch (MissingPermissionException ex) {
+      return Optional.of(ex);
+    }
+  }
+
+  private void buildStockEvents(List<BatchItem> items) {
+    List<BatchItem> confirmed = items
+        .stream()
+        .filter(item -> null == item.error)
+        .collect(Collectors.toList());
+
+    if (confirmed.isEmpty()) {
+      return;
+    }
+
+    ProofOfDeliveryStockEvents stockEvents = stockEventBuilder.fromProofsOfDelivery(confirmed
+        .stream()
+        .map(item -> item.proofOfDelivery)
+        .collect(Collectors.toList()));
+
+    for (BatchItem item : confirmed) {
+      try {
+        item.stockEvent = stockEvents.build(item.proofOfDelivery);
+      } catch (FulfillmentException ex) {
+        discardChanges(item.proofOfDelivery);
+        item.error = ex;
+      }
+    }
+  }
+
+  // the confirmation of a rejected proof of delivery must not be flushed with the others
+  private void discardChanges(ProofOfDelivery proofOfDelivery) {
+    if (entityManager.contains(proofOfDelivery)) {
+      entityManager.refresh(proofOfDelivery);
+    }
+  }
+
   private void canManagePod(OAuth2Authentication authentication, Profiler profiler,
                             ProofOfDelivery pod) {
     if (!authentication.isClientOnly()) {
@@ -372,4 +571,16 @@ public class ProofOfDeliveryController extends BaseController {
       permissionService.canViewPod(pod);
     }
   }
+
+  private static final class BatchItem {
+    private final ProofOfDeliveryDto dto;
+    private ProofOfDelivery proofOfDelivery;
+    private StockEventDto stockEvent;
+    private ProofOfDeliveryDto result;
+    private FulfillmentException error;
+
+    BatchItem(ProofOfDeliveryDto dto) {
+      this.dto = dto;
+    }
+  }
 }
@@ -29,6 +29,8 @@ import org.openlmis.fulfillment.service.ExporterBuilder;
 import org.openlmis.fulfillment.service.IncorrectTransferPropertiesException;
 import org.openlmis.fulfillment.service.PermissionService;
 import org.openlmis.fulfillment.service.TransferPropertiesService;
+import org.openlmis.fulfillment.service.TransferRoutingTable;
+import org.openlmis.fulfillment.service.shipment.ShipmentPollerEngine;
 import org.openlmis.fulfillment.util.Message;
 import org.openlmis.fulfillment.web.util.TransferPropertiesDto;
 import org.openlmis.fulfillment.web.util.TransferPropertiesFactory;
@@ -60,6 +62,12 @@ public class TransferPropertiesController extends BaseController {
   @Autowired
   private TransferPropertiesService transferPropertiesService;
 
+  @Autowired
+  private TransferRoutingTable transferRoutingTable;
+
+  @Autowired
+  private ShipmentPollerEngine shipmentPollerEngine;
+
   @Autowired
   private ExporterBuilder exporter;
 
@@ -144,6 +152,8 @@ public class TransferPropertiesController extends BaseController {
     }
 
     toUpdate = transferPropertiesRepository.save(entity);
+    transferRoutingTable.invalidate();
+    shipmentPollerEngine.refresh(toUpdate);
 
     LOGGER.debug("Updated Transfer Properties with id: {}", toUpdate.getId());
 
@@ -186,6 +196,8 @@ public class TransferPropertiesController extends BaseController {
       return ResponseEntity.notFound().build();
     } else {
       transferPropertiesRepository.delete(toDelete);
+      transferRoutingTable.invalidate();
+      shipmentPollerEngine.remove(id);
       return ResponseEntity.noContent().build();
     }
   }
@@ -16,6 +16,7 @@
 package org.openlmis.fulfillment.web.errorhandler;
 
 import org.openlmis.fulfillment.util.Message;
+import org.openlmis.fulfillment.web.ConflictException;
 import org.openlmis.fulfillment.web.MissingPermissionException;
 import org.openlmis.fulfillment.web.NotFoundException;
 import org.openlmis.fulfillment.web.ValidationException;
@@ -52,4 +53,11 @@ public class WebErrorHandling extends AbstractErrorHandling {
     return logErrorAndRespond("Validation exception", ex);
   }
 
+  @ExceptionHandler(ConflictException.class)
+  @ResponseStatus(HttpStatus.CONFLICT)
+  @ResponseBody
+  public Message.LocalizedMessage handleConflictException(ConflictException ex) {
+    return logErrorAndRespond("Conflict exception", ex);
+  }
+
 }
@@ -0,0 +1,47 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.web.shipment;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.openlmis.fulfillment.util.Message;
+
+/**
+ * Result of creating a single shipment from a batch. Contains either the created shipment or
+ * the reason why it was not created.
+ */
+@Getter
+@ToString
+@JsonInclude(Include.NON_NULL)
+@EqualsAndHashCode
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ShipmentBatchResultDto {
+  private final ShipmentDto shipment;
+  private final Message.LocalizedMessage error;
+
+  static ShipmentBatchResultDto created(ShipmentDto shipment) {
+    return new ShipmentBatchResultDto(shipment, null);
+  }
+
+  static ShipmentBatchResultDto failed(Message.LocalizedMessage error) {
+    return new ShipmentBatchResultDto(null, error);
+  }
+}
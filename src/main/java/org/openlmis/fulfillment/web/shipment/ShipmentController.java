@@ -24,31 +24,40 @@ import static org.openlmis.fulfillment.service.ResourceNames.BASE_PATH;
 import static org.openlmis.fulfillment.web.shipment.ShipmentController.RESOURCE_PATH;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import org.openlmis.fulfillment.domain.CreationDetails;
 import org.openlmis.fulfillment.domain.Order;
 import org.openlmis.fulfillment.domain.OrderStatus;
 import org.openlmis.fulfillment.domain.Shipment;
 import org.openlmis.fulfillment.domain.ShipmentDraft;
 import org.openlmis.fulfillment.domain.UpdateDetails;
+import org.openlmis.fulfillment.i18n.MessageService;
 import org.openlmis.fulfillment.repository.OrderRepository;
 import org.openlmis.fulfillment.repository.ShipmentDraftRepository;
 import org.openlmis.fulfillment.repository.ShipmentRepository;
+import org.openlmis.fulfillment.service.FulfillmentException;
+import org.openlmis.fulfillment.service.OutboxService;
 import org.openlmis.fulfillment.service.PermissionService;
 import org.openlmis.fulfillment.service.ShipmentService;
 import org.openlmis.fulfillment.service.referencedata.UserDto;
-import org.openlmis.fulfillment.service.stockmanagement.StockEventStockManagementService;
 import org.openlmis.fulfillment.util.AuthenticationHelper;
 import org.openlmis.fulfillment.util.DateHelper;
 import org.openlmis.fulfillment.util.Pagination;
 import org.openlmis.fulfillment.web.BaseController;
+import org.openlmis.fulfillment.web.MissingPermissionException;
 import org.openlmis.fulfillment.web.NotFoundException;
 import org.openlmis.fulfillment.web.ValidationException;
 import org.openlmis.fulfillment.web.stockmanagement.StockEventDto;
 import org.openlmis.fulfillment.web.util.ObjectReferenceDto;
 import org.openlmis.fulfillment.web.util.StockEventBuilder;
+import org.openlmis.fulfillment.web.util.StockEventBuilder.ShipmentStockEvents;
 import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
 import org.slf4j.profiler.Profiler;
@@ -98,7 +107,7 @@ public class ShipmentController extends BaseController {
   private PermissionService permissionService;
 
   @Autowired
-  private StockEventStockManagementService stockEventService;
+  private OutboxService outboxService;
 
   @Autowired
   private StockEventBuilder stockEventBuilder;
@@ -106,6 +115,9 @@ public class ShipmentController extends BaseController {
   @Autowired
   private ShipmentService shipmentService;
 
+  @Autowired
+  private MessageService messageService;
+
   /**
    * Allows creating new shipment. If the id is specified, it will be ignored.
    *
@@ -155,8 +167,8 @@ public class ShipmentController extends BaseController {
     profiler.start("BUILD_STOCK_EVENT_FROM_SHIPMENT");
     StockEventDto stockEventDto = stockEventBuilder.fromShipment(shipment);
 
-    profiler.start("SUBMIT_STOCK_EVENT");
-    stockEventService.submit(stockEventDto);
+    profiler.start("ADD_STOCK_EVENT_TO_OUTBOX");
+    outboxService.addStockEvent(stockEventDto);
 
     profiler.start("BUILD_SHIPMENT_DTO");
     ShipmentDto dto = shipmentDtoBuilder.build(shipment);
@@ -166,6 +178,94 @@ public class ShipmentController extends BaseController {
     return dto;
   }
 
+  /**
+   * Allows creating many shipments at once. Each shipment is validated separately and is either
+   * created or rejected with an error. Orders, rights and reference data are retrieved once for
+   * the whole batch and the shipments are saved together. If the id of a shipment is specified,
+   * it will be ignored.
+   *
+   * @param shipmentDtos shipments bound to the request body.
+   * @return results for each of the given shipments, in the same order.
+   */
+  @PostMapping("/batch")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<ShipmentBatchResultDto> createShipments(
+      @RequestBody List<ShipmentDto> shipmentDtos) {
+    XLOGGER.entry(shipmentDtos);
+    Profiler profiler = new Profiler("CREATE_SHIPMENTS");
+    profiler.setLogger(XLOGGER);
+
+    List<BatchItem> items = shipmentDtos
+        .stream()
+        .map(BatchItem::new)
+        .collect(Collectors.toList());
+
+    profiler.start("FIND_ORDERS");
+    Map<UUID, Order> orders = findOrders(items);
+
+    profiler.start("CREATE_DOMAIN_INSTANCES");
+    Map<UUID, Optional<FulfillmentException>> rights = new HashMap<>();
+    for (BatchItem item : items) {
+      try {
+        item.shipment = newShipment(item.dto, orders, rights);
+      } catch (FulfillmentException ex) {
+        item.error = ex;
+      }
+    }
+
+    profiler.start("BUILD_STOCK_EVENTS_FROM_SHIPMENTS");
+    buildStockEvents(items);
+
+    List<BatchItem> created = items
+        .stream()
+        .filter(item -> null == item.error)
+        .collect(Collectors.toList());
+
+    if (!created.isEmpty()) {
+      profiler.start("SAVE_SHIPMENTS");
+      List<Shipment> shipments = shipmentService.saveAll(created
+          .stream()
+          .map(item -> item.shipment)
+          .collect(Collectors.toList()));
+
+      profiler.start("UPDATE_ORDERS");
+      List<Order> shippedOrders = shipments
+          .stream()
+          .map(Shipment::getOrder)
+          .collect(Collectors.toList());
+      UpdateDetails updateDetails = new UpdateDetails(
+          authenticationHelper.getCurrentUser().getId(),
+          dateHelper.getCurrentDateTimeWithSystemZone());
+      shippedOrders.forEach(order -> order.updateStatus(OrderStatus.SHIPPED, updateDetails));
+      orderRepository.save(shippedOrders);
+
+      profiler.start("REMOVE_DRAFT_SHIPMENTS");
+      shipmentDraftRepository.delete(shipmentDraftRepository.findByOrderIn(shippedOrders));
+
+      profiler.start("ADD_STOCK_EVENTS_TO_OUTBOX");
+      outboxService.addStockEvents(
+          created.stream().map(item -> item.stockEvent).collect(Collectors.toList()));
+
+      profiler.start("BUILD_SHIPMENT_DTOS");
+      List<ShipmentDto> dtos = shipmentDtoBuilder.build(shipments);
+      for (int i = 0; i < created.size(); ++i) {
+        created.get(i).result = dtos.get(i);
+      }
+    }
+
+    List<ShipmentBatchResultDto> results = items
+        .stream()
+        .map(item -> null == item.error
+            ? ShipmentBatchResultDto.created(item.result)
+            : ShipmentBatchResultDto.failed(messageService.localize(item.error.asMessage())))
+        .collect(Collectors.toList());
+
+    profiler.stop().log();
+    XLOGGER.exit(results);
+    return results;
+  }
+
   /**
    * Get shipment with request param.
    *
@@ -255,10 +355,107 @@ public class ShipmentController extends BaseController {
         new CreationDetails(userId, dateHelper.getCurrentDateTimeWithSystemZone()));
   }
 
+  private Map<UUID, Order> findOrders(List<BatchItem> items) {
+    Set<UUID> orderIds = items
+        .stream()
+        .map(item -> item.dto.getOrder())
+        .filter(order -> null != order && null != order.getId())
+        .map(ObjectReferenceDto::getId)
+        .collect(Collectors.toSet());
+
+    Map<UUID, Order> orders = new HashMap<>();
+    if (!orderIds.isEmpty()) {
+      orderRepository.findAll(orderIds).forEach(order -> orders.put(order.getId(), order));
+    }
+
+    return orders;
+  }
+
+  private Shipment newShipment(ShipmentDto shipmentDto, Map<UUID, Order> orders,
+      Map<UUID, Optional<FulfillmentException>> rights) {
+    nullIds(shipmentDto);
+    ObjectReferenceDto dtoOrder = shipmentDto.getOrder();
+    if (dtoOrder == null || dtoOrder.getId() == null) {
+      throw new ValidationException(SHIPMENT_ORDERLESS_NOT_SUPPORTED);
+    }
+
+    Order order = orders.get(dtoOrder.getId());
+    if (null == order) {
+      throw new ValidationException(ORDER_NOT_FOUND, dtoOrder.getId().toString());
+    }
+
+    rights
+        .computeIfAbsent(order.getSupplyingFacilityId(), facilityId -> checkEditRight(order))
+        .ifPresent(ex -> {
+          throw ex;
+        });
+
+    if (!order.canBeFulfilled()) {
+      throw new ValidationException(SHIPMENT_ORDER_STATUS_INVALID, order.getStatus().toString());
+    }
+
+    setShipDetailsToDto(shipmentDto);
+    return Shipment.newInstance(shipmentDto, order);
+  }
+
+  private Optional<FulfillmentException> checkEditRight(Order order) {
+    try {
+      permissionService.canEditShipment(order);
+      return Optional.empty();
+    } catch (MissingPermissionException ex) {
+      return Optional.of(ex);
+    }
+  }
+
+  private void buildStockEvents(List<BatchItem> items) {
+    List<BatchItem> valid = items
+        .stream()
+        .filter(item -> null == item.error)
+        .collect(Collectors.toList());
+
+    if (valid.isEmpty()) {
+      return;
+    }
+
+    ShipmentStockEvents stockEvents = stockEventBuilder.fromShipments(valid
+        .stream()
+        .map(item -> item.shipment)
+        .collect(Collectors.toList()));
+    Set<UUID> shippedOrderIds = new HashSet<>();
+
+    for (BatchItem item : valid) {
+      Order order = item.shipment.getOrder();
+
+      try {
+        if (shippedOrderIds.contains(order.getId())) {
+          throw new ValidationException(SHIPMENT_ORDER_STATUS_INVALID,
+              OrderStatus.SHIPPED.toString());
+        }
+
+        item.stockEvent = stockEvents.build(item.shipment);
+        shippedOrderIds.add(order.getId());
+      } catch (FulfillmentException ex) {
+        item.error = ex;
+      }
+    }
+  }
+
   private void findAndRemoveShipmentDraftsForOrder(Order order) {
     Collection<ShipmentDraft> drafts = shipmentDraftRepository.findByOrder(order);
     for (ShipmentDraft draft : drafts) {
       shipmentDraftRepository.delete(draft);
     }
   }
+
+  private static final class BatchItem {
+    private final ShipmentDto dto;
+    private Shipment shipment;
+    private StockEventDto stockEvent;
+    private ShipmentDto result;
+    private FulfillmentException error;
+
+    BatchItem(ShipmentDto dto) {
+      this.dto = dto;
+    }
+  }
 }
@@ -19,6 +19,8 @@ import static org.openlmis.fulfillment.i18n.MessageKeys.CANNOT_CREATE_SHIPMENT_D
 import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_DRAFT_ID_MISMATCH;
 import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_DRAFT_ORDER_NOT_FOUND;
 import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_DRAFT_ORDER_REQUIRED;
+import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_DRAFT_VERSION_MISMATCH;
+import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_DRAFT_VERSION_REQUIRED;
 import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_NOT_FOUND;
 import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_ORDERLESS_NOT_SUPPORTED;
 import static org.openlmis.fulfillment.service.ResourceNames.BASE_PATH;
@@ -39,6 +41,7 @@ import org.openlmis.fulfillment.util.AuthenticationHelper;
 import org.openlmis.fulfillment.util.DateHelper;
 import org.openlmis.fulfillment.util.Pagination;
 import org.openlmis.fulfillment.web.BaseController;
+import org.openlmis.fulfillment.web.ConflictException;
 import org.openlmis.fulfillment.web.NotFoundException;
 import org.openlmis.fulfillment.web.ValidationException;
 import org.openlmis.fulfillment.web.util.ObjectReferenceDto;
@@ -53,6 +56,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -63,6 +67,7 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @Controller
+@SuppressWarnings("PMD.TooManyMethods")
 @Transactional
 @RequestMapping(RESOURCE_PATH)
 public class ShipmentDraftController extends BaseController {
@@ -136,7 +141,8 @@ public class ShipmentDraftController extends BaseController {
   }
 
   /**
-   * Allows update shipment. If draft does not exist, new one will be created.
+   * Allows update shipment. If draft does not exist, new one will be created. If the version is
+   * specified, the existing draft is updated only if it has not been modified since.
    *
    * @param draftDto A shipment draft DTO bound to the request body.
    * @return created or updated shipment draft.
@@ -169,6 +175,9 @@ public class ShipmentDraftController extends BaseController {
       profiler.start("SAVE_NEW_DRAFT");
       draft = repository.save(newDraft);
     } else {
+      profiler.start("INCREMENT_VERSION");
+      incrementVersion(existingDraft, draftDto.getVersion());
+
       profiler.start("UPDATE_AND_SAVE_DRAFT");
       existingDraft.updateFrom(newDraft);
       draft = repository.save(existingDraft);
@@ -182,6 +191,54 @@ public class ShipmentDraftController extends BaseController {
     return dto;
   }
 
+  /**
+   * Allows partial update of shipment draft. Only changed line items are updated, added or
+   * removed. The draft is updated only if its version is equal to the given one.
+   *
+   * @param patchDto A shipment draft changes bound to the request body.
+   * @return updated shipment draft.
+   */
+  @PatchMapping("/{id}")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public ShipmentDraftDto patchShipmentDraft(@PathVariable UUID id,
+                                             @RequestBody ShipmentDraftPatchDto patchDto) {
+    XLOGGER.entry(id, patchDto);
+    Profiler profiler = new Profiler("PATCH_SHIPMENT_DRAFT");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("VALIDATE");
+    if (patchDto.getVersion() == null) {
+      throw new ValidationException(SHIPMENT_DRAFT_VERSION_REQUIRED);
+    }
+
+    ShipmentDraft draft = findShipmentDraft(id, profiler);
+
+    profiler.start(CHECK_RIGHTS);
+    permissionService.canEditShipmentDraft(draft);
+
+    profiler.start("INCREMENT_VERSION");
+    incrementVersion(draft, patchDto.getVersion());
+
+    profiler.start("APPLY_CHANGES");
+    if (patchDto.getNotes() != null) {
+      draft.updateNotes(patchDto.getNotes());
+    }
+    if (patchDto.getLineItems() != null) {
+      draft.applyChanges(patchDto.getLineItems());
+    }
+
+    profiler.start("SAVE_DRAFT");
+    draft = repository.save(draft);
+
+    profiler.start("CREATE_DTO");
+    ShipmentDraftDto dto = draftDtoBuilder.build(draft);
+
+    profiler.stop().log();
+    XLOGGER.exit(dto);
+    return dto;
+  }
+
   /**
    * Get shipment with request param.
    *
@@ -297,6 +354,16 @@ public class ShipmentDraftController extends BaseController {
     return shipment;
   }
 
+  private void incrementVersion(ShipmentDraft draft, Long expectedVersion) {
+    if (null == expectedVersion) {
+      repository.incrementVersion(draft.getId().toString());
+    } else if (draft.getVersion() != expectedVersion
+        || repository.incrementVersion(draft.getId().toString(), expectedVersion) == 0) {
+      throw new ConflictException(SHIPMENT_DRAFT_VERSION_MISMATCH, expectedVersion.toString());
+    }
+    draft.incrementVersion();
+  }
+
   private void validateOrder(ObjectReferenceDto dtoOrder) {
     if (dtoOrder == null || dtoOrder.getId() == null) {
       throw new ValidationException(SHIPMENT_ORDERLESS_NOT_SUPPORTED);
@@ -55,6 +55,10 @@ public final class ShipmentDraftDto implements ShipmentDraft.Exporter, ShipmentD
   @Setter
   private List<ShipmentLineItemDto> lineItems;
 
+  @Getter
+  @Setter
+  private Long version;
+
   @JsonProperty
   public void setOrder(OrderObjectReferenceDto order) {
     this.order = order;
@@ -17,12 +17,17 @@ package org.openlmis.fulfillment.web.util;
 
 import static org.openlmis.fulfillment.i18n.MessageKeys.EVENT_MISSING_SOURCE_DESTINATION;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.openlmis.fulfillment.domain.ProofOfDelivery;
 import org.openlmis.fulfillment.domain.ProofOfDeliveryLineItem;
 import org.openlmis.fulfillment.domain.Shipment;
@@ -33,6 +38,7 @@ import org.openlmis.fulfillment.service.referencedata.FacilityReferenceDataServi
 import org.openlmis.fulfillment.service.referencedata.OrderableDto;
 import org.openlmis.fulfillment.service.referencedata.OrderableReferenceDataService;
 import org.openlmis.fulfillment.service.stockmanagement.ValidDestinationsStockManagementService;
+import org.openlmis.fulfillment.service.stockmanagement.ValidSourceDestinationIndex;
 import org.openlmis.fulfillment.service.stockmanagement.ValidSourceDestinationsStockManagementService;
 import org.openlmis.fulfillment.service.stockmanagement.ValidSourcesStockManagementService;
 import org.openlmis.fulfillment.util.AuthenticationHelper;
@@ -63,6 +69,9 @@ public class StockEventBuilder {
   @Autowired
   private ValidSourcesStockManagementService validSourcesStockManagementService;
 
+  @Autowired
+  private ValidSourceDestinationIndex validSourceDestinationIndex;
+
   @Autowired
   private ConfigurationSettingService configurationSettingService;
 
@@ -96,6 +105,68 @@ public class StockEventBuilder {
     return stockEventDto;
   }
 
+  /**
+   * Prepares building of stock event DTOs from the given shipments. Orderables and facilities of
+   * all shipments are retrieved at once and a valid destination is looked up only once for each
+   * distinct pair of facilities and program.
+   */
+  public ShipmentStockEvents fromShipments(Collection<Shipment> shipments) {
+    XLOGGER.entry(shipments);
+    Profiler profiler = new Profiler("PREPARE_STOCK_EVENTS_FROM_SHIPMENTS");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("GET_REFERENCE_DATA");
+    ReferenceData referenceData = new ReferenceData(
+        shipments
+            .stream()
+            .flatMap(shipment -> shipment.getLineItems().stream())
+            .map(ShipmentLineItem::getOrderableId)
+            .collect(Collectors.toSet()),
+        shipments
+            .stream()
+            .flatMap(shipment -> Stream.of(
+                shipment.getSupplyingFacilityId(), shipment.getReceivingFacilityId()))
+            .collect(Collectors.toSet()));
+
+    ShipmentStockEvents stockEvents = new ShipmentStockEvents(referenceData);
+
+    profiler.stop().log();
+    XLOGGER.exit(stockEvents);
+    return stockEvents;
+  }
+
+  /**
+   * Prepares building of stock event DTOs from the given proofs of delivery. Orderables and
+   * facilities of all proofs of delivery are retrieved at once and a valid source is looked up
+   * only once for each distinct pair of facilities and program.
+   */
+  public ProofOfDeliveryStockEvents fromProofsOfDelivery(
+      Collection<ProofOfDelivery> proofsOfDelivery) {
+    XLOGGER.entry(proofsOfDelivery);
+    Profiler profiler = new Profiler("PREPARE_STOCK_EVENTS_FROM_PODS");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("GET_REFERENCE_DATA");
+    ReferenceData referenceData = new ReferenceData(
+        proofsOfDelivery
+            .stream()
+            .flatMap(proofOfDelivery -> proofOfDelivery.getLineItems().stream())
+            .map(ProofOfDeliveryLineItem::getOrderableId)
+            .collect(Collectors.toSet()),
+        proofsOfDelivery
+            .stream()
+            .flatMap(proofOfDelivery -> Stream.of(
+                proofOfDelivery.getReceivingFacilityId(), proofOfDelivery.getSupplyingFacilityId()))
+            .collect(Collectors.toSet()));
+
+    ProofOfDeliveryStockEvents stockEvents = new ProofOfDeliveryStockEvents(
+        referenceData, authenticationHelper.getCurrentUser().getId());
+
+    profiler.stop().log();
+    XLOGGER.exit(stockEvents);
+    return stockEvents;
+  }
+
   /**
    * Builds a stock event DTO from the given proof of delivery.
    */
@@ -225,11 +296,18 @@ public class StockEventBuilder {
 
   private UUID getNodeId(UUID fromFacilityId, UUID toFacilityId, UUID programId,
                          ValidSourceDestinationsStockManagementService service) {
-    FacilityDto fromFacility = facilityReferenceDataService.findOne(fromFacilityId);
-    FacilityDto toFacility = facilityReferenceDataService.findOne(toFacilityId);
+    return getNodeId(fromFacilityId, toFacilityId, programId, service,
+        facilityReferenceDataService::findOne);
+  }
 
-    Optional<ValidSourceDestinationDto> response = service
-        .search(programId, fromFacility.getType().getId(), toFacility.getId());
+  private UUID getNodeId(UUID fromFacilityId, UUID toFacilityId, UUID programId,
+                         ValidSourceDestinationsStockManagementService service,
+                         Function<UUID, FacilityDto> facilities) {
+    FacilityDto fromFacility = facilities.apply(fromFacilityId);
+    FacilityDto toFacility = facilities.apply(toFacilityId);
+
+    Optional<ValidSourceDestinationDto> response = validSourceDestinationIndex
+        .search(service, programId, fromFacility.getType().getId(), toFacility.getId());
 
     if (response.isPresent()) {
       return response.get().getNode().getId();
@@ -238,4 +316,113 @@ public class StockEventBuilder {
     throw new ValidationException(EVENT_MISSING_SOURCE_DESTINATION, toFacility.getCode());
   }
 
+  /**
+   * Reference data shared between stock events built in one batch. Lookups of valid sources and
+   * destinations are cached, including the ones that did not find a node.
+   */
+  private final class ReferenceData {
+    private final Map<UUID, OrderableDto> orderables;
+    private final Map<UUID, FacilityDto> facilities;
+    private final Map<List<Object>, UUID> nodes = new HashMap<>();
+    private final Map<List<Object>, ValidationException> missingNodes = new HashMap<>();
+
+    private ReferenceData(Set<UUID> orderableIds, Set<UUID> facilityIds) {
+      this.orderables = getOrderables(orderableIds);
+      this.facilities = facilityIds.isEmpty()
+          ? new HashMap<>()
+          : facilityReferenceDataService
+              .findByIds(facilityIds)
+              .stream()
+              .collect(Collectors.toMap(FacilityDto::getId, facility -> facility));
+    }
+
+    private UUID getNodeId(UUID fromFacilityId, UUID toFacilityId, UUID programId,
+        ValidSourceDestinationsStockManagementService service) {
+      List<Object> key = Arrays.asList(service, fromFacilityId, toFacilityId, programId);
+
+      ValidationException missing = missingNodes.get(key);
+      if (null != missing) {
+        throw missing;
+      }
+
+      try {
+        return nodes.computeIfAbsent(key, ids -> StockEventBuilder.this.getNodeId(
+            fromFacilityId, toFacilityId, programId, service,
+            id -> facilities.computeIfAbsent(id, facilityReferenceDataService::findOne)));
+      } catch (ValidationException ex) {
+        missingNodes.put(key, ex);
+        throw ex;
+      }
+    }
+  }
+
+  /**
+   * Builds stock event DTOs from shipments prepared with
+   * {@link StockEventBuilder#fromShipments(Collection)}.
+   */
+  public class ShipmentStockEvents {
+    private final ReferenceData referenceData;
+
+    private ShipmentStockEvents(ReferenceData referenceData) {
+      this.referenceData = referenceData;
+    }
+
+    /**
+     * Builds a stock event DTO from the given shipment.
+     *
+     * @throws ValidationException if there is no valid destination for the receiving facility.
+     */
+    public StockEventDto build(Shipment shipment) {
+      UUID destinationId = referenceData.getNodeId(shipment.getSupplyingFacilityId(),
+          shipment.getReceivingFacilityId(), shipment.getProgramId(),
+          validDestinationsStockManagementService);
+      List<StockEventLineItemDto> lineItems = shipment
+          .getLineItems()
+          .stream()
+          .map(lineItem -> createLineItem(lineItem, referenceData.orderables, destinationId))
+          .collect(Collectors.toList());
+
+      return new StockEventDto(
+          shipment.getProgramId(), shipment.getSupplyingFacilityId(),
+          lineItems, shipment.getShippedById()
+      );
+    }
+  }
+
+  /**
+   * Builds stock event DTOs from proofs of delivery prepared with
+   * {@link StockEventBuilder#fromProofsOfDelivery(Collection)}.
+   */
+  public class ProofOfDeliveryStockEvents {
+    private final ReferenceData referenceData;
+    private final UUID userId;
+
+    private ProofOfDeliveryStockEvents(ReferenceData referenceData, UUID userId) {
+      this.referenceData = referenceData;
+      this.userId = userId;
+    }
+
+    /**
+     * Builds a stock event DTO from the given proof of delivery.
+     *
+     * @throws ValidationException if there is no valid source for the supplying facility.
+     */
+    public StockEventDto build(ProofOfDelivery proofOfDelivery) {
+      UUID sourceId = referenceData.getNodeId(proofOfDelivery.getReceivingFacilityId(),
+          proofOfDelivery.getSupplyingFacilityId(), proofOfDelivery.getProgramId(),
+          validSourcesStockManagementService);
+      List<StockEventLineItemDto> lineItems = proofOfDelivery
+          .getLineItems()
+          .stream()
+          .map(lineItem -> createLineItem(
+              proofOfDelivery, lineItem, referenceData.orderables, sourceId))
+          .collect(Collectors.toList());
+
+      return new StockEventDto(
+          proofOfDelivery.getProgramId(), proofOfDelivery.getReceivingFacilityId(),
+          lineItems, userId
+      );
+    }
+  }
+
 }
@@ -43,4 +43,8 @@ public abstract class TransferPropertiesDto
   @Setter
   private TransferType transferType;
 
+  @Getter
+  @Setter
+  private String compression;
+
 }
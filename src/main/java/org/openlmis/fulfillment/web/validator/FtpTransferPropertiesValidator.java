@@ -32,6 +32,7 @@ public class FtpTransferPropertiesValidator extends BaseValidator {
   private static final String REMOTE_DIRECTORY = "remoteDirectory";
   private static final String LOCAL_DIRECTORY = "localDirectory";
   private static final String PASSIVE_MODE = "passiveMode";
+  private static final String COMPRESSION = "compression";
 
   /**
    * Valides the given local transfer properties.
@@ -49,6 +50,7 @@ public class FtpTransferPropertiesValidator extends BaseValidator {
     rejectIfBlank(errors, target.getRemoteDirectory(), REMOTE_DIRECTORY);
     rejectIfBlank(errors, target.getLocalDirectory(), LOCAL_DIRECTORY);
     rejectIfNull(errors, target.getPassiveMode(), PASSIVE_MODE);
+    rejectIfNull(errors, target.getCompression(), COMPRESSION);
 
     return errors;
   }
@@ -25,6 +25,7 @@ import org.springframework.stereotype.Component;
 public class LocalTransferPropertiesValidator extends BaseValidator {
 
   private static final String PATH = "path";
+  private static final String COMPRESSION = "compression";
 
   /**
    * Valides the given local transfer properties.
@@ -35,6 +36,7 @@ public class LocalTransferPropertiesValidator extends BaseValidator {
     List<Message.LocalizedMessage> errors = Lists.newArrayList();
 
     rejectIfBlank(errors, target.getPath(), PATH);
+    rejectIfNull(errors, target.getCompression(), COMPRESSION);
 
     return errors;
   }
@@ -0,0 +1,22 @@
+CREATE TABLE order_transfer_jobs (
+  id uuid PRIMARY KEY,
+  orderid uuid NOT NULL,
+  supplyingfacilityid uuid NOT NULL,
+  attempts integer NOT NULL DEFAULT 0,
+  createddate timestamp with time zone NOT NULL,
+  nextattemptdate timestamp with time zone,
+  lastattemptdate timestamp with time zone,
+  lasterror text
+);
+
+ALTER TABLE order_transfer_jobs
+  ADD CONSTRAINT order_transfer_jobs_orderid_fk FOREIGN KEY (orderid) REFERENCES orders(id);
+
+ALTER TABLE order_transfer_jobs
+  ADD CONSTRAINT order_transfer_jobs_orderid_unq UNIQUE (orderid);
+
+CREATE INDEX order_transfer_jobs_nextattemptdate_idx ON order_transfer_jobs (nextattemptdate)
+  WHERE nextattemptdate IS NOT NULL;
+
+CREATE INDEX order_transfer_jobs_supplyingfacilityid_idx ON order_transfer_jobs
+  (supplyingfacilityid);
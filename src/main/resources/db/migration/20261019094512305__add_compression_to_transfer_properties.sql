@@ -0,0 +1,2 @@
+ALTER TABLE transfer_properties
+    ADD compression TEXT NOT NULL DEFAULT 'NONE';
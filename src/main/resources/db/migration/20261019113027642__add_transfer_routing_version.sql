@@ -0,0 +1,5 @@
+CREATE TABLE transfer_routing_version (
+    version bigint NOT NULL
+);
+
+INSERT INTO transfer_routing_version (version) VALUES (0);
@@ -0,0 +1,14 @@
+CREATE TABLE shipment_poller_instances (
+  id uuid PRIMARY KEY,
+  heartbeatdate timestamp with time zone NOT NULL
+);
+
+CREATE TABLE shipment_channel_leases (
+  id uuid PRIMARY KEY,
+  ownerid uuid NOT NULL,
+  expiresat timestamp with time zone NOT NULL
+);
+
+ALTER TABLE shipment_channel_leases
+  ADD CONSTRAINT shipment_channel_leases_id_fk FOREIGN KEY (id)
+  REFERENCES transfer_properties(id) ON DELETE CASCADE;
@@ -0,0 +1,14 @@
+CREATE TABLE shipment_file_receipts (
+  id uuid PRIMARY KEY,
+  checksum character varying(64) NOT NULL,
+  filesize bigint NOT NULL,
+  filename text NOT NULL,
+  channelid uuid,
+  processeddate timestamp with time zone NOT NULL
+);
+
+CREATE UNIQUE INDEX shipment_file_receipts_checksum_filesize_unq
+  ON shipment_file_receipts (checksum, filesize);
+
+CREATE INDEX shipment_file_receipts_processeddate_idx
+  ON shipment_file_receipts (processeddate);
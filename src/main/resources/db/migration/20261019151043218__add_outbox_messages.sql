@@ -0,0 +1,21 @@
+CREATE TABLE outbox_messages (
+  id uuid PRIMARY KEY,
+  position bigserial NOT NULL,
+  type text NOT NULL,
+  orderingkey text NOT NULL,
+  payload text NOT NULL,
+  attempts integer NOT NULL DEFAULT 0,
+  createddate timestamp with time zone NOT NULL,
+  nextattemptdate timestamp with time zone,
+  lastattemptdate timestamp with time zone,
+  lasterror text
+);
+
+ALTER TABLE outbox_messages
+  ADD CONSTRAINT outbox_messages_position_unq UNIQUE (position);
+
+CREATE INDEX outbox_messages_orderingkey_position_idx ON outbox_messages
+  (orderingkey, position);
+
+CREATE INDEX outbox_messages_nextattemptdate_idx ON outbox_messages (nextattemptdate)
+  WHERE nextattemptdate IS NOT NULL;
@@ -0,0 +1 @@
+ALTER TABLE shipment_drafts ADD COLUMN version bigint NOT NULL DEFAULT 0;
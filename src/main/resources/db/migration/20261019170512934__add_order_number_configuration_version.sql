@@ -0,0 +1,5 @@
+CREATE TABLE order_number_configuration_version (
+    version bigint NOT NULL
+);
+
+INSERT INTO order_number_configuration_version (version) VALUES (0);
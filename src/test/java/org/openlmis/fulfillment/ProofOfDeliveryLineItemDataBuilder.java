@@ -48,6 +48,26 @@ public class ProofOfDeliveryLineItemDataBuilder {
     return this;
   }
 
+  public ProofOfDeliveryLineItemDataBuilder withId(UUID id) {
+    this.id = id;
+    return this;
+  }
+
+  public ProofOfDeliveryLineItemDataBuilder withLotId(UUID lotId) {
+    this.lotId = lotId;
+    return this;
+  }
+
+  /**
+   * Sets quantities accepted and rejected.
+   */
+  public ProofOfDeliveryLineItemDataBuilder withQuantities(Integer quantityAccepted,
+      Integer quantityRejected) {
+    this.quantityAccepted = quantityAccepted;
+    this.quantityRejected = quantityRejected;
+    return this;
+  }
+
   public ProofOfDeliveryLineItemDataBuilder withIncorrectQuantityAccepted() {
     quantityAccepted =  RandomUtils.nextInt(1, 10) * -1;
     return this;
@@ -32,4 +32,5 @@ public class DummyShipmentDraftDto implements ShipmentDraft.Importer, ShipmentDr
   private Order order;
   private String notes;
   private List<ShipmentLineItem.Importer> lineItems;
+  private Long version;
 }
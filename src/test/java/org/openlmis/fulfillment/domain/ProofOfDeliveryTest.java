@@ -25,6 +25,7 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.openlmis.fulfillment.i18n.MessageKeys.ERROR_INCORRECT_QUANTITIES;
 import static org.openlmis.fulfillment.i18n.MessageKeys.MUST_CONTAIN_VALUE;
 import static org.openlmis.fulfillment.i18n.MessageKeys.PROOF_OF_DELIVERY_LINE_ITEMS_REQUIRED;
 
@@ -163,6 +164,74 @@ public class ProofOfDeliveryTest {
     assertTrue(proofOfDelivery.isConfirmed());
   }
 
+  @Test
+  public void shouldValidateLineItemAgainstShippedItemWithSameLot() {
+    UUID orderableId = UUID.randomUUID();
+    UUID lotId = UUID.randomUUID();
+    Shipment shipment = new ShipmentDataBuilder()
+        .withLineItems(Lists.newArrayList(
+            new ShipmentLineItemDataBuilder()
+                .withOrderableId(orderableId).withQuantityShipped(10L).build(),
+            new ShipmentLineItemDataBuilder()
+                .withOrderableId(orderableId).withLotId(lotId).withQuantityShipped(20L).build()))
+        .build();
+
+    ProofOfDelivery proofOfDelivery = new ProofOfDeliveryDataBuilder()
+        .withShipment(shipment)
+        .withLineItems(Collections.singletonList(new ProofOfDeliveryLineItemDataBuilder()
+            .withOrderableId(orderableId)
+            .withLotId(lotId)
+            .withQuantities(15, 5)
+            .build()))
+        .build();
+
+    proofOfDelivery.confirm();
+
+    assertTrue(proofOfDelivery.isConfirmed());
+  }
+
+  @Test
+  public void shouldNotConfirmIfQuantitiesDoNotMatchShippedQuantity() {
+    ShipmentLineItem shipped = new ShipmentLineItemDataBuilder().withQuantityShipped(10L).build();
+    ProofOfDelivery proofOfDelivery = new ProofOfDeliveryDataBuilder()
+        .withShipment(new ShipmentDataBuilder()
+            .withLineItems(Collections.singletonList(shipped))
+            .build())
+        .withLineItems(Collections.singletonList(new ProofOfDeliveryLineItemDataBuilder()
+            .withOrderableId(shipped.getOrderableId())
+            .withLotId(shipped.getLotId())
+            .withQuantities(5, 1)
+            .build()))
+        .build();
+
+    exception.expect(ValidationException.class);
+    exception.expect(hasProperty("messageKey", is(ERROR_INCORRECT_QUANTITIES)));
+
+    proofOfDelivery.confirm();
+  }
+
+  @Test
+  public void shouldUpdateLineItemsWithSameId() {
+    ProofOfDeliveryLineItem existing = new ProofOfDeliveryLineItemDataBuilder().build();
+    ProofOfDelivery proofOfDelivery = new ProofOfDeliveryDataBuilder()
+        .withLineItems(Lists.newArrayList(existing))
+        .build();
+
+    ProofOfDelivery update = new ProofOfDeliveryDataBuilder()
+        .withLineItems(Lists.newArrayList(
+            new ProofOfDeliveryLineItemDataBuilder()
+                .withId(existing.getId()).withQuantities(7, 3).build(),
+            new ProofOfDeliveryLineItemDataBuilder().withQuantities(1, 1).build(),
+            new ProofOfDeliveryLineItemDataBuilder().withQuantities(2, 2).buildAsNew()))
+        .build();
+
+    proofOfDelivery.updateFrom(update);
+
+    assertThat(proofOfDelivery.getLineItems().size(), is(1));
+    assertThat(existing.getQuantityAccepted(), is(7));
+    assertThat(existing.getQuantityRejected(), is(3));
+  }
+
   @Test
   public void shouldExportValues() {
     DummyProofOfDeliveryDto exporter = new DummyProofOfDeliveryDto();
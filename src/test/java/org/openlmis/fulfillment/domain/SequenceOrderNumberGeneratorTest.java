@@ -0,0 +1,73 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.repository.OrderNumberConfigurationRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SequenceOrderNumberGeneratorTest {
+
+  @Mock
+  private OrderNumberConfigurationRepository orderNumberConfigurationRepository;
+
+  @InjectMocks
+  private SequenceOrderNumberGenerator sequenceOrderNumberGenerator;
+
+  private Order order = mock(Order.class);
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(sequenceOrderNumberGenerator, "blockSize", 2);
+
+    when(orderNumberConfigurationRepository.allocateOrderNumbers(2))
+        .thenReturn(Arrays.asList(BigInteger.valueOf(1), BigInteger.valueOf(2)))
+        .thenReturn(Arrays.asList(BigInteger.valueOf(35), BigInteger.valueOf(36)));
+  }
+
+  @Test
+  public void shouldEncodeSequenceValuesAsBase36() {
+    assertEquals("00000001", sequenceOrderNumberGenerator.generate(order));
+    assertEquals("00000002", sequenceOrderNumberGenerator.generate(order));
+    assertEquals("0000000Z", sequenceOrderNumberGenerator.generate(order));
+    assertEquals("00000010", sequenceOrderNumberGenerator.generate(order));
+  }
+
+  @Test
+  public void shouldAllocateNumbersInBlocks() {
+    sequenceOrderNumberGenerator.generate(order);
+    sequenceOrderNumberGenerator.generate(order);
+    verify(orderNumberConfigurationRepository, times(1)).allocateOrderNumbers(2);
+
+    sequenceOrderNumberGenerator.generate(order);
+    verify(orderNumberConfigurationRepository, times(2)).allocateOrderNumbers(2);
+  }
+}
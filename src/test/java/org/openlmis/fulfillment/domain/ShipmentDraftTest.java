@@ -18,8 +18,11 @@ package org.openlmis.fulfillment.domain;
 import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_DRAFT_LINE_ITEM_DUPLICATE;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -33,6 +36,7 @@ import org.mockito.internal.matchers.apachecommons.ReflectionEquals;
 import org.openlmis.fulfillment.testutils.ShipmentDraftDataBuilder;
 import org.openlmis.fulfillment.testutils.ShipmentDraftLineItemDataBuilder;
 import org.openlmis.fulfillment.testutils.ToStringTestUtils;
+import org.openlmis.fulfillment.web.ValidationException;
 import org.springframework.test.util.ReflectionTestUtils;
 
 public class ShipmentDraftTest {
@@ -60,7 +64,7 @@ public class ShipmentDraftTest {
     DummyShipmentDraftDto shipmentDraftDto = new DummyShipmentDraftDto(id, order, notes,
         Collections.singletonList(
             new DummyShipmentLineItemDto(lineItemId, orderableId, lotId, quantityShipped,
-                extraData)));
+                extraData)), null);
 
     ShipmentDraft actual = ShipmentDraft.newInstance(shipmentDraftDto);
 
@@ -111,6 +115,25 @@ public class ShipmentDraftTest {
     assertTrue(reflectionEquals(newItem, updatedItems.get(1)));
   }
 
+  @Test
+  public void shouldAddLineItemsWithoutId() {
+    ShipmentDraftLineItem existing = new ShipmentDraftLineItemDataBuilder().build();
+    ShipmentDraft existingDraft = new ShipmentDraftDataBuilder()
+        .withLineItems(Lists.newArrayList(existing))
+        .build();
+    ShipmentDraft newDraft = new ShipmentDraftDataBuilder()
+        .withLineItems(Lists.newArrayList(
+            new ShipmentDraftLineItemDataBuilder().withoutId().build()))
+        .build();
+
+    existingDraft.updateFrom(newDraft);
+
+    List<ShipmentDraftLineItem> updatedItems =
+        (List<ShipmentDraftLineItem>)ReflectionTestUtils.getField(existingDraft, "lineItems");
+    assertEquals(1, updatedItems.size());
+    assertNull(updatedItems.get(0).getId());
+  }
+
   @Test
   public void shouldExportValues() {
     DummyShipmentDraftDto shipmentDraftDto = new DummyShipmentDraftDto();
@@ -121,6 +144,144 @@ public class ShipmentDraftTest {
     assertEquals(id, shipmentDraftDto.getId());
     assertEquals(order, shipmentDraftDto.getOrder());
     assertEquals(notes, shipmentDraftDto.getNotes());
+    assertEquals(Long.valueOf(0), shipmentDraftDto.getVersion());
+  }
+
+  @Test
+  public void shouldIncrementVersion() {
+    ShipmentDraft shipment = createShipment();
+
+    shipment.incrementVersion();
+
+    assertEquals(1, shipment.getVersion());
+  }
+
+  @Test
+  public void shouldApplyChangesOnlyToMatchedLineItems() {
+    ShipmentDraftLineItem byId = new ShipmentDraftLineItemDataBuilder().build();
+    ShipmentDraftLineItem byOrderableAndLot = new ShipmentDraftLineItemDataBuilder().build();
+    ShipmentDraftLineItem untouched = new ShipmentDraftLineItemDataBuilder().build();
+    final ShipmentDraftLineItem untouchedCopy = untouched.copy();
+    ShipmentDraft draft = new ShipmentDraftDataBuilder()
+        .withLineItems(Lists.newArrayList(byId, byOrderableAndLot, untouched))
+        .build();
+
+    DummyShipmentLineItemDto exported = export(byOrderableAndLot);
+
+    draft.applyChanges(Lists.newArrayList(
+        new DummyShipmentDraftLineItemChange(byId.getId(), orderableId, lotId, 10L, null, false),
+        new DummyShipmentDraftLineItemChange(null, exported.getOrderableId(),
+            exported.getLotId(), 20L, null, false)));
+
+    List<ShipmentDraftLineItem> updatedItems = getLineItems(draft);
+    assertEquals(3, updatedItems.size());
+    assertTrue(byId == updatedItems.get(0));
+    assertEquals(orderableId, export(byId).getOrderableId());
+    assertEquals(lotId, export(byId).getLotId());
+    assertEquals(Long.valueOf(10), export(byId).getQuantityShipped());
+    assertTrue(byOrderableAndLot == updatedItems.get(1));
+    assertEquals(Long.valueOf(20), export(byOrderableAndLot).getQuantityShipped());
+    assertTrue(untouched == updatedItems.get(2));
+    assertTrue(reflectionEquals(untouchedCopy, untouched));
+  }
+
+  @Test
+  public void shouldAddLineItemWhenChangeDoesNotMatchAnyLineItem() {
+    ShipmentDraft draft = new ShipmentDraftDataBuilder()
+        .withLineItems(Lists.newArrayList(new ShipmentDraftLineItemDataBuilder().build()))
+        .build();
+
+    draft.applyChanges(Lists.newArrayList(
+        new DummyShipmentDraftLineItemChange(null, orderableId, lotId, quantityShipped,
+            extraData, false)));
+
+    List<ShipmentDraftLineItem> updatedItems = getLineItems(draft);
+    assertEquals(2, updatedItems.size());
+    DummyShipmentLineItemDto added = export(updatedItems.get(1));
+    assertNull(added.getId());
+    assertEquals(orderableId, added.getOrderableId());
+    assertEquals(lotId, added.getLotId());
+    assertEquals(quantityShipped, added.getQuantityShipped());
+  }
+
+  @Test
+  public void shouldRemoveMatchedLineItems() {
+    ShipmentDraftLineItem byId = new ShipmentDraftLineItemDataBuilder().build();
+    ShipmentDraftLineItem byOrderableAndLot = new ShipmentDraftLineItemDataBuilder().build();
+    ShipmentDraftLineItem untouched = new ShipmentDraftLineItemDataBuilder().build();
+    ShipmentDraft draft = new ShipmentDraftDataBuilder()
+        .withLineItems(Lists.newArrayList(byId, byOrderableAndLot, untouched))
+        .build();
+
+    DummyShipmentLineItemDto exported = export(byOrderableAndLot);
+
+    draft.applyChanges(Lists.newArrayList(
+        new DummyShipmentDraftLineItemChange(byId.getId(), null, null, null, null, true),
+        new DummyShipmentDraftLineItemChange(null, exported.getOrderableId(),
+            exported.getLotId(), null, null, true),
+        new DummyShipmentDraftLineItemChange(UUID.randomUUID(), null, null, null, null, true)));
+
+    List<ShipmentDraftLineItem> updatedItems = getLineItems(draft);
+    assertEquals(1, updatedItems.size());
+    assertTrue(untouched == updatedItems.get(0));
+  }
+
+  @Test(expected = ValidationException.class)
+  public void shouldNotApplyChangeForNonExistingLineItemId() {
+    ShipmentDraft draft = new ShipmentDraftDataBuilder()
+        .withLineItems(Lists.newArrayList(new ShipmentDraftLineItemDataBuilder().build()))
+        .build();
+
+    draft.applyChanges(Lists.newArrayList(
+        new DummyShipmentDraftLineItemChange(UUID.randomUUID(), orderableId, lotId,
+            quantityShipped, extraData, false)));
+  }
+
+  @Test(expected = ValidationException.class)
+  public void shouldNotAddLineItemWithoutOrderable() {
+    ShipmentDraft draft = new ShipmentDraftDataBuilder()
+        .withLineItems(Lists.newArrayList(new ShipmentDraftLineItemDataBuilder().build()))
+        .build();
+
+    draft.applyChanges(Lists.newArrayList(
+        new DummyShipmentDraftLineItemChange(null, null, lotId, quantityShipped, extraData,
+            false)));
+  }
+
+  @Test
+  public void shouldKeepValuesNotSetInChangeMatchedById() {
+    ShipmentDraftLineItem existing = new ShipmentDraftLineItemDataBuilder().build();
+    ShipmentDraft draft = new ShipmentDraftDataBuilder()
+        .withLineItems(Lists.newArrayList(existing))
+        .build();
+    DummyShipmentLineItemDto before = export(existing);
+
+    draft.applyChanges(Lists.newArrayList(
+        new DummyShipmentDraftLineItemChange(existing.getId(), null, null, 30L, null, false)));
+
+    DummyShipmentLineItemDto after = export(getLineItems(draft).get(0));
+    assertEquals(before.getOrderableId(), after.getOrderableId());
+    assertEquals(before.getLotId(), after.getLotId());
+    assertEquals(Long.valueOf(30), after.getQuantityShipped());
+  }
+
+  @Test
+  public void shouldNotApplyChangeThatDuplicatesOrderableAndLotOfOtherLineItem() {
+    ShipmentDraftLineItem first = new ShipmentDraftLineItemDataBuilder().build();
+    ShipmentDraftLineItem second = new ShipmentDraftLineItemDataBuilder().build();
+    ShipmentDraft draft = new ShipmentDraftDataBuilder()
+        .withLineItems(Lists.newArrayList(first, second))
+        .build();
+    DummyShipmentLineItemDto exported = export(first);
+
+    try {
+      draft.applyChanges(Lists.newArrayList(
+          new DummyShipmentDraftLineItemChange(second.getId(), exported.getOrderableId(),
+              exported.getLotId(), null, null, false)));
+      fail("Expected ValidationException");
+    } catch (ValidationException ex) {
+      assertEquals(SHIPMENT_DRAFT_LINE_ITEM_DUPLICATE, ex.getMessageKey());
+    }
   }
 
   @Test
@@ -129,6 +290,16 @@ public class ShipmentDraftTest {
     ToStringTestUtils.verify(ShipmentDraft.class, shipment);
   }
 
+  private List<ShipmentDraftLineItem> getLineItems(ShipmentDraft draft) {
+    return (List<ShipmentDraftLineItem>) ReflectionTestUtils.getField(draft, "lineItems");
+  }
+
+  private DummyShipmentLineItemDto export(ShipmentDraftLineItem lineItem) {
+    DummyShipmentLineItemDto exported = new DummyShipmentLineItemDto();
+    lineItem.export(exported);
+    return exported;
+  }
+
   private ShipmentDraft createShipment() {
     return new ShipmentDraftDataBuilder()
         .withId(id)
@@ -0,0 +1,74 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.domain;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+
+public class TransferCompressionTest {
+  private static final String FILE_NAME = "O123.csv";
+  private static final String CONTENT = "orderCode,quantity\r\nO123,10\r\n";
+
+  @Test
+  public void shouldFindCompressionByString() {
+    assertThat(TransferCompression.fromString("gzip"), is(TransferCompression.GZIP));
+    assertThat(TransferCompression.fromString("ZIP"), is(TransferCompression.ZIP));
+    assertThat(TransferCompression.fromString(null), is(TransferCompression.NONE));
+    assertThat(TransferCompression.fromString(""), is(TransferCompression.NONE));
+    assertThat(TransferCompression.fromString("rar"), is(nullValue()));
+  }
+
+  @Test
+  public void shouldFindCompressionByFileName() {
+    assertThat(TransferCompression.fromFileName("O123.csv.gz"), is(TransferCompression.GZIP));
+    assertThat(TransferCompression.fromFileName("O123.csv.zip"), is(TransferCompression.ZIP));
+    assertThat(TransferCompression.fromFileName(FILE_NAME), is(TransferCompression.NONE));
+  }
+
+  @Test
+  public void shouldAddExtensionToFileName() {
+    assertThat(TransferCompression.NONE.getFileName(FILE_NAME), is(FILE_NAME));
+    assertThat(TransferCompression.GZIP.getFileName(FILE_NAME), is("O123.csv.gz"));
+    assertThat(TransferCompression.ZIP.getFileName(FILE_NAME), is("O123.csv.zip"));
+  }
+
+  @Test
+  public void shouldCompressAndDecompressData() throws IOException {
+    for (TransferCompression compression : TransferCompression.values()) {
+      ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+      try (OutputStream stream = compression.compress(target, FILE_NAME)) {
+        stream.write(CONTENT.getBytes(UTF_8));
+      }
+
+      InputStream source = compression.decompress(
+          new ByteArrayInputStream(target.toByteArray()));
+
+      assertThat(StreamUtils.copyToString(source, UTF_8), is(CONTENT));
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlmis.fulfillment.OrderDataBuilder;
+import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.OrderStatus;
+import org.openlmis.fulfillment.testutils.UpdateDetailsDataBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class OrderCsvCacheTest {
+  private static final String ETAG = "W/\"etag\"";
+
+  private OrderCsvCache cache = new OrderCsvCache();
+  private Order order = new OrderDataBuilder().build();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(cache, "maxSize", 10L);
+  }
+
+  @Test
+  public void shouldReturnSameETagForUnchangedOrder() {
+    assertThat(cache.getETag(order, 1), is(cache.getETag(order, 1)));
+  }
+
+  @Test
+  public void shouldChangeETagWhenOrderIsUpdated() {
+    String etag = cache.getETag(order, 1);
+
+    order.updateStatus(OrderStatus.SHIPPED, new UpdateDetailsDataBuilder().build());
+
+    assertThat(cache.getETag(order, 1), is(not(etag)));
+  }
+
+  @Test
+  public void shouldChangeETagWhenOrderStatusIsChanged() {
+    String etag = cache.getETag(order, 1);
+
+    order.setStatus(OrderStatus.IN_ROUTE);
+
+    assertThat(cache.getETag(order, 1), is(not(etag)));
+  }
+
+  @Test
+  public void shouldChangeETagWhenTemplateVersionIsChanged() {
+    assertThat(cache.getETag(order, 2), is(not(cache.getETag(order, 1))));
+  }
+
+  @Test
+  public void shouldReturnStoredContent() {
+    byte[] content = new byte[5];
+    cache.put(order.getId(), ETAG, content);
+
+    assertThat(cache.get(order.getId(), ETAG), is(content));
+  }
+
+  @Test
+  public void shouldNotReturnContentStoredWithDifferentETag() {
+    cache.put(order.getId(), ETAG, new byte[5]);
+
+    assertThat(cache.get(order.getId(), "W/\"other\""), is(nullValue()));
+  }
+
+  @Test
+  public void shouldRemoveLeastRecentlyUsedContentWhenSizeIsExceeded() {
+    UUID first = UUID.randomUUID();
+    UUID second = UUID.randomUUID();
+    UUID third = UUID.randomUUID();
+
+    cache.put(first, ETAG, new byte[4]);
+    cache.put(second, ETAG, new byte[4]);
+    cache.get(first, ETAG);
+    cache.put(third, ETAG, new byte[4]);
+
+    assertThat(cache.get(first, ETAG), is(not(nullValue())));
+    assertThat(cache.get(second, ETAG), is(nullValue()));
+    assertThat(cache.get(third, ETAG), is(not(nullValue())));
+  }
+
+  @Test
+  public void shouldNotStoreContentBiggerThanMaxSize() {
+    cache.put(order.getId(), ETAG, new byte[11]);
+
+    assertThat(cache.get(order.getId(), ETAG), is(nullValue()));
+  }
+
+  @Test
+  public void shouldNotStoreContentIfCacheIsDisabled() {
+    ReflectionTestUtils.setField(cache, "maxSize", 0L);
+    cache.put(order.getId(), ETAG, new byte[1]);
+
+    assertThat(cache.get(order.getId(), ETAG), is(nullValue()));
+  }
+}
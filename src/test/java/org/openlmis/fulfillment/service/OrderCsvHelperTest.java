@@ -15,20 +15,37 @@
 
 package org.openlmis.fulfillment.service;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.Sets;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -42,6 +59,7 @@ import org.openlmis.fulfillment.domain.FileTemplate;
 import org.openlmis.fulfillment.domain.Order;
 import org.openlmis.fulfillment.domain.OrderLineItem;
 import org.openlmis.fulfillment.domain.TemplateType;
+import org.openlmis.fulfillment.domain.TransferCompression;
 import org.openlmis.fulfillment.service.referencedata.DispensableDto;
 import org.openlmis.fulfillment.service.referencedata.FacilityDto;
 import org.openlmis.fulfillment.service.referencedata.FacilityReferenceDataService;
@@ -50,6 +68,7 @@ import org.openlmis.fulfillment.service.referencedata.OrderableReferenceDataServ
 import org.openlmis.fulfillment.service.referencedata.PeriodReferenceDataService;
 import org.openlmis.fulfillment.service.referencedata.ProcessingPeriodDto;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
 
 @SuppressWarnings({"PMD.TooManyMethods"})
 @RunWith(MockitoJUnitRunner.class)
@@ -86,14 +105,17 @@ public class OrderCsvHelperTest {
     order = createOrder();
 
     UUID facilityId = order.getFacilityId();
-    when(facilityReferenceDataService.findOne(facilityId)).thenReturn(createFacility());
+    when(facilityReferenceDataService.findByIds(Collections.singleton(facilityId)))
+        .thenReturn(Collections.singletonList(createFacility(facilityId)));
 
     UUID periodId = order.getProcessingPeriodId();
-    when(periodReferenceDataService.findOne(periodId)).thenReturn(createPeriod());
+    when(periodReferenceDataService.findByIds(Collections.singleton(periodId)))
+        .thenReturn(Collections.singletonList(createPeriod(periodId)));
 
     UUID productId = order.getOrderLineItems()
         .get(0).getOrderableId();
-    when(orderableReferenceDataService.findOne(productId)).thenReturn(createProduct());
+    when(orderableReferenceDataService.findByIds(Collections.singleton(productId)))
+        .thenReturn(Collections.singletonList(createProduct(productId)));
   }
 
   @Test
@@ -211,6 +233,36 @@ public class OrderCsvHelperTest {
 
     String csv = writeCsvFile(order, fileTemplate);
     assertThat(csv, startsWith(ORDER_NUMBER + ",Product"));
+    assertThat(fileTemplate.getFileColumns().size(), is(4));
+  }
+
+  @Test
+  public void shouldExportFieldsWithNestedKeyPath() throws IOException {
+    List<FileColumn> fileColumns = new ArrayList<>();
+    fileColumns.add(new FileColumn(true, "header.first.quantity", ORDERED_QUANTITY,
+        true, 1, null, ORDER, "orderLineItems[1]/orderedQuantity", null, null, null));
+
+    FileTemplate fileTemplate = new FileTemplate("O", false, TemplateType.ORDER,
+        fileColumns);
+
+    String csv = writeCsvFile(order, fileTemplate);
+    assertThat(csv, startsWith(
+        order.getOrderLineItems().get(0).getOrderedQuantity().toString() + "\r\n"));
+  }
+
+  @Test
+  public void shouldCompileTemplateOnlyOnce() {
+    List<FileColumn> fileColumns = new ArrayList<>();
+    fileColumns.add(new FileColumn(true, "header.order.number", ORDER_NUMBER,
+        true, 1, null, ORDER, "orderCode", null, null, null));
+
+    FileTemplate fileTemplate = new FileTemplate("O", true, TemplateType.ORDER, fileColumns);
+    OrderCsvPlan plan = orderCsvHelper.getPlan(fileTemplate);
+
+    assertThat(orderCsvHelper.getPlan(fileTemplate), is(sameInstance(plan)));
+
+    FileTemplate newVersion = new FileTemplate("O", false, TemplateType.ORDER, fileColumns);
+    assertThat(orderCsvHelper.getPlan(newVersion), is(not(sameInstance(plan))));
   }
 
   @Test
@@ -232,6 +284,69 @@ public class OrderCsvHelperTest {
     assertThat(csv, startsWith("facilityCode,productCode,productName,01/16"));
   }
 
+  @Test
+  public void shouldRetrieveRelatedObjectsOnceForAllLineItems() throws IOException {
+    List<FileColumn> fileColumns = new ArrayList<>();
+    fileColumns.add(new FileColumn(true, "header.product.code", PRODUCT_CODE,
+        true, 1, null, LINE_ITEM, ORDERABLE, "Orderable", "productCode", null));
+    fileColumns.add(new FileColumn(true, "header.product.name", "Product name",
+        true, 2, null, LINE_ITEM, ORDERABLE, "Orderable", "fullProductName", null));
+
+    FileTemplate fileTemplate = new FileTemplate("O", false, TemplateType.ORDER,
+        fileColumns);
+
+    OrderLineItem first = new OrderLineItemDataBuilder().withRandomOrderedQuantity().build();
+    OrderLineItem second = new OrderLineItemDataBuilder().withRandomOrderedQuantity().build();
+    OrderLineItem third = new OrderLineItemDataBuilder().withRandomOrderedQuantity()
+        .withOrderableId(first.getOrderableId()).build();
+    Order order = new OrderDataBuilder().withLineItems(first, second, third).build();
+
+    Set<UUID> orderableIds = Sets.newHashSet(first.getOrderableId(), second.getOrderableId());
+    when(orderableReferenceDataService.findByIds(orderableIds)).thenReturn(Arrays.asList(
+        createProduct(first.getOrderableId()), createProduct(second.getOrderableId())));
+
+    String csv = writeCsvFile(order, fileTemplate);
+
+    assertThat(csv.split("\r\n").length, is(3));
+    assertThat(csv, startsWith("productCode,productName"));
+    verify(orderableReferenceDataService).findByIds(orderableIds);
+    verify(orderableReferenceDataService, never()).findOne(any(UUID.class));
+  }
+
+  @Test
+  public void shouldWriteCsvFileForEachOrderToZipArchive() throws IOException {
+    List<FileColumn> fileColumns = new ArrayList<>();
+    fileColumns.add(new FileColumn(true, "header.order.number", ORDER_NUMBER,
+        true, 1, null, ORDER, "orderCode", null, null, null));
+    fileColumns.add(new FileColumn(true, "header.facility.code", "Facility code",
+        true, 2, null, ORDER, "facilityId", "Facility", "code", null));
+
+    FileTemplate fileTemplate = new FileTemplate("O", false, TemplateType.ORDER,
+        fileColumns);
+
+    Order other = new OrderDataBuilder().withFacilityId(order.getFacilityId()).build();
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+
+    try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+      orderCsvHelper.writeCsvFiles(Arrays.asList(order, other), fileTemplate, zip);
+    }
+
+    Map<String, String> files = new HashMap<>();
+    try (ZipInputStream zip = new ZipInputStream(
+        new ByteArrayInputStream(archive.toByteArray()))) {
+      for (ZipEntry entry = zip.getNextEntry(); null != entry; entry = zip.getNextEntry()) {
+        files.put(entry.getName(), StreamUtils.copyToString(zip, UTF_8));
+      }
+    }
+
+    assertThat(files.size(), is(2));
+    assertThat(files.get("O" + order.getOrderCode() + ".csv"),
+        startsWith(order.getOrderCode() + ",facilityCode"));
+    assertThat(files.get("O" + other.getOrderCode() + ".csv"),
+        startsWith(other.getOrderCode() + ",facilityCode"));
+    verify(facilityReferenceDataService).findByIds(Collections.singleton(order.getFacilityId()));
+  }
+
   @Test
   public void shouldFormatDates() throws IOException {
     List<FileColumn> fileColumns = new ArrayList<>();
@@ -249,6 +364,44 @@ public class OrderCsvHelperTest {
     assertThat(csv, startsWith("01/16," + date));
   }
 
+  @Test
+  public void shouldStreamTheSameContentAsWrittenFile() throws IOException {
+    ReflectionTestUtils.setField(orderCsvHelper, "includeZeroQuantity", true);
+
+    List<FileColumn> fileColumns = new ArrayList<>();
+    fileColumns.add(new FileColumn(true, "header.order.number", ORDER_NUMBER,
+        true, 1, null, ORDER, "orderCode", null, null, null));
+    fileColumns.add(new FileColumn(true, "header.quantity.ordered", ORDERED_QUANTITY,
+        true, 2, null, LINE_ITEM, "orderedQuantity", null, null, null));
+
+    FileTemplate fileTemplate = new FileTemplate("O", true, TemplateType.ORDER,
+        fileColumns);
+
+    String expected = writeCsvFile(order, fileTemplate);
+
+    try (InputStream stream = orderCsvHelper.getCsvFileAsStream(order, fileTemplate)) {
+      assertThat(StreamUtils.copyToString(stream, UTF_8), is(expected));
+    }
+  }
+
+  @Test
+  public void shouldStreamCompressedFile() throws IOException {
+    List<FileColumn> fileColumns = new ArrayList<>();
+    fileColumns.add(new FileColumn(true, "header.order.number", ORDER_NUMBER,
+        true, 1, null, ORDER, "orderCode", null, null, null));
+
+    FileTemplate fileTemplate = new FileTemplate("O", true, TemplateType.ORDER,
+        fileColumns);
+
+    String expected = writeCsvFile(order, fileTemplate);
+
+    try (InputStream stream = orderCsvHelper.getCsvFileAsStream(order, fileTemplate,
+        TransferCompression.GZIP, "O.csv")) {
+      InputStream decompressed = TransferCompression.GZIP.decompress(stream);
+      assertThat(StreamUtils.copyToString(decompressed, UTF_8), is(expected));
+    }
+  }
+
   private String writeCsvFile(Order order, FileTemplate fileTemplate)
       throws IOException {
     StringWriter writer = new StringWriter();
@@ -273,23 +426,26 @@ public class OrderCsvHelperTest {
         .build();
   }
 
-  private FacilityDto createFacility() {
+  private FacilityDto createFacility(UUID id) {
     FacilityDto facility = new FacilityDto();
+    facility.setId(id);
     facility.setCode("facilityCode");
 
     return facility;
   }
 
-  private ProcessingPeriodDto createPeriod() {
+  private ProcessingPeriodDto createPeriod(UUID id) {
     ProcessingPeriodDto period = new ProcessingPeriodDto();
+    period.setId(id);
     period.setName("periodName");
     period.setStartDate(LocalDate.of(2016, Month.JANUARY, 1));
 
     return period;
   }
 
-  private OrderableDto createProduct() {
+  private OrderableDto createProduct(UUID id) {
     OrderableDto product = new OrderableDto();
+    product.setId(id);
     product.setProductCode("productCode");
     product.setFullProductName("productName");
     product.setDispensable(new DispensableDto("each", "Each"));
@@ -0,0 +1,131 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Sets;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.ZipOutputStream;
+import javax.persistence.EntityManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.OrderDataBuilder;
+import org.openlmis.fulfillment.domain.FileTemplate;
+import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.TemplateType;
+import org.openlmis.fulfillment.repository.OrderRepository;
+import org.openlmis.fulfillment.web.OrderNotFoundException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderExportServiceTest {
+
+  @Mock
+  private OrderService orderService;
+
+  @Mock
+  private OrderRepository orderRepository;
+
+  @Mock
+  private PermissionService permissionService;
+
+  @Mock
+  private OrderCsvHelper csvHelper;
+
+  @Mock
+  private EntityManager entityManager;
+
+  @InjectMocks
+  private OrderExportService orderExportService;
+
+  private Order first = new OrderDataBuilder().build();
+  private Order second = new OrderDataBuilder().build();
+  private Set<UUID> orderIds = Sets.newHashSet(first.getId(), second.getId());
+  private FileTemplate template = new FileTemplate("O", true, TemplateType.ORDER,
+      Collections.emptyList());
+  private OrderSearchParams params = new OrderSearchParams();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(orderExportService, "batchSize", 1);
+
+    when(orderRepository.findAll(Collections.singletonList(first.getId())))
+        .thenReturn(Collections.singletonList(first));
+    when(orderRepository.findAll(Collections.singletonList(second.getId())))
+        .thenReturn(Collections.singletonList(second));
+  }
+
+  @Test
+  public void shouldExportOrdersWithGivenIdsInBatches() throws IOException {
+    orderExportService.exportToZip(params, orderIds, template, new ByteArrayOutputStream());
+
+    verify(csvHelper).writeCsvFiles(eq(Collections.singletonList(first)), eq(template),
+        any(ZipOutputStream.class));
+    verify(csvHelper).writeCsvFiles(eq(Collections.singletonList(second)), eq(template),
+        any(ZipOutputStream.class));
+    verify(entityManager, times(2)).clear();
+  }
+
+  @Test
+  public void shouldExportSearchedOrdersPageByPage() throws IOException {
+    List<Order> firstPage = Collections.singletonList(first);
+    List<Order> secondPage = Collections.singletonList(second);
+
+    when(orderService.searchOrders(eq(params), any(Pageable.class)))
+        .thenReturn(new PageImpl<>(firstPage, new PageRequest(0, 1), 2))
+        .thenReturn(new PageImpl<>(secondPage, new PageRequest(1, 1), 2));
+
+    orderExportService.exportToZip(params, null, template, new ByteArrayOutputStream());
+
+    verify(orderService, times(2)).searchOrders(eq(params), any(Pageable.class));
+    verify(csvHelper).writeCsvFiles(eq(firstPage), eq(template), any(ZipOutputStream.class));
+    verify(csvHelper).writeCsvFiles(eq(secondPage), eq(template), any(ZipOutputStream.class));
+    verify(entityManager, times(2)).clear();
+  }
+
+  @Test
+  public void shouldCheckPermissionsForAllOrders() {
+    orderExportService.checkCanExport(orderIds);
+
+    verify(permissionService).canViewOrder(first);
+    verify(permissionService).canViewOrder(second);
+  }
+
+  @Test(expected = OrderNotFoundException.class)
+  public void shouldThrowExceptionIfOrderDoesNotExist() {
+    when(orderRepository.findAll(anyListOf(UUID.class))).thenReturn(Collections.emptyList());
+
+    orderExportService.checkCanExport(orderIds);
+  }
+}
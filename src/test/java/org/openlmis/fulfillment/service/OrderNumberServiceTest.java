@@ -0,0 +1,129 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.OrderDataBuilder;
+import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.OrderNumberConfiguration;
+import org.openlmis.fulfillment.extension.ExtensionManager;
+import org.openlmis.fulfillment.extension.point.OrderNumberGenerator;
+import org.openlmis.fulfillment.repository.OrderNumberConfigurationRepository;
+import org.openlmis.fulfillment.service.referencedata.ProgramDto;
+import org.openlmis.fulfillment.testutils.ProgramDataBuilder;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderNumberServiceTest {
+  private static final String ORDER_NUMBER = "00000001";
+
+  @Mock
+  private OrderNumberConfigurationRepository orderNumberConfigurationRepository;
+
+  @Mock
+  private ExtensionManager extensionManager;
+
+  @InjectMocks
+  private OrderNumberService orderNumberService;
+
+  private OrderNumberGenerator orderNumberGenerator;
+
+  private Order order = new OrderDataBuilder().withEmergencyFlag().build();
+  private ProgramDto program = new ProgramDataBuilder().build();
+
+  @Before
+  public void setUp() {
+    // created after injection so it is not set as the cached generator
+    orderNumberGenerator = mock(OrderNumberGenerator.class);
+
+    when(orderNumberConfigurationRepository.findAll()).thenReturn(Collections.singletonList(
+        new OrderNumberConfiguration("prefix", true, true, true)));
+    when(extensionManager.getExtension(OrderNumberGenerator.POINT_ID, OrderNumberGenerator.class))
+        .thenReturn(orderNumberGenerator);
+    when(orderNumberGenerator.generate(any(Order.class))).thenReturn(ORDER_NUMBER);
+  }
+
+  @Test
+  public void shouldGenerateOrderCode() {
+    assertThat(orderNumberService.generateOrderCode(order, program),
+        is("prefix" + program.getCode() + ORDER_NUMBER + "E"));
+  }
+
+  @Test
+  public void shouldResolveConfigurationAndGeneratorOnce() {
+    orderNumberService.generateOrderCode(order, program);
+    orderNumberService.generateOrderCode(order, program);
+
+    verify(orderNumberConfigurationRepository, times(1)).findAll();
+    verify(extensionManager, times(1))
+        .getExtension(OrderNumberGenerator.POINT_ID, OrderNumberGenerator.class);
+    verify(orderNumberGenerator, times(2)).generate(order);
+  }
+
+  @Test
+  public void shouldReloadConfigurationAfterEviction() {
+    orderNumberService.generateOrderCode(order, program);
+    orderNumberService.evictConfiguration();
+
+    when(orderNumberConfigurationRepository.findAll()).thenReturn(Collections.singletonList(
+        new OrderNumberConfiguration("new", true, false, false)));
+
+    assertThat(orderNumberService.generateOrderCode(order, program), is("new" + ORDER_NUMBER));
+    verify(orderNumberConfigurationRepository, times(2)).findAll();
+    verify(orderNumberConfigurationRepository).incrementConfigurationVersion();
+  }
+
+  @Test
+  public void shouldReloadConfigurationChangedByAnotherInstance() {
+    when(orderNumberConfigurationRepository.getConfigurationVersion()).thenReturn(1L);
+    orderNumberService.generateOrderCode(order, program);
+
+    when(orderNumberConfigurationRepository.getConfigurationVersion()).thenReturn(2L);
+    when(orderNumberConfigurationRepository.findAll()).thenReturn(Collections.singletonList(
+        new OrderNumberConfiguration("new", true, false, false)));
+    orderNumberService.refresh();
+
+    assertThat(orderNumberService.generateOrderCode(order, program), is("new" + ORDER_NUMBER));
+    verify(orderNumberConfigurationRepository, times(2)).findAll();
+  }
+
+  @Test
+  public void shouldKeepConfigurationIfVersionHasNotChanged() {
+    when(orderNumberConfigurationRepository.getConfigurationVersion()).thenReturn(1L);
+    orderNumberService.generateOrderCode(order, program);
+
+    orderNumberService.refresh();
+    orderNumberService.generateOrderCode(order, program);
+
+    verify(orderNumberConfigurationRepository, times(1)).findAll();
+    verify(orderNumberConfigurationRepository, never()).incrementConfigurationVersion();
+  }
+}
@@ -21,10 +21,13 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
-import java.io.File;
-import java.nio.file.Path;
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.UUID;
 import org.apache.camel.Exchange;
 import org.apache.camel.ProducerTemplate;
@@ -34,23 +37,31 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.domain.FileTemplate;
 import org.openlmis.fulfillment.domain.FtpProtocol;
 import org.openlmis.fulfillment.domain.FtpTransferProperties;
+import org.openlmis.fulfillment.domain.LocalTransferProperties;
 import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.TemplateType;
+import org.openlmis.fulfillment.domain.TransferCompression;
 import org.openlmis.fulfillment.domain.TransferType;
-import org.openlmis.fulfillment.repository.TransferPropertiesRepository;
 
 @RunWith(MockitoJUnitRunner.class)
 public class OrderSenderTest {
+  private static final String FILE_PREFIX = "prefix-";
+  private static final String ORDER_CODE = "order-code-123";
+  private static final String FILE_NAME = FILE_PREFIX + ORDER_CODE + ".csv";
+  private static final String ENDPOINT_URI =
+      "ftp://username@host:21/remote/dir?password=password&passiveMode=true";
 
   @Mock
   private ProducerTemplate producerTemplate;
 
   @Mock
-  private OrderStorage orderStorage;
+  private OrderCsvHelper csvHelper;
 
   @Mock
-  private TransferPropertiesRepository transferPropertiesRepository;
+  private TransferRoutingTable transferRoutingTable;
 
   @InjectMocks
   private OrderFtpSender orderFtpSender;
@@ -59,14 +70,16 @@ public class OrderSenderTest {
   private Order order;
 
   @Mock
-  private Path path;
+  private InputStream csv;
 
-  @Mock
-  private File file;
+  private FileTemplate template = new FileTemplate(FILE_PREFIX, false, TemplateType.ORDER,
+      Collections.emptyList());
+
+  private FtpTransferProperties setting;
 
   @Before
   public void setUp() throws Exception {
-    FtpTransferProperties setting = new FtpTransferProperties();
+    setting = new FtpTransferProperties();
     setting.setId(UUID.randomUUID());
     setting.setFacilityId(UUID.randomUUID());
     setting.setProtocol(FtpProtocol.FTP);
@@ -79,11 +92,12 @@ public class OrderSenderTest {
     setting.setPassiveMode(true);
     setting.setTransferType(TransferType.ORDER);
 
-    when(orderStorage.getOrderAsPath(order)).thenReturn(path);
-    when(transferPropertiesRepository.findFirstByFacilityIdAndTransferType(any(), any()))
+    when(transferRoutingTable.getTransferProperties(any(), any()))
         .thenReturn(setting);
-
-    when(path.toFile()).thenReturn(file);
+    when(transferRoutingTable.getFileTemplate(TemplateType.ORDER)).thenReturn(template);
+    when(order.getOrderCode()).thenReturn(ORDER_CODE);
+    when(csvHelper.getCsvFileAsStream(order, template, TransferCompression.NONE, FILE_NAME))
+        .thenReturn(csv);
   }
 
   @Test
@@ -98,4 +112,32 @@ public class OrderSenderTest {
 
     assertThat(orderFtpSender.send(order), is(false));
   }
+
+  @Test
+  public void shouldStreamCsvFileDirectlyToFtpServer() throws Exception {
+    assertThat(orderFtpSender.send(order, setting), is(true));
+
+    verify(producerTemplate).sendBodyAndHeader(ENDPOINT_URI, csv, Exchange.FILE_NAME, FILE_NAME);
+    verify(csv).close();
+    verify(transferRoutingTable, never()).getTransferProperties(any(), any());
+  }
+
+  @Test
+  public void shouldStreamCompressedCsvFile() throws Exception {
+    setting.setCompression(TransferCompression.GZIP);
+    when(csvHelper.getCsvFileAsStream(order, template, TransferCompression.GZIP, FILE_NAME))
+        .thenReturn(csv);
+
+    assertThat(orderFtpSender.send(order, setting), is(true));
+
+    verify(producerTemplate)
+        .sendBodyAndHeader(ENDPOINT_URI, csv, Exchange.FILE_NAME, FILE_NAME + ".gz");
+  }
+
+  @Test
+  public void shouldReturnFalseIfTransferPropertiesAreNotFtp() throws Exception {
+    assertThat(orderFtpSender.send(order, new LocalTransferProperties()), is(false));
+
+    verifyZeroInteractions(producerTemplate, csvHelper);
+  }
 }
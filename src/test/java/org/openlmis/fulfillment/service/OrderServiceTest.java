@@ -21,6 +21,8 @@ import static java.util.Collections.emptyList;
 import static java.util.UUID.randomUUID;
 import static org.javers.common.collections.Sets.asSet;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anySet;
@@ -30,6 +32,7 @@ import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.openlmis.fulfillment.service.PermissionService.ORDERS_EDIT;
 import static org.openlmis.fulfillment.service.PermissionService.ORDERS_VIEW;
@@ -58,20 +61,15 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.openlmis.fulfillment.OrderDataBuilder;
 import org.openlmis.fulfillment.OrderLineItemDataBuilder;
 import org.openlmis.fulfillment.StatusChangeDataBuilder;
-import org.openlmis.fulfillment.domain.Base36EncodedOrderNumberGenerator;
 import org.openlmis.fulfillment.domain.ExternalStatus;
 import org.openlmis.fulfillment.domain.FtpTransferProperties;
 import org.openlmis.fulfillment.domain.Order;
 import org.openlmis.fulfillment.domain.OrderLineItem;
-import org.openlmis.fulfillment.domain.OrderNumberConfiguration;
 import org.openlmis.fulfillment.domain.OrderStatus;
 import org.openlmis.fulfillment.domain.StatusChange;
+import org.openlmis.fulfillment.domain.TransferProperties;
 import org.openlmis.fulfillment.domain.TransferType;
-import org.openlmis.fulfillment.extension.ExtensionManager;
-import org.openlmis.fulfillment.extension.point.OrderNumberGenerator;
-import org.openlmis.fulfillment.repository.OrderNumberConfigurationRepository;
 import org.openlmis.fulfillment.repository.OrderRepository;
-import org.openlmis.fulfillment.repository.TransferPropertiesRepository;
 import org.openlmis.fulfillment.service.referencedata.FacilityDto;
 import org.openlmis.fulfillment.service.referencedata.FacilityReferenceDataService;
 import org.openlmis.fulfillment.service.referencedata.OrderableDto;
@@ -107,7 +105,7 @@ public class OrderServiceTest {
   private OrderRepository orderRepository;
 
   @Mock
-  private OrderNumberConfigurationRepository orderNumberConfigurationRepository;
+  private OrderNumberService orderNumberService;
 
   @Mock
   private FacilityReferenceDataService facilityReferenceDataService;
@@ -125,7 +123,7 @@ public class OrderServiceTest {
   private UserReferenceDataService userReferenceDataService;
 
   @Mock
-  private TransferPropertiesRepository transferPropertiesRepository;
+  private TransferRoutingTable transferRoutingTable;
 
   @Mock
   private FulfillmentNotificationService notificationService;
@@ -139,15 +137,15 @@ public class OrderServiceTest {
   @Mock
   private DateHelper dateHelper;
 
-  @Mock
-  private ExtensionManager extensionManager;
-
   @Mock
   private PermissionService permissionService;
 
   @Mock
   private AuthenticationHelper authenticationHelper;
 
+  @Mock
+  private OrderTransferJobService orderTransferJobService;
+
   @InjectMocks
   private ExporterBuilder exporter;
 
@@ -162,7 +160,6 @@ public class OrderServiceTest {
   private ProcessingPeriodDto period1;
   private ProcessingPeriodDto period2;
   private OrderableDto orderable;
-  private OrderNumberConfiguration orderNumberConfiguration;
   private Order order;
   private UserDto userDto;
   private FtpTransferProperties properties;
@@ -186,9 +183,8 @@ public class OrderServiceTest {
     validateCreatedOrder(created, order);
 
     verify(orderRepository).save(orderCaptor.capture());
-    verify(orderStorage).store(any(Order.class));
-    verify(orderSender).send(any(Order.class));
-    verify(orderStorage).delete(any(Order.class));
+    verify(orderSender).send(any(Order.class), eq(properties));
+    verify(orderStorage, never()).store(any(Order.class), any(TransferProperties.class));
 
     assertEquals(OrderStatus.IN_ROUTE, orderCaptor.getValue().getStatus());
 
@@ -210,9 +206,8 @@ public class OrderServiceTest {
     validateCreatedOrder(created, order);
 
     verify(orderRepository).save(orderCaptor.capture());
-    verify(orderStorage).store(any(Order.class));
-    verify(orderSender).send(any(Order.class));
-    verify(orderStorage).delete(any(Order.class));
+    verify(orderSender).send(any(Order.class), eq(properties));
+    verify(orderStorage, never()).store(any(Order.class), any(TransferProperties.class));
 
     assertEquals(OrderStatus.IN_ROUTE, orderCaptor.getValue().getStatus());
 
@@ -234,9 +229,8 @@ public class OrderServiceTest {
     validateCreatedOrder(created, order);
 
     verify(orderRepository).save(orderCaptor.capture());
-    verify(orderStorage).store(any(Order.class));
-    verify(orderSender).send(any(Order.class));
-    verify(orderStorage).delete(any(Order.class));
+    verify(orderSender).send(any(Order.class), eq(properties));
+    verify(orderStorage, never()).store(any(Order.class), any(TransferProperties.class));
 
     assertEquals(OrderStatus.ORDERED, orderCaptor.getValue().getStatus());
 
@@ -251,12 +245,11 @@ public class OrderServiceTest {
     validateCreatedOrder(created, order);
     assertEquals(OrderStatus.IN_ROUTE, created.getStatus());
 
-    InOrder inOrder = inOrder(orderRepository, orderStorage, orderSender);
+    InOrder inOrder = inOrder(orderRepository, orderSender);
     inOrder.verify(orderRepository).save(order);
-    inOrder.verify(orderStorage).store(order);
-    inOrder.verify(orderSender).send(order);
-    inOrder.verify(orderStorage).delete(order);
+    inOrder.verify(orderSender).send(order, properties);
 
+    verifyZeroInteractions(orderStorage);
     verify(notificationService).sendOrderCreatedNotification(eq(created));
   }
 
@@ -268,18 +261,63 @@ public class OrderServiceTest {
     statusChange.setAuthorId(randomUUID());
     order.setStatusChanges(Lists.newArrayList(statusChange));
 
-    when(orderSender.send(order)).thenReturn(false);
+    when(orderSender.send(order, properties)).thenReturn(false);
     Order created = orderService.save(order);
 
     // then
     validateCreatedOrder(created, order);
     assertEquals(OrderStatus.TRANSFER_FAILED, created.getStatus());
 
-    InOrder inOrder = inOrder(orderRepository, orderStorage, orderSender);
+    InOrder inOrder = inOrder(orderRepository, orderSender);
+    inOrder.verify(orderRepository).save(order);
+    inOrder.verify(orderSender).send(order, properties);
+    inOrder.verify(orderRepository).save(order);
+
+    verify(orderTransferJobService).schedule(created);
+  }
+
+  @Test
+  public void shouldRetryTransferWithoutNotification() {
+    order.setStatus(OrderStatus.TRANSFER_FAILED);
+
+    boolean result = orderService.retryTransfer(order);
+
+    assertTrue(result);
+    assertEquals(OrderStatus.IN_ROUTE, order.getStatus());
+
+    InOrder inOrder = inOrder(orderSender, orderRepository);
+    inOrder.verify(orderSender).send(order, properties);
     inOrder.verify(orderRepository).save(order);
-    inOrder.verify(orderStorage).store(order);
-    inOrder.verify(orderSender).send(order);
-    inOrder.verify(orderStorage, never()).delete(order);
+
+    verify(notificationService, never()).sendOrderCreatedNotification(any(Order.class));
+    verify(orderTransferJobService, never()).schedule(any(Order.class));
+  }
+
+  @Test
+  public void shouldNotScheduleAnotherJobIfRetriedTransferFailed() {
+    order.setStatus(OrderStatus.TRANSFER_FAILED);
+    when(orderSender.send(order, properties)).thenReturn(false);
+
+    boolean result = orderService.retryTransfer(order);
+
+    assertFalse(result);
+    assertEquals(OrderStatus.TRANSFER_FAILED, order.getStatus());
+
+    verify(orderRepository).save(order);
+    verify(orderTransferJobService, never()).schedule(any(Order.class));
+  }
+
+  @Test
+  public void shouldNotRetryTransferIfThereAreNoTransferProperties() {
+    order.setStatus(OrderStatus.TRANSFER_FAILED);
+    when(transferRoutingTable.getTransferProperties(any(), any()))
+        .thenReturn(null);
+
+    boolean result = orderService.retryTransfer(order);
+
+    assertFalse(result);
+    verifyZeroInteractions(orderStorage, orderSender);
+    verify(orderRepository, never()).save(any(Order.class));
   }
 
   @Test
@@ -465,8 +503,6 @@ public class OrderServiceTest {
     period1 = new ProcessingPeriodDataBuilder().build();
     period2 = new ProcessingPeriodDataBuilder().build();
 
-    orderNumberConfiguration = new OrderNumberConfiguration("prefix", true, true, true);
-
     userDto = new UserDataBuilder().build();
 
     orderable = new OrderableDataBuilder().build();
@@ -505,18 +541,15 @@ public class OrderServiceTest {
 
     when(userReferenceDataService.findOne(any())).thenReturn(userDto);
 
-    when(orderNumberConfigurationRepository.findAll())
-        .thenReturn(Collections.singletonList(orderNumberConfiguration));
-
-    when(extensionManager.getExtension(OrderNumberGenerator.POINT_ID, OrderNumberGenerator.class))
-        .thenReturn(new Base36EncodedOrderNumberGenerator());
+    when(orderNumberService.generateOrderCode(any(Order.class), eq(program)))
+        .thenReturn("prefixPRG7SQVH872R");
 
-    when(transferPropertiesRepository
-        .findFirstByFacilityIdAndTransferType(any(),any()))
+    when(transferRoutingTable
+        .getTransferProperties(any(),any()))
         .thenReturn(properties);
 
     when(orderRepository.save(any(Order.class))).thenReturn(order);
-    when(orderSender.send(order)).thenReturn(true);
+    when(orderSender.send(order, properties)).thenReturn(true);
 
     when(dateHelper.getCurrentDateTimeWithSystemZone()).thenReturn(ZonedDateTime.now());
 
@@ -18,7 +18,9 @@ package org.openlmis.fulfillment.service;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -26,7 +28,9 @@ import static org.openlmis.fulfillment.i18n.MessageKeys.ERROR_IO;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import org.junit.Before;
@@ -40,8 +44,9 @@ import org.mockito.Mock;
 import org.openlmis.fulfillment.domain.FileTemplate;
 import org.openlmis.fulfillment.domain.FtpTransferProperties;
 import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.TemplateType;
+import org.openlmis.fulfillment.domain.TransferCompression;
 import org.openlmis.fulfillment.domain.TransferType;
-import org.openlmis.fulfillment.repository.TransferPropertiesRepository;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -62,10 +67,7 @@ public class OrderStorageTest {
   private OrderCsvHelper csvHelper;
 
   @Mock
-  private FileTemplateService fileTemplateService;
-
-  @Mock
-  private TransferPropertiesRepository transferPropertiesRepository;
+  private TransferRoutingTable transferRoutingTable;
 
   @InjectMocks
   private OrderFileStorage orderFileStorage;
@@ -89,21 +91,22 @@ public class OrderStorageTest {
     PowerMockito.mockStatic(Files.class);
 
     when(Files.newBufferedWriter(any(Path.class))).thenReturn(writer);
-    when(fileTemplateService.getOrderFileTemplate()).thenReturn(template);
-    when(transferPropertiesRepository
-        .findFirstByFacilityIdAndTransferType(any(), any()))
+    when(transferRoutingTable.getFileTemplate(TemplateType.ORDER)).thenReturn(template);
+    when(transferRoutingTable
+        .getTransferProperties(any(), any()))
         .thenReturn(properties);
 
     when(order.getOrderCode()).thenReturn(ORDER_CODE);
     when(template.getFilePrefix()).thenReturn(FILE_PREFIX);
     when(properties.getPath()).thenReturn(LOCAL_DIR);
+    when(properties.getCompression()).thenReturn(TransferCompression.NONE);
   }
 
   @Test
   public void shouldStoreAnOrder() throws Exception {
     orderFileStorage.store(order);
 
-    verify(fileTemplateService).getOrderFileTemplate();
+    verify(transferRoutingTable).getFileTemplate(TemplateType.ORDER);
     verify(csvHelper).writeCsvFile(order, template, writer);
 
     ArgumentCaptor<Path> captor = ArgumentCaptor.forClass(Path.class);
@@ -115,6 +118,24 @@ public class OrderStorageTest {
     assertThat(value.toString(), is(FULL_PATH));
   }
 
+  @Test
+  public void shouldStoreCompressedOrder() throws Exception {
+    when(properties.getCompression()).thenReturn(TransferCompression.GZIP);
+    when(Files.newOutputStream(any(Path.class))).thenReturn(new ByteArrayOutputStream());
+
+    orderFileStorage.store(order);
+
+    verify(csvHelper).writeCsvFile(eq(order), eq(template), any(Writer.class));
+
+    ArgumentCaptor<Path> captor = ArgumentCaptor.forClass(Path.class);
+
+    verifyStatic();
+    Files.newOutputStream(captor.capture());
+
+    Path value = captor.getValue();
+    assertThat(value.toString(), is(FULL_PATH + ".gz"));
+  }
+
   @Test
   public void shouldThrowExceptionIfThereIsProblemWithStoringAnOrder() throws Exception {
     doThrow(exception).when(csvHelper).writeCsvFile(order, template, writer);
@@ -128,15 +149,16 @@ public class OrderStorageTest {
 
   @Test
   public void shouldHandleSituationWhenPropertiesDoesNotExist() throws OrderStorageException {
-    when(transferPropertiesRepository
-        .findFirstByFacilityIdAndTransferType(order.getFacilityId(), TransferType.ORDER))
+    when(transferRoutingTable
+        .getTransferProperties(order.getFacilityId(), TransferType.ORDER))
         .thenReturn(null);
 
     orderFileStorage.store(order);
 
-    verify(transferPropertiesRepository)
-        .findFirstByFacilityIdAndTransferType(order.getFacilityId(), TransferType.ORDER);
-    verifyZeroInteractions(fileTemplateService, csvHelper);
+    verify(transferRoutingTable)
+        .getTransferProperties(order.getFacilityId(), TransferType.ORDER);
+    verify(transferRoutingTable, never()).getFileTemplate(any());
+    verifyZeroInteractions(csvHelper);
   }
 
   @Test
@@ -169,4 +191,12 @@ public class OrderStorageTest {
     assertThat(path.toString(), is(FULL_PATH));
   }
 
+  @Test
+  public void shouldReturnCompressedOrderAsPath() throws Exception {
+    when(properties.getCompression()).thenReturn(TransferCompression.ZIP);
+
+    Path path = orderFileStorage.getOrderAsPath(order);
+    assertThat(path.toString(), is(FULL_PATH + ".zip"));
+  }
+
 }
@@ -0,0 +1,223 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.openlmis.fulfillment.domain.OrderStatus.IN_ROUTE;
+import static org.openlmis.fulfillment.domain.OrderStatus.TRANSFER_FAILED;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.OrderDataBuilder;
+import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.OrderTransferJob;
+import org.openlmis.fulfillment.repository.OrderRepository;
+import org.openlmis.fulfillment.repository.OrderTransferJobRepository;
+import org.openlmis.fulfillment.util.DateHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderTransferJobProcessorTest {
+
+  private static final int BATCH_SIZE = 5;
+  private static final long CLAIM_TIMEOUT = 600;
+
+  @Mock
+  private OrderTransferJobRepository orderTransferJobRepository;
+
+  @Mock
+  private OrderRepository orderRepository;
+
+  @Mock
+  private OrderService orderService;
+
+  @Mock
+  private OrderTransferRetryPolicy retryPolicy;
+
+  @Mock
+  private DateHelper dateHelper;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  @InjectMocks
+  private OrderTransferJobProcessor processor;
+
+  private ZonedDateTime now = ZonedDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+  private Order order = new OrderDataBuilder().withStatus(TRANSFER_FAILED).build();
+  private OrderTransferJob job;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(processor, "enabled", true);
+    ReflectionTestUtils.setField(processor, "batchSize", BATCH_SIZE);
+    ReflectionTestUtils.setField(processor, "claimTimeout", CLAIM_TIMEOUT);
+
+    job = OrderTransferJob.newInstance(order.getId(), order.getSupplyingFacilityId(),
+        now.minusHours(1), now.minusMinutes(1));
+    job.setId(UUID.randomUUID());
+
+    when(dateHelper.getCurrentDateTimeWithSystemZone()).thenReturn(now);
+    when(orderTransferJobRepository.claimDueJobs(now, BATCH_SIZE))
+        .thenReturn(singletonList(job));
+    when(orderTransferJobRepository.findOne(job.getId())).thenReturn(job);
+    when(orderTransferJobRepository.renewClaim(job.getId().toString(),
+        now.plusSeconds(CLAIM_TIMEOUT), now.plusSeconds(CLAIM_TIMEOUT))).thenReturn(1);
+    when(orderRepository.findOne(order.getId())).thenReturn(order);
+  }
+
+  @Test
+  public void shouldRemoveJobIfOrderHasBeenTransferred() {
+    when(orderService.retryTransfer(order)).thenReturn(true);
+
+    processor.processDueJobs();
+
+    verify(orderTransferJobRepository).delete(job);
+    verify(orderTransferJobRepository, never()).save(any(OrderTransferJob.class));
+  }
+
+  @Test
+  public void shouldRecordFailureAndBackOff() {
+    when(orderService.retryTransfer(order)).thenReturn(false);
+    when(retryPolicy.getNextAttemptDate(1, now)).thenReturn(now.plusMinutes(2));
+
+    processor.processDueJobs();
+
+    verify(orderTransferJobRepository).save(job);
+    verify(orderTransferJobRepository, never()).delete(any(OrderTransferJob.class));
+    assertThat(job.getAttempts(), is(1));
+    assertThat(job.getLastAttemptDate(), is(now));
+    assertThat(job.getNextAttemptDate(), is(now.plusMinutes(2)));
+    assertThat(job.getLastError(), is(OrderTransferJobProcessor.TRANSFER_FAILED_MESSAGE));
+  }
+
+  @Test
+  public void shouldRecordExceptionMessage() {
+    when(orderService.retryTransfer(order))
+        .thenThrow(new IllegalStateException("connection refused"));
+
+    processor.processDueJobs();
+
+    verify(orderTransferJobRepository).save(job);
+    assertThat(job.getLastError(), is("connection refused"));
+  }
+
+  @Test
+  public void shouldStopRetryingWhenAttemptsAreExhausted() {
+    when(orderService.retryTransfer(order)).thenReturn(false);
+    when(retryPolicy.getNextAttemptDate(1, now)).thenReturn(null);
+
+    processor.processDueJobs();
+
+    verify(orderTransferJobRepository).save(job);
+    assertThat(job.isExhausted(), is(true));
+  }
+
+  @Test
+  public void shouldRemoveJobIfOrderIsNoLongerFailed() {
+    order.setStatus(IN_ROUTE);
+
+    processor.processDueJobs();
+
+    verify(orderTransferJobRepository).delete(job);
+    verify(orderService, never()).retryTransfer(any(Order.class));
+  }
+
+  @Test
+  public void shouldClaimJobsBeforeTransferInSeparateTransaction() {
+    when(orderService.retryTransfer(order)).thenAnswer(invocation -> {
+      assertThat(job.getNextAttemptDate(), is(now.plusSeconds(CLAIM_TIMEOUT)));
+      return true;
+    });
+
+    processor.processDueJobs();
+
+    InOrder inOrder = inOrder(transactionManager, orderTransferJobRepository, orderService);
+    inOrder.verify(orderTransferJobRepository).claimDueJobs(now, BATCH_SIZE);
+    inOrder.verify(orderTransferJobRepository).save(singletonList(job));
+    inOrder.verify(transactionManager).commit(any());
+    inOrder.verify(orderTransferJobRepository).renewClaim(job.getId().toString(),
+        now.plusSeconds(CLAIM_TIMEOUT), now.plusSeconds(CLAIM_TIMEOUT));
+    inOrder.verify(orderService).retryTransfer(order);
+    inOrder.verify(transactionManager).commit(any());
+  }
+
+  @Test
+  public void shouldSkipJobRemovedAfterClaim() {
+    when(orderTransferJobRepository.findOne(job.getId())).thenReturn(null);
+
+    processor.processDueJobs();
+
+    verify(orderService, never()).retryTransfer(any(Order.class));
+  }
+
+  @Test
+  public void shouldRenewClaimAndRecordFailureWithCurrentTimeOfEachJob() {
+    ZonedDateTime later = now.plusMinutes(5);
+    ZonedDateTime failed = later.plusMinutes(1);
+    when(dateHelper.getCurrentDateTimeWithSystemZone()).thenReturn(now, later, failed);
+    when(orderTransferJobRepository.renewClaim(job.getId().toString(),
+        now.plusSeconds(CLAIM_TIMEOUT), later.plusSeconds(CLAIM_TIMEOUT))).thenReturn(1);
+    when(orderService.retryTransfer(order)).thenReturn(false);
+    when(retryPolicy.getNextAttemptDate(1, failed)).thenReturn(failed.plusMinutes(2));
+
+    processor.processDueJobs();
+
+    assertThat(job.getLastAttemptDate(), is(failed));
+    assertThat(job.getNextAttemptDate(), is(failed.plusMinutes(2)));
+  }
+
+  @Test
+  public void shouldSkipJobIfClaimHasBeenLost() {
+    when(orderTransferJobRepository.renewClaim(anyString(), any(ZonedDateTime.class),
+        any(ZonedDateTime.class))).thenReturn(0);
+
+    processor.processDueJobs();
+
+    verify(orderService, never()).retryTransfer(any(Order.class));
+    verify(orderTransferJobRepository, never()).save(job);
+  }
+
+  @Test
+  public void shouldDoNothingIfDisabled() {
+    ReflectionTestUtils.setField(processor, "enabled", false);
+
+    processor.processDueJobs();
+
+    verify(orderTransferJobRepository, never()).claimDueJobs(any(ZonedDateTime.class), anyInt());
+    verifyZeroInteractions(orderService);
+  }
+}
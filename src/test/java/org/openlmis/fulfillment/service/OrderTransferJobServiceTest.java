@@ -0,0 +1,145 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openlmis.fulfillment.domain.OrderStatus.TRANSFER_FAILED;
+
+import com.google.common.collect.Lists;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.OrderDataBuilder;
+import org.openlmis.fulfillment.domain.Order;
+import org.openlmis.fulfillment.domain.OrderTransferJob;
+import org.openlmis.fulfillment.repository.OrderRepository;
+import org.openlmis.fulfillment.repository.OrderTransferJobRepository;
+import org.openlmis.fulfillment.util.DateHelper;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderTransferJobServiceTest {
+
+  @Mock
+  private OrderTransferJobRepository orderTransferJobRepository;
+
+  @Mock
+  private OrderRepository orderRepository;
+
+  @Mock
+  private OrderTransferRetryPolicy retryPolicy;
+
+  @Mock
+  private DateHelper dateHelper;
+
+  @InjectMocks
+  private OrderTransferJobService orderTransferJobService;
+
+  @Captor
+  private ArgumentCaptor<OrderTransferJob> jobCaptor;
+
+  @Captor
+  private ArgumentCaptor<List<OrderTransferJob>> jobsCaptor;
+
+  private ZonedDateTime now = ZonedDateTime.now();
+  private Order order = new OrderDataBuilder().build();
+  private UUID facilityId = order.getSupplyingFacilityId();
+
+  @Before
+  public void setUp() {
+    when(dateHelper.getCurrentDateTimeWithSystemZone()).thenReturn(now);
+    when(retryPolicy.getNextAttemptDate(0, now)).thenReturn(now.plusMinutes(1));
+  }
+
+  @Test
+  public void shouldScheduleOrder() {
+    orderTransferJobService.schedule(order);
+
+    verify(orderTransferJobRepository).save(jobCaptor.capture());
+
+    OrderTransferJob job = jobCaptor.getValue();
+    assertThat(job.getOrderId(), is(order.getId()));
+    assertThat(job.getSupplyingFacilityId(), is(facilityId));
+    assertThat(job.getAttempts(), is(0));
+    assertThat(job.getCreatedDate(), is(now));
+    assertThat(job.getNextAttemptDate(), is(now.plusMinutes(1)));
+  }
+
+  @Test
+  public void shouldNotScheduleOrderTwice() {
+    when(orderTransferJobRepository.findByOrderId(order.getId()))
+        .thenReturn(OrderTransferJob.newInstance(order.getId(), facilityId, now, now));
+
+    orderTransferJobService.schedule(order);
+
+    verify(orderTransferJobRepository, never()).save(any(OrderTransferJob.class));
+  }
+
+  @Test
+  public void shouldScheduleAllFailedOrdersOfFacility() {
+    UUID newOrderId = UUID.randomUUID();
+    OrderTransferJob exhausted = OrderTransferJob
+        .newInstance(order.getId(), facilityId, now.minusDays(1), now.minusDays(1));
+    exhausted.recordFailure("error", now.minusHours(1), null);
+
+    when(orderRepository.findIdsBySupplyingFacilityIdAndStatus(facilityId, TRANSFER_FAILED))
+        .thenReturn(Lists.newArrayList(order.getId(), newOrderId));
+    when(orderTransferJobRepository.findByOrderIdIn(anyCollectionOf(UUID.class)))
+        .thenReturn(singletonList(exhausted));
+
+    int result = orderTransferJobService.scheduleFailedOrders(facilityId);
+
+    assertThat(result, is(2));
+    verify(orderTransferJobRepository).save(jobsCaptor.capture());
+
+    List<OrderTransferJob> jobs = jobsCaptor.getValue();
+    assertThat(jobs, hasSize(2));
+    assertThat(jobs.get(0), is(exhausted));
+    assertThat(jobs.get(0).getAttempts(), is(0));
+    assertThat(jobs.get(0).getNextAttemptDate(), is(now));
+    assertThat(jobs.get(1).getOrderId(), is(newOrderId));
+    assertThat(jobs.get(1).getNextAttemptDate(), is(now));
+  }
+
+  @Test
+  public void shouldNotScheduleAnythingIfThereAreNoFailedOrders() {
+    when(orderRepository.findIdsBySupplyingFacilityIdAndStatus(facilityId, TRANSFER_FAILED))
+        .thenReturn(emptyList());
+
+    int result = orderTransferJobService.scheduleFailedOrders(facilityId);
+
+    assertThat(result, is(0));
+    verify(orderTransferJobRepository, never()).save(anyListOf(OrderTransferJob.class));
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.ProofOfDeliveryDataBuilder;
+import org.openlmis.fulfillment.domain.OutboxMessage;
+import org.openlmis.fulfillment.domain.OutboxMessageType;
+import org.openlmis.fulfillment.domain.ProofOfDelivery;
+import org.openlmis.fulfillment.repository.OutboxMessageRepository;
+import org.openlmis.fulfillment.repository.ProofOfDeliveryRepository;
+import org.openlmis.fulfillment.service.stockmanagement.StockEventStockManagementService;
+import org.openlmis.fulfillment.service.stockmanagement.ValidSourceDestinationIndex;
+import org.openlmis.fulfillment.util.DateHelper;
+import org.openlmis.fulfillment.web.stockmanagement.StockEventDto;
+import org.openlmis.fulfillment.web.stockmanagement.StockEventDtoDataBuilder;
+import org.openlmis.fulfillment.web.util.LocalizedMessageDto;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OutboxMessageProcessorTest {
+
+  private static final int BATCH_SIZE = 5;
+  private static final long CLAIM_TIMEOUT = 300;
+
+  @Mock
+  private OutboxMessageRepository outboxMessageRepository;
+
+  @Mock
+  private ProofOfDeliveryRepository proofOfDeliveryRepository;
+
+  @Mock
+  private StockEventStockManagementService stockEventStockManagementService;
+
+  @Mock
+  private FulfillmentNotificationService fulfillmentNotificationService;
+
+  @Mock
+  private ValidSourceDestinationIndex validSourceDestinationIndex;
+
+  @Mock
+  private OutboxRetryPolicy retryPolicy;
+
+  @Mock
+  private DateHelper dateHelper;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  @Spy
+  private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  @InjectMocks
+  private OutboxMessageProcessor processor;
+
+  private ZonedDateTime now = ZonedDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+  private StockEventDto event = new StockEventDtoDataBuilder().build();
+  private OutboxMessage message;
+
+  @Before
+  public void setUp() throws Exception {
+    ReflectionTestUtils.setField(processor, "enabled", true);
+    ReflectionTestUtils.setField(processor, "batchSize", BATCH_SIZE);
+    ReflectionTestUtils.setField(processor, "claimTimeout", CLAIM_TIMEOUT);
+
+    message = claim(OutboxMessageType.STOCK_EVENT, objectMapper.writeValueAsString(event));
+
+    when(dateHelper.getCurrentDateTimeWithSystemZone()).thenReturn(now);
+    when(outboxMessageRepository.renewClaim(anyString(), any(ZonedDateTime.class),
+        any(ZonedDateTime.class))).thenReturn(1);
+  }
+
+  @Test
+  public void shouldSubmitStockEventAndRemoveMessage() {
+    processor.processDueMessages();
+
+    verify(stockEventStockManagementService).submit(event);
+    verify(outboxMessageRepository).delete(message);
+    verify(outboxMessageRepository, never()).save(any(OutboxMessage.class));
+  }
+
+  @Test
+  public void shouldClaimMessagesBeforeDeliveringEachInSeparateTransaction() {
+    processor.processDueMessages();
+
+    InOrder inOrder = inOrder(transactionManager, outboxMessageRepository,
+        stockEventStockManagementService);
+    inOrder.verify(outboxMessageRepository).claimDueMessages(now, BATCH_SIZE);
+    inOrder.verify(outboxMessageRepository).save(singletonList(message));
+    inOrder.verify(transactionManager).commit(any());
+    inOrder.verify(outboxMessageRepository).renewClaim(message.getId().toString(),
+        now.plusSeconds(CLAIM_TIMEOUT), now.plusSeconds(CLAIM_TIMEOUT));
+    inOrder.verify(stockEventStockManagementService).submit(event);
+    inOrder.verify(outboxMessageRepository).delete(message);
+    inOrder.verify(transactionManager).commit(any());
+  }
+
+  @Test
+  public void shouldSkipMessageIfClaimHasBeenLost() {
+    when(outboxMessageRepository.renewClaim(anyString(), any(ZonedDateTime.class),
+        any(ZonedDateTime.class))).thenReturn(0);
+
+    processor.processDueMessages();
+
+    verifyZeroInteractions(stockEventStockManagementService);
+    verify(outboxMessageRepository, never()).delete(any(OutboxMessage.class));
+  }
+
+  @Test
+  public void shouldSendPodConfirmedNotificationAndRemoveMessage() {
+    ProofOfDelivery proofOfDelivery = new ProofOfDeliveryDataBuilder().build();
+    message = claim(OutboxMessageType.POD_CONFIRMED_NOTIFICATION,
+        proofOfDelivery.getId().toString());
+    when(proofOfDeliveryRepository.findOne(proofOfDelivery.getId())).thenReturn(proofOfDelivery);
+
+    processor.processDueMessages();
+
+    verify(fulfillmentNotificationService).sendPodConfirmedNotification(proofOfDelivery);
+    verify(outboxMessageRepository).delete(message);
+  }
+
+  @Test
+  public void shouldRecordFailureAndBackOff() {
+    doThrow(new IllegalStateException("connection refused"))
+        .when(stockEventStockManagementService).submit(event);
+    when(retryPolicy.getNextAttemptDate(1, now)).thenReturn(now.plusMinutes(1));
+
+    processor.processDueMessages();
+
+    verify(outboxMessageRepository).save(message);
+    verify(outboxMessageRepository, never()).delete(any(OutboxMessage.class));
+    assertThat(message.getAttempts(), is(1));
+    assertThat(message.getLastAttemptDate(), is(now));
+    assertThat(message.getNextAttemptDate(), is(now.plusMinutes(1)));
+    assertThat(message.getLastError(), is("connection refused"));
+  }
+
+  @Test
+  public void shouldNotRetryRejectedStockEvent() {
+    LocalizedMessageDto error = new LocalizedMessageDto();
+    error.setMessageKey("stockmanagement.error.event.invalid");
+    doThrow(new ExternalApiException(null, error))
+        .when(stockEventStockManagementService).submit(event);
+
+    processor.processDueMessages();
+
+    verify(outboxMessageRepository).save(message);
+    verify(retryPolicy, never()).getNextAttemptDate(anyInt(), any(ZonedDateTime.class));
+    verify(validSourceDestinationIndex).invalidate();
+    assertThat(message.isExhausted(), is(true));
+  }
+
+  @Test
+  public void shouldDoNothingIfDisabled() {
+    ReflectionTestUtils.setField(processor, "enabled", false);
+
+    processor.processDueMessages();
+
+    verify(outboxMessageRepository, never())
+        .claimDueMessages(any(ZonedDateTime.class), anyInt());
+    verifyZeroInteractions(stockEventStockManagementService, fulfillmentNotificationService);
+  }
+
+  private OutboxMessage claim(OutboxMessageType type, String payload) {
+    OutboxMessage claimed = OutboxMessage.newInstance(type, "key", payload, now.minusMinutes(1));
+    claimed.setId(UUID.randomUUID());
+    when(outboxMessageRepository.claimDueMessages(now, BATCH_SIZE))
+        .thenReturn(singletonList(claimed));
+    when(outboxMessageRepository.findOne(claimed.getId())).thenReturn(claimed);
+
+    return claimed;
+  }
+}
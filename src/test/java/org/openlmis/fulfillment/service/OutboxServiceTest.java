@@ -0,0 +1,137 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.ProofOfDeliveryDataBuilder;
+import org.openlmis.fulfillment.domain.OutboxMessage;
+import org.openlmis.fulfillment.domain.OutboxMessageType;
+import org.openlmis.fulfillment.domain.ProofOfDelivery;
+import org.openlmis.fulfillment.repository.OutboxMessageRepository;
+import org.openlmis.fulfillment.util.DateHelper;
+import org.openlmis.fulfillment.web.stockmanagement.StockEventDto;
+import org.openlmis.fulfillment.web.stockmanagement.StockEventDtoDataBuilder;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OutboxServiceTest {
+
+  @Mock
+  private OutboxMessageRepository outboxMessageRepository;
+
+  @Mock
+  private DateHelper dateHelper;
+
+  @Spy
+  private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  @InjectMocks
+  private OutboxService outboxService;
+
+  private ZonedDateTime now = ZonedDateTime.now();
+
+  @Before
+  public void setUp() {
+    when(dateHelper.getCurrentDateTimeWithSystemZone()).thenReturn(now);
+  }
+
+  @Test
+  public void shouldAddStockEventKeyedByFacilityAndProgram() throws IOException {
+    StockEventDto event = new StockEventDtoDataBuilder().build();
+
+    outboxService.addStockEvent(event);
+
+    OutboxMessage message = captureMessage();
+    assertThat(message.getType(), is(OutboxMessageType.STOCK_EVENT));
+    assertThat(message.getOrderingKey(), is(String.format(OutboxService.STOCK_EVENT_KEY,
+        event.getFacilityId(), event.getProgramId())));
+    assertThat(objectMapper.readValue(message.getPayload(), StockEventDto.class), is(event));
+    assertThat(message.getCreatedDate(), is(now));
+    assertThat(message.getNextAttemptDate(), is(now));
+  }
+
+  @Test
+  public void shouldAddPodConfirmedNotification() {
+    ProofOfDelivery proofOfDelivery = new ProofOfDeliveryDataBuilder().build();
+
+    outboxService.addPodConfirmations(emptyList(), singletonList(proofOfDelivery));
+
+    OutboxMessage message = captureMessage();
+    assertThat(message.getType(), is(OutboxMessageType.POD_CONFIRMED_NOTIFICATION));
+    assertThat(message.getPayload(), is(proofOfDelivery.getId().toString()));
+  }
+
+  @Test
+  public void shouldLockOrderingKeyBeforeAddingMessage() {
+    StockEventDto event = new StockEventDtoDataBuilder().build();
+
+    outboxService.addStockEvent(event);
+
+    InOrder order = inOrder(outboxMessageRepository);
+    order.verify(outboxMessageRepository).lockOrderingKey(String.format(
+        OutboxService.STOCK_EVENT_KEY, event.getFacilityId(), event.getProgramId()));
+    order.verify(outboxMessageRepository).save(any(OutboxMessage.class));
+  }
+
+  @Test
+  public void shouldLockOrderingKeysInFixedOrderBeforeAddingMessages() {
+    StockEventDto first = new StockEventDtoDataBuilder().build();
+    StockEventDto second = new StockEventDtoDataBuilder().build();
+    String firstKey = String.format(OutboxService.STOCK_EVENT_KEY,
+        first.getFacilityId(), first.getProgramId());
+    String secondKey = String.format(OutboxService.STOCK_EVENT_KEY,
+        second.getFacilityId(), second.getProgramId());
+    boolean ascending = firstKey.compareTo(secondKey) < 0;
+
+    outboxService.addStockEvents(asList(first, second, first));
+
+    InOrder order = inOrder(outboxMessageRepository);
+    order.verify(outboxMessageRepository).lockOrderingKey(ascending ? firstKey : secondKey);
+    order.verify(outboxMessageRepository).lockOrderingKey(ascending ? secondKey : firstKey);
+    order.verify(outboxMessageRepository, times(3)).save(any(OutboxMessage.class));
+    verify(outboxMessageRepository, times(2)).lockOrderingKey(anyString());
+  }
+
+  private OutboxMessage captureMessage() {
+    ArgumentCaptor<OutboxMessage> captor = ArgumentCaptor.forClass(OutboxMessage.class);
+    verify(outboxMessageRepository).save(captor.capture());
+
+    return captor.getValue();
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.time.ZonedDateTime;
+import org.junit.Test;
+
+public class RetryBackOffTest {
+
+  private ZonedDateTime now = ZonedDateTime.now();
+
+  @Test
+  public void shouldDoubleDelayWithEachAttempt() {
+    RetryBackOff backOff = new RetryBackOff(10, 60, 3600, 0);
+
+    assertThat(backOff.getNextAttemptDate(0, now), is(now.plusSeconds(60)));
+    assertThat(backOff.getNextAttemptDate(1, now), is(now.plusSeconds(120)));
+    assertThat(backOff.getNextAttemptDate(3, now), is(now.plusSeconds(480)));
+  }
+
+  @Test
+  public void shouldNotExceedMaxDelay() {
+    RetryBackOff backOff = new RetryBackOff(1000, 60, 3600, 0);
+
+    assertThat(backOff.getNextAttemptDate(6, now), is(now.plusSeconds(3600)));
+    assertThat(backOff.getNextAttemptDate(999, now), is(now.plusSeconds(3600)));
+  }
+
+  @Test
+  public void shouldReturnNullIfAllAttemptsHaveBeenUsed() {
+    RetryBackOff backOff = new RetryBackOff(3, 60, 3600, 0);
+
+    assertThat(backOff.getNextAttemptDate(3, now), is(nullValue()));
+  }
+
+  @Test
+  public void shouldSpreadDelayByJitter() {
+    RetryBackOff backOff = new RetryBackOff(10, 100, 3600, 0.2);
+
+    for (int i = 0; i < 100; ++i) {
+      assertThat(backOff.getDelay(0), allOf(greaterThanOrEqualTo(80L), lessThanOrEqualTo(120L)));
+    }
+  }
+
+  @Test
+  public void shouldNotSpreadZeroDelay() {
+    RetryBackOff backOff = new RetryBackOff(10, 0, 3600, 0.2);
+
+    assertThat(backOff.getNextAttemptDate(2, now), is(now));
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ShipmentFileExecutorTest {
+  private static final String FIRST_CHANNEL = "channel-1";
+  private static final String SECOND_CHANNEL = "channel-2";
+
+  private ShipmentFileExecutor executor = new ShipmentFileExecutor();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(executor, "poolSize", 2);
+    ReflectionTestUtils.setField(executor, "queueCapacity", 10);
+    executor.start();
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    executor.stop();
+  }
+
+  @Test
+  public void shouldProcessFilesOfSameChannelConcurrently() throws Exception {
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+
+    executor.execute(FIRST_CHANNEL, () -> await(started, release));
+    executor.execute(FIRST_CHANNEL, () -> await(started, release));
+
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    release.countDown();
+  }
+
+  @Test
+  public void shouldContinueWithNextFileIfProcessingFailed() throws Exception {
+    CountDownLatch finished = new CountDownLatch(1);
+
+    executor.execute(FIRST_CHANNEL, () -> {
+      throw new IllegalStateException();
+    });
+    executor.execute(FIRST_CHANNEL, finished::countDown);
+
+    assertTrue(finished.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void shouldLimitPendingFilesOfEachChannel() throws Exception {
+    ReflectionTestUtils.setField(executor, "queueCapacity", 2);
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+
+    executor.execute(FIRST_CHANNEL, () -> await(started, release));
+    executor.execute(FIRST_CHANNEL, () -> await(started, release));
+
+    assertThat(executor.hasCapacity(FIRST_CHANNEL), is(false));
+    assertThat(executor.hasCapacity(SECOND_CHANNEL), is(true));
+    assertThat(executor.getBlockedCount(), is(1L));
+
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    release.countDown();
+
+    verifyHasCapacity(FIRST_CHANNEL);
+  }
+
+  @Test
+  public void shouldNotBlockWhenWorkersAreBusy() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch finished = new CountDownLatch(1);
+
+    executor.execute(FIRST_CHANNEL, () -> await(new CountDownLatch(0), release));
+    executor.execute(FIRST_CHANNEL, () -> await(new CountDownLatch(0), release));
+    executor.execute(SECOND_CHANNEL, finished::countDown);
+
+    release.countDown();
+    assertTrue(finished.await(5, TimeUnit.SECONDS));
+  }
+
+  private void verifyHasCapacity(String key) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+
+    while (!executor.hasCapacity(key) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertTrue(executor.hasCapacity(key));
+  }
+
+  private void await(CountDownLatch started, CountDownLatch release) {
+    started.countDown();
+
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException exp) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
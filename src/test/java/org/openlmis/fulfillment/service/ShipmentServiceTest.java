@@ -15,13 +15,19 @@
 
 package org.openlmis.fulfillment.service;
 
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -72,4 +78,23 @@ public class ShipmentServiceTest {
     // here we only verify that POD has been saved
     verify(proofOfDeliveryRepository).save(any(ProofOfDelivery.class));
   }
+
+  @Test
+  public void shouldSaveShipmentsAndCreateProofsOfDeliveryInBatch() {
+    final Shipment first = new ShipmentDataBuilder().build();
+    final Shipment second = new ShipmentDataBuilder().build();
+    final List<Shipment> shipments = Arrays.asList(first, second);
+    final Set<UUID> orderableIds = Stream
+        .concat(first.getLineItems().stream(), second.getLineItems().stream())
+        .map(ShipmentLineItem::getOrderableId)
+        .collect(Collectors.toSet());
+
+    when(shipmentRepository.save(shipments)).thenReturn(shipments);
+    List<Shipment> saved = shipmentService.saveAll(shipments);
+
+    assertThat(saved, is(shipments));
+    verify(shipmentRepository).save(shipments);
+    verify(orderableReferenceDataService).findByIds(orderableIds);
+    verify(proofOfDeliveryRepository).save(anyListOf(ProofOfDelivery.class));
+  }
 }
@@ -19,9 +19,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.atLeastOnce;
-import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -33,13 +31,13 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
-import org.openlmis.fulfillment.ShipmentContextRunner;
 import org.openlmis.fulfillment.domain.FtpTransferProperties;
 import org.openlmis.fulfillment.domain.TransferProperties;
 import org.openlmis.fulfillment.domain.TransferType;
 import org.openlmis.fulfillment.repository.TransferPropertiesRepository;
 import org.openlmis.fulfillment.service.referencedata.FacilityDto;
 import org.openlmis.fulfillment.service.referencedata.FacilityReferenceDataService;
+import org.openlmis.fulfillment.service.shipment.ShipmentPollerEngine;
 
 @RunWith(MockitoJUnitRunner.class)
 public class TransferPropertiesServiceTest {
@@ -51,7 +49,10 @@ public class TransferPropertiesServiceTest {
   private FacilityReferenceDataService facilityReferenceDataService;
 
   @Mock
-  private ShipmentContextRunner shipmentContextRunner;
+  private ShipmentPollerEngine shipmentPollerEngine;
+
+  @Mock
+  private TransferRoutingTable transferRoutingTable;
 
   @InjectMocks
   private TransferPropertiesService transferPropertiesService;
@@ -62,7 +63,6 @@ public class TransferPropertiesServiceTest {
     final TransferProperties properties = randomSetting(TransferType.ORDER);
     final FacilityDto facility = mock(FacilityDto.class);
 
-    doNothing().when(shipmentContextRunner).reCreateShipmentChannel(any());
     when(facility.getId()).thenReturn(UUID.randomUUID());
     when(facilityReferenceDataService.findOne(any(UUID.class))).thenReturn(facility);
     when(transferPropertiesRepository
@@ -74,16 +74,16 @@ public class TransferPropertiesServiceTest {
 
     // then
     verify(transferPropertiesRepository, atLeastOnce()).save(properties);
-    verify(shipmentContextRunner, never()).reCreateShipmentChannel(any());
+    verify(transferRoutingTable).invalidate();
+    verify(shipmentPollerEngine).refresh(properties);
   }
 
   @Test
-  public void saveShouldReCreateShipmentChannelForShipmentTransferProperties() {
+  public void saveShouldRefreshShipmentEndpointForShipmentTransferProperties() {
     // given
     final TransferProperties properties = randomSetting(TransferType.SHIPMENT);
     final FacilityDto facility = mock(FacilityDto.class);
 
-    doNothing().when(shipmentContextRunner).reCreateShipmentChannel(any());
     when(facility.getId()).thenReturn(UUID.randomUUID());
     when(facilityReferenceDataService.findOne(any(UUID.class))).thenReturn(facility);
     when(transferPropertiesRepository
@@ -95,7 +95,7 @@ public class TransferPropertiesServiceTest {
     transferPropertiesService.save(properties);
 
     // then
-    verify(shipmentContextRunner, atLeastOnce()).reCreateShipmentChannel(any());
+    verify(shipmentPollerEngine).refresh(properties);
   }
 
   @Test(expected = DuplicateTransferPropertiesException.class)
@@ -120,7 +120,6 @@ public class TransferPropertiesServiceTest {
     // given
     final TransferProperties properties = randomSetting(TransferType.ORDER);
 
-    doNothing().when(shipmentContextRunner).reCreateShipmentChannel(any());
     when(facilityReferenceDataService.findOne(any(UUID.class))).thenReturn(null);
     when(transferPropertiesRepository
         .findFirstByFacilityIdAndTransferType(any(UUID.class), any()))
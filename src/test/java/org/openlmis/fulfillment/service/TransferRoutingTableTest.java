@@ -0,0 +1,146 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.domain.FileTemplate;
+import org.openlmis.fulfillment.domain.FtpTransferProperties;
+import org.openlmis.fulfillment.domain.LocalTransferProperties;
+import org.openlmis.fulfillment.domain.TemplateType;
+import org.openlmis.fulfillment.domain.TransferProperties;
+import org.openlmis.fulfillment.domain.TransferType;
+import org.openlmis.fulfillment.repository.FileTemplateRepository;
+import org.openlmis.fulfillment.repository.TransferPropertiesRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TransferRoutingTableTest {
+  private static final UUID FACILITY_ID = UUID.randomUUID();
+
+  @Mock
+  private TransferPropertiesRepository transferPropertiesRepository;
+
+  @Mock
+  private FileTemplateRepository fileTemplateRepository;
+
+  @InjectMocks
+  private TransferRoutingTable transferRoutingTable;
+
+  private TransferProperties properties = new FtpTransferProperties();
+  private FileTemplate template = new FileTemplate("O", true, TemplateType.ORDER,
+      Collections.emptyList());
+
+  @Before
+  public void setUp() {
+    properties.setFacilityId(FACILITY_ID);
+    properties.setTransferType(TransferType.ORDER);
+
+    when(transferPropertiesRepository.getRoutingVersion()).thenReturn(1L);
+    when(transferPropertiesRepository.findAll())
+        .thenReturn(Collections.singletonList(properties));
+    when(fileTemplateRepository.findAll()).thenReturn(Collections.singletonList(template));
+  }
+
+  @Test
+  public void shouldLoadRoutesOnce() {
+    transferRoutingTable.load();
+
+    assertThat(transferRoutingTable.getTransferProperties(FACILITY_ID, TransferType.ORDER),
+        is(properties));
+    assertThat(transferRoutingTable.getFileTemplate(TemplateType.ORDER), is(template));
+    assertThat(transferRoutingTable.getTransferProperties(FACILITY_ID, TransferType.ORDER),
+        is(properties));
+
+    verify(transferPropertiesRepository, times(1)).findAll();
+    verify(fileTemplateRepository, times(1)).findAll();
+    verify(transferPropertiesRepository, never())
+        .findFirstByFacilityIdAndTransferType(any(), any());
+    verify(fileTemplateRepository, never()).findFirstByTemplateType(any());
+  }
+
+  @Test
+  public void shouldLoadRoutesOnFirstAccess() {
+    assertThat(transferRoutingTable.getFileTemplate(TemplateType.ORDER), is(template));
+    verify(fileTemplateRepository).findAll();
+  }
+
+  @Test
+  public void shouldLookUpMissingRoutesInDatabase() {
+    UUID facilityId = UUID.randomUUID();
+    TransferProperties other = new LocalTransferProperties();
+    when(transferPropertiesRepository
+        .findFirstByFacilityIdAndTransferType(facilityId, TransferType.ORDER))
+        .thenReturn(other);
+
+    assertThat(transferRoutingTable.getTransferProperties(facilityId, TransferType.ORDER),
+        is(other));
+    assertThat(transferRoutingTable.getTransferProperties(FACILITY_ID, TransferType.SHIPMENT),
+        is(nullValue()));
+    assertThat(transferRoutingTable.getFileTemplate(TemplateType.SHIPMENT), is(nullValue()));
+  }
+
+  @Test
+  public void shouldReloadRoutesAfterInvalidation() {
+    transferRoutingTable.load();
+    transferRoutingTable.invalidate();
+
+    TransferProperties updated = new LocalTransferProperties();
+    updated.setFacilityId(FACILITY_ID);
+    updated.setTransferType(TransferType.ORDER);
+    when(transferPropertiesRepository.findAll()).thenReturn(Collections.singletonList(updated));
+
+    assertThat(transferRoutingTable.getTransferProperties(FACILITY_ID, TransferType.ORDER),
+        is(updated));
+    verify(transferPropertiesRepository).incrementRoutingVersion();
+    verify(transferPropertiesRepository, times(2)).findAll();
+  }
+
+  @Test
+  public void shouldReloadRoutesChangedByOtherInstance() {
+    transferRoutingTable.load();
+    transferRoutingTable.refresh();
+    verify(transferPropertiesRepository, times(1)).findAll();
+
+    when(transferPropertiesRepository.getRoutingVersion()).thenReturn(2L);
+    transferRoutingTable.refresh();
+    transferRoutingTable.refresh();
+
+    verify(transferPropertiesRepository, times(2)).findAll();
+  }
+
+  @Test
+  public void shouldNotRefreshRoutesThatWereNotLoaded() {
+    transferRoutingTable.refresh();
+
+    verify(transferPropertiesRepository, never()).getRoutingVersion();
+    verify(transferPropertiesRepository, never()).findAll();
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service.referencedata;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.service.ServiceResponse;
+import org.openlmis.fulfillment.service.referencedata.OrderableCatalog.Orderables;
+import org.springframework.http.HttpHeaders;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderableCatalogTest {
+  private static final String ETAG = "W/\"1\"";
+  private static final String PRODUCT_CODE = "C100";
+
+  @Mock
+  private OrderableReferenceDataService orderableReferenceDataService;
+
+  @InjectMocks
+  private OrderableCatalog catalog;
+
+  @Mock
+  private ServiceResponse<List<OrderableDto>> response;
+
+  private OrderableDto orderable = new OrderableDto();
+
+  @Before
+  public void setUp() {
+    orderable.setId(UUID.randomUUID());
+    orderable.setProductCode(PRODUCT_CODE);
+
+    when(response.isModified()).thenReturn(true);
+    when(response.getBody()).thenReturn(asList(orderable));
+    when(response.getETag()).thenReturn(ETAG);
+    when(orderableReferenceDataService.findAll(null)).thenReturn(response);
+  }
+
+  @Test
+  public void shouldIndexOrderablesByIdAndProductCode() {
+    Orderables orderables = catalog.get();
+
+    assertThat(orderables.size(), is(1));
+    assertThat(orderables.findById(orderable.getId()), is(orderable));
+    assertThat(orderables.findByProductCode(PRODUCT_CODE), is(orderable));
+    assertThat(orderables.findById(UUID.randomUUID()), is(nullValue()));
+    assertThat(orderables.findByProductCode("C200"), is(nullValue()));
+  }
+
+  @Test
+  public void shouldKeepOrderablesIfTheyWereNotModified() {
+    Orderables first = catalog.get();
+
+    ServiceResponse<List<OrderableDto>> notModified = notModifiedResponse();
+    when(orderableReferenceDataService.findAll(ETAG)).thenReturn(notModified);
+
+    Orderables second = catalog.get();
+
+    assertThat(second, is(sameInstance(first)));
+    verify(orderableReferenceDataService).findAll(ETAG);
+  }
+
+  @Test
+  public void shouldRebuildOrderablesIfTheyWereModified() {
+    catalog.get();
+
+    OrderableDto changed = new OrderableDto();
+    changed.setId(orderable.getId());
+    changed.setProductCode("C200");
+
+    ServiceResponse<List<OrderableDto>> modified = modifiedResponse(changed);
+    when(orderableReferenceDataService.findAll(ETAG)).thenReturn(modified);
+
+    Orderables orderables = catalog.get();
+
+    assertThat(orderables.findById(orderable.getId()), is(changed));
+    assertThat(orderables.findByProductCode(PRODUCT_CODE), is(nullValue()));
+    assertThat(orderables.findByProductCode("C200"), is(changed));
+  }
+
+  private ServiceResponse<List<OrderableDto>> notModifiedResponse() {
+    return new ServiceResponse<>(null, null, false);
+  }
+
+  private ServiceResponse<List<OrderableDto>> modifiedResponse(OrderableDto orderable) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag("W/\"2\"");
+    return new ServiceResponse<>(asList(orderable), headers, true);
+  }
+}
@@ -15,15 +15,20 @@
 
 package org.openlmis.fulfillment.service.referencedata;
 
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.refEq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.net.URI;
 import java.util.Collections;
@@ -31,8 +36,14 @@ import java.util.List;
 import java.util.UUID;
 import org.junit.Before;
 import org.junit.Test;
+import org.openlmis.fulfillment.service.PageDto;
+import org.openlmis.fulfillment.service.ServiceResponse;
 import org.openlmis.fulfillment.util.DynamicPageTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 
 public class OrderableReferenceDataServiceTest
     extends BaseReferenceDataServiceTest<OrderableDto> {
@@ -103,4 +114,39 @@ public class OrderableReferenceDataServiceTest
     assertEquals(serviceUrl + service.getUrl(), uri.toString());
   }
 
+  @Test
+  public void shouldReturnAllProductsIfTheyWereModified() {
+    OrderableDto product = mockPageResponseEntityAndGetDto();
+    String etag = "W/\"1\"";
+
+    ServiceResponse<List<OrderableDto>> response = service.findAll(etag);
+
+    assertTrue(response.isModified());
+    assertThat(response.getBody(), hasItem(product));
+
+    verify(restTemplate).exchange(
+        uriCaptor.capture(), eq(HttpMethod.GET), entityCaptor.capture(),
+        refEq(new DynamicPageTypeReference<>(OrderableDto.class)));
+
+    assertEquals(serviceUrl + service.getUrl(), uriCaptor.getValue().toString());
+    assertThat(entityCaptor.getValue().getHeaders(),
+        hasEntry(HttpHeaders.IF_NONE_MATCH, singletonList(etag)));
+    assertAuthHeader(entityCaptor.getValue());
+  }
+
+  @Test
+  public void shouldNotReturnProductsIfTheyWereNotModified() {
+    ResponseEntity<PageDto<OrderableDto>> notModified =
+        new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+    when(restTemplate.exchange(
+        any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+        any(DynamicPageTypeReference.class)))
+        .thenReturn(notModified);
+
+    ServiceResponse<List<OrderableDto>> response = service.findAll("W/\"1\"");
+
+    assertFalse(response.isModified());
+    assertNull(response.getBody());
+  }
+
 }
@@ -20,10 +20,16 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verify;
+import static org.openlmis.fulfillment.i18n.MessageKeys.ORDER_NOT_FOUND;
+import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_ORDER_DUPLICATE;
 import static org.powermock.api.mockito.PowerMockito.when;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import org.apache.commons.csv.CSVRecord;
 import org.junit.Before;
@@ -42,7 +48,6 @@ import org.openlmis.fulfillment.domain.TemplateType;
 import org.openlmis.fulfillment.repository.OrderRepository;
 import org.openlmis.fulfillment.repository.ShipmentRepository;
 import org.openlmis.fulfillment.service.FulfillmentException;
-import org.openlmis.fulfillment.service.PageDto;
 import org.openlmis.fulfillment.testutils.ShipmentDataBuilder;
 import org.openlmis.fulfillment.util.DateHelper;
 import org.openlmis.fulfillment.util.FileColumnKeyPath;
@@ -50,7 +55,6 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.test.util.ReflectionTestUtils;
 
 @RunWith(PowerMockRunner.class)
@@ -58,6 +62,8 @@ import org.springframework.test.util.ReflectionTestUtils;
 public class ShipmentBuilderTest {
 
   private static final String ORDER_CODE = "O0001";
+  private static final String SECOND_ORDER_CODE = "O0002";
+  private static final String THIRD_ORDER_CODE = "O0003";
   private static final UUID SHIPPED_BY_ID = UUID.randomUUID();
 
   private static final String BATCH_NUMBER_FIELD_KEY = "batchNumber";
@@ -90,50 +96,97 @@ public class ShipmentBuilderTest {
 
     ReflectionTestUtils.setField(builderService, "shippedById",
         SHIPPED_BY_ID);
-    ImportedShipmentLineItemData result = new ImportedShipmentLineItemData();
+    Map<String, ImportedShipmentLineItemData> result = new LinkedHashMap<>();
+    result.put(ORDER_CODE, new ImportedShipmentLineItemData());
     when(lineItemBuilder.build(any(), any())).thenReturn(result);
-    when(csvRecord.get(0)).thenReturn(ORDER_CODE);
-    when(shipmentRepository.findByOrder(any(), any())).thenReturn(new PageDto<>());
+    when(shipmentRepository.findByOrderIn(any())).thenReturn(Collections.emptyList());
   }
 
   @Test(expected = FulfillmentException.class)
   public void shouldThrowFulfillmentExceptionWhenParsedDataIsEmpty() {
     FileTemplate template = mockTemplate(false);
     List<CSVRecord> parsedData = new ArrayList<>();
+    when(lineItemBuilder.build(any(), any())).thenReturn(Collections.emptyMap());
 
     builderService.build(template, parsedData);
   }
 
 
-  @Test(expected = FulfillmentException.class)
-  public void shouldThrowFulfillmentExceptionWhenOrderIsNotFound() {
+  @Test
+  public void shouldReturnFailedShipmentWhenOrderIsNotFound() {
     FileTemplate template = mockTemplate(false);
-    when(orderRepository.findByOrderCode(ORDER_CODE)).thenReturn(null);
+    when(orderRepository.findByOrderCodeInForUpdate(any())).thenReturn(Collections.emptyList());
+
+    List<ImportedShipment> shipments = builderService.build(template, asList(csvRecord));
 
-    builderService.build(template, asList(csvRecord));
+    assertThat(shipments.size(), is(1));
+    assertThat(shipments.get(0).isFailed(), is(true));
+    assertThat(shipments.get(0).getError().getMessageKey(), is(ORDER_NOT_FOUND));
   }
 
   @Test
   public void shouldCreateShipmentWithRequiredFieldsProperties() {
     FileTemplate template = mockTemplate(false);
-    when(orderRepository.findByOrderCode(ORDER_CODE)).thenReturn(order);
+    when(orderRepository.findByOrderCodeInForUpdate(any())).thenReturn(asList(order));
 
-    Shipment shipment = builderService.build(template, asList(csvRecord));
+    List<ImportedShipment> shipments = builderService.build(template, asList(csvRecord));
 
-    assertThat(shipment.getOrder(), is(equalTo(order)));
+    assertThat(shipments.size(), is(1));
+    assertThat(shipments.get(0).getShipment().getOrder(), is(equalTo(order)));
   }
 
-  @Test(expected = FulfillmentException.class)
-  public void shouldThrowFulfillmentExceptionWhenShipmentAlreadyExists() {
+  @Test
+  public void shouldReturnFailedShipmentWhenShipmentAlreadyExists() {
     FileTemplate template = mockTemplate(false);
-    when(orderRepository.findByOrderCode(ORDER_CODE)).thenReturn(order);
-    Shipment persistedShipment = new ShipmentDataBuilder().build();
-    when(shipmentRepository.findByOrder(any(), any()))
-        .thenReturn(new PageImpl<>(asList(persistedShipment)));
+    when(orderRepository.findByOrderCodeInForUpdate(any())).thenReturn(asList(order));
+    Shipment persistedShipment = new ShipmentDataBuilder().withOrder(order).build();
+    when(shipmentRepository.findByOrderIn(any())).thenReturn(asList(persistedShipment));
+
+    List<ImportedShipment> shipments = builderService.build(template, asList(csvRecord));
+
+    assertThat(shipments.get(0).getError().getMessageKey(), is(SHIPMENT_ORDER_DUPLICATE));
+  }
+
+  @Test
+  public void shouldCreateShipmentForEachOrderAndIsolateFailures() {
+    ImportedShipmentLineItemData rejected = new ImportedShipmentLineItemData();
+    rejected.reject(new FulfillmentException("Quantity Shipped value should be a valid number."));
+
+    Map<String, ImportedShipmentLineItemData> result = new LinkedHashMap<>();
+    result.put(ORDER_CODE, new ImportedShipmentLineItemData());
+    result.put(SECOND_ORDER_CODE, new ImportedShipmentLineItemData());
+    result.put(THIRD_ORDER_CODE, rejected);
+    when(lineItemBuilder.build(any(), any())).thenReturn(result);
+    Order secondOrder = new OrderDataBuilder().withOrderCode(SECOND_ORDER_CODE).build();
+    when(orderRepository.findByOrderCodeInForUpdate(any())).thenReturn(asList(order, secondOrder));
 
-    builderService.build(template, asList(csvRecord));
+    FileTemplate template = mockTemplate(false);
+    List<ImportedShipment> shipments = builderService.build(template, asList(csvRecord));
+
+    assertThat(shipments.size(), is(3));
+    assertThat(shipments.get(0).getShipment().getOrder(), is(equalTo(order)));
+    assertThat(shipments.get(1).getShipment().getOrder(), is(equalTo(secondOrder)));
+    assertThat(shipments.get(2).isFailed(), is(true));
+    verify(orderRepository).findByOrderCodeInForUpdate(result.keySet());
+    verify(shipmentRepository).findByOrderIn(any());
   }
 
+  @Test
+  public void shouldFindOrdersByIdsWhenTemplateUsesOrderId() {
+    FileTemplate template = mockTemplate(false);
+    template.getFileColumns().get(0).setKeyPath(FileColumnKeyPath.ORDER_ID.toString());
+    Map<String, ImportedShipmentLineItemData> result = new LinkedHashMap<>();
+    result.put(order.getId().toString(), new ImportedShipmentLineItemData());
+    result.put("invalid-id", new ImportedShipmentLineItemData());
+    when(lineItemBuilder.build(any(), any())).thenReturn(result);
+    when(orderRepository.findByIdInForUpdate(Collections.singleton(order.getId())))
+        .thenReturn(asList(order));
+
+    List<ImportedShipment> shipments = builderService.build(template, asList(csvRecord));
+
+    assertThat(shipments.get(0).getShipment().getOrder(), is(equalTo(order)));
+    assertThat(shipments.get(1).getError().getMessageKey(), is(ORDER_NOT_FOUND));
+  }
 
   private FileTemplate mockTemplate(Boolean includeExtraData) {
     FileTemplateBuilder templateBuilder = new FileTemplateBuilder();
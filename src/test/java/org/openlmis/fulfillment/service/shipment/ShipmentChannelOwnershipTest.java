@@ -0,0 +1,209 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service.shipment;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.domain.ShipmentPollerInstance;
+import org.openlmis.fulfillment.repository.ShipmentChannelLeaseRepository;
+import org.openlmis.fulfillment.repository.ShipmentPollerInstanceRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ShipmentChannelOwnershipTest {
+  private static final int LEASE_DURATION = 30;
+
+  @Mock
+  private ShipmentPollerInstanceRepository instanceRepository;
+
+  @Mock
+  private ShipmentChannelLeaseRepository leaseRepository;
+
+  @InjectMocks
+  private ShipmentChannelOwnership ownership;
+
+  private UUID channel = UUID.randomUUID();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(ownership, "leaseDuration", LEASE_DURATION);
+    mockInstances(ownership.getInstanceId());
+    when(leaseRepository.acquire(anyString(), anyString(), anyInt())).thenReturn(1);
+  }
+
+  @Test
+  public void shouldOwnChannelsIfItIsTheOnlyInstance() {
+    ownership.rebalance(singletonList(channel));
+
+    assertThat(ownership.isOwned(channel), is(true));
+    verify(instanceRepository).heartbeat(ownership.getInstanceId().toString());
+    verify(instanceRepository).deleteInactive(LEASE_DURATION);
+    verify(leaseRepository)
+        .acquire(channel.toString(), ownership.getInstanceId().toString(), LEASE_DURATION);
+  }
+
+  @Test
+  public void shouldNotOwnChannelIfLeaseIsHeldByAnotherInstance() {
+    when(leaseRepository.acquire(anyString(), anyString(), anyInt())).thenReturn(0);
+
+    ownership.rebalance(singletonList(channel));
+
+    assertThat(ownership.isOwned(channel), is(false));
+  }
+
+  @Test
+  public void shouldNotOwnChannelIfLeaseCannotBeAcquired() {
+    when(leaseRepository.acquire(anyString(), anyString(), anyInt()))
+        .thenThrow(new IllegalStateException());
+
+    ownership.rebalance(singletonList(channel));
+
+    assertThat(ownership.isOwned(channel), is(false));
+  }
+
+  @Test
+  public void shouldReleaseChannelAssignedToAnotherInstance() {
+    ownership.rebalance(singletonList(channel));
+
+    UUID other = findInstanceAssignedTo(channel);
+    mockInstances(ownership.getInstanceId(), other);
+    ownership.rebalance(singletonList(channel));
+
+    assertThat(ownership.isOwned(channel), is(false));
+    verify(leaseRepository).release(channel.toString(), ownership.getInstanceId().toString());
+  }
+
+  @Test
+  public void shouldReleaseRemovedChannel() {
+    ownership.rebalance(singletonList(channel));
+
+    ownership.rebalance(emptyList());
+
+    assertThat(ownership.isOwned(channel), is(false));
+    verify(leaseRepository).release(channel.toString(), ownership.getInstanceId().toString());
+  }
+
+  @Test
+  public void shouldNotOwnChannelAfterLeaseHasExpired() {
+    ReflectionTestUtils.setField(ownership, "leaseDuration", 0);
+
+    ownership.rebalance(singletonList(channel));
+
+    assertThat(ownership.isOwned(channel), is(false));
+  }
+
+  @Test
+  public void shouldReleaseAllChannels() {
+    ownership.rebalance(singletonList(channel));
+
+    ownership.releaseAll();
+
+    assertThat(ownership.getOwnedCount(), is(0));
+    verify(leaseRepository).release(channel.toString(), ownership.getInstanceId().toString());
+    verify(instanceRepository).deleteInstance(ownership.getInstanceId().toString());
+  }
+
+  @Test
+  public void shouldNotReleaseChannelsThatAreNotOwned() {
+    ownership.releaseAll();
+
+    verify(leaseRepository, never()).release(anyString(), anyString());
+  }
+
+  @Test
+  public void shouldDivideChannelsBetweenInstances() {
+    List<UUID> instances = asList(UUID.randomUUID(), UUID.randomUUID());
+    int first = 0;
+
+    for (int i = 0; i < 1000; ++i) {
+      if (instances.get(0).equals(
+          ShipmentChannelOwnership.getAssignedInstance(UUID.randomUUID(), instances))) {
+        ++first;
+      }
+    }
+
+    assertThat(first, is(greaterThan(400)));
+    assertThat(1000 - first, is(greaterThan(400)));
+  }
+
+  @Test
+  public void shouldMoveChannelsOnlyToJoiningInstance() {
+    List<UUID> instances = new ArrayList<>(asList(UUID.randomUUID(), UUID.randomUUID()));
+    List<UUID> channels = new ArrayList<>();
+    List<UUID> before = new ArrayList<>();
+
+    for (int i = 0; i < 100; ++i) {
+      UUID id = UUID.randomUUID();
+      channels.add(id);
+      before.add(ShipmentChannelOwnership.getAssignedInstance(id, instances));
+    }
+
+    UUID joining = UUID.randomUUID();
+    instances.add(joining);
+
+    for (int i = 0; i < channels.size(); ++i) {
+      UUID after = ShipmentChannelOwnership.getAssignedInstance(channels.get(i), instances);
+
+      if (!after.equals(joining)) {
+        assertThat(after, is(before.get(i)));
+      }
+    }
+  }
+
+  private UUID findInstanceAssignedTo(UUID channel) {
+    while (true) {
+      UUID other = UUID.randomUUID();
+      List<UUID> instances = asList(ownership.getInstanceId(), other);
+
+      if (other.equals(ShipmentChannelOwnership.getAssignedInstance(channel, instances))) {
+        return other;
+      }
+    }
+  }
+
+  private void mockInstances(UUID... ids) {
+    List<ShipmentPollerInstance> instances = new ArrayList<>();
+
+    for (UUID id : ids) {
+      ShipmentPollerInstance instance = mock(ShipmentPollerInstance.class);
+      when(instance.getId()).thenReturn(id);
+      instances.add(instance);
+    }
+
+    when(instanceRepository.findAll()).thenReturn(instances);
+  }
+
+}
@@ -18,19 +18,32 @@ package org.openlmis.fulfillment.service.shipment;
 import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 import org.apache.commons.csv.CSVRecord;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.openlmis.fulfillment.FileColumnBuilder;
 import org.openlmis.fulfillment.FileTemplateBuilder;
 import org.openlmis.fulfillment.domain.FileColumn;
 import org.openlmis.fulfillment.domain.FileTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.util.ResourceUtils;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -40,6 +53,9 @@ public class ShipmentCsvFileParserTest {
 
   private FileTemplate template;
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test(expected = IOException.class)
   public void shouldThrowIoExceptionWhenFileCannotBeRead() throws Exception {
     template = new FileTemplateBuilder().withHeaderInFile(true).build();
@@ -52,7 +68,7 @@ public class ShipmentCsvFileParserTest {
 
     File file = ResourceUtils.getFile(this.getClass()
         .getResource("/shipment_file_with_header.csv"));
-    List<CSVRecord> response = parser.parse(file, template);
+    List<CSVRecord> response = parse(file);
 
     assertNotNull(response);
     assertThat(response.get(0).get(0),
@@ -65,23 +81,94 @@ public class ShipmentCsvFileParserTest {
 
     File file = ResourceUtils.getFile(this.getClass()
         .getResource("/shipment_file_with_header.csv"));
-    List<CSVRecord> response = parser.parse(file, template);
+    List<CSVRecord> response = parse(file);
 
     assertNotNull(response);
     assertThat(response.get(0).get(0), is("orderId"));
   }
 
+  @Test
+  public void shouldReadFileWithGivenCharsetAndByteOrderMark() throws Exception {
+    generateTemplate(false);
+
+    byte[] byteOrderMark = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    // a word with Polish letters encoded in UTF-8
+    byte[] word = {(byte) 0xC5, (byte) 0xBB, (byte) 0xC3, (byte) 0xB3, (byte) 0xC5, (byte) 0x82,
+        (byte) 'w'};
+
+    File file = temporaryFolder.newFile("shipment_file_utf8.csv");
+    try (OutputStream stream = new FileOutputStream(file)) {
+      stream.write(byteOrderMark);
+      stream.write("ORDER-1,orderable,facility,10,".getBytes(StandardCharsets.US_ASCII));
+      stream.write(word);
+      stream.write('\n');
+    }
+    ReflectionTestUtils.setField(parser, "charset", StandardCharsets.UTF_8);
+
+    List<CSVRecord> response = parse(file);
+
+    assertThat(response.get(0).get(0), is("ORDER-1"));
+    assertThat(response.get(0).get(4), is(new String(word, StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void shouldReadRecordsLazily() throws Exception {
+    generateTemplate(true);
+
+    File file = ResourceUtils.getFile(this.getClass()
+        .getResource("/shipment_file_inconsistent.csv"));
+
+    try (Stream<CSVRecord> records = parser.parse(file, template)) {
+      Iterator<CSVRecord> iterator = records.iterator();
+
+      // the first record is consistent, the second one is read and validated only on demand
+      assertThat(iterator.next().get(0), is("ORDER-00000000-0000-0000-0000-000000000010R"));
+
+      try {
+        iterator.next();
+        fail("Inconsistent record should be rejected when it is read");
+      } catch (IllegalArgumentException exp) {
+        assertThat(exp.getMessage(), startsWith("Shipment record inconsistent"));
+      }
+    }
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void shouldThrowIllegalArgumentExceptionIfRowIsInconsistent() throws Exception {
     generateTemplate(true);
 
     File file = ResourceUtils.getFile(this.getClass()
         .getResource("/shipment_file_inconsistent.csv"));
-    List<CSVRecord> response = parser.parse(file, template);
+    List<CSVRecord> response = parse(file);
 
     assertNotNull(response);
   }
 
+  @Test
+  public void shouldParseGzipCompressedFile() throws Exception {
+    generateTemplate(true);
+
+    File source = ResourceUtils.getFile(this.getClass()
+        .getResource("/shipment_file_with_header.csv"));
+    File file = temporaryFolder.newFile("shipment_file_with_header.csv.gz");
+
+    try (OutputStream stream = new GZIPOutputStream(new FileOutputStream(file))) {
+      Files.copy(source.toPath(), stream);
+    }
+
+    List<CSVRecord> response = parse(file);
+
+    assertThat(response.size(), is(parse(source).size()));
+    assertThat(response.get(0).get(0),
+        is("ORDER-00000000-0000-0000-0000-000000000010R"));
+  }
+
+  private List<CSVRecord> parse(File file) throws IOException {
+    try (Stream<CSVRecord> records = parser.parse(file, template)) {
+      return records.collect(Collectors.toList());
+    }
+  }
+
   private void generateTemplate(boolean headerInFile) {
     FileColumn orderId = new FileColumnBuilder()
         .withPosition(0).withKeyPath("orderId").build();
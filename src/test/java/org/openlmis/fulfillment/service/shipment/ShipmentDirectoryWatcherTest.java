@@ -0,0 +1,90 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service.shipment;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShipmentDirectoryWatcherTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ShipmentDirectoryWatcher watcher = new ShipmentDirectoryWatcher();
+
+  private File directory;
+
+  @Before
+  public void setUp() throws Exception {
+    watcher.start();
+    directory = temporaryFolder.newFolder("incoming");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    watcher.stop();
+  }
+
+  @Test
+  public void shouldNotifyListenersWhenFileIsCreated() throws Exception {
+    CountDownLatch first = new CountDownLatch(1);
+    CountDownLatch second = new CountDownLatch(1);
+    watcher.register(UUID.randomUUID(), directory.toPath(), first::countDown);
+    watcher.register(UUID.randomUUID(), directory.toPath(), second::countDown);
+
+    assertTrue(new File(directory, "shipment.csv").createNewFile());
+
+    assertTrue(first.await(10, TimeUnit.SECONDS));
+    assertTrue(second.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void shouldKeepWatchingDirectoryUsedByOtherChannel() throws Exception {
+    UUID removed = UUID.randomUUID();
+    CountDownLatch latch = new CountDownLatch(1);
+    watcher.register(removed, directory.toPath(), () -> { });
+    watcher.register(UUID.randomUUID(), directory.toPath(), latch::countDown);
+
+    watcher.unregister(removed);
+    assertTrue(new File(directory, "shipment.csv").createNewFile());
+
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    assertThat(watcher.getWatchedCount(), is(1));
+  }
+
+  @Test
+  public void shouldStopWatchingUnregisteredDirectory() throws Exception {
+    UUID id = UUID.randomUUID();
+    watcher.register(id, directory.toPath(), () -> { });
+
+    watcher.unregister(id);
+
+    assertThat(watcher.getWatchedCount(), is(0));
+  }
+
+}
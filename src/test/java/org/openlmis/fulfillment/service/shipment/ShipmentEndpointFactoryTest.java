@@ -0,0 +1,208 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service.shipment;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openlmis.fulfillment.domain.FtpProtocol;
+import org.openlmis.fulfillment.domain.FtpTransferProperties;
+import org.openlmis.fulfillment.domain.LocalTransferProperties;
+import org.openlmis.fulfillment.domain.TransferProperties;
+import org.openlmis.fulfillment.domain.TransferType;
+import org.openlmis.fulfillment.service.FulfillmentException;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.integration.ftp.inbound.FtpInboundFileSynchronizingMessageSource;
+import org.springframework.integration.sftp.inbound.SftpInboundFileSynchronizingMessageSource;
+import org.springframework.integration.sftp.session.DefaultSftpSessionFactory;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ShipmentEndpointFactoryTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ShipmentEndpointFactory factory = new ShipmentEndpointFactory();
+
+  private File path;
+
+  @Before
+  public void setUp() throws Exception {
+    ReflectionTestUtils.setField(factory, "fileNameGenerator",
+        new ShipmentArchiveFileNameGenerator());
+    ReflectionTestUtils.setField(factory, "beanFactory", new DefaultListableBeanFactory());
+
+    path = temporaryFolder.getRoot();
+  }
+
+  @Test
+  public void shouldReceiveShipmentFilesFromLocalDirectory() throws Exception {
+    ShipmentEndpoint endpoint = factory.create(createLocalTransferProperty());
+
+    assertTrue(new File(path, "incoming/shipment.csv").createNewFile());
+    assertTrue(new File(path, "incoming/readme.txt").createNewFile());
+
+    Message<File> message = endpoint.receive();
+
+    assertThat(message.getPayload().getName(), is("shipment.csv"));
+    assertThat(endpoint.receive(), is(nullValue()));
+  }
+
+  @Test
+  public void shouldNotReceiveLocalFilesThatAreStillBeingWritten() throws Exception {
+    ReflectionTestUtils.setField(factory, "quietPeriod", 60000L);
+    ShipmentEndpoint endpoint = factory.create(createLocalTransferProperty());
+    File file = new File(path, "incoming/shipment.csv");
+    assertTrue(file.createNewFile());
+
+    assertThat(endpoint.receive(), is(nullValue()));
+
+    assertTrue(file.setLastModified(System.currentTimeMillis() - 120000));
+    assertThat(endpoint.receive().getPayload().getName(), is("shipment.csv"));
+  }
+
+  @Test
+  public void shouldWatchIncomingDirectoryOfLocalEndpoint() {
+    ShipmentEndpoint endpoint = factory.create(createLocalTransferProperty());
+
+    assertTrue(endpoint.isWatchable());
+    assertThat(endpoint.getWatchedDirectory(), is(new File(path, "incoming")));
+  }
+
+  @Test
+  public void shouldMoveArchivedFilesToLocalArchiveDirectory() throws Exception {
+    ShipmentEndpoint endpoint = factory.create(createLocalTransferProperty());
+    File file = new File(path, "incoming/shipment.csv");
+    assertTrue(file.createNewFile());
+
+    endpoint.getArchiveChannel().send(MessageBuilder.withPayload(file).build());
+
+    File[] archived = new File(path, "archive").listFiles();
+    assertThat(archived, arrayWithSize(1));
+    assertThat(archived[0].getName(), endsWith("__shipment.csv"));
+    assertThat(file.exists(), is(false));
+  }
+
+  @Test
+  public void shouldMoveInvalidFilesToLocalErrorDirectory() throws Exception {
+    ShipmentEndpoint endpoint = factory.create(createLocalTransferProperty());
+    File file = new File(path, "incoming/shipment.csv");
+    assertTrue(file.createNewFile());
+
+    endpoint.getErrorChannel().send(MessageBuilder.withPayload(file).build());
+
+    assertThat(new File(path, "error").listFiles(), arrayWithSize(1));
+  }
+
+  @Test
+  public void shouldCreateFtpEndpoint() {
+    FtpTransferProperties ftp = createFtpTransferProperty(FtpProtocol.FTP);
+
+    ShipmentEndpoint endpoint = factory.create(ftp);
+
+    assertThat(endpoint.getId(), is(ftp.getId()));
+    assertThat(endpoint.getSource(),
+        is(instanceOf(FtpInboundFileSynchronizingMessageSource.class)));
+    assertTrue(new File(path, "incoming").isDirectory());
+    assertFalse(endpoint.isWatchable());
+  }
+
+  @Test
+  public void shouldCreateSftpEndpoint() {
+    FtpTransferProperties sftp = createFtpTransferProperty(FtpProtocol.SFTP);
+
+    ShipmentEndpoint endpoint = factory.create(sftp);
+
+    assertThat(endpoint.getId(), is(sftp.getId()));
+    assertThat(endpoint.getSource(),
+        is(instanceOf(SftpInboundFileSynchronizingMessageSource.class)));
+  }
+
+  @Test
+  public void shouldVerifySftpHostKeysByDefault() {
+    ReflectionTestUtils.setField(factory, "knownHosts", "/etc/ssh/ssh_known_hosts");
+
+    ShipmentEndpoint endpoint = factory.create(createFtpTransferProperty(FtpProtocol.SFTP));
+
+    DefaultSftpSessionFactory sessionFactory = getSftpSessionFactory(endpoint);
+    assertThat(ReflectionTestUtils.getField(sessionFactory, "allowUnknownKeys"), is(false));
+    assertThat(ReflectionTestUtils.getField(sessionFactory, "knownHosts"),
+        is("/etc/ssh/ssh_known_hosts"));
+  }
+
+  @Test
+  public void shouldAllowUnknownSftpHostKeysIfEnabled() {
+    ReflectionTestUtils.setField(factory, "allowUnknownKeys", true);
+
+    ShipmentEndpoint endpoint = factory.create(createFtpTransferProperty(FtpProtocol.SFTP));
+
+    DefaultSftpSessionFactory sessionFactory = getSftpSessionFactory(endpoint);
+    assertThat(ReflectionTestUtils.getField(sessionFactory, "allowUnknownKeys"), is(true));
+    assertThat(ReflectionTestUtils.getField(sessionFactory, "knownHosts"), is(nullValue()));
+  }
+
+  @Test(expected = FulfillmentException.class)
+  public void shouldNotCreateEndpointForUnknownTransferProperties() {
+    factory.create(mock(TransferProperties.class));
+  }
+
+  private DefaultSftpSessionFactory getSftpSessionFactory(ShipmentEndpoint endpoint) {
+    Object synchronizer = ReflectionTestUtils.getField(endpoint.getSource(), "synchronizer");
+    return (DefaultSftpSessionFactory) ReflectionTestUtils
+        .getField(ReflectionTestUtils.getField(synchronizer, "remoteFileTemplate"),
+            "sessionFactory");
+  }
+
+  private FtpTransferProperties createFtpTransferProperty(FtpProtocol protocol) {
+    FtpTransferProperties ftpTransferProperties = new FtpTransferProperties();
+    ftpTransferProperties.setId(UUID.randomUUID());
+    ftpTransferProperties.setFacilityId(UUID.randomUUID());
+    ftpTransferProperties.setTransferType(TransferType.SHIPMENT);
+    ftpTransferProperties.setLocalDirectory(path.getPath());
+    ftpTransferProperties.setRemoteDirectory("/shipment/files/csv");
+    ftpTransferProperties.setPassiveMode(true);
+    ftpTransferProperties.setProtocol(protocol);
+    ftpTransferProperties.setServerHost("localhost");
+    ftpTransferProperties.setUsername("random-user");
+    ftpTransferProperties.setPassword("random-password");
+    ftpTransferProperties.setServerPort(1000);
+    return ftpTransferProperties;
+  }
+
+  private LocalTransferProperties createLocalTransferProperty() {
+    LocalTransferProperties localTransferProperties = new LocalTransferProperties();
+    localTransferProperties.setId(UUID.randomUUID());
+    localTransferProperties.setFacilityId(UUID.randomUUID());
+    localTransferProperties.setTransferType(TransferType.SHIPMENT);
+    localTransferProperties.setPath(path.getPath());
+    return localTransferProperties;
+  }
+}
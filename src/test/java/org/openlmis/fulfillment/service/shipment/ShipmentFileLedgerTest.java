@@ -0,0 +1,115 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service.shipment;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.repository.ShipmentFileReceiptRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ShipmentFileLedgerTest {
+  private static final String CONTENT_CHECKSUM = "content-checksum";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Mock
+  private ShipmentFileReceiptRepository receiptRepository;
+
+  @InjectMocks
+  private ShipmentFileLedger fileLedger;
+
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    ReflectionTestUtils.setField(fileLedger, "retentionDays", 90);
+
+    file = temporaryFolder.newFile("shipment.csv");
+    Files.write(file.toPath(), "O111,P1,10\n".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void shouldCalculateSameChecksumForSameContent() throws Exception {
+    File copy = temporaryFolder.newFile("copy.csv");
+    Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    assertThat(fileLedger.getChecksum(copy), is(fileLedger.getChecksum(file)));
+    assertThat(fileLedger.getChecksum(file).length(), is(64));
+  }
+
+  @Test
+  public void shouldCountDuplicateFiles() {
+    when(receiptRepository.existsByChecksumAndFileSize(CONTENT_CHECKSUM, file.length()))
+        .thenReturn(true);
+
+    assertThat(fileLedger.isDuplicate(file, CONTENT_CHECKSUM), is(true));
+    assertThat(fileLedger.getSkippedCount(), is(1L));
+  }
+
+  @Test
+  public void shouldNotCountNewFiles() {
+    assertThat(fileLedger.isDuplicate(file, CONTENT_CHECKSUM), is(false));
+    assertThat(fileLedger.getSkippedCount(), is(0L));
+  }
+
+  @Test
+  public void shouldRecordFileWithItsNameAndSize() {
+    UUID channelId = UUID.randomUUID();
+
+    fileLedger.record(file, CONTENT_CHECKSUM, channelId);
+
+    verify(receiptRepository).record(anyString(), eq(CONTENT_CHECKSUM), eq(file.length()),
+        eq("shipment.csv"), eq(channelId.toString()));
+  }
+
+  @Test
+  public void shouldRemoveReceiptsOlderThanRetentionPeriod() {
+    fileLedger.removeExpiredReceipts();
+
+    verify(receiptRepository).deleteOlderThan(90);
+  }
+
+  @Test
+  public void shouldNotFailIfExpiredReceiptsCannotBeRemoved() {
+    when(receiptRepository.deleteOlderThan(90)).thenThrow(new IllegalStateException());
+
+    fileLedger.removeExpiredReceipts();
+
+    verify(receiptRepository).deleteOlderThan(90);
+  }
+
+}
@@ -16,10 +16,12 @@
 package org.openlmis.fulfillment.service.shipment;
 
 import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.powermock.api.mockito.PowerMockito.when;
 
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import org.apache.commons.csv.CSVRecord;
@@ -34,8 +36,9 @@ import org.openlmis.fulfillment.domain.FileColumn;
 import org.openlmis.fulfillment.domain.FileTemplate;
 import org.openlmis.fulfillment.domain.TemplateType;
 import org.openlmis.fulfillment.service.FulfillmentException;
+import org.openlmis.fulfillment.service.referencedata.OrderableCatalog;
+import org.openlmis.fulfillment.service.referencedata.OrderableCatalog.Orderables;
 import org.openlmis.fulfillment.service.referencedata.OrderableDto;
-import org.openlmis.fulfillment.service.referencedata.OrderableReferenceDataService;
 import org.openlmis.fulfillment.util.FileColumnKeyPath;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -56,7 +59,7 @@ public class ShipmentLineItemBuilderTest {
   private static final String BATCH_NUMBER = "1234";
 
   @Mock
-  OrderableReferenceDataService orderableReferenceDataService;
+  OrderableCatalog orderableCatalog;
 
   FileTemplate template;
 
@@ -76,7 +79,7 @@ public class ShipmentLineItemBuilderTest {
     dto2.setProductCode(PRODUCT_CODE_2);
     dto2.setId(UUID.randomUUID());
 
-    when(orderableReferenceDataService.findAll()).thenReturn(asList(dto1, dto2));
+    when(orderableCatalog.get()).thenReturn(new Orderables(asList(dto1, dto2)));
 
     when(csvRecord1.get(0)).thenReturn(ORDER_CODE);
     when(csvRecord1.get(1)).thenReturn(ORDERABLE_ID);
@@ -109,7 +112,8 @@ public class ShipmentLineItemBuilderTest {
 
   @Test
   public void buildShouldMakeALineItem() {
-    ImportedShipmentLineItemData result = builder.build(template, asList(csvRecord1));
+    ImportedShipmentLineItemData result = builder.build(template, asList(csvRecord1))
+        .get(ORDER_CODE);
 
     assertThat(result.getLineItems().size(), is(1));
     assertThat(result.getLineItems().get(0).getOrderableId().toString(), is(ORDERABLE_ID));
@@ -120,7 +124,8 @@ public class ShipmentLineItemBuilderTest {
     template = mockTemplate(FileColumnKeyPath.PRODUCT_CODE);
     when(csvRecord1.get(1)).thenReturn(PRODUCT_CODE);
 
-    ImportedShipmentLineItemData result = builder.build(template, asList(csvRecord1));
+    ImportedShipmentLineItemData result = builder.build(template, asList(csvRecord1))
+        .get(ORDER_CODE);
 
     assertThat(result.getLineItems().size(), is(1));
     assertThat(result.getLineItems().get(0).getOrderableId().toString(), is(ORDERABLE_ID));
@@ -132,7 +137,19 @@ public class ShipmentLineItemBuilderTest {
     template = mockTemplate(FileColumnKeyPath.PRODUCT_CODE);
     when(csvRecord1.get(1)).thenReturn(PRODUCT_CODE_3);
 
-    ImportedShipmentLineItemData result = builder.build(template, asList(csvRecord1));
+    ImportedShipmentLineItemData result = builder.build(template, asList(csvRecord1))
+        .get(ORDER_CODE);
+
+    assertThat(result.getRowsWithUnresolvedOrderable().size(), is(1));
+    assertThat(result.getLineItems().size(), is(0));
+  }
+
+  @Test
+  public void buildShouldAddRowToUnresolvedWhenOrderableIdIsInvalid() {
+    when(csvRecord1.get(1)).thenReturn(PRODUCT_CODE);
+
+    ImportedShipmentLineItemData result = builder.build(template, asList(csvRecord1))
+        .get(ORDER_CODE);
 
     assertThat(result.getRowsWithUnresolvedOrderable().size(), is(1));
     assertThat(result.getLineItems().size(), is(0));
@@ -156,37 +173,66 @@ public class ShipmentLineItemBuilderTest {
     builder.build(template, asList(csvRecord1));
   }
 
-  @Test(expected = FulfillmentException.class)
-  public void throwsExceptionWhenQuantityShippedIsLessThan0() {
+  @Test
+  public void rejectsOrderWhenQuantityShippedIsLessThan0() {
     when(csvRecord1.get(2)).thenReturn("-100");
 
-    builder.build(template, asList(csvRecord1));
+    assertRejected(builder.build(template, asList(csvRecord1)).get(ORDER_CODE));
   }
 
-  @Test(expected = FulfillmentException.class)
-  public void throwsExceptionWhenQuantityShippedEmptyString() {
+  @Test
+  public void rejectsOrderWhenQuantityShippedEmptyString() {
     when(csvRecord1.get(2)).thenReturn("");
 
-    builder.build(template, asList(csvRecord1));
+    assertRejected(builder.build(template, asList(csvRecord1)).get(ORDER_CODE));
   }
 
-  @Test(expected = FulfillmentException.class)
-  public void throwsExceptionWhenQuantityShippedIsNotNumeric() {
+  @Test
+  public void rejectsOrderWhenQuantityShippedIsNotNumeric() {
     when(csvRecord1.get(2)).thenReturn("emahoy");
 
-    builder.build(template, asList(csvRecord1));
+    assertRejected(builder.build(template, asList(csvRecord1)).get(ORDER_CODE));
   }
 
-  @Test(expected = FulfillmentException.class)
-  public void throwsExceptionWhenOrderIdIsNotSameForAllRows() {
-    CSVRecord csvRecord2 = PowerMockito.mock(CSVRecord.class);
-    when(csvRecord2.get(0)).thenReturn(ORDER_CODE_2);
-    when(csvRecord2.get(1)).thenReturn(ORDERABLE_ID);
-    when(csvRecord2.get(2)).thenReturn(QUANTITY_SHIPPED);
-    when(csvRecord2.get(3)).thenReturn(BATCH_NUMBER);
-
-    builder.build(template, asList(csvRecord1, csvRecord2));
+  @Test
+  public void buildShouldGroupLineItemsByOrder() {
+    CSVRecord csvRecord2 = mockRecord(ORDER_CODE_2, ORDERABLE_ID);
+    CSVRecord csvRecord3 = mockRecord(ORDER_CODE, ORDERABLE_ID);
+
+    Map<String, ImportedShipmentLineItemData> result = builder
+        .build(template, asList(csvRecord1, csvRecord2, csvRecord3));
+
+    assertThat(result.keySet(), contains(ORDER_CODE, ORDER_CODE_2));
+    assertThat(result.get(ORDER_CODE).getLineItems().size(), is(2));
+    assertThat(result.get(ORDER_CODE_2).getLineItems().size(), is(1));
   }
 
+  @Test
+  public void buildShouldRejectOnlyOrderWithInvalidRow() {
+    CSVRecord csvRecord2 = mockRecord(ORDER_CODE_2, ORDERABLE_ID);
+    when(csvRecord2.get(2)).thenReturn("-100");
+    CSVRecord csvRecord3 = mockRecord(ORDER_CODE_2, ORDERABLE_ID);
+
+    Map<String, ImportedShipmentLineItemData> result = builder
+        .build(template, asList(csvRecord1, csvRecord2, csvRecord3));
+
+    assertThat(result.get(ORDER_CODE).isRejected(), is(false));
+    assertThat(result.get(ORDER_CODE).getLineItems().size(), is(1));
+    assertRejected(result.get(ORDER_CODE_2));
+  }
+
+  private CSVRecord mockRecord(String orderCode, String orderableId) {
+    CSVRecord csvRecord = PowerMockito.mock(CSVRecord.class);
+    when(csvRecord.get(0)).thenReturn(orderCode);
+    when(csvRecord.get(1)).thenReturn(orderableId);
+    when(csvRecord.get(2)).thenReturn(QUANTITY_SHIPPED);
+    when(csvRecord.get(3)).thenReturn(BATCH_NUMBER);
+    return csvRecord;
+  }
+
+  private void assertRejected(ImportedShipmentLineItemData result) {
+    assertThat(result.isRejected(), is(true));
+    assertThat(result.getLineItems().size(), is(0));
+  }
 
 }
\ No newline at end of file
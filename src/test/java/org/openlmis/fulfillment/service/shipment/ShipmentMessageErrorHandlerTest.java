@@ -15,6 +15,7 @@
 
 package org.openlmis.fulfillment.service.shipment;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
@@ -72,6 +73,33 @@ public class ShipmentMessageErrorHandlerTest {
     assertTrue(messages.get(0).getPayload().getName().startsWith(PREFIX));
   }
 
+  @Test
+  public void errorLogShouldContainFailedOrders() throws Exception {
+    List<ImportedShipment> failed = asList(
+        ImportedShipment.failed("ORDER-1", new FulfillmentException("Failed for reason 1")),
+        ImportedShipment.failed("ORDER-2", new FulfillmentException("Failed for reason 2")));
+
+    List<Message<File>> messages = errorHandler.extractLogMessages(originalFile, failed);
+
+    assertEquals(2, messages.size());
+    String log = FileUtils.readFileToString(messages.get(1).getPayload());
+    assertTrue(log.contains("ORDER-1: Failed for reason 1"));
+    assertTrue(log.contains("ORDER-2: Failed for reason 2"));
+  }
+
+  @Test
+  public void shouldNotMoveOriginalFileWhenOnlySomeOrdersFailed() throws Exception {
+    List<ImportedShipment> failed = asList(
+        ImportedShipment.failed("ORDER-1", new FulfillmentException("Failed for reason 1")));
+
+    Message<File> message = errorHandler.extractOrderLogMessage(originalFile, failed);
+
+    assertTrue(originalFile.exists());
+    assertTrue(message.getPayload().getName().startsWith(PREFIX));
+    String log = FileUtils.readFileToString(message.getPayload());
+    assertTrue(log.contains("ORDER-1: Failed for reason 1"));
+  }
+
   @Test
   public void secondMessageShouldContainErrorLog() throws Exception {
     RuntimeException exception = new FulfillmentException("Failed for reason 1");
@@ -16,21 +16,31 @@
 package org.openlmis.fulfillment.service.shipment;
 
 import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.openlmis.fulfillment.i18n.MessageKeys.ORDER_NOT_FOUND;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 import org.apache.commons.csv.CSVRecord;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.openlmis.fulfillment.FileColumnBuilder;
@@ -40,16 +50,21 @@ import org.openlmis.fulfillment.domain.FileTemplate;
 import org.openlmis.fulfillment.domain.Shipment;
 import org.openlmis.fulfillment.domain.TemplateType;
 import org.openlmis.fulfillment.service.FileTemplateService;
+import org.openlmis.fulfillment.service.FulfillmentException;
+import org.openlmis.fulfillment.service.ShipmentFileExecutor;
 import org.openlmis.fulfillment.service.ShipmentService;
+import org.openlmis.fulfillment.service.shipment.ShipmentPipelineMetrics.ErrorCategory;
 import org.openlmis.fulfillment.testutils.ShipmentDataBuilder;
 import org.openlmis.fulfillment.util.FileColumnKeyPath;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.boot.actuate.metrics.Metric;
 import org.springframework.context.ApplicationContext;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({CSVRecord.class, Files.class, ShipmentMessageHandler.class})
@@ -57,6 +72,7 @@ public class ShipmentMessageHandlerTest {
 
   private static final String NEW_MESSAGE_CSV = "/tmp/new-message.csv";
   private static final String ORDER_CODE = "O111";
+  private static final String CHECKSUM = "e3b0c44298fc1c149afbf4c8996fb924";
 
   @Mock
   FileTemplateService templateService;
@@ -82,9 +98,20 @@ public class ShipmentMessageHandlerTest {
   @Mock
   ShipmentMessageErrorHandler errorHandler;
 
+  @Mock
+  ShipmentFileExecutor shipmentFileExecutor;
+
+  @Mock
+  ShipmentFileLedger fileLedger;
+
+  @Mock
+  ShipmentEndpoint endpoint;
+
   @InjectMocks
   ShipmentMessageHandler messageHandler;
 
+  private ShipmentPipelineMetrics pipelineMetrics = new ShipmentPipelineMetrics();
+
   private File file;
 
   private FileTemplate template;
@@ -103,8 +130,11 @@ public class ShipmentMessageHandlerTest {
 
     when(templateService.getFileTemplate(TemplateType.SHIPMENT)).thenReturn(template);
 
-    when(context.getBean("errorChannel")).thenReturn(errorChannel);
-    when(context.getBean("outboundShipmentFileArchiveChannel")).thenReturn(archiveChannel);
+    ReflectionTestUtils.setField(messageHandler, "pipelineMetrics", pipelineMetrics);
+    when(endpoint.getId()).thenReturn(UUID.randomUUID());
+    when(endpoint.getFacilityId()).thenReturn(UUID.randomUUID());
+    when(endpoint.getErrorChannel()).thenReturn(errorChannel);
+    when(endpoint.getArchiveChannel()).thenReturn(archiveChannel);
     file = new File(NEW_MESSAGE_CSV);
     if (!file.exists()) {
       // create file if it does not exist.
@@ -116,7 +146,8 @@ public class ShipmentMessageHandlerTest {
     Message<File> errorLog = MessageBuilder
         .withPayload(file).build();
 
-    when(errorHandler.extractLogMessages(any(), any())).thenReturn(asList(mainPayload, errorLog));
+    when(errorHandler.extractLogMessages(any(), any(RuntimeException.class)))
+        .thenReturn(asList(mainPayload, errorLog));
   }
 
   @Test
@@ -126,7 +157,7 @@ public class ShipmentMessageHandlerTest {
     Message<File> fileMessage = MessageBuilder
         .withPayload(file).build();
 
-    messageHandler.process(fileMessage);
+    messageHandler.process(fileMessage, endpoint);
     verify(errorChannel, times(2)).send(any());
   }
 
@@ -137,53 +168,228 @@ public class ShipmentMessageHandlerTest {
     Message<File> fileMessage = MessageBuilder
         .withPayload(file).build();
 
-    messageHandler.process(fileMessage);
+    messageHandler.process(fileMessage, endpoint);
     verify(errorChannel, times(2)).send(any());
   }
 
   @Test
   public void shouldSendFileToErrorChannelWhenErrorPersistingShipmentFile() throws Exception {
     List<CSVRecord> records = createParsedData();
-    when(shipmentParser.parse(any(), any())).thenReturn(records);
+    when(shipmentParser.parse(any(), any())).thenReturn(records.stream());
     when(shipmentBuilder.build(any(), any()))
-        .thenReturn(new ShipmentDataBuilder().build());
-    when(shipmentService.save(any())).thenThrow(new RuntimeException());
+        .thenReturn(
+            asList(ImportedShipment.created(ORDER_CODE, new ShipmentDataBuilder().build())));
+    when(shipmentService.saveAll(any())).thenThrow(new RuntimeException());
     Message<File> fileMessage = MessageBuilder
         .withPayload(file).build();
 
-    messageHandler.process(fileMessage);
+    messageHandler.process(fileMessage, endpoint);
     verify(errorChannel, times(2)).send(any());
     verify(archiveChannel, never()).send(any());
+    assertThat(getStats().getErrorCount(ErrorCategory.FILE), is(1L));
   }
 
 
   @Test
   public void shouldSaveFileToArchiveChannelWhenThereIsNoError() throws Exception {
     List<CSVRecord> records = createParsedData();
-    when(shipmentParser.parse(any(), any())).thenReturn(records);
+    when(shipmentParser.parse(any(), any())).thenReturn(records.stream());
     when(shipmentBuilder.build(any(), any()))
-        .thenReturn(new ShipmentDataBuilder().build());
+        .thenReturn(
+            asList(ImportedShipment.created(ORDER_CODE, new ShipmentDataBuilder().build())));
     Message<File> fileMessage = MessageBuilder.withPayload(file).build();
 
-    messageHandler.process(fileMessage);
+    messageHandler.process(fileMessage, endpoint);
     verify(archiveChannel).send(any());
     verify(errorChannel, never()).send(any());
   }
 
+  @Test
+  public void shouldArchiveDuplicateFileWithoutParsing() throws Exception {
+    when(fileLedger.getChecksum(file)).thenReturn(CHECKSUM);
+    when(fileLedger.isDuplicate(file, CHECKSUM)).thenReturn(true);
+    Message<File> fileMessage = MessageBuilder.withPayload(file).build();
+
+    messageHandler.process(fileMessage, endpoint);
+
+    verify(archiveChannel).send(any());
+    verify(shipmentParser, never()).parse(any(), any());
+    verify(shipmentService, never()).saveAll(any());
+  }
+
+  @Test
+  public void shouldRecordImportedFile() throws Exception {
+    when(fileLedger.getChecksum(file)).thenReturn(CHECKSUM);
+    List<CSVRecord> records = createParsedData();
+    when(shipmentParser.parse(any(), any())).thenReturn(records.stream());
+    when(shipmentBuilder.build(any(), any()))
+        .thenReturn(
+            asList(ImportedShipment.created(ORDER_CODE, new ShipmentDataBuilder().build())));
+    Message<File> fileMessage = MessageBuilder.withPayload(file).build();
+
+    messageHandler.process(fileMessage, endpoint);
+
+    verify(fileLedger).record(file, CHECKSUM, endpoint.getId());
+  }
+
+  @Test
+  public void shouldNotRecordFileThatCouldNotBeImported() throws Exception {
+    when(shipmentParser.parse(any(), any())).thenThrow(new RuntimeException());
+    Message<File> fileMessage = MessageBuilder.withPayload(file).build();
+
+    messageHandler.process(fileMessage, endpoint);
+
+    verify(fileLedger, never()).record(any(), any(), any());
+  }
+
   @Test
   public void shouldSaveShipmentWhenThereIsNoError() throws Exception {
     Shipment shipment = new ShipmentDataBuilder().build();
     when(shipmentBuilder.build(any(), any()))
-        .thenReturn(shipment);
+        .thenReturn(asList(ImportedShipment.created(ORDER_CODE, shipment)));
     List<CSVRecord> records = createParsedData();
-    when(shipmentParser.parse(any(), any())).thenReturn(records);
-    when(shipmentService.save(shipment)).thenReturn(shipment);
+    when(shipmentParser.parse(any(), any())).thenReturn(records.stream());
+    when(shipmentService.saveAll(asList(shipment))).thenReturn(asList(shipment));
     Message<File> fileMessage = MessageBuilder
         .withPayload(file).build();
 
-    messageHandler.process(fileMessage);
+    messageHandler.process(fileMessage, endpoint);
+
+    verify(shipmentService).saveAll(asList(shipment));
+  }
+
+  @Test
+  public void shouldSaveCreatedShipmentsAndLogFailedOrders() throws Exception {
+    Shipment shipment = new ShipmentDataBuilder().build();
+    ImportedShipment failed = ImportedShipment
+        .failed("O222", new FulfillmentException(ORDER_NOT_FOUND, "O222"));
+    when(shipmentBuilder.build(any(), any()))
+        .thenReturn(asList(ImportedShipment.created(ORDER_CODE, shipment), failed));
+    List<CSVRecord> records = createParsedData();
+    when(shipmentParser.parse(any(), any())).thenReturn(records.stream());
+    Message<File> errorLog = MessageBuilder.withPayload(file).build();
+    when(errorHandler.extractOrderLogMessage(file, asList(failed))).thenReturn(errorLog);
+
+    messageHandler.process(MessageBuilder.withPayload(file).build(), endpoint);
+
+    verify(shipmentService).saveAll(asList(shipment));
+    verify(errorHandler).extractOrderLogMessage(file, asList(failed));
+    verify(errorChannel).send(any());
+    verify(archiveChannel).send(any());
+    assertThat(getStats().getErrorCount(ErrorCategory.SOME_ORDERS), is(1L));
+  }
+
+  @Test
+  public void shouldSendFileToErrorChannelWhenAllOrdersFailed() throws Exception {
+    ImportedShipment failed = ImportedShipment
+        .failed(ORDER_CODE, new FulfillmentException(ORDER_NOT_FOUND, ORDER_CODE));
+    when(shipmentBuilder.build(any(), any())).thenReturn(asList(failed));
+    List<CSVRecord> records = createParsedData();
+    when(shipmentParser.parse(any(), any())).thenReturn(records.stream());
+    when(errorHandler.extractLogMessages(file, asList(failed)))
+        .thenReturn(asList(MessageBuilder.withPayload(file).build(),
+            MessageBuilder.withPayload(file).build()));
+
+    messageHandler.process(MessageBuilder.withPayload(file).build(), endpoint);
+
+    verify(shipmentService, never()).saveAll(any());
+    verify(errorChannel, times(2)).send(any());
+    verify(archiveChannel, never()).send(any());
+    assertThat(getStats().getErrorCount(ErrorCategory.ALL_ORDERS), is(1L));
+  }
+
+  @Test
+  public void shouldCountParsedRows() throws Exception {
+    List<CSVRecord> records = createParsedData();
+    when(shipmentParser.parse(any(), any())).thenReturn(records.stream());
+    when(shipmentBuilder.build(any(), any())).thenAnswer(invocation -> {
+      ((Iterable<?>) invocation.getArguments()[1]).forEach(record -> { });
+      return asList(ImportedShipment.created(ORDER_CODE, new ShipmentDataBuilder().build()));
+    });
+
+    messageHandler.process(MessageBuilder.withPayload(file).build(), endpoint);
+
+    List<Metric<?>> metrics = new ArrayList<>(pipelineMetrics.metrics());
+    String prefix = ShipmentPipelineMetrics.PREFIX + endpoint.getFacilityId();
+    assertThat(getMetric(metrics, prefix + ".rows.parsed"), is(1L));
+    assertThat(getMetric(metrics, prefix + ".save.time.count"), is(1L));
+  }
+
+  @Test
+  public void shouldKeepReceivedFileInBacklogUntilItIsProcessed() throws Exception {
+    when(shipmentParser.parse(any(), any())).thenReturn(Stream.empty());
+    Message<File> fileMessage = MessageBuilder.withPayload(file).build();
+
+    messageHandler.receive(fileMessage, endpoint);
+
+    assertThat(getStats().getReceivedCount(), is(1L));
+    assertThat(getStats().getBacklog(), is(1));
+
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+    verify(shipmentFileExecutor).execute(any(), task.capture());
+    when(context.getBean(ShipmentMessageHandler.class))
+        .thenReturn(mock(ShipmentMessageHandler.class));
+    task.getValue().run();
+
+    assertThat(getStats().getBacklog(), is(0));
+  }
+
+  @Test
+  public void shouldRemoveFileFromBacklogIfItCannotBeQueued() throws Exception {
+    when(shipmentParser.parse(any(), any())).thenReturn(Stream.empty());
+    doThrow(new IllegalStateException()).when(shipmentFileExecutor).execute(any(), any());
+
+    try {
+      messageHandler.receive(MessageBuilder.withPayload(file).build(), endpoint);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException exp) {
+      assertThat(getStats().getBacklog(), is(0));
+    }
+  }
+
+  @Test
+  public void shouldCheckCapacityOfChannel() {
+    when(shipmentFileExecutor.hasCapacity(endpoint.getId().toString())).thenReturn(false);
+
+    assertThat(messageHandler.canReceive(endpoint), is(false));
+  }
+
+  @Test
+  public void shouldPassReceivedFileToExecutorWithChannelAsKey() throws Exception {
+    messageHandler.receive(MessageBuilder.withPayload(file).build(), endpoint);
+
+    verify(shipmentFileExecutor)
+        .execute(eq(endpoint.getId().toString()), any(Runnable.class));
+    verify(shipmentParser, never()).parse(any(), any());
+  }
+
+  @Test
+  public void shouldProcessReceivedFileThroughContextBean() throws Exception {
+    ShipmentMessageHandler proxy = mock(ShipmentMessageHandler.class);
+    when(context.getBean(ShipmentMessageHandler.class)).thenReturn(proxy);
+    when(shipmentParser.parse(any(), any())).thenReturn(Stream.empty());
+    doAnswer(invocation -> {
+      ((Runnable) invocation.getArguments()[1]).run();
+      return null;
+    }).when(shipmentFileExecutor).execute(any(), any());
+    Message<File> fileMessage = MessageBuilder.withPayload(file).build();
+
+    messageHandler.receive(fileMessage, endpoint);
+
+    verify(proxy).process(fileMessage, endpoint);
+  }
+
+  private ShipmentPipelineMetrics.ChannelStats getStats() {
+    return pipelineMetrics.getChannel(endpoint);
+  }
 
-    verify(shipmentService).save(any());
+  private Object getMetric(List<Metric<?>> metrics, String name) {
+    return metrics
+        .stream()
+        .filter(metric -> name.equals(metric.getName()))
+        .findFirst()
+        .map(Metric::getValue)
+        .orElse(null);
   }
 
   private List<CSVRecord> createParsedData() {
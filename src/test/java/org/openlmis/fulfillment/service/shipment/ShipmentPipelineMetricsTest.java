@@ -0,0 +1,130 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service.shipment;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openlmis.fulfillment.service.shipment.ShipmentPipelineMetrics.ChannelStats;
+import org.openlmis.fulfillment.service.shipment.ShipmentPipelineMetrics.ErrorCategory;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+public class ShipmentPipelineMetricsTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ShipmentPipelineMetrics pipelineMetrics = new ShipmentPipelineMetrics();
+
+  private ShipmentEndpoint endpoint = mock(ShipmentEndpoint.class);
+  private UUID facilityId = UUID.randomUUID();
+  private String prefix = ShipmentPipelineMetrics.PREFIX + facilityId;
+
+  @Before
+  public void setUp() {
+    when(endpoint.getId()).thenReturn(UUID.randomUUID());
+    when(endpoint.getFacilityId()).thenReturn(facilityId);
+  }
+
+  @Test
+  public void shouldNotExposeChannelsWithoutFiles() {
+    assertThat(pipelineMetrics.metrics(), is(empty()));
+  }
+
+  @Test
+  public void shouldExposeMetricsOfChannelByFacility() throws Exception {
+    ChannelStats stats = pipelineMetrics.getChannel(endpoint);
+    stats.fileReceived(createMessage(System.currentTimeMillis()));
+    stats.fileParsed(5, 1_000_000L);
+    stats.error(ErrorCategory.SOME_ORDERS);
+
+    Map<String, Number> metrics = getMetrics();
+
+    assertThat(metrics.get(prefix + ".files.received"), is(1L));
+    assertThat(metrics.get(prefix + ".rows.parsed"), is(5L));
+    assertThat(metrics.get(prefix + ".backlog"), is(1));
+    assertThat(metrics.get(prefix + ".parse.time.count"), is(1L));
+    assertThat(metrics.get(prefix + ".errors.someOrders"), is(1L));
+    assertThat(metrics.get(prefix + ".errors.file"), is(0L));
+  }
+
+  @Test
+  public void shouldReportAgeOfOldestUnprocessedFile() throws Exception {
+    long now = System.currentTimeMillis();
+    ChannelStats stats = pipelineMetrics.getChannel(endpoint);
+    Message<File> oldest = createMessage(now - 60000);
+    stats.fileReceived(oldest);
+    stats.fileReceived(createMessage(now - 1000));
+
+    assertThat(stats.getOldestAge(now), greaterThanOrEqualTo(59000L));
+
+    stats.fileCompleted(oldest);
+
+    assertThat(stats.getBacklog(), is(1));
+    assertThat(stats.getOldestAge(now) < 59000L, is(true));
+  }
+
+  @Test
+  public void shouldCountDurationsInCumulativeBuckets() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    histogram.record(50);
+    histogram.record(700);
+    histogram.record(60000);
+
+    assertThat(histogram.getCount(), is(3L));
+    assertThat(histogram.getBucket(0), is(1L));
+    assertThat(histogram.getBucket(2), is(2L));
+    assertThat(histogram.getBucket(LatencyHistogram.BOUNDS.length - 1), is(2L));
+  }
+
+  @Test
+  public void shouldRemoveMetricsOfRemovedChannel() {
+    pipelineMetrics.getChannel(endpoint);
+
+    pipelineMetrics.remove(endpoint.getId());
+
+    assertThat(pipelineMetrics.metrics(), is(empty()));
+  }
+
+  private Message<File> createMessage(long lastModified) throws Exception {
+    File file = temporaryFolder.newFile();
+    file.setLastModified(lastModified);
+    return MessageBuilder.withPayload(file).build();
+  }
+
+  private Map<String, Number> getMetrics() {
+    Collection<Metric<?>> metrics = pipelineMetrics.metrics();
+    return metrics.stream().collect(Collectors.toMap(Metric::getName, Metric::getValue));
+  }
+
+}
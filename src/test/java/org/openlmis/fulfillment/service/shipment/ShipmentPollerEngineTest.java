@@ -0,0 +1,444 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.fulfillment.service.shipment;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openlmis.fulfillment.service.shipment.ShipmentPollerEngine.MAX_MESSAGES_PER_POLL;
+import static org.openlmis.fulfillment.service.shipment.ShipmentPollerEngine.getNextDelay;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.domain.FtpTransferProperties;
+import org.openlmis.fulfillment.domain.LocalTransferProperties;
+import org.openlmis.fulfillment.domain.TransferProperties;
+import org.openlmis.fulfillment.domain.TransferType;
+import org.openlmis.fulfillment.repository.TransferPropertiesRepository;
+import org.openlmis.fulfillment.service.FulfillmentException;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ShipmentPollerEngineTest {
+
+  @Mock
+  private TransferPropertiesRepository transferPropertiesRepository;
+
+  @Mock
+  private ShipmentEndpointFactory endpointFactory;
+
+  @Mock
+  private ShipmentMessageHandler messageHandler;
+
+  @Mock
+  private ShipmentChannelOwnership channelOwnership;
+
+  @Mock
+  private ShipmentDirectoryWatcher directoryWatcher;
+
+  @Mock
+  private ShipmentPipelineMetrics pipelineMetrics;
+
+  @Mock
+  private ShipmentEndpoint endpoint;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @InjectMocks
+  private ShipmentPollerEngine engine;
+
+  private TransferProperties local = createLocalTransferProperty(TransferType.SHIPMENT);
+  private TransferProperties ftp = createFtpTransferProperty(TransferType.SHIPMENT);
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(engine, "pollingRate", 60000L);
+    ReflectionTestUtils.setField(engine, "maxIdleRate", 240000L);
+    ReflectionTestUtils.setField(engine, "reconciliationRate", 60000L);
+    ReflectionTestUtils.setField(engine, "poolSize", 1);
+    ReflectionTestUtils.setField(engine, "leaseRefreshRate", 60000L);
+    engine.start();
+
+    when(endpointFactory.create(any(TransferProperties.class))).thenReturn(endpoint);
+    when(endpoint.getId()).thenReturn(ftp.getId());
+    when(channelOwnership.isOwned(ftp.getId())).thenReturn(true);
+    when(messageHandler.canReceive(endpoint)).thenReturn(true);
+  }
+
+  @After
+  public void tearDown() {
+    engine.stop();
+  }
+
+  @Test
+  public void shouldCreateEndpointsForAllShipmentTransferProperties() {
+    when(transferPropertiesRepository.findByTransferType(TransferType.SHIPMENT))
+        .thenReturn(asList(local, ftp));
+
+    engine.run();
+
+    verify(endpointFactory).create(local);
+    verify(endpointFactory).create(ftp);
+    verify(channelOwnership).rebalance(new HashSet<>(asList(local.getId(), ftp.getId())));
+    assertThat(engine.getEndpointCount(), is(2));
+  }
+
+  @Test
+  public void shouldCreateOtherEndpointsIfOneCannotBeCreated() {
+    when(transferPropertiesRepository.findByTransferType(TransferType.SHIPMENT))
+        .thenReturn(asList(local, ftp));
+    when(endpointFactory.create(local)).thenThrow(new FulfillmentException("error"));
+
+    engine.run();
+
+    verify(endpointFactory).create(ftp);
+    assertThat(engine.getEndpointCount(), is(1));
+  }
+
+  @Test
+  public void refreshShouldReplaceExistingEndpoint() {
+    engine.refresh(ftp);
+    engine.refresh(ftp);
+
+    verify(endpointFactory, times(2)).create(ftp);
+    verify(endpoint).stop();
+    assertThat(engine.getEndpointCount(), is(1));
+  }
+
+  @Test
+  public void refreshShouldRemoveEndpointIfPropertiesAreNotUsedForShipments() {
+    engine.refresh(ftp);
+    ftp.setTransferType(TransferType.ORDER);
+
+    engine.refresh(ftp);
+
+    verify(endpointFactory, times(1)).create(ftp);
+    verify(endpoint).stop();
+    assertThat(engine.getEndpointCount(), is(0));
+  }
+
+  @Test
+  public void refreshShouldNotCreateEndpointForOrderTransferProperties() {
+    engine.refresh(createLocalTransferProperty(TransferType.ORDER));
+
+    verify(endpointFactory, never()).create(any(TransferProperties.class));
+    assertThat(engine.getEndpointCount(), is(0));
+  }
+
+  @Test
+  public void removeShouldStopEndpoint() {
+    engine.refresh(local);
+
+    engine.remove(local.getId());
+
+    verify(endpoint).stop();
+    assertThat(engine.getEndpointCount(), is(0));
+  }
+
+  @Test
+  public void pollShouldPassReceivedFilesToMessageHandler() throws Exception {
+    Message<File> message = MessageBuilder.withPayload(new File("shipment.csv")).build();
+    when(endpoint.receive()).thenReturn(message, message, null);
+
+    assertThat(engine.poll(endpoint), is(2));
+
+    verify(messageHandler, times(2)).receive(message, endpoint);
+  }
+
+  @Test
+  public void pollShouldLimitNumberOfReceivedFiles() throws Exception {
+    Message<File> message = MessageBuilder.withPayload(new File("shipment.csv")).build();
+    when(endpoint.receive()).thenReturn(message);
+
+    assertThat(engine.poll(endpoint), is(MAX_MESSAGES_PER_POLL));
+
+    verify(messageHandler, times(MAX_MESSAGES_PER_POLL)).receive(message, endpoint);
+  }
+
+  @Test
+  public void pollShouldSkipEndpointOwnedByAnotherInstance() throws Exception {
+    when(channelOwnership.isOwned(ftp.getId())).thenReturn(false);
+
+    assertThat(engine.poll(endpoint), is(0));
+
+    verify(endpoint, never()).receive();
+  }
+
+  @Test
+  public void pollShouldStopReceivingFilesWhenProcessingQueueOfEndpointIsFull() throws Exception {
+    Message<File> message = MessageBuilder.withPayload(new File("shipment.csv")).build();
+    when(endpoint.receive()).thenReturn(message);
+    when(messageHandler.canReceive(endpoint)).thenReturn(true, true, false);
+
+    assertThat(engine.poll(endpoint), is(2));
+
+    verify(endpoint, times(2)).receive();
+  }
+
+  @Test
+  public void shouldPollEndpointWithBacklogWithoutDelay() {
+    assertThat(getNextDelay(60000, MAX_MESSAGES_PER_POLL, 10000, 60000), is(0L));
+  }
+
+  @Test
+  public void shouldResetDelayIfEndpointReceivedFiles() {
+    assertThat(getNextDelay(40000, 1, 10000, 60000), is(10000L));
+    assertThat(getNextDelay(0, 1, 10000, 60000), is(10000L));
+  }
+
+  @Test
+  public void shouldBackOffIfEndpointIsIdle() {
+    assertThat(getNextDelay(10000, 0, 10000, 60000), is(20000L));
+    assertThat(getNextDelay(40000, 0, 10000, 60000), is(60000L));
+    assertThat(getNextDelay(0, 0, 10000, 60000), is(10000L));
+  }
+
+  @Test
+  public void shouldNotBackOffIfMaxDelayIsShorterThanBaseDelay() {
+    assertThat(getNextDelay(10000, 0, 10000, 5000), is(10000L));
+  }
+
+  @Test
+  public void shouldWatchDirectoryOfLocalEndpoint() throws Exception {
+    File directory = temporaryFolder.getRoot();
+    when(endpoint.isWatchable()).thenReturn(true);
+    when(endpoint.getWatchedDirectory()).thenReturn(directory);
+
+    engine.refresh(ftp);
+
+    verify(directoryWatcher).register(eq(ftp.getId()), eq(directory.toPath()),
+        any(Runnable.class));
+    assertThat(engine.getWatchedCount(), is(1));
+  }
+
+  @Test
+  public void shouldPollLocalEndpointIfDirectoryCannotBeWatched() throws Exception {
+    when(endpoint.isWatchable()).thenReturn(true);
+    when(endpoint.getWatchedDirectory()).thenReturn(temporaryFolder.getRoot());
+    doThrow(new IOException()).when(directoryWatcher)
+        .register(any(UUID.class), any(Path.class), any(Runnable.class));
+
+    engine.refresh(ftp);
+
+    assertThat(engine.getEndpointCount(), is(1));
+    assertThat(engine.getWatchedCount(), is(0));
+  }
+
+  @Test
+  public void shouldPollWatchedEndpointAfterDirectoryHasChanged() throws Exception {
+    when(endpoint.isWatchable()).thenReturn(true);
+    when(endpoint.getWatchedDirectory()).thenReturn(temporaryFolder.getRoot());
+    engine.refresh(ftp);
+
+    ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+    verify(directoryWatcher).register(eq(ftp.getId()), any(Path.class), listener.capture());
+
+    listener.getValue().run();
+
+    verify(endpoint, timeout(5000)).receive();
+  }
+
+  @Test
+  public void removeShouldStopWatchingDirectory() {
+    engine.refresh(ftp);
+
+    engine.remove(ftp.getId());
+
+    verify(directoryWatcher).unregister(ftp.getId());
+  }
+
+  @Test
+  public void removeShouldRemovePipelineMetricsOfChannel() {
+    engine.refresh(ftp);
+
+    engine.remove(ftp.getId());
+
+    verify(pipelineMetrics).remove(ftp.getId());
+  }
+
+  @Test
+  public void shouldRenewOwnershipPeriodicallyOnDedicatedThread() {
+    ReflectionTestUtils.setField(engine, "leaseRefreshRate", 10L);
+    List<String> threads = new CopyOnWriteArrayList<>();
+    doAnswer(invocation -> threads.add(Thread.currentThread().getName()))
+        .when(channelOwnership).rebalance(any());
+
+    engine.run();
+
+    verify(channelOwnership, timeout(5000).atLeast(3)).rebalance(any());
+    assertThat(threads.get(threads.size() - 1), startsWith("shipment-leases-"));
+  }
+
+  @Test
+  public void rebalanceShouldNotFailIfOwnershipCannotBeRenewed() {
+    engine.refresh(ftp);
+    doThrow(new IllegalStateException()).when(channelOwnership).rebalance(any());
+
+    engine.rebalance();
+
+    verify(channelOwnership).rebalance(new HashSet<>(singletonList(ftp.getId())));
+  }
+
+  @Test
+  public void rebalanceShouldAddEndpointCreatedByAnotherInstance() {
+    ShipmentPollerEngine other = createEngine();
+    engine.run();
+    other.run();
+
+    when(transferPropertiesRepository.findByTransferType(TransferType.SHIPMENT))
+        .thenReturn(singletonList(ftp));
+    when(transferPropertiesRepository.getRoutingVersion()).thenReturn(1L);
+    other.refresh(ftp);
+
+    engine.rebalance();
+
+    assertThat(engine.getEndpointCount(), is(1));
+    verify(channelOwnership).rebalance(new HashSet<>(singletonList(ftp.getId())));
+    other.stop();
+  }
+
+  @Test
+  public void rebalanceShouldReplaceEndpointUpdatedByAnotherInstance() {
+    when(transferPropertiesRepository.findByTransferType(TransferType.SHIPMENT))
+        .thenReturn(singletonList(ftp));
+    ShipmentPollerEngine other = createEngine();
+    engine.run();
+    other.run();
+
+    FtpTransferProperties updated = createFtpTransferProperty(TransferType.SHIPMENT);
+    updated.setId(ftp.getId());
+    updated.setServerHost("updated.host");
+    when(transferPropertiesRepository.findByTransferType(TransferType.SHIPMENT))
+        .thenReturn(singletonList(updated));
+    when(transferPropertiesRepository.getRoutingVersion()).thenReturn(1L);
+    other.refresh(updated);
+
+    engine.rebalance();
+
+    // the other instance has created its endpoint already
+    verify(endpointFactory, times(2)).create(same(updated));
+    assertThat(engine.getEndpointCount(), is(1));
+    other.stop();
+  }
+
+  @Test
+  public void rebalanceShouldRemoveEndpointDeletedByAnotherInstance() {
+    when(transferPropertiesRepository.findByTransferType(TransferType.SHIPMENT))
+        .thenReturn(singletonList(ftp));
+    ShipmentPollerEngine other = createEngine();
+    engine.run();
+    other.run();
+
+    when(transferPropertiesRepository.findByTransferType(TransferType.SHIPMENT))
+        .thenReturn(emptyList());
+    when(transferPropertiesRepository.getRoutingVersion()).thenReturn(1L);
+    other.remove(ftp.getId());
+
+    engine.rebalance();
+
+    assertThat(engine.getEndpointCount(), is(0));
+    other.stop();
+  }
+
+  @Test
+  public void rebalanceShouldNotReloadUnchangedTransferProperties() {
+    when(transferPropertiesRepository.findByTransferType(TransferType.SHIPMENT))
+        .thenReturn(singletonList(ftp));
+    engine.run();
+
+    engine.rebalance();
+    when(transferPropertiesRepository.getRoutingVersion()).thenReturn(1L);
+    engine.rebalance();
+
+    verify(transferPropertiesRepository, times(2)).findByTransferType(TransferType.SHIPMENT);
+    verify(endpointFactory, times(1)).create(ftp);
+  }
+
+  @Test
+  public void pollShouldNotFailIfEndpointCannotBeRead() throws Exception {
+    when(endpoint.receive()).thenThrow(new IllegalStateException());
+
+    engine.poll(endpoint);
+
+    verify(messageHandler, never()).receive(any(), any());
+  }
+
+  // another service instance that shares the database with the tested one
+  private ShipmentPollerEngine createEngine() {
+    ShipmentPollerEngine other = new ShipmentPollerEngine();
+    ReflectionTestUtils.setField(other, "transferPropertiesRepository",
+        transferPropertiesRepository);
+    ReflectionTestUtils.setField(other, "endpointFactory", endpointFactory);
+    ReflectionTestUtils.setField(other, "messageHandler", messageHandler);
+    ReflectionTestUtils.setField(other, "channelOwnership", mock(ShipmentChannelOwnership.class));
+    ReflectionTestUtils.setField(other, "directoryWatcher", directoryWatcher);
+    ReflectionTestUtils.setField(other, "pipelineMetrics", pipelineMetrics);
+    ReflectionTestUtils.setField(other, "pollingRate", 60000L);
+    ReflectionTestUtils.setField(other, "maxIdleRate", 240000L);
+    ReflectionTestUtils.setField(other, "reconciliationRate", 60000L);
+    ReflectionTestUtils.setField(other, "poolSize", 1);
+    ReflectionTestUtils.setField(other, "leaseRefreshRate", 60000L);
+    other.start();
+    return other;
+  }
+
+  private FtpTransferProperties createFtpTransferProperty(TransferType transferType) {
+    FtpTransferProperties ftpTransferProperties = new FtpTransferProperties();
+    ftpTransferProperties.setId(UUID.randomUUID());
+    ftpTransferProperties.setTransferType(transferType);
+    return ftpTransferProperties;
+  }
+
+  private LocalTransferProperties createLocalTransferProperty(TransferType transferType) {
+    LocalTransferProperties localTransferProperties = new LocalTransferProperties();
+    localTransferProperties.setId(UUID.randomUUID());
+    localTransferProperties.setTransferType(transferType);
+    return localTransferProperties;
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.fulfillment.service.stockmanagement;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.fulfillment.service.ServiceResponse;
+import org.openlmis.fulfillment.util.DateHelper;
+import org.openlmis.fulfillment.web.stockmanagement.ValidSourceDestinationDto;
+import org.openlmis.fulfillment.web.stockmanagement.ValidSourceDestinationDtoDataBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ValidSourceDestinationIndexTest {
+  private static final long TIME_TO_LIVE = 60;
+  private static final String ETAG = "\"1\"";
+
+  @Mock
+  private ValidSourcesStockManagementService validSourcesStockManagementService;
+
+  @Mock
+  private ValidDestinationsStockManagementService validDestinationsStockManagementService;
+
+  @Mock
+  private DateHelper dateHelper;
+
+  @InjectMocks
+  private ValidSourceDestinationIndex index;
+
+  private UUID program = UUID.randomUUID();
+  private UUID facilityType = UUID.randomUUID();
+  private UUID facility = UUID.randomUUID();
+  private ValidSourceDestinationDto destination = new ValidSourceDestinationDtoDataBuilder()
+      .withNode(facility)
+      .build();
+  private ZonedDateTime now = ZonedDateTime.now();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(index, "timeToLive", TIME_TO_LIVE);
+    ReflectionTestUtils.setField(index, "warmUpPrograms", new String[0]);
+    ReflectionTestUtils.setField(index, "warmUpFacilityTypes", new String[0]);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag(ETAG);
+
+    when(dateHelper.getCurrentDateTimeWithSystemZone()).thenReturn(now);
+    when(validDestinationsStockManagementService.findAll(program, facilityType, null))
+        .thenReturn(new ServiceResponse<>(singletonList(destination), headers, true));
+    when(validDestinationsStockManagementService.findAll(program, facilityType, ETAG))
+        .thenReturn(new ServiceResponse<>(null, headers, false));
+  }
+
+  @Test
+  public void shouldReuseValuesUntilTheyExpire() {
+    assertThat(search(facility), is(Optional.of(destination)));
+    assertThat(search(facility), is(Optional.of(destination)));
+
+    verify(validDestinationsStockManagementService).findAll(program, facilityType, null);
+    verify(validDestinationsStockManagementService, times(0))
+        .findAll(program, facilityType, ETAG);
+  }
+
+  @Test
+  public void shouldRevalidateExpiredValuesWithETag() {
+    search(facility);
+    when(dateHelper.getCurrentDateTimeWithSystemZone())
+        .thenReturn(now.plusSeconds(TIME_TO_LIVE));
+
+    assertThat(search(facility), is(Optional.of(destination)));
+
+    verify(validDestinationsStockManagementService).findAll(program, facilityType, ETAG);
+  }
+
+  @Test
+  public void shouldRevalidateValuesIfFacilityIsMissing() {
+    search(facility);
+
+    assertThat(search(UUID.randomUUID()), is(Optional.empty()));
+
+    verify(validDestinationsStockManagementService).findAll(program, facilityType, ETAG);
+  }
+
+  @Test
+  public void shouldRevalidateInvalidatedValues() {
+    search(facility);
+    index.invalidate();
+
+    assertThat(search(facility), is(Optional.of(destination)));
+
+    verify(validDestinationsStockManagementService).findAll(program, facilityType, ETAG);
+  }
+
+  @Test
+  public void shouldLoadConfiguredProgramsAndFacilityTypesOnWarmUp() {
+    ReflectionTestUtils.setField(index, "warmUpPrograms", new String[]{program.toString()});
+    ReflectionTestUtils.setField(index, "warmUpFacilityTypes",
+        new String[]{facilityType.toString()});
+
+    index.warmUp();
+    search(facility);
+
+    verify(validDestinationsStockManagementService).findAll(program, facilityType, null);
+    verify(validSourcesStockManagementService).findAll(program, facilityType, null);
+    verify(validDestinationsStockManagementService, times(0))
+        .findAll(program, facilityType, ETAG);
+  }
+
+  @Test
+  public void shouldNotLoadAnythingIfNothingIsConfigured() {
+    index.warmUp();
+
+    verifyZeroInteractions(validSourcesStockManagementService);
+    verify(validDestinationsStockManagementService, times(0))
+        .findAll(any(UUID.class), any(UUID.class), anyString());
+  }
+
+  private Optional<ValidSourceDestinationDto> search(UUID facility) {
+    return index.search(validDestinationsStockManagementService, program, facilityType, facility);
+  }
+}
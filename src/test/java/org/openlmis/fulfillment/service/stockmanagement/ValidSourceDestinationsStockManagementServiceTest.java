@@ -16,6 +16,7 @@
 package org.openlmis.fulfillment.service.stockmanagement;
 
 import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
@@ -27,11 +28,13 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import org.junit.Before;
 import org.junit.Test;
 import org.openlmis.fulfillment.service.BaseCommunicationServiceTest;
+import org.openlmis.fulfillment.service.ServiceResponse;
 import org.openlmis.fulfillment.web.stockmanagement.ValidSourceDestinationDto;
 import org.openlmis.fulfillment.web.stockmanagement.ValidSourceDestinationDtoDataBuilder;
 import org.springframework.http.HttpEntity;
@@ -106,4 +109,25 @@ public abstract class ValidSourceDestinationsStockManagementServiceTest
     assertAuthHeader(entity);
     assertThat(entity.getBody(), is(nullValue()));
   }
+
+  @Test
+  public void shouldNotReturnValuesIfTheyHaveNotChanged() {
+    String etag = "\"1\"";
+    when(restTemplate
+        .exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+            eq(service.getArrayResultClass())))
+        .thenReturn(new ResponseEntity<>(HttpStatus.NOT_MODIFIED));
+
+    ServiceResponse<List<ValidSourceDestinationDto>> response = service
+        .findAll(UUID.randomUUID(), UUID.randomUUID(), etag);
+
+    assertThat(response.isModified(), is(false));
+    assertThat(response.getBody(), is(nullValue()));
+
+    verify(restTemplate)
+        .exchange(uriCaptor.capture(), eq(HttpMethod.GET), entityCaptor.capture(),
+            eq(service.getArrayResultClass()));
+
+    assertThat(entityCaptor.getValue().getHeaders().getIfNoneMatch(), contains(etag));
+  }
 }
@@ -15,15 +15,29 @@
 
 package org.openlmis.fulfillment.web.shipment;
 
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.openlmis.fulfillment.i18n.MessageKeys.PERMISSION_MISSING;
+import static org.openlmis.fulfillment.i18n.MessageKeys.SHIPMENT_ORDER_STATUS_INVALID;
+import static org.openlmis.fulfillment.service.PermissionService.SHIPMENTS_EDIT;
 
 import java.time.ZonedDateTime;
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -35,21 +49,26 @@ import org.openlmis.fulfillment.domain.Order;
 import org.openlmis.fulfillment.domain.OrderStatus;
 import org.openlmis.fulfillment.domain.Shipment;
 import org.openlmis.fulfillment.domain.ShipmentDraft;
+import org.openlmis.fulfillment.i18n.MessageService;
 import org.openlmis.fulfillment.repository.OrderRepository;
 import org.openlmis.fulfillment.repository.ShipmentDraftRepository;
 import org.openlmis.fulfillment.repository.ShipmentRepository;
+import org.openlmis.fulfillment.service.OutboxService;
 import org.openlmis.fulfillment.service.PermissionService;
 import org.openlmis.fulfillment.service.ShipmentService;
 import org.openlmis.fulfillment.service.referencedata.UserDto;
-import org.openlmis.fulfillment.service.stockmanagement.StockEventStockManagementService;
 import org.openlmis.fulfillment.util.AuthenticationHelper;
 import org.openlmis.fulfillment.util.DateHelper;
+import org.openlmis.fulfillment.util.Message;
+import org.openlmis.fulfillment.web.MissingPermissionException;
 import org.openlmis.fulfillment.web.ValidationException;
 import org.openlmis.fulfillment.web.stockmanagement.StockEventDto;
 import org.openlmis.fulfillment.web.stockmanagement.StockEventDtoDataBuilder;
+import org.openlmis.fulfillment.web.util.OrderObjectReferenceDto;
 import org.openlmis.fulfillment.web.util.StockEventBuilder;
+import org.openlmis.fulfillment.web.util.StockEventBuilder.ShipmentStockEvents;
 
-@SuppressWarnings("PMD.UnusedPrivateField")
+@SuppressWarnings({"PMD.TooManyMethods", "PMD.UnusedPrivateField"})
 public class ShipmentControllerTest {
 
   @Mock
@@ -74,7 +93,7 @@ public class ShipmentControllerTest {
   private UserDto userDto;
 
   @Mock
-  private StockEventStockManagementService stockEventService;
+  private OutboxService outboxService;
 
   @Mock
   private StockEventBuilder stockEventBuilder;
@@ -85,6 +104,9 @@ public class ShipmentControllerTest {
   @Mock
   private ShipmentService shipmentService;
 
+  @Mock
+  private MessageService messageService;
+
   @InjectMocks
   private ShipmentController shipmentController = new ShipmentController();
 
@@ -135,7 +157,7 @@ public class ShipmentControllerTest {
     shipmentController.createShipment(shipmentDto);
 
     verify(stockEventBuilder).fromShipment(shipment);
-    verify(stockEventService).submit(event);
+    verify(outboxService).addStockEvent(event);
   }
 
   @Test(expected = ValidationException.class)
@@ -143,4 +165,102 @@ public class ShipmentControllerTest {
     order.setStatus(OrderStatus.IN_ROUTE);
     shipmentController.createShipment(shipmentDto);
   }
+
+  @Test
+  public void shouldCreateShipmentsInBatch() {
+    Order otherOrder = new OrderDataBuilder().withOrderedStatus().build();
+    ShipmentDto otherDto = newShipmentDto(otherOrder);
+    ShipmentDraft draft = mock(ShipmentDraft.class);
+    prepareBatch(order, otherOrder);
+    when(shipmentDraftRepository.findByOrderIn(anyListOf(Order.class)))
+        .thenReturn(Arrays.asList(draft));
+
+    List<ShipmentBatchResultDto> results = shipmentController
+        .createShipments(Arrays.asList(newShipmentDto(order), otherDto));
+
+    assertThat(results, hasSize(2));
+    assertNotNull(results.get(0).getShipment());
+    assertNotNull(results.get(1).getShipment());
+    assertNull(results.get(0).getError());
+    assertNull(results.get(1).getError());
+
+    verify(shipmentService).saveAll(anyListOf(Shipment.class));
+    verify(shipmentDraftRepository).delete(Arrays.asList(draft));
+    verify(outboxService).addStockEvents(Arrays.asList(event, event));
+    assertEquals(OrderStatus.SHIPPED, order.getStatus());
+    assertEquals(OrderStatus.SHIPPED, otherOrder.getStatus());
+  }
+
+  @Test
+  public void shouldReportErrorsForEachShipmentInBatch() {
+    Order otherOrder = new OrderDataBuilder().withStatus(OrderStatus.IN_ROUTE).build();
+    ShipmentDto otherDto = newShipmentDto(otherOrder);
+    prepareBatch(order, otherOrder);
+
+    List<ShipmentBatchResultDto> results = shipmentController
+        .createShipments(Arrays.asList(otherDto, newShipmentDto(order)));
+
+    assertNull(results.get(0).getShipment());
+    assertEquals(SHIPMENT_ORDER_STATUS_INVALID, results.get(0).getError().getMessageKey());
+    assertNotNull(results.get(1).getShipment());
+    assertNull(results.get(1).getError());
+
+    verify(outboxService).addStockEvents(singletonList(event));
+    assertEquals(OrderStatus.IN_ROUTE, otherOrder.getStatus());
+  }
+
+  @Test
+  public void shouldRejectSecondShipmentOfOrderInBatch() {
+    prepareBatch(order);
+
+    List<ShipmentBatchResultDto> results = shipmentController
+        .createShipments(Arrays.asList(newShipmentDto(order), newShipmentDto(order)));
+
+    assertNotNull(results.get(0).getShipment());
+    assertEquals(SHIPMENT_ORDER_STATUS_INVALID, results.get(1).getError().getMessageKey());
+    verify(outboxService).addStockEvents(singletonList(event));
+  }
+
+  @Test
+  public void shouldCheckRightsOncePerSupplyingFacilityInBatch() {
+    Order otherOrder = new OrderDataBuilder()
+        .withOrderedStatus()
+        .withSupplyingFacilityId(order.getSupplyingFacilityId())
+        .build();
+    prepareBatch(order, otherOrder);
+    doThrow(new MissingPermissionException(SHIPMENTS_EDIT))
+        .when(permissionService).canEditShipment(order);
+
+    List<ShipmentBatchResultDto> results = shipmentController
+        .createShipments(Arrays.asList(newShipmentDto(order), newShipmentDto(otherOrder)));
+
+    assertEquals(PERMISSION_MISSING, results.get(0).getError().getMessageKey());
+    assertEquals(PERMISSION_MISSING, results.get(1).getError().getMessageKey());
+    verify(permissionService).canEditShipment(any(Order.class));
+    verify(shipmentService, never()).saveAll(anyListOf(Shipment.class));
+  }
+
+  private ShipmentDto newShipmentDto(Order order) {
+    return new ShipmentDtoDataBuilder()
+        .withOrder(new OrderObjectReferenceDto(order.getId()))
+        .build();
+  }
+
+  private void prepareBatch(Order... orders) {
+    ShipmentStockEvents stockEvents = mock(ShipmentStockEvents.class);
+    when(stockEvents.build(any(Shipment.class))).thenReturn(event);
+    when(stockEventBuilder.fromShipments(anyListOf(Shipment.class))).thenReturn(stockEvents);
+
+    when(orderRepository.findAll(anySetOf(UUID.class))).thenReturn(Arrays.asList(orders));
+    when(shipmentService.saveAll(anyListOf(Shipment.class)))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    when(shipmentDtoBuilder.build(anyListOf(Shipment.class)))
+        .thenAnswer(invocation -> ((List<?>) invocation.getArguments()[0])
+            .stream()
+            .map(shipment -> new ShipmentDto())
+            .collect(Collectors.toList()));
+    when(messageService.localize(any(Message.class)))
+        .thenAnswer(invocation -> ((Message) invocation.getArguments()[0])
+            .new LocalizedMessage("error"));
+  }
 }
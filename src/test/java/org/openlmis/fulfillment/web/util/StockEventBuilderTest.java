@@ -20,7 +20,10 @@ import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.openlmis.fulfillment.i18n.MessageKeys.EVENT_MISSING_SOURCE_DESTINATION;
 import static org.openlmis.fulfillment.web.stockmanagement.StockEventLineItemDto.QUANTITY_REJECTED;
@@ -52,6 +55,7 @@ import org.openlmis.fulfillment.service.referencedata.OrderableDto;
 import org.openlmis.fulfillment.service.referencedata.OrderableReferenceDataService;
 import org.openlmis.fulfillment.service.referencedata.UserDto;
 import org.openlmis.fulfillment.service.stockmanagement.ValidDestinationsStockManagementService;
+import org.openlmis.fulfillment.service.stockmanagement.ValidSourceDestinationIndex;
 import org.openlmis.fulfillment.service.stockmanagement.ValidSourcesStockManagementService;
 import org.openlmis.fulfillment.testutils.DtoGenerator;
 import org.openlmis.fulfillment.testutils.OrderableDataBuilder;
@@ -64,6 +68,8 @@ import org.openlmis.fulfillment.web.stockmanagement.StockEventDto;
 import org.openlmis.fulfillment.web.stockmanagement.StockEventLineItemDto;
 import org.openlmis.fulfillment.web.stockmanagement.ValidSourceDestinationDto;
 import org.openlmis.fulfillment.web.stockmanagement.ValidSourceDestinationDtoDataBuilder;
+import org.openlmis.fulfillment.web.util.StockEventBuilder.ProofOfDeliveryStockEvents;
+import org.openlmis.fulfillment.web.util.StockEventBuilder.ShipmentStockEvents;
 
 @RunWith(MockitoJUnitRunner.class)
 @SuppressWarnings({"PMD.TooManyMethods", "PMD.UnusedPrivateField"})
@@ -84,6 +90,9 @@ public class StockEventBuilderTest {
   @Mock
   private ValidSourcesStockManagementService validSourcesStockManagementService;
 
+  @Mock
+  private ValidSourceDestinationIndex validSourceDestinationIndex;
+
   @Mock
   private ConfigurationSettingService configurationSettingService;
 
@@ -117,12 +126,14 @@ public class StockEventBuilderTest {
     when(facilityReferenceDataService.findOne(order.getSupplyingFacilityId()))
         .thenReturn(facility);
 
-    when(validDestinationsStockManagementService
-        .search(order.getProgramId(), facilityType.getId(), facility.getId()))
+    when(validSourceDestinationIndex
+        .search(validDestinationsStockManagementService, order.getProgramId(), facilityType.getId(),
+            facility.getId()))
         .thenReturn(Optional.of(destination));
 
-    when(validSourcesStockManagementService
-        .search(order.getProgramId(), facilityType.getId(), facility.getId()))
+    when(validSourceDestinationIndex
+        .search(validSourcesStockManagementService, order.getProgramId(), facilityType.getId(),
+            facility.getId()))
         .thenReturn(Optional.of(destination));
 
     when(configurationSettingService.getTransferInReasonId())
@@ -175,7 +186,8 @@ public class StockEventBuilderTest {
     exception.expect(ValidationException.class);
     exception.expectMessage(EVENT_MISSING_SOURCE_DESTINATION);
 
-    when(validDestinationsStockManagementService.search(any(), any(), any()))
+    when(validSourceDestinationIndex
+        .search(eq(validDestinationsStockManagementService), any(), any(), any()))
         .thenReturn(Optional.empty());
 
     stockEventBuilder.fromShipment(shipment);
@@ -186,12 +198,91 @@ public class StockEventBuilderTest {
     exception.expect(ValidationException.class);
     exception.expectMessage(EVENT_MISSING_SOURCE_DESTINATION);
 
-    when(validSourcesStockManagementService.search(any(), any(), any()))
+    when(validSourceDestinationIndex
+        .search(eq(validSourcesStockManagementService), any(), any(), any()))
         .thenReturn(Optional.empty());
 
     stockEventBuilder.fromProofOfDelivery(proofOfDelivery);
   }
 
+  @Test
+  public void shouldCreateEventsFromShipmentsWithSharedLookups() {
+    final OrderableDto orderable = new OrderableDataBuilder()
+        .withId(shipment.getLineItems().get(0).getOrderableId())
+        .withNetContent(NET_CONTENT)
+        .build();
+    when(orderableReferenceDataService.findByIds(Sets.asSet(orderable.getId())))
+        .thenReturn(Lists.newArrayList(orderable));
+    when(facilityReferenceDataService.findByIds(any()))
+        .thenReturn(Lists.newArrayList(facility));
+
+    ShipmentStockEvents stockEvents = stockEventBuilder
+        .fromShipments(Lists.newArrayList(shipment, shipment));
+    StockEventDto first = stockEvents.build(shipment);
+    final StockEventDto second = stockEvents.build(shipment);
+
+    assertThat(first.getFacilityId(), is(order.getSupplyingFacilityId()));
+    assertThat(first.getUserId(), is(shipment.getShippedById()));
+    assertEventLineItemOfShipment(first.getLineItems().get(0));
+    assertEventLineItemOfShipment(second.getLineItems().get(0));
+
+    verify(orderableReferenceDataService).findByIds(any());
+    verify(validSourceDestinationIndex)
+        .search(validDestinationsStockManagementService, order.getProgramId(), facilityType.getId(),
+            facility.getId());
+  }
+
+  @Test
+  public void shouldThrowExceptionForEachShipmentIfDestinationCannotBeFound() {
+    when(facilityReferenceDataService.findByIds(any()))
+        .thenReturn(Lists.newArrayList(facility));
+    when(validSourceDestinationIndex
+        .search(eq(validDestinationsStockManagementService), any(), any(), any()))
+        .thenReturn(Optional.empty());
+
+    ShipmentStockEvents stockEvents = stockEventBuilder
+        .fromShipments(Lists.newArrayList(shipment, shipment));
+
+    for (int i = 0; i < 2; ++i) {
+      try {
+        stockEvents.build(shipment);
+        fail("Expected ValidationException");
+      } catch (ValidationException ex) {
+        assertThat(ex.getMessageKey(), is(EVENT_MISSING_SOURCE_DESTINATION));
+      }
+    }
+
+    verify(validSourceDestinationIndex)
+        .search(eq(validDestinationsStockManagementService), any(), any(), any());
+  }
+
+  @Test
+  public void shouldCreateEventsFromProofsOfDeliveryWithSharedLookups() {
+    final OrderableDto orderable = new OrderableDataBuilder()
+        .withId(proofOfDelivery.getLineItems().get(0).getOrderableId())
+        .withNetContent(NET_CONTENT)
+        .build();
+    when(orderableReferenceDataService.findByIds(Sets.asSet(orderable.getId())))
+        .thenReturn(Lists.newArrayList(orderable));
+    when(facilityReferenceDataService.findByIds(any()))
+        .thenReturn(Lists.newArrayList(facility));
+
+    ProofOfDeliveryStockEvents stockEvents = stockEventBuilder
+        .fromProofsOfDelivery(Lists.newArrayList(proofOfDelivery, proofOfDelivery));
+    StockEventDto first = stockEvents.build(proofOfDelivery);
+    final StockEventDto second = stockEvents.build(proofOfDelivery);
+
+    assertThat(first.getFacilityId(), is(order.getReceivingFacilityId()));
+    assertThat(first.getUserId(), is(user.getId()));
+    assertEventLineItemOfProofOfDelivery(first.getLineItems().get(0));
+    assertEventLineItemOfProofOfDelivery(second.getLineItems().get(0));
+
+    verify(orderableReferenceDataService).findByIds(any());
+    verify(validSourceDestinationIndex)
+        .search(validSourcesStockManagementService, order.getProgramId(), facilityType.getId(),
+            facility.getId());
+  }
+
   private void assertEventLineItemOfShipment(StockEventLineItemDto eventLine) {
     ShipmentLineItemDto dto = new ShipmentLineItemDto();
     shipment.getLineItems().get(0).export(dto);
@@ -81,6 +81,14 @@ public class FtpTransferPropertiesValidatorTest {
     assertThat(validate.size(), is(1));
   }
 
+  @Test
+  public void shouldRejectWhenCompressionIsNull() {
+    properties.setCompression(null);
+    List<Message.LocalizedMessage> validate = validator.validate(properties);
+
+    assertThat(validate.size(), is(1));
+  }
+
   @Test
   public void shouldRejectWhenUsernameIsBlank() {
     properties.setUsername("");
@@ -72,6 +72,15 @@ public class LocalTransferPropertiesValidatorTest {
     assertThat(validate.size(), is(1));
   }
 
+  @Test
+  public void shouldRejectWhenCompressionIsNull() {
+    properties.setPath("/path");
+    properties.setCompression(null);
+    List<Message.LocalizedMessage> validate = validator.validate(properties);
+
+    assertThat(validate.size(), is(1));
+  }
+
   @Test
   public void shouldRejectWhenPathIsNull() {
     properties.setPath(null);